@@ -16,6 +16,9 @@ public class ClientSettings extends Settings
     // timeout in milliseconds between connection retries
     public int ConnectionRetryTimeoutMS;
 
+    // if true, the connection is switched to the compact binary protocol after connecting, instead of JSON
+    public boolean BinaryProtocolEnabled;
+
     /**
      * Constructor that takes the configuration filename as input.
      * @param filename The name of the configuration file.
@@ -36,6 +39,7 @@ public class ClientSettings extends Settings
 
         ConnectionRetries = Integer.parseInt(properties.getProperty("ConnectionRetries"));
         ConnectionRetryTimeoutMS = Integer.parseInt(properties.getProperty("ConnectionRetryTimeoutMS"));
+        BinaryProtocolEnabled = Boolean.parseBoolean(properties.getProperty("BinaryProtocolEnabled", "false"));
     }
 
     @Override
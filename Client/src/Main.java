@@ -3,6 +3,7 @@ import Helpers.GlobalData;
 import Helpers.Utilities;
 import Networking.Connection;
 import Networking.RequestHandler;
+import Networking.WireProtocol;
 
 import java.io.IOException;
 import java.net.Socket;
@@ -31,6 +32,16 @@ public class Main
         try { connection = new Connection(socket, null,  GlobalData.SETTINGS.MULTICAST_IP,GlobalData.SETTINGS.MULTICAST_PORT); }
         catch (IOException e) { System.err.printf("[ERROR] Unable to create connection: %s\n", e.getMessage()); return; }
 
+        // switch to the binary protocol if enabled, the connection stays in JSON if the server doesn't support it
+        if (GlobalData.SETTINGS.BinaryProtocolEnabled)
+        {
+            try
+            {
+                if (!connection.TrySelectProtocol(WireProtocol.BINARY)) { System.out.println("[WARNING] Binary protocol not supported by the server, using JSON"); }
+            }
+            catch (IOException e) { System.err.printf("[ERROR] Unable to select the protocol: %s\n", e.getMessage()); return; }
+        }
+
         // if (true) { Test.Run(connection); return; }
 
         // print the available options to the user
@@ -55,7 +66,9 @@ public class Main
             else if (command.equalsIgnoreCase("insertMarketOrder")) { isConnectionAlive = RequestHandler.SendInsertMarketOrder(connection, words); }
             else if (command.equalsIgnoreCase("insertLimitOrder")) { isConnectionAlive = RequestHandler.SendInsertLimitOrder(connection, words); }
             else if (command.equalsIgnoreCase("insertStopOrder")) { isConnectionAlive = RequestHandler.SendInsertStopOrder(connection, words); }
+            else if (command.equalsIgnoreCase("insertOrders")) { isConnectionAlive = RequestHandler.SendInsertOrders(connection, words); }
             else if (command.equalsIgnoreCase("cancelOrder")) { isConnectionAlive = RequestHandler.SendCancelOrder(connection, words); }
+            else if (command.equalsIgnoreCase("cancelAllOrders")) { isConnectionAlive = RequestHandler.SendCancelAllOrders(connection, words); }
             else if (command.equalsIgnoreCase("getPriceHistory")) { isConnectionAlive = RequestHandler.SendGetPriceHistory(connection, words); }
             else { System.out.println("[WARNING] Unknown command. 'help' to see options."); }
 
@@ -89,11 +102,13 @@ public class Main
         System.out.println("2) 'updateCredentials <username> <oldPassword> <newPassword>' to update credentials");
         System.out.println("3) 'login <username> <password>' to login");
         System.out.println("4) 'logout <username>' to logout");
-        System.out.println("5) 'insertMarketOrder <type> <size>' to insert a market order");
-        System.out.println("6) 'insertLimitOrder <type> <size> <limit>' to insert a limit order");
-        System.out.println("7) 'insertStopOrder <type> <size> <stopPrice>' to insert a stop order");
+        System.out.println("5) 'insertMarketOrder <type> <size> [symbol]' to insert a market order");
+        System.out.println("6) 'insertLimitOrder <type> <size> <limit> [symbol]' to insert a limit order");
+        System.out.println("7) 'insertStopOrder <type> <size> <stopPrice> [symbol]' to insert a stop order");
         System.out.println("8) 'cancelOrder <orderID>' to cancel an order");
-        System.out.println("9) 'getPriceHistory <month> <year>' to get price history");
+        System.out.println("9) 'getPriceHistory <month> <year> [symbol]' to get price history");
+        System.out.println("10) 'cancelAllOrders' to cancel all your resting orders");
+        System.out.println("11) 'insertOrders <orderType>:<type>:<size>[:<price>][:<symbol>] ...' to insert a batch of orders");
     }
 
     /**
@@ -5,10 +5,13 @@ import Helpers.GlobalData;
 import Helpers.Utilities;
 import Messages.*;
 import Orders.Method;
+import Orders.Type;
 import Users.User;
 
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The RequestHandler class manages user requests and communication with the server.
@@ -222,9 +225,9 @@ public class RequestHandler
     public static boolean SendInsertMarketOrder(Connection connection, String[] words)
     {
         // check for correct number of arguments for insertMarketOrder command
-        if (words.length != 3)
+        if (words.length != 3 && words.length != 4)
         {
-            System.out.println("[INFO] Usage: insertMarketOrder <type> <size>");
+            System.out.println("[INFO] Usage: insertMarketOrder <type> <size> [symbol]");
             return true;
         }
 
@@ -248,7 +251,10 @@ public class RequestHandler
         try { size = Long.parseLong(words[2]); }
         catch (NumberFormatException e) { System.out.println("[ERROR] <size> is not a number"); return true; }
 
-        MarketOrderRequest request = new MarketOrderRequest(method, size);
+        // the symbol is optional, the server trades its default instrument if it is missing
+        String symbol = words.length == 4 ? words[3] : null;
+
+        MarketOrderRequest request = new MarketOrderRequest(method, size, symbol);
         OrderResponse response = (OrderResponse) SendAndWaitResponse(connection, request);
         if (response == null) { return false; }
 
@@ -266,9 +272,9 @@ public class RequestHandler
     public static boolean SendInsertLimitOrder(Connection connection, String[] words)
     {
         // check for correct number of arguments for insertLimitOrder command
-        if (words.length != 4)
+        if (words.length != 4 && words.length != 5)
         {
-            System.out.println("[INFO] Usage: insertLimitOrder <type> <size> <limit>");
+            System.out.println("[INFO] Usage: insertLimitOrder <type> <size> <limit> [symbol]");
             return true;
         }
 
@@ -300,7 +306,10 @@ public class RequestHandler
             return true;
         }
 
-        LimitOrderRequest request = new LimitOrderRequest(method, size, limit);
+        // the symbol is optional, the server trades its default instrument if it is missing
+        String symbol = words.length == 5 ? words[4] : null;
+
+        LimitOrderRequest request = new LimitOrderRequest(method, size, limit, symbol);
         OrderResponse response = (OrderResponse) SendAndWaitResponse(connection, request);
         if (response == null) { return false; }
 
@@ -318,9 +327,9 @@ public class RequestHandler
     public static boolean SendInsertStopOrder(Connection connection, String[] words)
     {
         // check for correct number of arguments for insertStopOrder command
-        if (words.length != 4)
+        if (words.length != 4 && words.length != 5)
         {
-            System.out.println("[INFO] Usage: insertStopOrder <type> <size> <stopPrice>");
+            System.out.println("[INFO] Usage: insertStopOrder <type> <size> <stopPrice> [symbol]");
             return true;
         }
 
@@ -348,7 +357,10 @@ public class RequestHandler
         try { stopPrice = Long.parseLong(words[3]); }
         catch (NumberFormatException e) { System.out.println("[ERROR] <stopPrice> is not a number"); return true; }
 
-        StopOrderRequest request = new StopOrderRequest(method, size, stopPrice);
+        // the symbol is optional, the server trades its default instrument if it is missing
+        String symbol = words.length == 5 ? words[4] : null;
+
+        StopOrderRequest request = new StopOrderRequest(method, size, stopPrice, symbol);
         OrderResponse response = (OrderResponse) SendAndWaitResponse(connection, request);
         if (response == null) { return false; }
 
@@ -356,6 +368,80 @@ public class RequestHandler
         return true;
     }
 
+    /**
+     * Handles a request to insert a batch of orders at once. Each order is written as
+     * '<orderType>:<type>:<size>[:<price>][:<symbol>]', where the price is required for limit and stop orders.
+     *
+     * @param connection The connection to the server.
+     * @param words An array of strings containing the command and arguments.
+     * @return True if the connection is still alive, false otherwise.
+     */
+    public static boolean SendInsertOrders(Connection connection, String[] words)
+    {
+        // check for correct number of arguments for insertOrders command
+        if (words.length < 2)
+        {
+            System.out.println("[INFO] Usage: insertOrders <orderType>:<type>:<size>[:<price>][:<symbol>] ...");
+            return true;
+        }
+
+        // check if the user is logged in to place orders
+        if (_user == null)
+        {
+            System.out.println("[WARNING] It's not possible to send an insert orders request if you are not logged in");
+            return true;
+        }
+
+        List<Request> orders = new ArrayList<>();
+        for (int i = 1; i < words.length; i++)
+        {
+            String[] fields = words[i].split(":");
+
+            // validate the order type (market, limit or stop) and the number of fields it requires
+            Type type = Type.FromString(fields[0]);
+            int priceFields = type == Type.MARKET ? 0 : 1;
+            if (type == null || fields.length < 3 + priceFields || fields.length > 4 + priceFields)
+            {
+                System.out.printf("[ERROR] '%s' must be <orderType>:<type>:<size>[:<price>][:<symbol>]\n", words[i]);
+                return true;
+            }
+
+            // validate the order method (bid or ask)
+            Method method = Method.FromString(fields[1]);
+            if (method == null)
+            {
+                System.out.println("[ERROR] <type> must be one of: bid, ask");
+                return true;
+            }
+
+            // validate the order size (number) and the order price (number)
+            long size, price = 0;
+            try
+            {
+                size = Long.parseLong(fields[2]);
+                if (priceFields > 0) { price = Long.parseLong(fields[3]); }
+            }
+            catch (NumberFormatException e) { System.out.println("[ERROR] <size> and <price> must be numbers"); return true; }
+
+            // the symbol is optional, the server trades its default instrument if it is missing
+            String symbol = fields.length == 4 + priceFields ? fields[3 + priceFields] : null;
+
+            switch (type)
+            {
+                case MARKET -> orders.add(new MarketOrderRequest(method, size, symbol));
+                case LIMIT -> orders.add(new LimitOrderRequest(method, size, price, symbol));
+                case STOP -> orders.add(new StopOrderRequest(method, size, price, symbol));
+            }
+        }
+
+        InsertOrdersRequest request = new InsertOrdersRequest(orders);
+        InsertOrdersResponse response = (InsertOrdersResponse) SendAndWaitResponse(connection, request);
+        if (response == null) { return false; }
+
+        for (OrderResponse orderResponse : response.GetOrders()) { PrintResponse(orderResponse); }
+        return true;
+    }
+
     /**
      * Handles a cancel order request from the user.
      *
@@ -398,6 +484,37 @@ public class RequestHandler
         return true;
     }
 
+    /**
+     * Handles a cancel all orders request from the user.
+     *
+     * @param connection The connection to the server.
+     * @param words An array of strings containing the command and arguments.
+     * @return True if the connection is still alive, false otherwise.
+     */
+    public static boolean SendCancelAllOrders(Connection connection, String[] words)
+    {
+        // check for correct number of arguments for cancelAllOrders command
+        if (words.length != 1)
+        {
+            System.out.println("[INFO] Usage: cancelAllOrders");
+            return true;
+        }
+
+        // check if the user is logged in to cancel orders
+        if (_user == null)
+        {
+            System.out.println("[WARNING] It's not possible to send a cancel all orders request if you are not logged in");
+            return true;
+        }
+
+        CancelAllOrdersRequest request = new CancelAllOrdersRequest();
+        SimpleResponse response = (SimpleResponse) SendAndWaitResponse(connection, request);
+        if (response == null) { return false; }
+
+        PrintResponse(response);
+        return true;
+    }
+
     /**
      * Handles a request to retrieve price history for a specific month and year.
      * Ensures the user is logged in and validates the command arguments before sending
@@ -410,9 +527,9 @@ public class RequestHandler
     public static boolean SendGetPriceHistory(Connection connection, String[] words)
     {
         // check for correct number of arguments for getPriceHistory command
-        if (words.length != 3)
+        if (words.length != 3 && words.length != 4)
         {
-            System.out.println("[INFO] Usage: getPriceHistory <month: Jan, Feb, ...> <year>");
+            System.out.println("[INFO] Usage: getPriceHistory <month: Jan, Feb, ...> <year> [symbol]");
             return true;
         }
 
@@ -436,7 +553,10 @@ public class RequestHandler
         try { timestamp = Utilities.MillisecondsFromString(formattedTimestamp, GetPriceHistoryRequest.DATE_FORMAT); }
         catch (ParseException e) { System.out.printf("[ERROR] Unable to parse '%s'\n", formattedTimestamp); return true; }
 
-        GetPriceHistoryRequest request = new GetPriceHistoryRequest(timestamp);
+        // the symbol is optional, the server returns the prices of its default instrument if it is missing
+        String symbol = words.length == 4 ? words[3] : null;
+
+        GetPriceHistoryRequest request = new GetPriceHistoryRequest(timestamp, symbol);
         SimpleResponse response = (SimpleResponse) SendAndWaitResponse(connection, request);
         if (response == null) { return false; }
 
@@ -2,14 +2,25 @@
 package Helpers;
 
 import Messages.*;
+import Networking.AuctionTicker;
+import Networking.DepthSnapshotPublisher;
 import Networking.Listener;
+import Networking.TickerPublisher;
 import Orders.*;
 import Users.User;
 import Users.UserCollection;
 
 import java.io.IOException;
+import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.InetAddress;
 import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * This class provides global access to shared data and functionality within the server application.
@@ -28,6 +39,43 @@ public class GlobalData
 
     public static final DatagramSocket SOCKET_UDP;
 
+    // the multicast group the notifications are sent to
+    public static final InetAddress MULTICAST_GROUP;
+
+    // the thread running the periodic call auctions (null if the orders are matched on arrival)
+    public static final AuctionTicker AUCTION_TICKER;
+
+    // the thread publishing the periodic depth snapshots of the books (null if the depth feed is disabled)
+    public static final DepthSnapshotPublisher DEPTH_SNAPSHOT_PUBLISHER;
+
+    // the thread publishing the conflated top-of-book ticker (null if the ticker is disabled)
+    public static final TickerPublisher TICKER_PUBLISHER;
+
+    // the capture of the order flow received by the server (null if the order flow is not captured)
+    public static final OrderFlowCapture ORDER_FLOW_CAPTURE;
+
+    // the allocator of the order IDs, leasing blocks of IDs to the sequences of the order books
+    public static final OrderIDAllocator ORDER_ID_ALLOCATOR;
+
+    // the pre-trade risk checks of the orders received from the clients
+    public static final RiskEngine RISK_ENGINE;
+
+    // the timer thread running the timeouts of the server, such as the inactivity of the clients
+    public static final TimingWheel TIMING_WHEEL;
+
+    // the symbol of the instrument traded by the requests that don't specify one
+    public static final String DEFAULT_SYMBOL;
+
+    // the order books by instrument symbol, in the configured order
+    private static final Map<String, OrderBook> ORDER_BOOKS;
+
+    // the matching engines by instrument symbol, each one owning the book of its instrument (empty if the client
+    // handlers access the books directly)
+    private static final Map<String, MatchingEngine> MATCHING_ENGINES;
+
+    // the sequences of the order IDs by instrument symbol, each one issuing the IDs of the orders of its book
+    private static final Map<String, OrderIDAllocator.Sequence> ORDER_ID_SEQUENCES;
+
     // static initializer block to data settings and users at startup
     static
     {
@@ -40,6 +88,27 @@ public class GlobalData
 
         TCP_LISTENER = new Listener();
 
+        DEFAULT_SYMBOL = SETTINGS.Symbols[0];
+        RISK_ENGINE = new RiskEngine(SETTINGS.RiskMaxOrderSize, SETTINGS.RiskMaxOpenOrders, SETTINGS.RiskMaxOpenNotional, SETTINGS.RiskMaxOrdersPerSecond);
+        TIMING_WHEEL = new TimingWheel(SETTINGS.TimerTickMS, SETTINGS.TimerWheelSize);
+
+        Map<String, OrderBook> orderBooks = new LinkedHashMap<>();
+        Map<String, MatchingEngine> matchingEngines = new HashMap<>();
+        for (String symbol : SETTINGS.Symbols)
+        {
+            OrderBook book = new OrderBook(symbol, SETTINGS.AuctionIntervalMS > 0, SETTINGS.OffHeapOrderCapacity);
+            orderBooks.put(symbol, book);
+
+            if (SETTINGS.MatchingEngineEnabled) { matchingEngines.put(symbol, new MatchingEngine(book, SETTINGS.MatchingEngineRingSize)); }
+        }
+
+        ORDER_BOOKS = Collections.unmodifiableMap(orderBooks);
+        MATCHING_ENGINES = Collections.unmodifiableMap(matchingEngines);
+
+        AUCTION_TICKER = SETTINGS.AuctionIntervalMS > 0 ? new AuctionTicker(SETTINGS.AuctionIntervalMS) : null;
+        DEPTH_SNAPSHOT_PUBLISHER = SETTINGS.DepthFeedEnabled ? new DepthSnapshotPublisher(SETTINGS.DepthSnapshotIntervalMS) : null;
+        TICKER_PUBLISHER = SETTINGS.TickerIntervalMS > 0 ? new TickerPublisher(SETTINGS.TickerIntervalMS) : null;
+
         try { SOCKET_UDP = new DatagramSocket(); }
         catch (SocketException e)
         {
@@ -47,8 +116,15 @@ public class GlobalData
             throw new RuntimeException(e);
         }
 
+        try { MULTICAST_GROUP = InetAddress.getByName(SETTINGS.MULTICAST_IP); }
+        catch (UnknownHostException e)
+        {
+            System.out.printf("[ERROR] Unable to resolve multicast address: %s\n", e.getMessage());
+            throw new RuntimeException(e);
+        }
+
         long lastUsedID;
-        try { lastUsedID = HistoryRecordCollection.Load(SETTINGS.OrderHistoryFilename); }
+        try { lastUsedID = HistoryRecordCollection.Load(SETTINGS.OrderHistoryFilename, DEFAULT_SYMBOL); }
         catch (IOException e)
         {
             System.out.printf("[ERROR] Unable to load orders history from file: %s\n", e.getMessage());
@@ -59,37 +135,162 @@ public class GlobalData
 
         try { UserCollection.Load(SETTINGS.UsersFilename); }
         catch (IOException e) { System.out.printf("[ERROR] Unable to load users to from file: %s\n", e.getMessage()); }
+
+        // the order flow is captured from the start of this run: the Replay tool feeds it to empty books
+        if (SETTINGS.CaptureEnabled)
+        {
+            try { ORDER_FLOW_CAPTURE = new OrderFlowCapture(SETTINGS.CaptureFilename); }
+            catch (IOException e)
+            {
+                System.out.printf("[ERROR] Unable to create the order flow capture: %s\n", e.getMessage());
+                throw new RuntimeException(e);
+            }
+        }
+        else { ORDER_FLOW_CAPTURE = null; }
+
+        // rebuild the books once the users are known, the orders of the journals belong to them
+        for (OrderBook book : ORDER_BOOKS.values())
+        {
+            if (SETTINGS.JournalEnabled)
+            {
+                try { lastUsedID = book.Recover(new CommandJournal(SETTINGS.JournalDirectory, book.GetSymbol(), SETTINGS.JournalSync)); }
+                catch (IOException e)
+                {
+                    System.out.printf("[ERROR] Unable to recover the order book of %s: %s\n", book.GetSymbol(), e.getMessage());
+                    throw new RuntimeException(e);
+                }
+
+                if (SETTINGS.NextOrderID <= lastUsedID) { SETTINGS.NextOrderID = lastUsedID + 1; }
+            }
+
+            // the replayed commands are not published to the depth feed, the consumers start from a snapshot
+            if (SETTINGS.DepthFeedEnabled) { book.SetDepthSink(GlobalData::SendDepthNotification, SETTINGS.DepthSnapshotLevels); }
+        }
+
+        // the allocation restarts above the IDs found in the history and the journals, and above the high-water mark
+        try { ORDER_ID_ALLOCATOR = new OrderIDAllocator(SETTINGS.OrderIDFilename, SETTINGS.NextOrderID, SETTINGS.OrderIDBlockSize); }
+        catch (IOException e)
+        {
+            System.out.printf("[ERROR] Unable to open the order ID file: %s\n", e.getMessage());
+            throw new RuntimeException(e);
+        }
+
+        Map<String, OrderIDAllocator.Sequence> orderIDSequences = new HashMap<>();
+        for (String symbol : ORDER_BOOKS.keySet()) { orderIDSequences.put(symbol, ORDER_ID_ALLOCATOR.CreateSequence()); }
+        ORDER_ID_SEQUENCES = Collections.unmodifiableMap(orderIDSequences);
     }
 
-    public static MarketOrder CreateMarketOrder(MarketOrderRequest request, User user)
+    /**
+     * Gets the order book of an instrument.
+     *
+     * @param symbol The symbol of the instrument, null for the default instrument.
+     * @return The order book of the instrument, or null if the instrument is not traded.
+     */
+    public static OrderBook GetOrderBook(String symbol) { return ORDER_BOOKS.get(symbol == null ? DEFAULT_SYMBOL : symbol); }
+
+    /**
+     * Gets the order books of all the traded instruments.
+     *
+     * @return The order books, in the configured order.
+     */
+    public static Collection<OrderBook> GetOrderBooks() { return ORDER_BOOKS.values(); }
+
+    /**
+     * Finds the order book where an order is resting, without taking any lock.
+     *
+     * @param orderID The ID of the order.
+     * @return The order book holding the order, or null if the order is not resting in any book.
+     */
+    public static OrderBook FindOrderBook(long orderID)
     {
-        long orderID;
-        synchronized (SETTINGS) { orderID = SETTINGS.NextOrderID++; }
+        for (OrderBook book : ORDER_BOOKS.values())
+        {
+            if (book.IsResting(orderID)) { return book; }
+        }
 
-        return MarketOrder.FromRequest(orderID, request, user);
+        return null;
     }
 
-    public static LimitOrder CreateLimitOrder(LimitOrderRequest request, User user)
+    /**
+     * Gets the matching engine owning an order book.
+     *
+     * @param book The order book.
+     * @return The matching engine of the book, or null if the client handlers access the book directly.
+     */
+    public static MatchingEngine GetMatchingEngine(OrderBook book) { return MATCHING_ENGINES.get(book.GetSymbol()); }
+
+    /**
+     * Gets the matching engines of all the traded instruments.
+     *
+     * @return The matching engines (empty if the client handlers access the books directly).
+     */
+    public static Collection<MatchingEngine> GetMatchingEngines() { return MATCHING_ENGINES.values(); }
+
+    /**
+     * Sends a notification to the multicast group, for the notifications that are not related to a client connection.
+     *
+     * @param notification The notification message to be sent.
+     */
+    public static void SendNotification(String notification) { SendNotification(notification, SETTINGS.MULTICAST_PORT); }
+
+    /**
+     * Sends a notification of the depth feed to the multicast group, on the port of the feed.
+     *
+     * @param notification The depth update or snapshot notification to be sent.
+     */
+    public static void SendDepthNotification(String notification) { SendNotification(notification, SETTINGS.DepthFeedPort); }
+
+    private static void SendNotification(String notification, int port)
     {
-        long orderID;
-        synchronized (SETTINGS) { orderID = SETTINGS.NextOrderID++; }
+        byte[] buffer = notification.getBytes();
+        DatagramPacket datagramPacket = new DatagramPacket(buffer, buffer.length, MULTICAST_GROUP, port);
 
-        return LimitOrder.FromRequest(orderID, request, user);
+        try { SOCKET_UDP.send(datagramPacket); }
+        catch (IOException e) { System.out.printf("[ERROR] Unable to send notification to %s:%d: %s\n", MULTICAST_GROUP, port, e.getMessage()); }
     }
 
-    public static StopOrder CreateStopOrder(StopOrderRequest request, User user)
+    /**
+     * Issues a new order ID from the sequence of the book of an instrument.
+     *
+     * @param symbol The symbol of the instrument, null for the default instrument.
+     */
+    private static long NextOrderID(String symbol) { return ORDER_ID_SEQUENCES.get(symbol == null ? DEFAULT_SYMBOL : symbol).Next(); }
+
+    public static MarketOrder CreateMarketOrder(MarketOrderRequest request, User user)
     {
-        long orderID;
-        synchronized (SETTINGS) { orderID = SETTINGS.NextOrderID++; }
+        return MarketOrder.FromRequest(NextOrderID(request.GetSymbol()), request, user);
+    }
 
-        return StopOrder.FromRequest(orderID, request, user);
+    public static LimitOrder CreateLimitOrder(LimitOrderRequest request, User user)
+    {
+        return LimitOrder.FromRequest(NextOrderID(request.GetSymbol()), request, user);
+    }
+
+    public static StopOrder CreateStopOrder(StopOrderRequest request, User user)
+    {
+        return StopOrder.FromRequest(NextOrderID(request.GetSymbol()), request, user);
     }
 
     /**
-     * Saves server settings and user data to their respective files.
+     * Saves the snapshots of the order books, server settings and user data to their respective files.
      */
     public static void Save()
     {
+        // write the snapshots of the books first, so that the saved history covers the trades they include
+        if (SETTINGS.JournalEnabled)
+        {
+            MatchingEngine.Completion completion = new MatchingEngine.Completion();
+            for (OrderBook book : ORDER_BOOKS.values())
+            {
+                MatchingEngine engine = MATCHING_ENGINES.get(book.GetSymbol());
+                if (engine != null && engine.IsRunning()) { engine.SaveSnapshot(completion); }
+                else { book.SaveSnapshot(); }
+            }
+        }
+
+        if (ORDER_FLOW_CAPTURE != null) { ORDER_FLOW_CAPTURE.Flush(); }
+
+        SETTINGS.NextOrderID = ORDER_ID_ALLOCATOR.GetHighWaterMark();
         try { SETTINGS.Save();}
         catch (IOException e) { System.out.printf("[ERROR] Unable to save settings to file: %s\n", e.getMessage()); }
 
@@ -0,0 +1,341 @@
+package Helpers;
+
+import Messages.ClosedTradesNotification;
+import Messages.OrderResponse;
+import Orders.Method;
+import Orders.Order;
+import Orders.StopOrder;
+import Orders.Type;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Captures the order flow received by the server into a compact binary file: every decoded order and cancel request,
+ * numbered in arrival order, together with the outcome the server gave it. The capture can be fed back into the order
+ * books without any networking (see Replay) to benchmark the matching against a real flow and to check that it still
+ * produces the same trades.
+ *
+ * File layout (big-endian): int magic, int version, then one record per request:
+ *   byte kind, long arrival sequence, long arrival time in nanoseconds since the start of the capture, UTF username
+ *   RECORD_ORDERS      UTF symbol, int count, then per order: byte type, byte method, long ID, long size, long price
+ *                      (limit or stop price), long response ID; finally the number and the hash of the closed trades
+ *   RECORD_CANCEL      long order ID, int response code
+ *   RECORD_CANCEL_ALL  int number of canceled orders
+ */
+public class OrderFlowCapture
+{
+    // the record kinds
+    public static final byte RECORD_ORDERS = 1;
+    public static final byte RECORD_CANCEL = 2;
+    public static final byte RECORD_CANCEL_ALL = 3;
+
+    // the header of a capture file
+    private static final int MAGIC = 0x4F464350;
+    private static final int VERSION = 1;
+
+    // the capture file, written by all the client handlers
+    private final DataOutputStream _output;
+
+    // the next arrival sequence number and the time the capture started
+    private final AtomicLong _nextSequence;
+    private final long _startTime;
+
+    /**
+     * Constructor that creates the capture file, replacing any previous one.
+     *
+     * @param filename The name of the capture file.
+     * @throws IOException If the file can't be created.
+     */
+    public OrderFlowCapture(String filename) throws IOException
+    {
+        _output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+        _output.writeInt(MAGIC);
+        _output.writeInt(VERSION);
+
+        _nextSequence = new AtomicLong(0);
+        _startTime = System.nanoTime();
+    }
+
+    /**
+     * Numbers a request in arrival order, must be called as soon as the request has been decoded.
+     *
+     * @return The arrival sequence number of the request.
+     */
+    public long NextSequence() { return _nextSequence.getAndIncrement(); }
+
+    /**
+     * Gets the time elapsed since the start of the capture, used as arrival time of a request.
+     *
+     * @return The elapsed time in nanoseconds.
+     */
+    public long GetElapsedTime() { return System.nanoTime() - _startTime; }
+
+    /**
+     * Writes the orders of a request (one, or a batch sent to the same book) and their outcome.
+     *
+     * @param sequence The arrival sequence number of the request.
+     * @param time The arrival time of the request.
+     * @param username The user who placed the orders.
+     * @param symbol The symbol of the book processing the orders.
+     * @param orders The orders, in processing order.
+     * @param sizes The sizes of the orders when they were submitted, before the matching filled them.
+     * @param responses The response to each order.
+     * @param messages The closed trades notifications produced by the orders.
+     */
+    public synchronized void WriteOrders(long sequence, long time, String username, String symbol, List<Order> orders, long[] sizes, List<OrderResponse> responses, List<String> messages)
+    {
+        try
+        {
+            WriteHeader(RECORD_ORDERS, sequence, time, username);
+            _output.writeUTF(symbol);
+            _output.writeInt(orders.size());
+
+            for (int i = 0; i < orders.size(); i++)
+            {
+                Order order = orders.get(i);
+                _output.writeByte(order.GetType().ordinal());
+                _output.writeByte(order.GetMethod().ordinal());
+                _output.writeLong(order.GetID());
+                _output.writeLong(sizes[i]);
+                _output.writeLong(order instanceof StopOrder stopOrder ? stopOrder.GetStopPrice() : order.GetPrice());
+                _output.writeLong(responses.get(i).GetOrderID());
+            }
+
+            List<Order> trades = GetTrades(messages);
+            _output.writeInt(trades.size());
+            _output.writeLong(HashTrades(trades));
+        }
+        catch (IOException e) { System.out.printf("[ERROR] Unable to capture orders: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * Writes a cancel request and its outcome.
+     *
+     * @param sequence The arrival sequence number of the request.
+     * @param time The arrival time of the request.
+     * @param username The user asking for the cancellation.
+     * @param orderID The ID of the order to cancel.
+     * @param response The response code sent to the user.
+     */
+    public synchronized void WriteCancel(long sequence, long time, String username, long orderID, int response)
+    {
+        try
+        {
+            WriteHeader(RECORD_CANCEL, sequence, time, username);
+            _output.writeLong(orderID);
+            _output.writeInt(response);
+        }
+        catch (IOException e) { System.out.printf("[ERROR] Unable to capture cancel request: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * Writes a request canceling all the orders of a user and its outcome.
+     *
+     * @param sequence The arrival sequence number of the request.
+     * @param time The arrival time of the request.
+     * @param username The user whose orders are canceled.
+     * @param count The number of canceled orders.
+     */
+    public synchronized void WriteCancelAll(long sequence, long time, String username, int count)
+    {
+        try
+        {
+            WriteHeader(RECORD_CANCEL_ALL, sequence, time, username);
+            _output.writeInt(count);
+        }
+        catch (IOException e) { System.out.printf("[ERROR] Unable to capture cancel request: %s\n", e.getMessage()); }
+    }
+
+    private void WriteHeader(byte kind, long sequence, long time, String username) throws IOException
+    {
+        _output.writeByte(kind);
+        _output.writeLong(sequence);
+        _output.writeLong(time);
+        _output.writeUTF(username);
+    }
+
+    /**
+     * Flushes the captured records to the file.
+     */
+    public synchronized void Flush()
+    {
+        try { _output.flush(); }
+        catch (IOException e) { System.out.printf("[ERROR] Unable to flush the capture: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * Flushes and closes the capture file, no request must be captured after this call.
+     */
+    public synchronized void Close()
+    {
+        try { _output.close(); }
+        catch (IOException e) { System.out.printf("[ERROR] Unable to close the capture: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * Extracts the closed trades from the notifications produced by a request.
+     *
+     * @param messages The closed trades notifications.
+     * @return The traded orders, with the traded size and price of each one.
+     */
+    public static List<Order> GetTrades(List<String> messages)
+    {
+        List<Order> trades = new ArrayList<>();
+        for (String message : messages) { trades.addAll(ClosedTradesNotification.DeserializeContent(message)); }
+        return trades;
+    }
+
+    /**
+     * Hashes the closed trades of a request, ignoring their timestamps, so that the trades of a replay can be compared
+     * with the captured ones.
+     *
+     * @param trades The traded orders, in notification order.
+     * @return The FNV-1a hash of the ID, size and price of the trades.
+     */
+    public static long HashTrades(List<Order> trades)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (Order trade : trades)
+        {
+            for (long value : new long[] { trade.GetID(), trade.GetSize(), trade.GetPrice() })
+            {
+                hash ^= value;
+                hash *= 0x100000001b3L;
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * A request read from a capture file.
+     */
+    public static class Record
+    {
+        private final byte _kind;
+        private final long _sequence;
+        private final long _time;
+        private final String _username;
+
+        // the orders of a RECORD_ORDERS record
+        private final String _symbol;
+        private final Type[] _types;
+        private final Method[] _methods;
+        private final long[] _orderIDs;
+        private final long[] _sizes;
+        private final long[] _prices;
+        private final long[] _responses;
+        private final int _tradeCount;
+        private final long _tradeHash;
+
+        // the outcome of a RECORD_CANCEL (response code) or RECORD_CANCEL_ALL (canceled orders) record
+        private final int _result;
+
+        private Record(byte kind, long sequence, long time, String username, String symbol, Type[] types, Method[] methods, long[] orderIDs,
+                       long[] sizes, long[] prices, long[] responses, int tradeCount, long tradeHash, int result)
+        {
+            _kind = kind;
+            _sequence = sequence;
+            _time = time;
+            _username = username;
+            _symbol = symbol;
+            _types = types;
+            _methods = methods;
+            _orderIDs = orderIDs;
+            _sizes = sizes;
+            _prices = prices;
+            _responses = responses;
+            _tradeCount = tradeCount;
+            _tradeHash = tradeHash;
+            _result = result;
+        }
+
+        // getter methods
+
+        public byte GetKind() { return _kind; }
+        public long GetSequence() { return _sequence; }
+        public long GetTime() { return _time; }
+        public String GetUsername() { return _username; }
+        public String GetSymbol() { return _symbol; }
+        public int GetOrderCount() { return _orderIDs.length; }
+        public Type GetType(int index) { return _types[index]; }
+        public Method GetMethod(int index) { return _methods[index]; }
+        public long GetOrderID(int index) { return _orderIDs[index]; }
+        public long GetSize(int index) { return _sizes[index]; }
+        public long GetPrice(int index) { return _prices[index]; }
+        public long GetResponse(int index) { return _responses[index]; }
+        public int GetTradeCount() { return _tradeCount; }
+        public long GetTradeHash() { return _tradeHash; }
+        public int GetResult() { return _result; }
+    }
+
+    /**
+     * Reads all the records of a capture file, sorted by arrival sequence.
+     *
+     * @param filename The name of the capture file.
+     * @return The captured requests.
+     * @throws IOException If the file can't be read or is not a capture file.
+     */
+    public static List<Record> Read(String filename) throws IOException
+    {
+        List<Record> records = new ArrayList<>();
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 16)))
+        {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) { throw new IOException("Invalid capture file " + filename); }
+
+            while (input.available() > 0)
+            {
+                byte kind = input.readByte();
+                long sequence = input.readLong();
+                long time = input.readLong();
+                String username = input.readUTF();
+
+                switch (kind)
+                {
+                    case RECORD_ORDERS ->
+                    {
+                        String symbol = input.readUTF();
+                        int count = input.readInt();
+
+                        Type[] types = new Type[count];
+                        Method[] methods = new Method[count];
+                        long[] orderIDs = new long[count];
+                        long[] sizes = new long[count];
+                        long[] prices = new long[count];
+                        long[] responses = new long[count];
+
+                        for (int i = 0; i < count; i++)
+                        {
+                            types[i] = Type.values()[input.readByte()];
+                            methods[i] = Method.values()[input.readByte()];
+                            orderIDs[i] = input.readLong();
+                            sizes[i] = input.readLong();
+                            prices[i] = input.readLong();
+                            responses[i] = input.readLong();
+                        }
+
+                        int tradeCount = input.readInt();
+                        long tradeHash = input.readLong();
+                        records.add(new Record(kind, sequence, time, username, symbol, types, methods, orderIDs, sizes, prices, responses, tradeCount, tradeHash, 0));
+                    }
+                    case RECORD_CANCEL ->
+                    {
+                        long orderID = input.readLong();
+                        int response = input.readInt();
+                        records.add(new Record(kind, sequence, time, username, null, null, null, new long[] { orderID }, null, null, null, 0, 0, response));
+                    }
+                    case RECORD_CANCEL_ALL -> records.add(new Record(kind, sequence, time, username, null, null, null, new long[0], null, null, null, 0, 0, input.readInt()));
+                    default -> throw new IOException("Invalid record kind in " + filename + " (got " + kind + ")");
+                }
+            }
+        }
+        catch (EOFException e) { System.out.printf("[WARNING] Capture %s ends with a truncated record, ignored\n", filename); }
+
+        records.sort((a, b) -> Long.compare(a._sequence, b._sequence));
+        return records;
+    }
+}
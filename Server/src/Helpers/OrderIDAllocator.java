@@ -0,0 +1,179 @@
+package Helpers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates the order IDs in blocks: each sequence, one per order book, leases a block of consecutive IDs from an
+ * atomic counter and hands them out to the orders of its book until the block is exhausted. The blocks are leased per
+ * book rather than per thread because the threads serving the clients don't last: the threads of the pool retire once
+ * idle, and the virtual threads live as long as their connection, so a block per thread would cost a forced write and
+ * most of a block again and again. The threads entering the same book share its sequence: an ID costs an atomic
+ * increment of the block of the book, only the lease of a new block takes a lock.
+ * Before the first ID of a block is issued, the upper bound of the block (the high-water mark) is written to a file
+ * and forced to the storage device, so that after a crash the allocation restarts above every ID that may have been
+ * issued: no ID is ever reused, at the price of skipping the unused IDs of the leased blocks.
+ *
+ * The IDs are unique but, across books, no longer increasing in arrival order: the priority of the resting orders
+ * doesn't depend on their IDs.
+ *
+ * File layout (big-endian): long high-water mark, the first ID never leased.
+ */
+public class OrderIDAllocator
+{
+    /**
+     * The IDs issued to the orders of a book, from the block leased last.
+     */
+    public static final class Sequence
+    {
+        private final OrderIDAllocator _allocator;
+
+        // the block the IDs are issued from (empty until the first ID)
+        private volatile Block _block;
+
+        private Sequence(OrderIDAllocator allocator)
+        {
+            _allocator = allocator;
+            _block = new Block(0, 0);
+        }
+
+        /**
+         * Issues a new order ID, leasing a new block for the sequence if its block is exhausted.
+         *
+         * @return The order ID.
+         * @throws UncheckedIOException If the high-water mark of a new block can't be recorded, no ID is issued then.
+         */
+        public long Next()
+        {
+            while (true)
+            {
+                Block block = _block;
+                long id = block._next.getAndIncrement();
+                if (id < block._end) { return id; }
+
+                // a single thread leases the next block, the others issue from it once leased
+                synchronized (this)
+                {
+                    if (_block == block) { _block = _allocator.Lease(); }
+                }
+            }
+        }
+    }
+
+    // the IDs of a leased block: the next one to issue and the end of the block (excluded)
+    private static final class Block
+    {
+        private final AtomicLong _next;
+        private final long _end;
+
+        private Block(long start, long end)
+        {
+            _next = new AtomicLong(start);
+            _end = end;
+        }
+    }
+
+    // the number of IDs of a block
+    private final int _blockSize;
+
+    // the start of the next block to lease
+    private final AtomicLong _nextBlock;
+
+    // the high-water mark forced to the storage device, every block below it can be issued
+    private volatile long _durableMark;
+
+    // the high-water mark file, written under the lock of the allocator
+    private final FileChannel _channel;
+    private final ByteBuffer _buffer;
+
+    /**
+     * Constructor that opens (or creates) the high-water mark file and starts the allocation above both the mark it
+     * holds and the given ID.
+     *
+     * @param filename The name of the high-water mark file.
+     * @param nextOrderID The first ID that may be issued, according to the history and the journals.
+     * @param blockSize The number of IDs leased by a sequence at once.
+     * @throws IOException If the file can't be opened or read.
+     */
+    public OrderIDAllocator(String filename, long nextOrderID, int blockSize) throws IOException
+    {
+        if (blockSize <= 0) { throw new IllegalArgumentException("The size of an order ID block must be positive (got " + blockSize + ")"); }
+
+        _blockSize = blockSize;
+        _channel = FileChannel.open(Path.of(filename), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        _buffer = ByteBuffer.allocate(Long.BYTES);
+
+        // a missing or truncated file holds no mark
+        long mark = 0;
+        if (_channel.read(_buffer, 0) == Long.BYTES) { mark = _buffer.getLong(0); }
+
+        _nextBlock = new AtomicLong(Math.max(mark, nextOrderID));
+        _durableMark = _nextBlock.get();
+    }
+
+    /**
+     * Creates a new sequence of IDs, for the orders of a book.
+     */
+    public Sequence CreateSequence() { return new Sequence(this); }
+
+    /**
+     * Gets the high-water mark: every ID issued so far, or that will be issued from the blocks already leased, is
+     * below it.
+     */
+    public long GetHighWaterMark() { return _durableMark; }
+
+    /**
+     * Closes the high-water mark file.
+     */
+    public void Close()
+    {
+        try { _channel.close(); }
+        catch (IOException e) { System.out.printf("[ERROR] Unable to close the order ID file: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * Leases the next block of IDs, once its high-water mark is recorded.
+     */
+    private Block Lease()
+    {
+        long start = _nextBlock.getAndAdd(_blockSize);
+        RecordMark(start + _blockSize);
+
+        return new Block(start, start + _blockSize);
+    }
+
+    /**
+     * Forces a high-water mark to the storage device, unless a higher one has already been recorded: the sequences
+     * leasing blocks at the same time wait for a single write covering all their blocks.
+     */
+    private void RecordMark(long mark)
+    {
+        if (_durableMark >= mark) { return; }
+
+        synchronized (this)
+        {
+            if (_durableMark >= mark) { return; }
+
+            // cover the blocks leased by the other sequences in the meantime as well
+            long highest = Math.max(mark, _nextBlock.get());
+            try
+            {
+                _buffer.clear().putLong(0, highest);
+                while (_buffer.hasRemaining()) { _channel.write(_buffer, _buffer.position()); }
+                _channel.force(false);
+            }
+            catch (IOException e)
+            {
+                System.out.printf("[ERROR] Unable to record the order ID high-water mark: %s\n", e.getMessage());
+                throw new UncheckedIOException(e);
+            }
+
+            _durableMark = highest;
+        }
+    }
+}
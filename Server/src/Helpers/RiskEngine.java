@@ -0,0 +1,131 @@
+package Helpers;
+
+import Messages.LimitOrderRequest;
+import Messages.MarketOrderRequest;
+import Messages.StopOrderRequest;
+import Networking.Request;
+import Users.Exposure;
+import Users.User;
+
+/**
+ * The pre-trade risk checks run by the client handlers before an order reaches its book: the size of each order, the
+ * number of orders of a user resting in the books and their notional, and the number of orders a user submits per
+ * second are limited, so that a runaway client can't flood the books.
+ * The checks read the exposure counters of the user (see Exposure), kept up to date by the books on insert, fill and
+ * cancel without any lock: a check is a few atomic reads, and a compare-and-set for the rate, and allocates nothing.
+ *
+ * A user is logged in from a single connection, so the exposure of a user only grows from the thread handling that
+ * connection: the other threads can only fill or cancel the orders of the user, and a check can't be overtaken by
+ * another order of the same user.
+ */
+public class RiskEngine
+{
+    // the limits, 0 disables a limit
+    private final long _maxOrderSize;
+    private final long _maxOpenOrders;
+    private final long _maxOpenNotional;
+    private final long _maxOrdersPerSecond;
+
+    /**
+     * Constructor for the risk checks with the given limits, 0 disables a limit.
+     *
+     * @param maxOrderSize The largest size of an order.
+     * @param maxOpenOrders The largest number of orders of a user resting in the books.
+     * @param maxOpenNotional The largest total notional of the orders of a user resting in the books.
+     * @param maxOrdersPerSecond The largest number of orders a user submits in a second.
+     */
+    public RiskEngine(long maxOrderSize, long maxOpenOrders, long maxOpenNotional, long maxOrdersPerSecond)
+    {
+        if (maxOrderSize < 0 || maxOpenOrders < 0 || maxOpenNotional < 0 || maxOrdersPerSecond < 0 || maxOrdersPerSecond > 0xFFFFFFFFL)
+        {
+            throw new IllegalArgumentException("The risk limits must be between 0 and " + 0xFFFFFFFFL + " orders per second");
+        }
+
+        _maxOrderSize = maxOrderSize;
+        _maxOpenOrders = maxOpenOrders;
+        _maxOpenNotional = maxOpenNotional;
+        _maxOrdersPerSecond = maxOrdersPerSecond;
+    }
+
+    /**
+     * Checks a new order against the limits of its user, before the order is created: an order rejected doesn't take
+     * an order ID.
+     *
+     * @param request The MarketOrderRequest, LimitOrderRequest or StopOrderRequest of the order.
+     * @param user The user submitting the order.
+     * @return True if the order can be processed, false if it must be rejected.
+     */
+    public boolean Check(Request request, User user) { return Check(request, user, 0, 0); }
+
+    /**
+     * Checks a new order of a batch against the limits of its user, before the order is created, counting the orders
+     * of the batch already accepted as if they were resting.
+     *
+     * @param request The MarketOrderRequest, LimitOrderRequest or StopOrderRequest of the order.
+     * @param user The user submitting the order.
+     * @param pendingOrders The number of orders of the batch already accepted that may rest in a book.
+     * @param pendingNotional The notional of the orders of the batch already accepted.
+     * @return True if the order can be processed, false if it must be rejected.
+     */
+    public boolean Check(Request request, User user, long pendingOrders, long pendingNotional)
+    {
+        long size = GetSize(request);
+        if (_maxOrderSize > 0 && size > _maxOrderSize) { return false; }
+
+        // the market orders never rest in a book
+        Exposure exposure = user.GetExposure();
+        if (!(request instanceof MarketOrderRequest))
+        {
+            if (_maxOpenOrders > 0 && exposure.GetOpenOrders() + pendingOrders + 1 > _maxOpenOrders) { return false; }
+
+            long openNotional = exposure.GetOpenNotional();
+            if (_maxOpenNotional > 0 && !IsWithin(openNotional, pendingNotional, GetRestingPrice(request), size, _maxOpenNotional)) { return false; }
+        }
+
+        // the rate is checked last, only the orders passing the other checks are counted
+        return _maxOrdersPerSecond == 0 || exposure.TryCountOrder(System.currentTimeMillis() / 1000, _maxOrdersPerSecond);
+    }
+
+    /**
+     * Gets the notional an order adds to the exposure of its user while it rests in a book.
+     *
+     * @param request The MarketOrderRequest, LimitOrderRequest or StopOrderRequest of the order.
+     * @return The price times the size of the order, at the stop price for a stop order, or 0 for a market order.
+     */
+    public static long GetNotional(Request request)
+    {
+        if (request instanceof MarketOrderRequest) { return 0; }
+        return GetRestingPrice(request) * GetSize(request);
+    }
+
+    /**
+     * Checks that the notional of an order added to the open and pending notionals stays within a limit, rejecting the
+     * order if the sum overflows.
+     */
+    private static boolean IsWithin(long openNotional, long pendingNotional, long price, long size, long maxNotional)
+    {
+        try { return Math.addExact(Math.addExact(openNotional, pendingNotional), Math.multiplyExact(price, size)) <= maxNotional; }
+        catch (ArithmeticException e) { return false; }
+    }
+
+    private static long GetSize(Request request)
+    {
+        return switch (request)
+        {
+            case MarketOrderRequest orderRequest -> orderRequest.GetSize();
+            case LimitOrderRequest orderRequest -> orderRequest.GetSize();
+            case StopOrderRequest orderRequest -> orderRequest.GetSize();
+            default -> throw new IllegalArgumentException("Not an order request: " + request.getClass().getSimpleName());
+        };
+    }
+
+    private static long GetRestingPrice(Request request)
+    {
+        return switch (request)
+        {
+            case LimitOrderRequest orderRequest -> orderRequest.GetLimitPrice();
+            case StopOrderRequest orderRequest -> orderRequest.GetStopPrice();
+            default -> 0;
+        };
+    }
+}
@@ -15,21 +15,104 @@ public class ServerSettings extends Settings
     // timeout in milliseconds before checking if the server is closing
     public int AcceptClientTimeoutMS;
 
-    // timeout in milliseconds for waiting data from connected clients before checking of the server is closing
-    public int WaitDataTimeoutMS;
+    // the number of connections waiting to be accepted, beyond which the new ones are dropped and retried by the
+    // clients after a delay
+    public int ListenBacklog;
+
+    // if greater than 0, the clients are served by this number of event loop threads over non-blocking channels
+    // instead of a thread per client blocked reading its socket (MaxConcurrentClients then doesn't apply)
+    public int EventLoopThreads;
+
+    // if true (and the event loops are disabled), each client is served by its own virtual thread blocked reading its
+    // requests instead of a thread of a pool (MaxConcurrentClients then doesn't apply)
+    public boolean VirtualThreadsEnabled;
 
     // time in milliseconds to determinate if client is active or inactive
     public int ClientInactiveThresholdMS;
 
-    // next available order ID
+    // the duration in milliseconds of a tick of the timing wheel running the timeouts of the server, such as the
+    // inactivity of the clients, and its number of buckets (rounded up to a power of two, see TimingWheel)
+    public int TimerTickMS;
+    public int TimerWheelSize;
+
+    // next available order ID, saved with the settings for reference: the allocation restarts from the high-water
+    // mark file, written before any ID is issued
     public long NextOrderID;
 
+    // the file holding the high-water mark of the order IDs and the number of IDs leased at once by each order book
+    // (see OrderIDAllocator)
+    public String OrderIDFilename;
+    public int OrderIDBlockSize;
+
     public String UsersFilename;
 
     public String OrderHistoryFilename;
 
     public int SaveIntervalMS;
 
+    // the number of price levels per side printed by each page of the 'status' command
+    public int StatusPageLevels;
+
+    // the symbols of the traded instruments, each one with its own order book: the first one is the default instrument,
+    // traded by the requests that don't specify a symbol
+    public String[] Symbols;
+
+    // if true, a dedicated matching engine thread owns each order book and the client handlers publish their
+    // commands to it instead of locking the book
+    public boolean MatchingEngineEnabled;
+
+    // number of entries of the matching engine ring buffer (rounded up to a power of two)
+    public int MatchingEngineRingSize;
+
+    // interval in milliseconds between two call auctions: if greater than 0 the orders are collected and matched
+    // all at once at each auction instead of on arrival
+    public int AuctionIntervalMS;
+
+    // if true, the changes of the price levels of the books are published as an incremental depth feed over
+    // multicast, on the multicast IP and on a dedicated port
+    public boolean DepthFeedEnabled;
+    public int DepthFeedPort;
+
+    // interval in milliseconds between two full depth snapshots of each book, and their maximum number of levels
+    // per side
+    public int DepthSnapshotIntervalMS;
+    public int DepthSnapshotLevels;
+
+    // interval in milliseconds between two samples of the conflated top-of-book ticker (0 disables the ticker), and
+    // the port of the multicast group where the ticker is published
+    public int TickerIntervalMS;
+    public int TickerPort;
+
+    // if greater than 0, the resting orders of each side of a book (limit and stop orders apart) are stored off the
+    // Java heap, in memory allocated at startup for this number of orders, and the orders that would exceed it are
+    // rejected; the direct memory limit of the JVM (-XX:MaxDirectMemorySize) must hold up to 116 bytes per order, the
+    // order itself and its entry in the order ID index, for the four ladders of each book
+    public int OffHeapOrderCapacity;
+
+    // if true, the commands changing the books are recorded in a journal and the books are written to a snapshot at
+    // each save, so that they are rebuilt on startup; the journals and the snapshots are kept in JournalDirectory
+    public boolean JournalEnabled;
+    public String JournalDirectory;
+
+    // if true, each journal record is forced to the storage device before the command is executed
+    public boolean JournalSync;
+
+    // if true, every order and cancel request received is captured with its outcome into CaptureFilename, to be
+    // replayed offline by the Replay tool
+    public boolean CaptureEnabled;
+    public String CaptureFilename;
+
+    // if true, the resting orders of a user are canceled when the user logs out or is disconnected for inactivity
+    public boolean CancelOrdersOnDisconnect;
+
+    // the pre-trade limits of each user (0 disables a limit): the size of an order, the number of orders resting in
+    // the books and their notional (price times size, at the stop price for the stop orders), and the number of orders
+    // submitted per second; the orders exceeding a limit are rejected (see RiskEngine)
+    public long RiskMaxOrderSize;
+    public long RiskMaxOpenOrders;
+    public long RiskMaxOpenNotional;
+    public long RiskMaxOrdersPerSecond;
+
     /**
      * Constructor that takes the configuration filename as input.
      * @param filename The name of the configuration file.
@@ -51,12 +134,40 @@ public class ServerSettings extends Settings
 
         MaxConcurrentClients = Integer.parseInt(properties.getProperty("MaxConcurrentClients"));
         AcceptClientTimeoutMS = Integer.parseInt(properties.getProperty("AcceptClientTimeoutMS"));
-        WaitDataTimeoutMS = Integer.parseInt(properties.getProperty("WaitDataTimeoutMS"));
+        ListenBacklog = Integer.parseInt(properties.getProperty("ListenBacklog", "1024"));
+        EventLoopThreads = Integer.parseInt(properties.getProperty("EventLoopThreads", "0"));
+        VirtualThreadsEnabled = Boolean.parseBoolean(properties.getProperty("VirtualThreadsEnabled", "false"));
         ClientInactiveThresholdMS = Integer.parseInt(properties.getProperty("ClientInactiveThresholdMS"));
-        NextOrderID = Integer.parseInt(properties.getProperty("NextOrderID"));
+        TimerTickMS = Integer.parseInt(properties.getProperty("TimerTickMS", "100"));
+        TimerWheelSize = Integer.parseInt(properties.getProperty("TimerWheelSize", "512"));
+        NextOrderID = Long.parseLong(properties.getProperty("NextOrderID"));
+        OrderIDFilename = properties.getProperty("OrderIDFilename", "orderid.dat");
+        OrderIDBlockSize = Integer.parseInt(properties.getProperty("OrderIDBlockSize", "1024"));
         UsersFilename = properties.getProperty("UsersFilename");
         OrderHistoryFilename = properties.getProperty("OrderHistoryFilename");
         SaveIntervalMS = Integer.parseInt(properties.getProperty("SaveIntervalMS"));
+        StatusPageLevels = Integer.parseInt(properties.getProperty("StatusPageLevels", "20"));
+        Symbols = properties.getProperty("Symbols", "BTC").split("\\s*,\\s*");
+        MatchingEngineEnabled = Boolean.parseBoolean(properties.getProperty("MatchingEngineEnabled", "false"));
+        MatchingEngineRingSize = Integer.parseInt(properties.getProperty("MatchingEngineRingSize", "1024"));
+        AuctionIntervalMS = Integer.parseInt(properties.getProperty("AuctionIntervalMS", "0"));
+        DepthFeedEnabled = Boolean.parseBoolean(properties.getProperty("DepthFeedEnabled", "false"));
+        DepthFeedPort = Integer.parseInt(properties.getProperty("DepthFeedPort", "8890"));
+        DepthSnapshotIntervalMS = Integer.parseInt(properties.getProperty("DepthSnapshotIntervalMS", "1000"));
+        DepthSnapshotLevels = Integer.parseInt(properties.getProperty("DepthSnapshotLevels", "100"));
+        TickerIntervalMS = Integer.parseInt(properties.getProperty("TickerIntervalMS", "0"));
+        TickerPort = Integer.parseInt(properties.getProperty("TickerPort", "8891"));
+        OffHeapOrderCapacity = Integer.parseInt(properties.getProperty("OffHeapOrderCapacity", "0"));
+        JournalEnabled = Boolean.parseBoolean(properties.getProperty("JournalEnabled", "false"));
+        JournalDirectory = properties.getProperty("JournalDirectory", "journal");
+        JournalSync = Boolean.parseBoolean(properties.getProperty("JournalSync", "false"));
+        CaptureEnabled = Boolean.parseBoolean(properties.getProperty("CaptureEnabled", "false"));
+        CaptureFilename = properties.getProperty("CaptureFilename", "capture.bin");
+        CancelOrdersOnDisconnect = Boolean.parseBoolean(properties.getProperty("CancelOrdersOnDisconnect", "false"));
+        RiskMaxOrderSize = Long.parseLong(properties.getProperty("RiskMaxOrderSize", "0"));
+        RiskMaxOpenOrders = Long.parseLong(properties.getProperty("RiskMaxOpenOrders", "0"));
+        RiskMaxOpenNotional = Long.parseLong(properties.getProperty("RiskMaxOpenNotional", "0"));
+        RiskMaxOrdersPerSecond = Long.parseLong(properties.getProperty("RiskMaxOrdersPerSecond", "0"));
     }
 
     @Override
@@ -0,0 +1,230 @@
+package Helpers;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A hashed timing wheel: a single timer thread runs the tasks scheduled by any thread once their delay elapses, at the
+ * resolution of a tick. The wheel is a ring of buckets, one per tick, and each timeout is filed in the bucket of the
+ * tick of its deadline: scheduling, refreshing and canceling a timeout are O(1), and each tick only visits the timeouts
+ * of its bucket, whatever the number of timeouts scheduled. The deadlines beyond a turn of the wheel stay in their
+ * bucket until the turn they fall in.
+ *
+ * A refresh only moves the deadline of a timeout, with a single volatile write: the timer thread files the timeout
+ * again when it finds it in the bucket of its former deadline. A canceled timeout is dropped the same way. This makes
+ * the wheel cheap for the timeouts refreshed on every event and rarely due, such as the inactivity of the clients.
+ *
+ * The tasks run on the timer thread, one at a time: they must be short, and a task late by more than a tick delays the
+ * following ones. The timeouts still scheduled when the wheel stops are dropped without running.
+ */
+public class TimingWheel
+{
+    /**
+     * A task scheduled on a wheel, handed back to the caller to refresh or cancel it.
+     */
+    public static class Timeout
+    {
+        private final TimingWheel _wheel;
+        private final Runnable _task;
+
+        // the time the task runs at, in milliseconds from the start of the wheel
+        private volatile long _deadline;
+
+        private volatile boolean _isCanceled;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadline)
+        {
+            _wheel = wheel;
+            _task = task;
+            _deadline = deadline;
+            _isCanceled = false;
+        }
+
+        /**
+         * Postpones the task, from any thread, until the delay elapses from now. A deadline brought forward is only
+         * noticed at the former one. The task itself may refresh its timeout to run again, otherwise a refresh has no
+         * effect once the task returned.
+         *
+         * @param delayMS The new delay in milliseconds.
+         */
+        public void Refresh(long delayMS) { _deadline = _wheel.Now() + delayMS; }
+
+        /**
+         * Cancels the task, from any thread: it doesn't run if it is not running already.
+         */
+        public void Cancel() { _isCanceled = true; }
+    }
+
+    // atomic flags to manage timer state and stop request
+    private final AtomicBoolean _isRunning;
+    private final AtomicBoolean _isStopRequested;
+
+    // the duration of a tick in milliseconds
+    private final long _tickMS;
+
+    // the buckets of the ticks, the timeout of a tick being in the bucket of its index modulo their number (a power of
+    // two); the buckets are only accessed by the timer thread
+    private final ArrayDeque<Timeout>[] _buckets;
+    private final int _mask;
+
+    // the timeouts scheduled by the other threads, filed in their bucket by the timer thread at the next tick
+    private final Queue<Timeout> _scheduled;
+
+    // the origin of the times of the wheel
+    private final long _startNanos;
+
+    // the last tick processed by the timer thread
+    private long _tick;
+
+    // a dedicated thread to run the tasks
+    private final Thread _thread = new Thread(this::Run, "TimingWheel");
+
+    /**
+     * Constructor for a wheel with the given resolution and number of buckets.
+     *
+     * @param tickMS The duration of a tick in milliseconds.
+     * @param wheelSize The number of buckets (rounded up to a power of two): a turn of the wheel should cover the
+     *                  usual delays, the longer ones being skipped over at each turn.
+     */
+    public TimingWheel(long tickMS, int wheelSize)
+    {
+        if (tickMS <= 0 || wheelSize <= 0 || wheelSize > 1 << 30) { throw new IllegalArgumentException("The tick and the size of the wheel must be positive"); }
+
+        _isRunning = new AtomicBoolean(false);
+        _isStopRequested = new AtomicBoolean(false);
+        _tickMS = tickMS;
+
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        // a generic array can't be created, the buckets only ever hold timeouts
+        @SuppressWarnings("unchecked")
+        ArrayDeque<Timeout>[] buckets = (ArrayDeque<Timeout>[]) new ArrayDeque<?>[Math.max(size, 1)];
+        for (int i = 0; i < buckets.length; i++) { buckets[i] = new ArrayDeque<>(); }
+        _buckets = buckets;
+        _mask = _buckets.length - 1;
+
+        _scheduled = new ConcurrentLinkedQueue<>();
+        _startNanos = System.nanoTime();
+        _tick = 0;
+    }
+
+    /**
+     * Starts the timer thread. If the wheel is already running, it outputs a warning message.
+     */
+    public void Start()
+    {
+        if (_isRunning.compareAndExchange(false, true))
+        {
+            System.out.println("[WARNING] Timing wheel already running");
+            return;
+        }
+
+        _thread.start();
+    }
+
+    /**
+     * Stops the wheel by setting the stop request flag and waiting for the timer thread to shut down, the tasks not
+     * run yet are dropped. If the wheel is not running, it outputs a warning message.
+     */
+    public void Stop()
+    {
+        if (!_isRunning.compareAndExchange(true, false))
+        {
+            System.out.println("[WARNING] Timing wheel not running");
+            return;
+        }
+
+        _isStopRequested.set(true);
+        _thread.interrupt();
+
+        try { _thread.join(); }
+        catch (InterruptedException e) { System.out.printf("[ERROR] Unable to join the timing wheel thread: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * Schedules a task, from any thread, to run on the timer thread once the delay elapses.
+     *
+     * @param task The task, short and not blocking.
+     * @param delayMS The delay in milliseconds, rounded up to the next tick.
+     * @return The timeout of the task, to refresh or cancel it.
+     */
+    public Timeout Schedule(Runnable task, long delayMS)
+    {
+        Timeout timeout = new Timeout(this, task, Now() + delayMS);
+        _scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Gets the time of the wheel.
+     *
+     * @return The milliseconds elapsed since the wheel was created.
+     */
+    private long Now() { return (System.nanoTime() - _startNanos) / 1_000_000; }
+
+    /**
+     * The loop of the timer thread: processes each tick once its time is reached, catching up with the ticks missed
+     * if the thread fell behind, and sleeps until the next one.
+     */
+    private void Run()
+    {
+        while (!_isStopRequested.get())
+        {
+            long now = Now();
+            while ((_tick + 1) * _tickMS <= now)
+            {
+                _tick++;
+                FileScheduled();
+                ProcessBucket(now);
+            }
+
+            long delay = (_tick + 1) * _tickMS - Now();
+            if (delay <= 0) { continue; }
+
+            try { Thread.sleep(delay); }
+            catch (InterruptedException ignored) { }
+        }
+    }
+
+    /**
+     * Files the timeouts scheduled since the last tick in the bucket of their deadline.
+     */
+    private void FileScheduled()
+    {
+        Timeout timeout;
+        while ((timeout = _scheduled.poll()) != null) { File(timeout); }
+    }
+
+    /**
+     * Runs the tasks of the bucket of the current tick that are due, files again the refreshed timeouts and the ones
+     * due in a later turn, and drops the canceled ones.
+     */
+    private void ProcessBucket(long now)
+    {
+        ArrayDeque<Timeout> bucket = _buckets[(int) (_tick & _mask)];
+
+        // the timeouts filed again in this bucket are at its end, and are not visited again
+        for (int count = bucket.size(); count > 0; count--)
+        {
+            Timeout timeout = bucket.poll();
+            if (timeout._isCanceled) { continue; }
+            if (timeout._deadline > now) { File(timeout); continue; }
+
+            try { timeout._task.run(); }
+            catch (RuntimeException e) { System.out.printf("[ERROR] Timing wheel task failed: %s\n", e.getMessage()); }
+
+            // the task refreshed its own timeout to run again
+            if (!timeout._isCanceled && timeout._deadline > now) { File(timeout); }
+        }
+    }
+
+    /**
+     * Files a timeout in the bucket of the tick of its deadline, or of the next tick if its deadline is past.
+     */
+    private void File(Timeout timeout)
+    {
+        long tick = Math.max((timeout._deadline + _tickMS - 1) / _tickMS, _tick + 1);
+        _buckets[(int) (tick & _mask)].add(timeout);
+    }
+}
@@ -1,5 +1,6 @@
 
 import Helpers.GlobalData;
+import Orders.MatchingEngine;
 import Orders.OrderBook;
 
 import java.io.IOException;
@@ -13,6 +14,21 @@ public class Main
 {
     public static void main(String[] args) throws IOException
     {
+        // start the matching engines before accepting clients, so that their commands can be executed
+        for (MatchingEngine engine : GlobalData.GetMatchingEngines()) { engine.Start(); }
+
+        // start the call auctions, if the orders are not matched on arrival
+        if (GlobalData.AUCTION_TICKER != null) { GlobalData.AUCTION_TICKER.Start(); }
+
+        // start the periodic depth snapshots, if the depth feed is enabled
+        if (GlobalData.DEPTH_SNAPSHOT_PUBLISHER != null) { GlobalData.DEPTH_SNAPSHOT_PUBLISHER.Start(); }
+
+        // start the ticker, if enabled
+        if (GlobalData.TICKER_PUBLISHER != null) { GlobalData.TICKER_PUBLISHER.Start(); }
+
+        // start the timer thread before accepting clients, it closes the inactive ones
+        GlobalData.TIMING_WHEEL.Start();
+
         // start the listener thread to accept connections from clients
         GlobalData.TCP_LISTENER.Start();
 
@@ -30,19 +46,62 @@ public class Main
                 String input = scanner.nextLine().trim();
                 if (input.equalsIgnoreCase("stop")) { break; }
                 else if (input.equalsIgnoreCase("help")) { PrintOptions(); }
-                if (input.equalsIgnoreCase("status")) { System.out.println(OrderBook.PrintStatus()); }
+                else if (input.toLowerCase().startsWith("status")) { PrintStatus(input.substring("status".length()).trim()); }
             }
         }
 
         // stop the listener thread to prevent accepting new connections
         GlobalData.TCP_LISTENER.Stop();
 
+        // stop the call auctions, the orders left in the books are matched by the next run of the server
+        if (GlobalData.AUCTION_TICKER != null) { GlobalData.AUCTION_TICKER.Stop(); }
+
+        if (GlobalData.DEPTH_SNAPSHOT_PUBLISHER != null) { GlobalData.DEPTH_SNAPSHOT_PUBLISHER.Stop(); }
+        if (GlobalData.TICKER_PUBLISHER != null) { GlobalData.TICKER_PUBLISHER.Stop(); }
+        GlobalData.TIMING_WHEEL.Stop();
+
+        // all the client handlers are closed, no more commands can reach the matching engines
+        for (MatchingEngine engine : GlobalData.GetMatchingEngines()) { engine.Stop(); }
+
         // save any server data before exiting
         GlobalData.Save();
+        for (OrderBook book : GlobalData.GetOrderBooks()) { book.CloseJournal(); }
+        if (GlobalData.ORDER_FLOW_CAPTURE != null) { GlobalData.ORDER_FLOW_CAPTURE.Close(); }
+        GlobalData.ORDER_ID_ALLOCATOR.Close();
+
+        // the notifications are sent by the handlers, the publishers and the engines, all stopped by now
+        GlobalData.SOCKET_UDP.close();
 
         System.out.println("[INFO] Server stopped successfully");
     }
 
+    /**
+     * Prints a page of the status of all the order books, read from their depth views without stopping the matching.
+     *
+     * @param argument The number of the page to print, starting from 1 (the first page if empty).
+     */
+    private static void PrintStatus(String argument)
+    {
+        int page;
+        try { page = argument.isEmpty() ? 0 : Integer.parseInt(argument) - 1; }
+        catch (NumberFormatException e) { page = -1; }
+
+        if (page < 0)
+        {
+            System.out.println("[ERROR] Invalid page number, usage: 'status [page]'");
+            return;
+        }
+
+        StringBuilder status = new StringBuilder();
+        for (OrderBook book : GlobalData.GetOrderBooks())
+        {
+            status.append(book.PrintStatus(page, GlobalData.SETTINGS.StatusPageLevels));
+            status.append("\n\n\n");
+        }
+
+        System.out.println(status);
+    }
+
     /**
      * Prints the available options.
      */
@@ -50,6 +109,6 @@ public class Main
     {
         System.out.println("a) 'stop' to stop the server");
         System.out.println("b) 'help' print options");
-        System.out.println("c) 'status' to print the order book status");
+        System.out.println("c) 'status [page]' to print a page of the order book status");
     }
 }
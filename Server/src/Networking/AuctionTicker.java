@@ -0,0 +1,104 @@
+package Networking;
+
+import Helpers.GlobalData;
+import Orders.MatchingEngine;
+import Orders.OrderBook;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the periodic call auctions of the order books: at each tick every book is uncrossed at its clearing price
+ * and the consolidated notification of the trades is sent to the multicast group.
+ */
+public class AuctionTicker
+{
+    // atomic flags to manage ticker state and stop request
+    private final AtomicBoolean _isRunning;
+    private final AtomicBoolean _isStopRequested;
+
+    // interval in milliseconds between two auctions
+    private final int _intervalMS;
+
+    // a dedicated thread to run the auctions
+    private final Thread _thread = new Thread(this::Tick, "AuctionTicker");
+
+    public AuctionTicker(int intervalMS)
+    {
+        _isRunning = new AtomicBoolean(false);
+        _isStopRequested = new AtomicBoolean(false);
+        _intervalMS = intervalMS;
+    }
+
+    /**
+     * Starts the ticker thread. If the ticker is already running, it outputs a warning message.
+     */
+    public void Start()
+    {
+        if (_isRunning.compareAndExchange(false, true))
+        {
+            System.out.println("[WARNING] Auction ticker already running");
+            return;
+        }
+
+        _thread.start();
+    }
+
+    /**
+     * Stops the ticker by setting the stop request flag and waiting for the ticker thread to shut down.
+     * If the ticker is not running, it outputs a warning message.
+     */
+    public void Stop()
+    {
+        if (!_isRunning.compareAndExchange(true, false))
+        {
+            System.out.println("[WARNING] Auction ticker not running");
+            return;
+        }
+
+        _isStopRequested.set(true);
+        _thread.interrupt();
+
+        try { _thread.join(); }
+        catch (InterruptedException e) { System.out.printf("[ERROR] Unable to join the auction ticker thread: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * The loop of the ticker thread: waits for the interval, then runs the auction of every book.
+     */
+    private void Tick()
+    {
+        System.out.printf("[INFO] Running call auctions every %d ms\n", _intervalMS);
+
+        MatchingEngine.Completion completion = new MatchingEngine.Completion();
+        long nextAuction = System.currentTimeMillis() + _intervalMS;
+
+        while (!_isStopRequested.get())
+        {
+            long delay = nextAuction - System.currentTimeMillis();
+            if (delay > 0)
+            {
+                try { Thread.sleep(delay); }
+                catch (InterruptedException e) { continue; }
+            }
+
+            // schedule the next auction from the previous one, so that the ticks don't drift
+            nextAuction += _intervalMS;
+
+            for (OrderBook book : GlobalData.GetOrderBooks())
+            {
+                MatchingEngine engine = GlobalData.GetMatchingEngine(book);
+
+                List<String> messages;
+                try { messages = engine == null ? book.RunAuction() : engine.RunAuction(completion); }
+                catch (RuntimeException e)
+                {
+                    System.out.printf("[ERROR] Unable to run the auction of %s: %s\n", book.GetSymbol(), e.getMessage());
+                    continue;
+                }
+
+                for (String message : messages) { GlobalData.SendNotification(message); }
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package Networking;
+
+import Helpers.GlobalData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+
+/**
+ * A connection with a client over a non-blocking socket channel, served by an event loop (see EventLoop).
+ * The messages are framed as on a blocking connection, in the protocol selected by the client (see WireProtocol), so
+ * that the clients can't tell the two transports apart.
+ *
+ * The bytes received are accumulated until a whole message is available; the messages sent are written right away
+ * and, if the socket buffer is full, queued until the channel becomes writable again. A client that doesn't read its
+ * responses is disconnected once too many bytes are queued for it.
+ * The connection is used by the thread of its event loop only.
+ */
+public class ChannelConnection extends Connection
+{
+    // the largest message with its length, in either protocol
+    private static final int MAX_FRAME_SIZE = Integer.BYTES + MAX_MESSAGE_SIZE;
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    // the input buffers grown beyond this size for a large message are dropped once it is parsed
+    private static final int RETAINED_BUFFER_SIZE = 1 << 16;
+
+    // the largest number of bytes queued for a client before it is disconnected, a couple of the largest messages
+    private static final int MAX_PENDING_BYTES = 2 * MAX_FRAME_SIZE;
+
+    // the channel and its registration with the selector of the event loop
+    private final SocketChannel _channel;
+    private final SelectionKey _key;
+
+    // the bytes received and not parsed yet, from the start of the buffer to its position
+    private ByteBuffer _input;
+
+    // the messages not entirely written yet, in order, and their remaining bytes
+    private final ArrayDeque<ByteBuffer> _output;
+    private int _pendingBytes;
+
+    /**
+     * Creates a connection over a channel registered with the selector of an event loop.
+     *
+     * @param channel The non-blocking channel connected to the client.
+     * @param key The registration of the channel, for reading.
+     * @throws IOException If the group address of the notifications can't be resolved.
+     */
+    public ChannelConnection(SocketChannel channel, SelectionKey key) throws IOException
+    {
+        super(GlobalData.SOCKET_UDP, GlobalData.SETTINGS.MULTICAST_IP, GlobalData.SETTINGS.MULTICAST_PORT);
+
+        _channel = channel;
+        _key = key;
+        _input = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        _output = new ArrayDeque<>();
+        _pendingBytes = 0;
+    }
+
+    @Override
+    public boolean IsClosed() { return !_channel.isOpen(); }
+
+    /**
+     * Checks if a whole message has been received and not parsed yet.
+     */
+    @Override
+    public boolean IsDataAvailable() throws IOException { return GetMessageSize() > 0; }
+
+    /**
+     * Parses the next message received from the client, without blocking.
+     *
+     * @return The request, or null if no whole message has been received yet.
+     * @throws IOException If the message is not a valid request.
+     * @throws ParseException If the JSON of the message can't be parsed.
+     */
+    @Override
+    public Request ReceiveRequest() throws IOException, ParseException
+    {
+        int size = GetMessageSize();
+        if (size == 0) { return null; }
+
+        try
+        {
+            if (GetProtocol() == WireProtocol.BINARY) { return Request.FromBinary(GetMessage(size)); }
+            return Request.FromJson(DecodeJson(GetMessage(size)));
+        }
+        finally { Drop(size); }
+    }
+
+    /**
+     * Parses the next message received, without blocking.
+     *
+     * @return The response, or null if no whole message has been received yet.
+     * @throws IOException If the message is not a valid response.
+     */
+    @Override
+    public Response ReceiveResponse() throws IOException
+    {
+        int size = GetMessageSize();
+        if (size == 0) { return null; }
+
+        try
+        {
+            if (GetProtocol() == WireProtocol.BINARY) { return Response.FromBinary(GetMessage(size)); }
+            return Response.FromJson(DecodeJson(GetMessage(size)));
+        }
+        finally { Drop(size); }
+    }
+
+    @Override
+    public void Send(Request request) throws IOException
+    {
+        Write(GetProtocol() == WireProtocol.BINARY ? EncodeBinary(request) : EncodeJson(request));
+    }
+
+    @Override
+    public void Send(Response response) throws IOException
+    {
+        Write(GetProtocol() == WireProtocol.BINARY ? EncodeBinary(response) : EncodeJson(response));
+    }
+
+    /**
+     * Closes the channel and cancels its registration, the notification socket is shared and stays open.
+     */
+    @Override
+    public void Close() throws IOException
+    {
+        _key.cancel();
+        _channel.close();
+    }
+
+    /**
+     * Reads the bytes available on the channel, growing the input buffer if it is full.
+     *
+     * @return The number of bytes read, or -1 if the client closed the connection.
+     * @throws IOException If the channel can't be read.
+     */
+    int Read() throws IOException
+    {
+        // a full buffer holds less than a whole message: every whole message is parsed before reading again
+        if (!_input.hasRemaining())
+        {
+            ByteBuffer input = ByteBuffer.allocate(Math.min(_input.capacity() * 2, MAX_FRAME_SIZE));
+            _input.flip();
+            input.put(_input);
+            _input = input;
+        }
+
+        return _channel.read(_input);
+    }
+
+    /**
+     * Writes the queued messages, until the socket buffer is full, and stops watching the channel for writing once
+     * they are all written.
+     *
+     * @throws IOException If the channel can't be written.
+     */
+    void Flush() throws IOException
+    {
+        while (!_output.isEmpty())
+        {
+            ByteBuffer message = _output.peek();
+            _pendingBytes -= _channel.write(message);
+            if (message.hasRemaining()) { return; }
+
+            _output.poll();
+        }
+
+        _key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Writes a message right away if nothing is queued, or queues it behind the other messages.
+     *
+     * @param message The framed message, possibly held by a reused buffer: the bytes queued are copied.
+     */
+    private void Write(ByteBuffer message) throws IOException
+    {
+        if (_output.isEmpty())
+        {
+            _channel.write(message);
+            if (!message.hasRemaining()) { return; }
+        }
+
+        if (_pendingBytes + message.remaining() > MAX_PENDING_BYTES) { throw new IOException("Too many bytes queued for a client not reading its responses"); }
+
+        _pendingBytes += message.remaining();
+        _output.add(ByteBuffer.allocate(message.remaining()).put(message).flip());
+        _key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Gets the size of the first message received, with its length.
+     *
+     * @return The size of the message, or 0 if it has not been received entirely yet.
+     * @throws IOException If the length of the message is invalid.
+     */
+    private int GetMessageSize() throws IOException
+    {
+        if (_input.position() < Integer.BYTES) { return 0; }
+
+        int length = _input.getInt(0);
+        if (length <= 0 || length > MAX_MESSAGE_SIZE) { throw new IOException("Invalid message length (got " + length + ")"); }
+
+        int size = Integer.BYTES + length;
+        return _input.position() < size ? 0 : size;
+    }
+
+    /**
+     * Gets a view of the first message received, without its length, to decode it in place.
+     */
+    private ByteBuffer GetMessage(int size) { return ByteBuffer.wrap(_input.array(), Integer.BYTES, size - Integer.BYTES); }
+
+    /**
+     * Drops the first message received from the input buffer, once decoded, and gives back a buffer grown for a large
+     * message once the bytes left fit in a small one.
+     */
+    private void Drop(int size)
+    {
+        _input.flip();
+        _input.position(size);
+
+        if (_input.capacity() > RETAINED_BUFFER_SIZE && _input.remaining() < INITIAL_BUFFER_SIZE) { _input = ByteBuffer.allocate(INITIAL_BUFFER_SIZE).put(_input); }
+        else { _input.compact(); }
+    }
+}
@@ -2,6 +2,9 @@
 package Networking;
 
 import Helpers.GlobalData;
+import Helpers.OrderFlowCapture;
+import Helpers.RiskEngine;
+import Helpers.TimingWheel;
 import Helpers.Tuple;
 import Messages.*;
 import Orders.*;
@@ -12,23 +15,60 @@ import Users.UserNotRegisteredException;
 import java.io.IOException;
 import java.net.Socket;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class represents a handler for a connected client. It is responsible for receiving requests from the client,
- * processing them, and sending responses back. The handler also monitors for client inactivity and disconnects idle clients.
+ * processing them, and sending responses back. The handler either runs on its own thread, from the pool or a virtual
+ * thread, blocking on its socket (run), or is driven by the event loop serving its connection (see EventLoop).
+ *
+ * The inactivity of the client is tracked by a timeout on the timing wheel of the server, refreshed by each request:
+ * the timer thread closes the connections of the idle clients, so that no thread wakes up to check them, and leaves
+ * the release of their users (pulling their orders, logging them out) to the thread serving the client, which must
+ * not hold up the timer. A connection served by an event loop is only used by its loop: the timer hands it both the
+ * closing and the release. The state of the handler keeps the timer thread from closing a connection while one of its
+ * requests is handled.
  */
 public class ClientHandler implements Runnable
 {
     // the connection object for communication with the client (handles both TCP and UDP)
     private final Connection _connection;
 
-    // tracks the timestamp of the last received message from the client for inactivity detection
-    private long _lastMessageTime;
+    // the states of the handler: waiting for a request, handling one, or closed (by the client, for inactivity or on
+    // shutdown)
+    private static final int IDLE = 0;
+    private static final int HANDLING = 1;
+    private static final int CLOSED = 2;
+
+    private final AtomicInteger _state;
+
+    // set once the user of the handler is released, or when the server shuts down
+    private final AtomicBoolean _isReleased;
+
+    // the tasks run by the event loop serving the connection (null if the handler runs on its own thread)
+    private final Executor _loop;
+
+    // the timeout closing the connection once the client is inactive for too long, refreshed by each request
+    private final TimingWheel.Timeout _inactivityTimeout;
 
     // the User object associated with this client, if authenticated.
     private User _user;
 
+    // the slot used to receive the results of the commands published to the matching engine
+    private final MatchingEngine.Completion _completion;
+
+    // the arrival sequence number and time of the request being handled, when the order flow is captured
+    private long _arrivalSequence;
+    private long _arrivalTime;
+
     /**
      * Constructs a new Networking.ClientHandler object for the given client socket.
      *
@@ -37,92 +77,189 @@ public class ClientHandler implements Runnable
      */
     public ClientHandler(Socket socket) throws IOException
     {
-        _connection = new Connection(socket, GlobalData.SOCKET_UDP, GlobalData.SETTINGS.MULTICAST_IP, GlobalData.SETTINGS.MULTICAST_PORT);
-        _lastMessageTime = System.currentTimeMillis();
+        this(new Connection(socket, GlobalData.SOCKET_UDP, GlobalData.SETTINGS.MULTICAST_IP, GlobalData.SETTINGS.MULTICAST_PORT), null);
+    }
+
+    /**
+     * Constructs a new Networking.ClientHandler object for a connection served by an event loop, which passes the
+     * requests to HandleRequest instead of running the handler.
+     *
+     * @param connection The connection with the client.
+     * @param loop The tasks run by the event loop, which releases the user once the connection is closed for
+     *             inactivity (null if the handler runs on its own thread).
+     */
+    public ClientHandler(Connection connection, Executor loop)
+    {
+        _connection = connection;
+        _loop = loop;
         _user = null;  // initially no user is logged in
+        _completion = new MatchingEngine.Completion();
+        _arrivalSequence = 0;
+        _arrivalTime = 0;
+
+        _state = new AtomicInteger(IDLE);
+        _isReleased = new AtomicBoolean(false);
+        _inactivityTimeout = GlobalData.TIMING_WHEEL.Schedule(this::OnInactivityTimeout, GlobalData.SETTINGS.ClientInactiveThresholdMS);
     }
 
     /**
-     * The main loop of the client handler thread. It continuously waits for requests from the client, processes them,
-     * and sends responses. The loop exits when the server is shutting down or the client disconnects.
+     * The main loop of the client handler thread, from a thread of the pool or a virtual thread: blocks reading each
+     * request, so that a request is handled as soon as it arrives, and handles it. The inactive clients are closed by
+     * the timing wheel of the server (see OnInactivityTimeout), which ends the blocked read: the user is then released
+     * here. The loop exits when the client disconnects or when the connection is closed by the server.
      */
     @Override
     public void run()
     {
-        while (true)
+        try
         {
-            // wait for a request from the client, handle disconnection due inactivity or server shutdown during the wait
-            WaitForRequest();
-            if (_connection.IsClosed() || GlobalData.TCP_LISTENER.IsStopRequested()) { return; }
-
-            try
+            while (true)
             {
-                // receive the request from the client
                 Request request;
                 try { request = _connection.ReceiveRequest(); }
                 catch (ParseException e)
                 {
                     System.out.println("[ERROR] Unable to parse the request, interrupting communications with the client");
-                    _connection.Close(); return;
+                    Disconnect(); return;
                 }
 
-                // handle the request based on its operation type
-                switch (request.GetOperation()){
-                    case REGISTER -> HandleRegisterRequest((RegisterRequest) request);
-                    case UPDATE_CREDENTIALS -> HandleUpdateCredentialRequest((UpdateCredentialsRequest) request);
-                    case LOGIN -> HandleLoginRequest((LoginRequest) request);
-                    case LOGOUT -> HandleLogoutRequest((LogoutRequest) request);
-                    case INSERT_MARKET_ORDER -> HandleInsertMarketOrderRequest((MarketOrderRequest) request);
-                    case INSERT_LIMIT_ORDER -> HandleInsertLimitOrderRequest((LimitOrderRequest) request);
-                    case INSERT_STOP_ORDER -> HandleInsertStopOrderRequest((StopOrderRequest) request);
-                    case CANCEL_ORDER -> HandleCancelOrderRequest((CancelOrderRequest) request);
-                    case GET_PRICE_HISTORY -> HandleGetPriceHistoryRequest((GetPriceHistoryRequest) request);
-                }
-
-                // update the last message time to track client activity
-                _lastMessageTime = System.currentTimeMillis();
-            }
-            catch (IOException e)
-            {
-                System.out.println("[ERROR] Unable to close connection, interrupting communications with the client");
-                return;
+                HandleRequest(request);
             }
         }
+        catch (IOException e)
+        {
+            // the client went away, or the connection was closed by the server (inactive client, after an error sending
+            // a response, or shutting down, the user is not released then)
+            try { Disconnect(); }
+            catch (IOException closeException) { System.out.printf("[ERROR] Unable to close connection: %s\n", closeException.getMessage()); }
+        }
     }
 
     /**
-     * Waits for data to be available on the client socket, with a timeout mechanism. If no data is received within
-     * the timeout period and the client has been inactive for longer than the configured threshold, the connection
-     * is considered inactive and closed.
+     * Closes the connection without releasing the user, when the server is shutting down: the handler stops waiting
+     * for requests.
      */
-    private void WaitForRequest()
+    public void Close()
     {
-        try
+        _state.set(CLOSED);
+        _isReleased.set(true);
+        _inactivityTimeout.Cancel();
+
+        try { _connection.Close(); }
+        catch (IOException e) { System.out.printf("[ERROR] Unable to close connection: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * Handles a request received from the client, by the thread of the handler or by the event loop serving the
+     * connection of the client, and sends the response. The request is dropped if the connection was just closed for
+     * inactivity.
+     *
+     * @param request The request received from the client.
+     * @throws IOException If an I/O error occurs while closing the connection due to an error.
+     */
+    public void HandleRequest(Request request) throws IOException
+    {
+        if (!_state.compareAndSet(IDLE, HANDLING)) { return; }
+
+        try { Handle(request); }
+        finally
         {
-            while(!GlobalData.TCP_LISTENER.IsStopRequested() && !_connection.IsDataAvailable())
-            {
-                // calculate the elapsed time since the last message was received and check if
-                // it exceeds the inactivity threshold
-                long elapsedTime = System.currentTimeMillis() - _lastMessageTime;
-                boolean terminate = elapsedTime > GlobalData.SETTINGS.ClientInactiveThresholdMS;
+            // the client is active: push back its inactivity deadline before the timer thread can close it again
+            _inactivityTimeout.Refresh(GlobalData.SETTINGS.ClientInactiveThresholdMS);
+            _state.compareAndSet(HANDLING, IDLE);
+        }
+    }
 
-                if (terminate)
-                {
-                    System.out.println("[WARNING] Inactive client detected, closing connection");
+    /**
+     * Closes the connection once the inactivity timeout elapses, on the thread of the timing wheel: the user is
+     * released by the thread serving the client, whose blocked read fails. The connection of an event loop is closed
+     * by the loop, along with the release. A client whose request is being handled is not inactive: the timeout runs
+     * again later.
+     */
+    private void OnInactivityTimeout()
+    {
+        if (!_state.compareAndSet(IDLE, CLOSED))
+        {
+            if (_state.get() == HANDLING) { _inactivityTimeout.Refresh(GlobalData.SETTINGS.ClientInactiveThresholdMS); }
+            return;
+        }
 
-                    // if a user is associated with this connection, mark them as disconnected
-                    if (_user != null) { UserCollection.TryLogout(_user); }
+        System.out.println("[WARNING] Inactive client detected, closing connection");
+        if (_loop != null) { _loop.execute(this::ReleaseClosed); return; }
 
-                    _connection.Close();
-                    return;
-                }
+        try { _connection.Close(); }
+        catch (IOException e) { System.out.printf("[ERROR] Unable to close connection: %s\n", e.getMessage()); }
+    }
 
-                // sleep and check again
-                Thread.sleep(GlobalData.SETTINGS.WaitDataTimeoutMS);
-            }
+    /**
+     * Closes the connection of an inactive client and releases its user, on the event loop serving the client.
+     */
+    private void ReleaseClosed()
+    {
+        try { Release(); }
+        catch (IOException | RuntimeException e) { System.out.printf("[ERROR] Unable to release the client: %s\n", e); }
+    }
+
+    /**
+     * Handles a request according to its operation.
+     */
+    private void Handle(Request request) throws IOException
+    {
+        // number the request in arrival order if the order flow is captured
+        OrderFlowCapture capture = GlobalData.ORDER_FLOW_CAPTURE;
+        if (capture != null)
+        {
+            _arrivalSequence = capture.NextSequence();
+            _arrivalTime = capture.GetElapsedTime();
+        }
+
+        // handle the request based on its operation type
+        switch (request.GetOperation()){
+            case REGISTER -> HandleRegisterRequest((RegisterRequest) request);
+            case UPDATE_CREDENTIALS -> HandleUpdateCredentialRequest((UpdateCredentialsRequest) request);
+            case LOGIN -> HandleLoginRequest((LoginRequest) request);
+            case LOGOUT -> HandleLogoutRequest((LogoutRequest) request);
+            case INSERT_MARKET_ORDER -> HandleInsertMarketOrderRequest((MarketOrderRequest) request);
+            case INSERT_LIMIT_ORDER -> HandleInsertLimitOrderRequest((LimitOrderRequest) request);
+            case INSERT_STOP_ORDER -> HandleInsertStopOrderRequest((StopOrderRequest) request);
+            case INSERT_ORDERS -> HandleInsertOrdersRequest((InsertOrdersRequest) request);
+            case CANCEL_ORDER -> HandleCancelOrderRequest((CancelOrderRequest) request);
+            case CANCEL_ALL -> HandleCancelAllOrdersRequest((CancelAllOrdersRequest) request);
+            case GET_PRICE_HISTORY -> HandleGetPriceHistoryRequest((GetPriceHistoryRequest) request);
+            case SELECT_PROTOCOL -> HandleSelectProtocolRequest((SelectProtocolRequest) request);
         }
-        catch (InterruptedException ignored) { }
-        catch (IOException e) { System.out.printf("[ERROR] Checking if any data is available: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * Closes the connection of a client that went away (disconnected, or sending an invalid request): the user
+     * associated with the connection, if any, has their orders pulled if required and is marked as disconnected. The
+     * user of a connection already closed for inactivity is released as well, once. Nothing is done once the server
+     * is shutting down.
+     *
+     * @throws IOException If an I/O error occurs while closing the connection.
+     */
+    public void Disconnect() throws IOException
+    {
+        if (_state.compareAndSet(IDLE, CLOSED)) { _inactivityTimeout.Cancel(); }
+        Release();
+    }
+
+    /**
+     * Releases the user of a closed handler, pulling their orders if required, and closes the connection, by the
+     * thread serving the client, once.
+     */
+    private void Release() throws IOException
+    {
+        if (!_isReleased.compareAndSet(false, true)) { return; }
+
+        if (_user != null)
+        {
+            if (GlobalData.SETTINGS.CancelOrdersOnDisconnect) { CancelAllOrders(); }
+            UserCollection.TryLogout(_user);
+            _user = null;
+        }
+
+        _connection.Close();
     }
 
     /**
@@ -245,6 +382,9 @@ public class ClientHandler implements Runnable
 
         else
         {
+            // pull the resting orders of the user before the logout if required
+            if (GlobalData.SETTINGS.CancelOrdersOnDisconnect) { CancelAllOrders(); }
+
             response = UserCollection.TryLogout(_user);
             SendResponse(response);
 
@@ -259,19 +399,30 @@ public class ClientHandler implements Runnable
      */
     private void HandleInsertMarketOrderRequest(MarketOrderRequest request) throws IOException
     {
-        Tuple<OrderResponse, String> response_message;
+        Tuple<OrderResponse, List<String>> response_message;
 
-        // check if the user is currently logged in
-        if (_user == null) { SendResponse(OrderResponse.INVALID); }
+        // the order book of the requested instrument (null if the instrument is not traded)
+        OrderBook book = GlobalData.GetOrderBook(request.GetSymbol());
+
+        // check if the user is currently logged in and the instrument is traded
+        if (_user == null || book == null) { SendResponse(OrderResponse.INVALID); }
 
         else
         {
+            // reject the orders exceeding the pre-trade limits of the user, before they take an order ID
+            if (!GlobalData.RISK_ENGINE.Check(request, _user)) { SendResponse(OrderResponse.INVALID); return; }
+
             MarketOrder order = GlobalData.CreateMarketOrder(request, _user);
-            response_message = OrderBook.ProcessOrder(order);
+
+            long[] sizes = GetCapturedSizes(List.of(order));
+            MatchingEngine engine = GlobalData.GetMatchingEngine(book);
+            if (engine == null) { response_message = book.ProcessOrder(order); }
+            else { response_message = engine.ProcessOrder(order, _completion); }
             SendResponse(response_message.GetX());
+            CaptureOrders(book, List.of(order), sizes, List.of(response_message.GetX()), response_message.GetY());
 
             // send any notifications related to the order
-            if (!response_message.GetY().isEmpty()) { _connection.SendNotification(response_message.GetY()); }
+            for (String message : response_message.GetY()) { _connection.SendNotification(message); }
         }
     }
 
@@ -283,14 +434,25 @@ public class ClientHandler implements Runnable
     {
         Tuple<OrderResponse, List<String>> response_message;
 
-        // check if the user is currently logged in
-        if (_user == null) { SendResponse(OrderResponse.INVALID); }
+        // the order book of the requested instrument (null if the instrument is not traded)
+        OrderBook book = GlobalData.GetOrderBook(request.GetSymbol());
+
+        // check if the user is currently logged in and the instrument is traded
+        if (_user == null || book == null) { SendResponse(OrderResponse.INVALID); }
 
         else
         {
+            // reject the orders exceeding the pre-trade limits of the user, before they take an order ID
+            if (!GlobalData.RISK_ENGINE.Check(request, _user)) { SendResponse(OrderResponse.INVALID); return; }
+
             LimitOrder order = GlobalData.CreateLimitOrder(request, _user);
-            response_message = OrderBook.ProcessOrder(order);
+
+            long[] sizes = GetCapturedSizes(List.of(order));
+            MatchingEngine engine = GlobalData.GetMatchingEngine(book);
+            if (engine == null) { response_message = book.ProcessOrder(order); }
+            else { response_message = engine.ProcessOrder(order, _completion); }
             SendResponse(response_message.GetX());
+            CaptureOrders(book, List.of(order), sizes, List.of(response_message.GetX()), response_message.GetY());
 
             // send any notifications related to the order
             for (String message : response_message.GetY())
@@ -306,22 +468,157 @@ public class ClientHandler implements Runnable
      */
     private void HandleInsertStopOrderRequest(StopOrderRequest request) throws IOException
     {
-        Tuple<OrderResponse, String> response_message;
+        Tuple<OrderResponse, List<String>> response_message;
 
-        // check if the user is currently logged in
-        if (_user == null) { SendResponse(OrderResponse.INVALID); }
+        // the order book of the requested instrument (null if the instrument is not traded)
+        OrderBook book = GlobalData.GetOrderBook(request.GetSymbol());
+
+        // check if the user is currently logged in and the instrument is traded
+        if (_user == null || book == null) { SendResponse(OrderResponse.INVALID); }
 
         else
         {
+            // reject the orders exceeding the pre-trade limits of the user, before they take an order ID
+            if (!GlobalData.RISK_ENGINE.Check(request, _user)) { SendResponse(OrderResponse.INVALID); return; }
+
             StopOrder order = GlobalData.CreateStopOrder(request, _user);
-            response_message = OrderBook.ProcessOrder(order);
+
+            long[] sizes = GetCapturedSizes(List.of(order));
+            MatchingEngine engine = GlobalData.GetMatchingEngine(book);
+            if (engine == null) { response_message = book.ProcessOrder(order); }
+            else { response_message = engine.ProcessOrder(order, _completion); }
             SendResponse(response_message.GetX());
+            CaptureOrders(book, List.of(order), sizes, List.of(response_message.GetX()), response_message.GetY());
 
             // send any notifications related to the order
-            if (!response_message.GetY().isEmpty()) { _connection.SendNotification(response_message.GetY()); }
+            for (String message : response_message.GetY()) { _connection.SendNotification(message); }
         }
     }
 
+    /**
+     * Handles an InsertOrdersRequest from the client.
+     * Groups the orders of the batch by instrument, processes each group in a single pass through its book and sends
+     * one response with the outcome of every order.
+     */
+    private void HandleInsertOrdersRequest(InsertOrdersRequest request) throws IOException
+    {
+        List<Request> requests = request.GetOrders();
+
+        // the orders not created (user not logged in, instrument not traded) or exceeding the pre-trade limits are rejected
+        OrderResponse[] responses = new OrderResponse[requests.size()];
+        Arrays.fill(responses, OrderResponse.INVALID);
+        List<String> messages = new ArrayList<>();
+
+        if (_user != null)
+        {
+            // create the orders and group them by book, remembering the position of each order in the batch
+            Map<OrderBook, List<Order>> ordersByBook = new LinkedHashMap<>();
+            Map<OrderBook, List<Integer>> positionsByBook = new HashMap<>();
+
+            // the orders of the batch accepted so far may all rest, they count against the limits of the next ones
+            long pendingOrders = 0;
+            long pendingNotional = 0;
+
+            for (int i = 0; i < requests.size(); i++)
+            {
+                Request orderRequest = requests.get(i);
+                OrderBook orderBook = GetOrderBook(orderRequest);
+                if (orderBook == null) { continue; }
+
+                // the orders exceeding the pre-trade limits are rejected before they take an order ID
+                if (!GlobalData.RISK_ENGINE.Check(orderRequest, _user, pendingOrders, pendingNotional)) { continue; }
+                if (!(orderRequest instanceof MarketOrderRequest))
+                {
+                    pendingOrders++;
+                    pendingNotional += RiskEngine.GetNotional(orderRequest);
+                }
+
+                ordersByBook.computeIfAbsent(orderBook, book -> new ArrayList<>()).add(CreateOrder(orderRequest));
+                positionsByBook.computeIfAbsent(orderBook, book -> new ArrayList<>()).add(i);
+            }
+
+            for (Map.Entry<OrderBook, List<Order>> entry : ordersByBook.entrySet())
+            {
+                OrderBook book = entry.getKey();
+                MatchingEngine engine = GlobalData.GetMatchingEngine(book);
+                long[] sizes = GetCapturedSizes(entry.getValue());
+
+                Tuple<List<OrderResponse>, List<String>> response_messages;
+                if (engine == null) { response_messages = book.ProcessOrders(entry.getValue()); }
+                else { response_messages = engine.ProcessOrders(entry.getValue(), _completion); }
+
+                List<Integer> positions = positionsByBook.get(book);
+                for (int i = 0; i < positions.size(); i++) { responses[positions.get(i)] = response_messages.GetX().get(i); }
+                messages.addAll(response_messages.GetY());
+
+                CaptureOrders(book, entry.getValue(), sizes, response_messages.GetX(), response_messages.GetY());
+            }
+        }
+
+        SendResponse(new InsertOrdersResponse(Arrays.asList(responses)));
+
+        // send any notifications related to the orders
+        for (String message : messages) { _connection.SendNotification(message); }
+    }
+
+    /**
+     * Gets the book of the instrument of one of the requests of a batch.
+     *
+     * @param request A MarketOrderRequest, a LimitOrderRequest or a StopOrderRequest.
+     * @return The book of the instrument, or null if the instrument is not traded or the request is not an order.
+     */
+    private OrderBook GetOrderBook(Request request)
+    {
+        return switch (request)
+        {
+            case MarketOrderRequest orderRequest -> GlobalData.GetOrderBook(orderRequest.GetSymbol());
+            case LimitOrderRequest orderRequest -> GlobalData.GetOrderBook(orderRequest.GetSymbol());
+            case StopOrderRequest orderRequest -> GlobalData.GetOrderBook(orderRequest.GetSymbol());
+            default -> null;
+        };
+    }
+
+    /**
+     * Creates the order described by one of the requests of a batch, once it passed the pre-trade checks.
+     *
+     * @param request A MarketOrderRequest, a LimitOrderRequest or a StopOrderRequest.
+     * @return The created order.
+     */
+    private Order CreateOrder(Request request)
+    {
+        return switch (request)
+        {
+            case MarketOrderRequest orderRequest -> GlobalData.CreateMarketOrder(orderRequest, _user);
+            case LimitOrderRequest orderRequest -> GlobalData.CreateLimitOrder(orderRequest, _user);
+            case StopOrderRequest orderRequest -> GlobalData.CreateStopOrder(orderRequest, _user);
+            default -> throw new IllegalArgumentException("Not an order request: " + request.getClass().getSimpleName());
+        };
+    }
+
+    /**
+     * Gets the submitted sizes of orders about to be processed, if the order flow is captured: the matching reduces
+     * the size of the orders it fills.
+     *
+     * @return The sizes of the orders, or null if the order flow is not captured.
+     */
+    private long[] GetCapturedSizes(List<Order> orders)
+    {
+        if (GlobalData.ORDER_FLOW_CAPTURE == null) { return null; }
+
+        long[] sizes = new long[orders.size()];
+        for (int i = 0; i < sizes.length; i++) { sizes[i] = orders.get(i).GetSize(); }
+        return sizes;
+    }
+
+    /**
+     * Captures the orders processed by a book for a request, with their outcome, if the order flow is captured.
+     */
+    private void CaptureOrders(OrderBook book, List<Order> orders, long[] sizes, List<OrderResponse> responses, List<String> messages)
+    {
+        if (GlobalData.ORDER_FLOW_CAPTURE == null) { return; }
+        GlobalData.ORDER_FLOW_CAPTURE.WriteOrders(_arrivalSequence, _arrivalTime, _user.GetUsername(), book.GetSymbol(), orders, sizes, responses, messages);
+    }
+
     /**
      * Handles a CancelOrderRequest from the client.
      * Attempts to cancel an existing order and sends a response.
@@ -332,11 +629,66 @@ public class ClientHandler implements Runnable
         if (_user == null) { SendResponse(CancelOrderRequest.OTHER_ERROR_CASES); }
         else
         {
-            SimpleResponse response = OrderBook.TryCancelOrder(request, _user);
+            SimpleResponse response;
+
+            // the order IDs are unique across instruments, the order is looked up in all the books
+            OrderBook book = GlobalData.FindOrderBook(request.GetOrderID());
+            if (book == null) { response = CancelOrderRequest.ORDER_DOES_NOT_EXISTS; }
+            else
+            {
+                MatchingEngine engine = GlobalData.GetMatchingEngine(book);
+                if (engine == null) { response = book.TryCancelOrder(request, _user); }
+                else { response = engine.TryCancelOrder(request, _user, _completion); }
+            }
+
             SendResponse(response);
+
+            if (GlobalData.ORDER_FLOW_CAPTURE != null)
+            {
+                GlobalData.ORDER_FLOW_CAPTURE.WriteCancel(_arrivalSequence, _arrivalTime, _user.GetUsername(), request.GetOrderID(), response.GetResponse());
+            }
+        }
+    }
+
+    /**
+     * Handles a CancelAllOrdersRequest from the client.
+     * Cancels all the resting orders of the user and sends a response.
+     */
+    private void HandleCancelAllOrdersRequest(CancelAllOrdersRequest request) throws IOException
+    {
+        // check if the user is currently logged in
+        if (_user == null) { SendResponse(CancelAllOrdersRequest.USER_NOT_LOGGED); }
+        else
+        {
+            CancelAllOrders();
+            SendResponse(CancelAllOrdersRequest.OK);
         }
     }
 
+    /**
+     * Cancels all the orders of the logged-in user still resting in the books of all the instruments.
+     *
+     * @return The number of canceled orders.
+     */
+    private int CancelAllOrders()
+    {
+        // the orders may also be canceled on disconnection, without a request: the cancellation is numbered when it starts
+        OrderFlowCapture capture = GlobalData.ORDER_FLOW_CAPTURE;
+        long sequence = capture == null ? 0 : capture.NextSequence();
+        long time = capture == null ? 0 : capture.GetElapsedTime();
+
+        int count = 0;
+        for (OrderBook book : GlobalData.GetOrderBooks())
+        {
+            MatchingEngine engine = GlobalData.GetMatchingEngine(book);
+            if (engine == null) { count += book.CancelAllOrders(_user); }
+            else { count += engine.CancelAllOrders(_user, _completion); }
+        }
+
+        if (capture != null) { capture.WriteCancelAll(sequence, time, _user.GetUsername(), count); }
+        return count;
+    }
+
     /**
      * Handles a GetPriceHistoryRequest from the client.
      * Sends the price history for the requested asset.
@@ -347,8 +699,24 @@ public class ClientHandler implements Runnable
         if (_user == null) { SendResponse(GetPriceHistoryRequest.USER_NOT_LOGGED); }
         else
         {
-            SimpleResponse response = HistoryRecordCollection.GetPrices(request);
+            String symbol = request.GetSymbol() == null ? GlobalData.DEFAULT_SYMBOL : request.GetSymbol();
+            SimpleResponse response = HistoryRecordCollection.GetPrices(request, symbol);
             SendResponse(response);
         }
     }
+
+    /**
+     * Handles a SelectProtocolRequest from the client.
+     * Answers in the current protocol of the connection, then switches to the selected one if it is supported.
+     */
+    private void HandleSelectProtocolRequest(SelectProtocolRequest request) throws IOException
+    {
+        WireProtocol protocol = request.GetProtocol();
+        if (protocol == null) { SendResponse(SelectProtocolRequest.UNSUPPORTED_PROTOCOL); }
+        else
+        {
+            SendResponse(SelectProtocolRequest.OK);
+            _connection.SetProtocol(protocol);
+        }
+    }
 }
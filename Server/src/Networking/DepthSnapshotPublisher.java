@@ -0,0 +1,84 @@
+package Networking;
+
+import Helpers.GlobalData;
+import Orders.OrderBook;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes the periodic full depth snapshots of the depth feed: at each tick the snapshot of every book is sent
+ * to the multicast group, so that the consumers can build their replica of a book or recover from a lost update.
+ */
+public class DepthSnapshotPublisher
+{
+    // atomic flags to manage publisher state and stop request
+    private final AtomicBoolean _isRunning;
+    private final AtomicBoolean _isStopRequested;
+
+    // interval in milliseconds between two snapshots
+    private final int _intervalMS;
+
+    // a dedicated thread to publish the snapshots
+    private final Thread _thread = new Thread(this::Publish, "DepthSnapshotPublisher");
+
+    public DepthSnapshotPublisher(int intervalMS)
+    {
+        _isRunning = new AtomicBoolean(false);
+        _isStopRequested = new AtomicBoolean(false);
+        _intervalMS = intervalMS;
+    }
+
+    /**
+     * Starts the publisher thread. If the publisher is already running, it outputs a warning message.
+     */
+    public void Start()
+    {
+        if (_isRunning.compareAndExchange(false, true))
+        {
+            System.out.println("[WARNING] Depth snapshot publisher already running");
+            return;
+        }
+
+        _thread.start();
+    }
+
+    /**
+     * Stops the publisher by setting the stop request flag and waiting for the publisher thread to shut down.
+     * If the publisher is not running, it outputs a warning message.
+     */
+    public void Stop()
+    {
+        if (!_isRunning.compareAndExchange(true, false))
+        {
+            System.out.println("[WARNING] Depth snapshot publisher not running");
+            return;
+        }
+
+        _isStopRequested.set(true);
+        _thread.interrupt();
+
+        try { _thread.join(); }
+        catch (InterruptedException e) { System.out.printf("[ERROR] Unable to join the depth snapshot publisher thread: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * The loop of the publisher thread: sends the snapshot of every book, then waits for the interval.
+     */
+    private void Publish()
+    {
+        System.out.printf("[INFO] Publishing depth snapshots every %d ms on port %d\n", _intervalMS, GlobalData.SETTINGS.DepthFeedPort);
+
+        while (!_isStopRequested.get())
+        {
+            // the snapshots are built from the depth views of the books, without waiting for the matching
+            for (OrderBook book : GlobalData.GetOrderBooks())
+            {
+                try { GlobalData.SendDepthNotification(book.GetDepthSnapshot()); }
+                catch (RuntimeException e) { System.out.printf("[ERROR] Unable to publish the depth snapshot of %s: %s\n", book.GetSymbol(), e.getMessage()); }
+            }
+
+            try { Thread.sleep(_intervalMS); }
+            catch (InterruptedException e) { continue; }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package Networking;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.text.ParseException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An event loop thread serving many client connections over non-blocking channels with a single selector: a request
+ * is handled as soon as its last byte arrives, by the loop thread, instead of a thread per client polling its socket.
+ * The listener accepts the connections and spreads them over the event loops (see Listener).
+ *
+ * The requests are handled on the loop thread, one at a time: the other clients of the loop wait while a request
+ * waits for the lock of a book or for its matching engine, which only takes a few microseconds. The loop also closes
+ * the connections of the clients that went away, pulling their orders if required; the inactive clients are detected
+ * by the timing wheel of the server (see ClientHandler), which hands the closing of their connections and the release
+ * of their users to the loop as a task.
+ */
+public class EventLoop
+{
+    // a client served by the loop: its connection and the handler of its requests
+    private record Client(ChannelConnection connection, ClientHandler handler) { }
+
+    // the selector of the channels of the loop
+    private final Selector _selector;
+
+    // the channels accepted by the listener and not registered yet with the selector
+    private final Queue<SocketChannel> _acceptedChannels;
+
+    // the tasks handed to the loop by the other threads and not run yet
+    private final Queue<Runnable> _tasks;
+
+    // the index of the loop, naming its thread
+    private final int _index;
+
+    private final AtomicBoolean _isStopRequested;
+
+    // the thread of the loop, created when the loop starts
+    private volatile Thread _thread;
+
+    /**
+     * Constructor that opens the selector of the loop.
+     *
+     * @param index The index of the loop, to name its thread.
+     * @throws IOException If the selector can't be opened.
+     */
+    public EventLoop(int index) throws IOException
+    {
+        _selector = Selector.open();
+        _acceptedChannels = new ConcurrentLinkedQueue<>();
+        _tasks = new ConcurrentLinkedQueue<>();
+        _index = index;
+        _isStopRequested = new AtomicBoolean(false);
+        _thread = null;
+    }
+
+    /**
+     * Starts the thread of the loop.
+     */
+    public void Start()
+    {
+        _thread = new Thread(this::Run, "EventLoop-" + _index);
+        _thread.start();
+    }
+
+    /**
+     * Stops the loop, closing the connections it serves, and waits for its thread to finish.
+     */
+    public void Stop()
+    {
+        _isStopRequested.set(true);
+        _selector.wakeup();
+
+        try { _thread.join(); }
+        catch (InterruptedException e) { System.out.printf("[ERROR] Unable to join the event loop thread: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * Hands a connection accepted by the listener to the loop, from any thread.
+     *
+     * @param channel The channel of the connection.
+     */
+    public void Add(SocketChannel channel)
+    {
+        _acceptedChannels.add(channel);
+        _selector.wakeup();
+    }
+
+    /**
+     * Hands a task to the loop, from any thread: the task runs on the loop thread at its next wake-up.
+     *
+     * @param task The task.
+     */
+    public void Execute(Runnable task)
+    {
+        _tasks.add(task);
+        _selector.wakeup();
+    }
+
+    /**
+     * The loop: waits for the channels to be readable or writable and handles the requests received. The loop only
+     * wakes up for its channels, for the connections accepted, for the tasks and to stop. A client whose request fails unexpectedly
+     * is closed, the loop keeps serving the other ones.
+     */
+    private void Run()
+    {
+        try
+        {
+            while (!_isStopRequested.get())
+            {
+                _selector.select();
+                RegisterAcceptedChannels();
+                RunTasks();
+
+                Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    Client client = (Client) key.attachment();
+                    try
+                    {
+                        if (key.isValid() && key.isWritable()) { Flush(client); }
+                        if (key.isValid() && key.isReadable()) { Read(client); }
+                    }
+                    catch (RuntimeException e) { Abort(client, e); }
+                }
+            }
+        }
+        catch (IOException e) { System.out.printf("[ERROR] Event loop stopped: %s\n", e.getMessage()); }
+
+        // the server is shutting down, close the connections
+        for (SelectionKey key : _selector.keys())
+        {
+            if (key.attachment() != null) { ((Client) key.attachment()).handler().Close(); }
+        }
+
+        try { _selector.close(); }
+        catch (IOException e) { System.out.printf("[ERROR] Unable to close the selector: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * Registers the channels accepted since the last wake-up, each one with a new client handler.
+     */
+    private void RegisterAcceptedChannels()
+    {
+        SocketChannel channel;
+        while ((channel = _acceptedChannels.poll()) != null)
+        {
+            try
+            {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(_selector, SelectionKey.OP_READ);
+
+                ChannelConnection connection = new ChannelConnection(channel, key);
+                key.attach(new Client(connection, new ClientHandler(connection, this::Execute)));
+            }
+            catch (ClosedChannelException e) { System.out.println("[WARNING] Client disconnected before being served"); }
+            catch (IOException e)
+            {
+                System.out.printf("[ERROR] Unable to serve the client: %s\n", e.getMessage());
+                try { channel.close(); }
+                catch (IOException ignored) { }
+            }
+        }
+    }
+
+    /**
+     * Runs the tasks handed to the loop since the last wake-up, a failing task doesn't stop the loop.
+     */
+    private void RunTasks()
+    {
+        Runnable task;
+        while ((task = _tasks.poll()) != null)
+        {
+            try { task.run(); }
+            catch (RuntimeException e) { System.out.printf("[ERROR] Event loop task failed: %s\n", e); }
+        }
+    }
+
+    /**
+     * Reads the bytes received from a client and handles every whole request, then releases the user of the client
+     * if the connection is over.
+     */
+    private void Read(Client client)
+    {
+        try
+        {
+            int count = client.connection().Read();
+
+            while (!client.connection().IsClosed())
+            {
+                Request request;
+                try { request = client.connection().ReceiveRequest(); }
+                catch (ParseException | IOException e)
+                {
+                    System.out.println("[ERROR] Unable to parse the request, interrupting communications with the client");
+                    client.handler().Disconnect(); return;
+                }
+
+                if (request == null) { break; }
+                client.handler().HandleRequest(request);
+            }
+
+            // the client closed the connection, or it was closed after an error sending a response
+            if (count < 0 || client.connection().IsClosed()) { client.handler().Disconnect(); }
+        }
+        catch (IOException e) { Disconnect(client, e); }
+    }
+
+    /**
+     * Writes the responses queued for a client.
+     */
+    private void Flush(Client client)
+    {
+        try { client.connection().Flush(); }
+        catch (IOException e) { Disconnect(client, e); }
+    }
+
+    /**
+     * Closes the connection of a client that can't be read or written any longer, releasing its user.
+     */
+    private void Disconnect(Client client, IOException cause)
+    {
+        // nothing is lost if the server already closed the connection
+        if (!client.connection().IsClosed()) { System.out.printf("[WARNING] Connection lost: %s\n", cause.getMessage()); }
+
+        try { client.handler().Disconnect(); }
+        catch (IOException e) { System.out.printf("[ERROR] Unable to close connection: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * Closes the connection of a client whose request failed unexpectedly, releasing its user, so that the failure
+     * doesn't stop the loop serving the other clients. The connection is closed even if the user can't be released.
+     */
+    private void Abort(Client client, RuntimeException cause)
+    {
+        System.out.printf("[ERROR] Unable to handle the request of the client, closing connection: %s\n", cause);
+
+        try { client.handler().Disconnect(); }
+        catch (IOException | RuntimeException e)
+        {
+            System.out.printf("[ERROR] Unable to release the client: %s\n", e);
+            client.handler().Close();
+        }
+    }
+}
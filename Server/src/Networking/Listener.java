@@ -4,9 +4,15 @@ package Networking;
 import Helpers.GlobalData;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -19,10 +25,14 @@ public class Listener
     // a dedicated thread to handle the listening process
     private final Thread _thread = new Thread(this::Listen);
 
+    // the time of the last save of the server data, by the listener thread
+    private long _lastSave;
+
     public Listener()
     {
         _isRunning = new AtomicBoolean(false);
         _isStopRequested = new AtomicBoolean(false);
+        _lastSave = 0;
     }
 
     // returns whether the listener is currently running
@@ -72,27 +82,35 @@ public class Listener
     /**
      * The method where the listener waits for client connections and handles
      * client requests. It accepts incoming client connections and delegates
-     * handling to a thread pool.
+     * handling to a thread pool, to the event loops or to virtual threads if enabled.
      */
     private void Listen()
     {
         System.out.printf("[INFO] Listening on port %d\n", GlobalData.SETTINGS.TCP_PORT);
+        _lastSave = System.currentTimeMillis();
+
+        if (GlobalData.SETTINGS.EventLoopThreads > 0) { ListenWithEventLoops(); return; }
+        if (GlobalData.SETTINGS.VirtualThreadsEnabled) { ListenWithVirtualThreads(); return; }
 
-        long lastSave = System.currentTimeMillis();
+        // the handlers running or queued, closed when the server stops so that their threads stop waiting for requests
+        Set<ClientHandler> clients = ConcurrentHashMap.newKeySet();
 
         BlockingQueue<Runnable> taskQueue = new ArrayBlockingQueue<>(GlobalData.SETTINGS.MaxConcurrentClients);
-        try (ExecutorService threadPool = new ThreadPoolExecutor(0, GlobalData.SETTINGS.MaxConcurrentClients,
+        try (ThreadPoolExecutor threadPool = new ThreadPoolExecutor(GlobalData.SETTINGS.MaxConcurrentClients, GlobalData.SETTINGS.MaxConcurrentClients,
                 1, TimeUnit.SECONDS, taskQueue);
-             ServerSocket serverSocket = new ServerSocket(GlobalData.SETTINGS.TCP_PORT))
+             ServerSocket serverSocket = new ServerSocket(GlobalData.SETTINGS.TCP_PORT, GlobalData.SETTINGS.ListenBacklog))
         {
+            // start a thread for each new client up to the maximum (the clients are only queued beyond it), and
+            // release the threads of the clients gone after a second
+            threadPool.allowCoreThreadTimeOut(true);
+
             // set a timeout for the accept call to avoid blocking indefinitely
             serverSocket.setSoTimeout(GlobalData.SETTINGS.AcceptClientTimeoutMS);
 
             // listen for incoming connections until the stop request is triggered
             while (!_isStopRequested.compareAndSet(true, false))
             {
-                long elapsed = System.currentTimeMillis() - lastSave;
-                if (elapsed > GlobalData.SETTINGS.SaveIntervalMS) { GlobalData.Save(); }
+                SaveIfDue();
 
                 try
                 {
@@ -100,16 +118,125 @@ public class Listener
 
                     // create a ClientHandler to manage the new client
                     ClientHandler client = new ClientHandler(socket);
-                    threadPool.execute(client);
+                    clients.add(client);
+                    threadPool.execute(() ->
+                    {
+                        try { client.run(); }
+                        finally { clients.remove(client); }
+                    });
                 }
                 catch (SocketTimeoutException e) { continue; }
             }
 
             threadPool.shutdown();
+            for (ClientHandler client : clients) { client.Close(); }
 
             // wait for all tasks in the thread pool to complete before fully shutting down
             try { boolean closed = threadPool.awaitTermination(GlobalData.SETTINGS.ClientInactiveThresholdMS + 2, TimeUnit.MINUTES); }
             catch (InterruptedException e) { System.out.printf("[ERROR] Unable to terminate thread pool correctly: %s\n", e.getMessage()); }
         } catch (IOException e) { System.out.printf("[ERROR] I/O exception: %s\n", e.getMessage()); }
     }
+
+    /**
+     * Accepts the client connections on a non-blocking channel and spreads them over the event loops in turn, each
+     * loop serving its clients with a selector instead of a thread per client.
+     */
+    private void ListenWithEventLoops()
+    {
+        EventLoop[] eventLoops = new EventLoop[GlobalData.SETTINGS.EventLoopThreads];
+        try
+        {
+            for (int i = 0; i < eventLoops.length; i++) { eventLoops[i] = new EventLoop(i); }
+        }
+        catch (IOException e)
+        {
+            System.out.printf("[ERROR] Unable to create the event loops: %s\n", e.getMessage());
+            return;
+        }
+
+        for (EventLoop eventLoop : eventLoops) { eventLoop.Start(); }
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open();
+             Selector selector = Selector.open())
+        {
+            serverChannel.bind(new InetSocketAddress(GlobalData.SETTINGS.TCP_PORT), GlobalData.SETTINGS.ListenBacklog);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+            int next = 0;
+
+            // listen for incoming connections until the stop request is triggered, waking up at the accept timeout
+            // to check it
+            while (!_isStopRequested.compareAndSet(true, false))
+            {
+                SaveIfDue();
+
+                selector.select(GlobalData.SETTINGS.AcceptClientTimeoutMS);
+                selector.selectedKeys().clear();
+
+                SocketChannel channel;
+                while ((channel = serverChannel.accept()) != null)
+                {
+                    eventLoops[next].Add(channel);
+                    next = (next + 1) % eventLoops.length;
+                }
+            }
+        }
+        catch (IOException e) { System.out.printf("[ERROR] I/O exception: %s\n", e.getMessage()); }
+
+        // close the connections of the clients
+        for (EventLoop eventLoop : eventLoops) { eventLoop.Stop(); }
+    }
+
+    /**
+     * Accepts the client connections and serves each one on its own virtual thread, blocked reading the requests of
+     * its client: the number of clients is not bounded by a thread pool.
+     */
+    private void ListenWithVirtualThreads()
+    {
+        // the handlers running, closed when the server stops so that their threads stop waiting for requests
+        Set<ClientHandler> clients = ConcurrentHashMap.newKeySet();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             ServerSocket serverSocket = new ServerSocket(GlobalData.SETTINGS.TCP_PORT, GlobalData.SETTINGS.ListenBacklog))
+        {
+            // set a timeout for the accept call to avoid blocking indefinitely
+            serverSocket.setSoTimeout(GlobalData.SETTINGS.AcceptClientTimeoutMS);
+
+            // listen for incoming connections until the stop request is triggered
+            while (!_isStopRequested.compareAndSet(true, false))
+            {
+                SaveIfDue();
+
+                try
+                {
+                    Socket socket = serverSocket.accept();
+
+                    ClientHandler client = new ClientHandler(socket);
+                    clients.add(client);
+                    executor.execute(() ->
+                    {
+                        try { client.run(); }
+                        finally { clients.remove(client); }
+                    });
+                }
+                catch (SocketTimeoutException e) { continue; }
+            }
+
+            // the executor waits for the threads of the handlers once their connections are closed
+            for (ClientHandler client : clients) { client.Close(); }
+        }
+        catch (IOException e) { System.out.printf("[ERROR] I/O exception: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * Saves the server data once the save interval has elapsed since the last save, from the loop of the listener.
+     */
+    private void SaveIfDue()
+    {
+        if (System.currentTimeMillis() - _lastSave <= GlobalData.SETTINGS.SaveIntervalMS) { return; }
+
+        GlobalData.Save();
+        _lastSave = System.currentTimeMillis();
+    }
 }
@@ -0,0 +1,120 @@
+package Networking;
+
+import Helpers.GlobalData;
+import Messages.TickerNotification;
+import Orders.OrderBook;
+import Orders.TopOfBook;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes the conflated ticker of the books: at a fixed rate it samples the top of the book of every instrument,
+ * without taking any lock, and sends a ticker notification to the multicast group only if it changed since the last
+ * one. The work done per tick only depends on the number of instruments, however many events the books processed.
+ */
+public class TickerPublisher
+{
+    // atomic flags to manage publisher state and stop request
+    private final AtomicBoolean _isRunning;
+    private final AtomicBoolean _isStopRequested;
+
+    // interval in milliseconds between two samples
+    private final int _intervalMS;
+
+    // a dedicated thread to publish the ticker
+    private final Thread _thread = new Thread(this::Publish, "TickerPublisher");
+
+    public TickerPublisher(int intervalMS)
+    {
+        _isRunning = new AtomicBoolean(false);
+        _isStopRequested = new AtomicBoolean(false);
+        _intervalMS = intervalMS;
+    }
+
+    /**
+     * Starts the publisher thread. If the publisher is already running, it outputs a warning message.
+     */
+    public void Start()
+    {
+        if (_isRunning.compareAndExchange(false, true))
+        {
+            System.out.println("[WARNING] Ticker publisher already running");
+            return;
+        }
+
+        _thread.start();
+    }
+
+    /**
+     * Stops the publisher by setting the stop request flag and waiting for the publisher thread to shut down.
+     * If the publisher is not running, it outputs a warning message.
+     */
+    public void Stop()
+    {
+        if (!_isRunning.compareAndExchange(true, false))
+        {
+            System.out.println("[WARNING] Ticker publisher not running");
+            return;
+        }
+
+        _isStopRequested.set(true);
+        _thread.interrupt();
+
+        try { _thread.join(); }
+        catch (InterruptedException e) { System.out.printf("[ERROR] Unable to join the ticker publisher thread: %s\n", e.getMessage()); }
+    }
+
+    /**
+     * The loop of the publisher thread: samples the books at each tick and sends the ones whose top changed.
+     * The datagram and its buffer are reused for all the notifications.
+     */
+    private void Publish()
+    {
+        System.out.printf("[INFO] Publishing the ticker every %d ms on port %d\n", _intervalMS, GlobalData.SETTINGS.TickerPort);
+
+        List<OrderBook> books = List.copyOf(GlobalData.GetOrderBooks());
+        byte[][] symbols = new byte[books.size()][];
+        for (int i = 0; i < books.size(); i++) { symbols[i] = TickerNotification.EncodeSymbol(books.get(i).GetSymbol()); }
+
+        // the last top of the book sent for each book: the snapshots are immutable and replaced only when they change,
+        // so comparing the references is enough
+        TopOfBook[] lastSent = new TopOfBook[books.size()];
+        long[] sequences = new long[books.size()];
+
+        byte[] data = new byte[TickerNotification.SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        DatagramPacket datagramPacket = new DatagramPacket(data, data.length, GlobalData.MULTICAST_GROUP, GlobalData.SETTINGS.TickerPort);
+
+        long nextTick = System.currentTimeMillis();
+
+        while (!_isStopRequested.get())
+        {
+            long now = System.currentTimeMillis();
+            if (now < nextTick)
+            {
+                try { Thread.sleep(nextTick - now); }
+                catch (InterruptedException e) { continue; }
+            }
+
+            // schedule the next tick from the previous one, skipping the ticks missed if the thread fell behind
+            nextTick = Math.max(nextTick + _intervalMS, System.currentTimeMillis());
+
+            for (int i = 0; i < books.size(); i++)
+            {
+                TopOfBook topOfBook = books.get(i).GetTopOfBook();
+                if (topOfBook == lastSent[i]) { continue; }
+
+                TickerNotification.Encode(buffer, symbols[i], ++sequences[i], System.currentTimeMillis(), topOfBook);
+
+                try { GlobalData.SOCKET_UDP.send(datagramPacket); }
+                catch (IOException e) { System.out.printf("[ERROR] Unable to send the ticker of %s: %s\n", books.get(i).GetSymbol(), e.getMessage()); }
+
+                lastSent[i] = topOfBook;
+            }
+        }
+    }
+}
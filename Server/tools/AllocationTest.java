@@ -0,0 +1,110 @@
+import Helpers.Tuple;
+import Messages.GetPriceHistoryRequest;
+import Messages.OrderResponse;
+import Orders.*;
+import Users.User;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Standalone entry point that checks that matching doesn't allocate per fill: market orders sweep a given number of
+ * resting limit orders, each one consumed entirely, and the bytes allocated by the thread while the book processes
+ * each market order are measured with ThreadMXBean. An order allocates a constant number of bytes whatever the number
+ * of its fills (its response, the tuple and the list of the notifications, the new depth view...), except for the text
+ * of the closed trades notification that lists every consumed order: its bytes are excluded, and the bytes left must
+ * not grow with the number of fills.
+ *
+ * Usage: AllocationTest [orders] [fills]
+ *   orders  number of market orders measured per sweep (2000 by default)
+ *   fills   number of resting orders swept by the largest orders (200 by default), the smallest ones sweep one order
+ *           per price level, so that both sweep the same levels
+ *
+ * The trades recorded for the history are staged by the book in preallocated columns, merged into the history between
+ * the measures (as when the server saves it), so that the columns are not grown while measuring. The test exits with
+ * status 1 if a fill allocates.
+ */
+public class AllocationTest
+{
+    // the prices of the resting orders, spread over a few levels
+    private static final long PRICE = 1000;
+    private static final int PRICE_LEVELS = 4;
+
+    // the rounds measured, the first ones warm up the JIT and size the reused buffers of the book
+    private static final int ROUNDS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // the next order ID
+    private static long _nextOrderID = 1;
+
+    public static void main(String[] args)
+    {
+        int orderCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int fillCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        if (fillCount <= PRICE_LEVELS) { throw new IllegalArgumentException("The largest orders must sweep more than " + PRICE_LEVELS + " orders"); }
+
+        if (!THREAD_BEAN.isThreadAllocatedMemorySupported())
+        {
+            System.out.println("[ERROR] The JVM doesn't measure the memory allocated by a thread");
+            System.exit(1);
+        }
+        THREAD_BEAN.setThreadAllocatedMemoryEnabled(true);
+
+        OrderBook book = new OrderBook("ALLOC", false, 0);
+        User maker = new User("maker", "maker");
+        User taker = new User("taker", "taker");
+        GetPriceHistoryRequest history = new GetPriceHistoryRequest(System.currentTimeMillis(), book.GetSymbol());
+
+        double smallBytes = 0;
+        double largeBytes = 0;
+        for (int round = 1; round <= ROUNDS; round++)
+        {
+            smallBytes = Measure(book, maker, taker, PRICE_LEVELS, orderCount);
+            largeBytes = Measure(book, maker, taker, fillCount, orderCount);
+            HistoryRecordCollection.GetPrices(history, book.GetSymbol());
+        }
+
+        double bytesPerFill = (largeBytes - smallBytes) / (fillCount - PRICE_LEVELS);
+        System.out.printf("%-16s%.1f bytes per order with %d fills, %.1f bytes with %d fills\n", "Allocated", smallBytes, PRICE_LEVELS, largeBytes, fillCount);
+        System.out.printf("%-16s%.2f bytes per fill\n", "Fills", bytesPerFill);
+
+        if (bytesPerFill > 0)
+        {
+            System.out.printf("%-16sthe fills allocate\n", "Verification");
+            System.exit(1);
+        }
+        System.out.printf("%-16sno allocation per fill over %d orders\n", "Verification", 2 * ROUNDS * orderCount);
+    }
+
+    /**
+     * Measures the bytes allocated to process market orders sweeping the given number of resting orders.
+     *
+     * @return The average bytes allocated per market order, the text of its closed trades notification excluded.
+     */
+    private static double Measure(OrderBook book, User maker, User taker, int fillCount, int orderCount)
+    {
+        long allocated = 0;
+
+        for (int i = 0; i < orderCount; i++)
+        {
+            for (int j = 0; j < fillCount; j++) { book.ProcessOrder(new LimitOrder(_nextOrderID++, Method.ASK, 1, PRICE + j % PRICE_LEVELS, maker)); }
+            MarketOrder order = new MarketOrder(_nextOrderID++, Method.BID, fillCount, taker);
+
+            long before = THREAD_BEAN.getCurrentThreadAllocatedBytes();
+            Tuple<OrderResponse, List<String>> response_messages = book.ProcessOrder(order);
+            allocated += THREAD_BEAN.getCurrentThreadAllocatedBytes() - before;
+
+            if (response_messages.GetX().GetOrderID() != order.GetID()) { throw new IllegalStateException("Market order " + order.GetID() + " rejected"); }
+            for (String message : response_messages.GetY()) { allocated -= TextBytes(message); }
+        }
+
+        return (double) allocated / orderCount;
+    }
+
+    /**
+     * Gets the bytes of the array holding the text of a string of Latin-1 characters: its header and the characters,
+     * aligned on 8 bytes.
+     */
+    private static long TextBytes(String text) { return (16 + text.length() + 7) & ~7L; }
+}
@@ -0,0 +1,138 @@
+import Messages.*;
+import Networking.*;
+import Orders.Method;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Standalone entry point that compares the two wire protocols (see WireProtocol) on the messages of the order flow,
+ * without any networking: for each message it reports the bytes sent on the connection, its length included, and the
+ * nanoseconds taken to encode and to decode it, as done by a connection. It also checks that every message decoded
+ * is encoded back to the same bytes.
+ *
+ * Usage: ProtocolBenchmark [iterations] [rounds]
+ *   iterations  number of encodings and decodings measured per message and protocol (200000 by default)
+ *   rounds      number of measures of all the messages (3 by default, the first ones warm up the JIT)
+ */
+public class ProtocolBenchmark
+{
+    // a message of the order flow, sent by the client or by the server
+    private record Sample(String name, Object message) { }
+
+    // the result of the last decoding, so that the JIT can't drop the decodings
+    private static volatile Object _sink;
+
+    // the reused buffers of the JSON messages, as in a connection
+    private static final JsonFrameWriter JSON_OUTPUT = new JsonFrameWriter(Connection.MAX_MESSAGE_SIZE);
+    private static final JsonFrameReader JSON_INPUT = new JsonFrameReader();
+
+    public static void main(String[] args) throws IOException, ParseException
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        List<Request> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) { batch.add(new LimitOrderRequest(i % 2 == 0 ? Method.BID : Method.ASK, 10 + i, 64_000 + i, null)); }
+
+        List<OrderResponse> batchResponses = new ArrayList<>();
+        for (int i = 0; i < 10; i++) { batchResponses.add(new OrderResponse(1_000_000 + i)); }
+
+        List<Sample> samples = List.of(
+                new Sample("Limit order", new LimitOrderRequest(Method.BID, 10, 64_000, null)),
+                new Sample("Limit order BTC", new LimitOrderRequest(Method.ASK, 10, 64_000, "BTC")),
+                new Sample("Market order", new MarketOrderRequest(Method.BID, 5, null)),
+                new Sample("Stop order", new StopOrderRequest(Method.ASK, 5, 63_500, null)),
+                new Sample("Cancel order", new CancelOrderRequest(1_000_000)),
+                new Sample("Batch of 10", new InsertOrdersRequest(batch)),
+                new Sample("Order response", new OrderResponse(1_000_000)),
+                new Sample("Batch response", new InsertOrdersResponse(batchResponses)),
+                new Sample("Cancel response", CancelOrderRequest.OK));
+
+        for (int round = 1; round <= rounds; round++)
+        {
+            System.out.printf("\nROUND %d/%d (%d iterations)\n", round, rounds, iterations);
+            System.out.printf("%-16s%-10s%8s%12s%12s\n", "Message", "Protocol", "Bytes", "Encode ns", "Decode ns");
+
+            for (Sample sample : samples)
+            {
+                for (WireProtocol protocol : WireProtocol.values())
+                {
+                    byte[] frame = Encode(sample.message(), protocol);
+
+                    long start = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) { _sink = Encode(sample.message(), protocol); }
+                    long encodeNanos = System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) { _sink = Decode(frame, protocol, sample.message() instanceof Request); }
+                    long decodeNanos = System.nanoTime() - start;
+
+                    System.out.printf("%-16s%-10s%8d%12.0f%12.0f\n", protocol == WireProtocol.JSON ? sample.name() : "", protocol.ToString(),
+                            frame.length, (double) encodeNanos / iterations, (double) decodeNanos / iterations);
+                }
+            }
+        }
+
+        // every message must come back from its frame unchanged
+        int mismatches = 0;
+        for (Sample sample : samples)
+        {
+            for (WireProtocol protocol : WireProtocol.values())
+            {
+                byte[] frame = Encode(sample.message(), protocol);
+                if (Arrays.equals(frame, Encode(Decode(frame, protocol, sample.message() instanceof Request), protocol))) { continue; }
+
+                System.out.printf("[WARNING] %s doesn't round-trip in %s\n", sample.name(), protocol.ToString());
+                mismatches++;
+            }
+        }
+
+        System.out.println();
+        if (mismatches == 0) { System.out.printf("%-16sall %d messages round-trip in both protocols\n", "Verification", samples.size()); }
+        else { System.out.printf("%-16s%d messages don't round-trip\n", "Verification", mismatches); }
+    }
+
+    /**
+     * Encodes a message as sent by a connection, preceded by its length.
+     */
+    private static byte[] Encode(Object message, WireProtocol protocol) throws IOException
+    {
+        if (protocol == WireProtocol.JSON)
+        {
+            JSON_OUTPUT.Begin();
+            if (message instanceof Request request) { request.ToJson(JSON_OUTPUT); }
+            else { ((Response) message).ToJson(JSON_OUTPUT); }
+
+            ByteBuffer frame = JSON_OUTPUT.End();
+            return Arrays.copyOf(frame.array(), frame.limit());
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.position(Integer.BYTES);
+        if (message instanceof Request request) { request.ToBinary(buffer); }
+        else { ((Response) message).ToBinary(buffer); }
+
+        buffer.putInt(0, buffer.position() - Integer.BYTES);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Decodes a message as received by a connection.
+     */
+    private static Object Decode(byte[] frame, WireProtocol protocol, boolean isRequest) throws IOException, ParseException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(frame, Integer.BYTES, frame.length - Integer.BYTES);
+        if (protocol == WireProtocol.JSON)
+        {
+            JSON_INPUT.Begin(buffer);
+            return isRequest ? Request.FromJson(JSON_INPUT) : Response.FromJson(JSON_INPUT);
+        }
+
+        return isRequest ? Request.FromBinary(buffer) : Response.FromBinary(buffer);
+    }
+}
@@ -0,0 +1,245 @@
+import Helpers.OrderFlowCapture;
+import Helpers.Tuple;
+import Messages.CancelOrderRequest;
+import Messages.OrderResponse;
+import Messages.SimpleResponse;
+import Orders.*;
+import Users.User;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Standalone entry point that replays an order flow captured by the server (see OrderFlowCapture) straight into
+ * empty order books, without any networking, settings or persistence. It reports the throughput and the latency
+ * percentiles of the commands, then checks that every command got the same outcome and produced the same trades as
+ * in the capture.
+ *
+ * Usage: Replay <capture file> [runs] [engine]
+ *   runs    number of replays of the whole capture, each one on new books (the first ones warm up the JIT)
+ *   engine  route the commands through a matching engine per book instead of calling the books directly
+ *
+ * The commands are replayed in arrival order: commands of different clients executed concurrently by the server may
+ * have been matched in a slightly different order, the mismatches they cause are reported as such.
+ */
+public class Replay
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.out.println("Usage: Replay <capture file> [runs] [engine]");
+            return;
+        }
+
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        boolean useEngine = args.length > 2 && args[2].equalsIgnoreCase("engine");
+
+        List<OrderFlowCapture.Record> records = OrderFlowCapture.Read(args[0]);
+        System.out.printf("[INFO] Loaded %d commands from %s\n", records.size(), args[0]);
+
+        for (int run = 1; run <= runs; run++)
+        {
+            System.out.printf("\nRUN %d/%d (%s)\n", run, runs, useEngine ? "matching engine" : "direct");
+            Run(records, useEngine);
+        }
+    }
+
+    /**
+     * Replays the capture once on new books, then prints the measures and the result of the verification.
+     */
+    private static void Run(List<OrderFlowCapture.Record> records, boolean useEngine)
+    {
+        // the books of the captured instruments and their engines
+        Map<String, OrderBook> books = new LinkedHashMap<>();
+        Map<String, MatchingEngine> engines = new HashMap<>();
+        for (OrderFlowCapture.Record record : records)
+        {
+            if (record.GetKind() != OrderFlowCapture.RECORD_ORDERS || books.containsKey(record.GetSymbol())) { continue; }
+
+            OrderBook book = new OrderBook(record.GetSymbol(), false, 0);
+            books.put(record.GetSymbol(), book);
+            if (useEngine) { engines.put(record.GetSymbol(), new MatchingEngine(book, 1024)); }
+        }
+
+        // create the users and the orders before measuring, the orders are consumed by the replay
+        Map<String, User> users = new HashMap<>();
+        List<List<Order>> orders = new ArrayList<>(records.size());
+        int orderCount = 0;
+        for (OrderFlowCapture.Record record : records)
+        {
+            User user = users.computeIfAbsent(record.GetUsername(), username -> new User(username, ""));
+
+            List<Order> recordOrders = new ArrayList<>(record.GetOrderCount());
+            if (record.GetKind() == OrderFlowCapture.RECORD_ORDERS)
+            {
+                for (int i = 0; i < record.GetOrderCount(); i++)
+                {
+                    recordOrders.add(CommandJournal.CreateOrder(record.GetType(i), record.GetOrderID(i), record.GetMethod(i), record.GetSize(i), record.GetPrice(i), user));
+                }
+                orderCount += record.GetOrderCount();
+            }
+
+            orders.add(recordOrders);
+        }
+
+        for (MatchingEngine engine : engines.values()) { engine.Start(); }
+        MatchingEngine.Completion completion = new MatchingEngine.Completion();
+
+        Object[] results = new Object[records.size()];
+        long[] latencies = new long[records.size()];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < records.size(); i++)
+        {
+            OrderFlowCapture.Record record = records.get(i);
+            User user = users.get(record.GetUsername());
+
+            long commandStart = System.nanoTime();
+            results[i] = switch (record.GetKind())
+            {
+                case OrderFlowCapture.RECORD_ORDERS -> ProcessOrders(books.get(record.GetSymbol()), engines.get(record.GetSymbol()), orders.get(i), completion);
+                case OrderFlowCapture.RECORD_CANCEL -> CancelOrder(books.values(), engines, record.GetOrderID(0), user, completion);
+                default -> CancelAllOrders(books.values(), engines, user, completion);
+            };
+            latencies[i] = System.nanoTime() - commandStart;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        for (MatchingEngine engine : engines.values()) { engine.Stop(); }
+
+        PrintMeasures(records.size(), orderCount, elapsed, latencies);
+        Verify(records, results);
+    }
+
+    /**
+     * Processes the orders of a captured request, one by one as the single-order requests or as a batch.
+     */
+    private static Tuple<List<OrderResponse>, List<String>> ProcessOrders(OrderBook book, MatchingEngine engine, List<Order> orders, MatchingEngine.Completion completion)
+    {
+        if (orders.size() > 1)
+        {
+            if (engine == null) { return book.ProcessOrders(orders); }
+            else { return engine.ProcessOrders(orders, completion); }
+        }
+
+        Order order = orders.getFirst();
+        Tuple<OrderResponse, List<String>> response_message = switch (order.GetType())
+        {
+            case MARKET -> engine == null ? book.ProcessOrder((MarketOrder) order) : engine.ProcessOrder((MarketOrder) order, completion);
+            case LIMIT -> engine == null ? book.ProcessOrder((LimitOrder) order) : engine.ProcessOrder((LimitOrder) order, completion);
+            case STOP -> engine == null ? book.ProcessOrder((StopOrder) order) : engine.ProcessOrder((StopOrder) order, completion);
+        };
+
+        return new Tuple<>(List.of(response_message.GetX()), response_message.GetY());
+    }
+
+    /**
+     * Cancels an order, looking it up in all the books as the server does.
+     *
+     * @return The response code of the cancellation.
+     */
+    private static Integer CancelOrder(Collection<OrderBook> books, Map<String, MatchingEngine> engines, long orderID, User user, MatchingEngine.Completion completion)
+    {
+        CancelOrderRequest request = new CancelOrderRequest(orderID);
+
+        for (OrderBook book : books)
+        {
+            if (!book.IsResting(orderID)) { continue; }
+
+            MatchingEngine engine = engines.get(book.GetSymbol());
+            SimpleResponse response = engine == null ? book.TryCancelOrder(request, user) : engine.TryCancelOrder(request, user, completion);
+            return response.GetResponse();
+        }
+
+        return CancelOrderRequest.ORDER_DOES_NOT_EXISTS.GetResponse();
+    }
+
+    /**
+     * Cancels all the orders of a user in all the books.
+     *
+     * @return The number of canceled orders.
+     */
+    private static Integer CancelAllOrders(Collection<OrderBook> books, Map<String, MatchingEngine> engines, User user, MatchingEngine.Completion completion)
+    {
+        int count = 0;
+        for (OrderBook book : books)
+        {
+            MatchingEngine engine = engines.get(book.GetSymbol());
+            count += engine == null ? book.CancelAllOrders(user) : engine.CancelAllOrders(user, completion);
+        }
+
+        return count;
+    }
+
+    /**
+     * Prints the throughput and the latency percentiles of the replay.
+     */
+    private static void PrintMeasures(int commandCount, int orderCount, long elapsed, long[] latencies)
+    {
+        Arrays.sort(latencies);
+
+        double seconds = elapsed / 1e9;
+        System.out.printf("%-16s%d commands, %d orders in %.3f s\n", "Replayed", commandCount, orderCount, seconds);
+        System.out.printf("%-16s%.0f commands/s, %.0f orders/s\n", "Throughput", commandCount / seconds, orderCount / seconds);
+
+        if (latencies.length == 0) { return; }
+        System.out.printf("%-16sp50 %d ns | p99 %d ns | p99.9 %d ns | max %d ns\n", "Latency",
+                Percentile(latencies, 0.50), Percentile(latencies, 0.99), Percentile(latencies, 0.999), latencies[latencies.length - 1]);
+    }
+
+    /**
+     * Gets a percentile of sorted values, with the nearest-rank method.
+     */
+    private static long Percentile(long[] sorted, double percentile)
+    {
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Checks that every command got the same outcome and produced the same trades as in the capture.
+     */
+    @SuppressWarnings("unchecked")
+    private static void Verify(List<OrderFlowCapture.Record> records, Object[] results)
+    {
+        final int MAX_REPORTED = 10;
+        int mismatches = 0;
+
+        for (int i = 0; i < records.size(); i++)
+        {
+            OrderFlowCapture.Record record = records.get(i);
+            String mismatch = null;
+
+            if (record.GetKind() == OrderFlowCapture.RECORD_ORDERS)
+            {
+                Tuple<List<OrderResponse>, List<String>> response_messages = (Tuple<List<OrderResponse>, List<String>>) results[i];
+
+                for (int j = 0; j < record.GetOrderCount() && mismatch == null; j++)
+                {
+                    long orderID = response_messages.GetX().get(j).GetOrderID();
+                    if (orderID != record.GetResponse(j)) { mismatch = String.format("order %d answered %d instead of %d", record.GetOrderID(j), orderID, record.GetResponse(j)); }
+                }
+
+                List<Order> trades = OrderFlowCapture.GetTrades(response_messages.GetY());
+                if (mismatch == null && (trades.size() != record.GetTradeCount() || OrderFlowCapture.HashTrades(trades) != record.GetTradeHash()))
+                {
+                    mismatch = String.format("%d trades instead of %d, or different sizes and prices", trades.size(), record.GetTradeCount());
+                }
+            }
+            else
+            {
+                int result = (Integer) results[i];
+                if (result != record.GetResult()) { mismatch = String.format("result %d instead of %d", result, record.GetResult()); }
+            }
+
+            if (mismatch == null) { continue; }
+
+            if (mismatches < MAX_REPORTED) { System.out.printf("[WARNING] Command %d of %s: %s\n", record.GetSequence(), record.GetUsername(), mismatch); }
+            mismatches++;
+        }
+
+        if (mismatches == 0) { System.out.printf("%-16sall %d commands match the capture\n", "Verification", records.size()); }
+        else { System.out.printf("%-16s%d of %d commands differ from the capture\n", "Verification", mismatches, records.size()); }
+    }
+}
@@ -0,0 +1,379 @@
+import Helpers.OrderFlowCapture;
+import Helpers.Tuple;
+import Messages.CancelOrderRequest;
+import Messages.OrderResponse;
+import Orders.*;
+import Users.User;
+import Users.UserCollection;
+import Users.UserNotRegisteredException;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Standalone entry point that hammers a single order book from many threads at once, as the client handlers do when
+ * no matching engine owns the book: random limit, market and stop orders of both sides, batches, cancels and cancel
+ * all, each thread trading for its own user. It reports the throughput, stops with a thread dump as soon as the
+ * threads deadlock or stop making progress, then checks that no size was created or lost.
+ * The book journals its commands to a temporary directory while the threads run (without forcing them to the storage
+ * device), as with JournalEnabled: the throughput includes the journal writes.
+ *
+ * Usage: StressTest [threads] [seconds] [engine]
+ *   threads  number of threads submitting commands (8 by default)
+ *   seconds  duration of the test (10 by default)
+ *   engine   route the commands through a matching engine instead of locking the book
+ *
+ * The final state of the book is checked once all the threads stopped. The journal is written under the locks of the
+ * book, in the order the commands took effect, so replaying it on a fresh book, one command at a time, must rebuild
+ * exactly the same levels on the four sides, traded volume and last trade price: any size created or lost by a race
+ * between the threads shows up as a difference. The notifications are checked as well: the traded volume is the total
+ * size consumed by the matched orders, no order consumes more than its size, the accepted market orders are filled
+ * entirely, and neither the canceled orders nor the consumed resting orders are still in the book. The exposure
+ * counters of the users, updated by all the threads without locks, must add up to the orders left in the book.
+ */
+public class StressTest
+{
+    // the time without any completed command after which the threads are considered stuck
+    private static final long STALL_MS = 5000;
+
+    // the prices of the orders are drawn around this price, so that both sides keep crossing
+    private static final long MID_PRICE = 1000;
+    private static final int PRICE_RANGE = 20;
+
+    // an order submitted by a thread
+    private record Submitted(Type type, Method method, long size) { }
+
+    public static void main(String[] args) throws InterruptedException, IOException, UserNotRegisteredException
+    {
+        int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        boolean useEngine = args.length > 2 && args[2].equalsIgnoreCase("engine");
+
+        // the journal is replayed at the end, the users of its orders must be registered
+        Path journalDirectory = Files.createTempDirectory("stress");
+        OrderBook book = new OrderBook("STRESS", false, 0);
+        book.Recover(new CommandJournal(journalDirectory.toString(), book.GetSymbol(), false));
+
+        MatchingEngine engine = useEngine ? new MatchingEngine(book, 1024) : null;
+        if (engine != null) { engine.Start(); }
+
+        System.out.printf("[INFO] %d threads for %d s (%s)\n", threadCount, seconds, useEngine ? "matching engine" : "locked book");
+
+        // the orders submitted and accepted by all the threads, the size consumed by each matched order and the
+        // resting orders consumed entirely
+        Map<Long, Submitted> orders = new ConcurrentHashMap<>();
+        Map<Long, Long> consumed = new ConcurrentHashMap<>();
+        Set<Long> closed = ConcurrentHashMap.newKeySet();
+
+        // the orders of each thread that may still rest in the book (neither canceled nor pulled by a cancel all)
+        List<Set<Long>> liveOrders = new ArrayList<>();
+
+        AtomicLong nextOrderID = new AtomicLong(1);
+        AtomicLong commands = new AtomicLong(0);
+        AtomicBoolean isStopRequested = new AtomicBoolean(false);
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+        List<User> users = new ArrayList<>();
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            UserCollection.TryRegister("stress" + i, "stress");
+            User user = UserCollection.FromName("stress" + i);
+            users.add(user);
+            Set<Long> live = new HashSet<>();
+            liveOrders.add(live);
+
+            long seed = i;
+            threads[i] = new Thread(() -> Run(book, engine, user, new Random(seed), nextOrderID, orders, consumed, closed, live, commands, isStopRequested, errors), "Stress-" + i);
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) { thread.start(); }
+
+        boolean isStuck = Watch(threads, commands, start + seconds * 1_000_000_000L, isStopRequested);
+        long elapsed = System.nanoTime() - start;
+
+        if (isStuck) { System.exit(1); }
+        for (Thread thread : threads) { thread.join(); }
+        if (engine != null) { engine.Stop(); }
+        book.CloseJournal();
+
+        double elapsedSeconds = elapsed / 1e9;
+        System.out.printf("%-16s%d commands, %d orders in %.3f s\n", "Executed", commands.get(), orders.size(), elapsedSeconds);
+        System.out.printf("%-16s%.0f commands/s\n", "Throughput", commands.get() / elapsedSeconds);
+        System.out.printf("%-16s%d\n", "Traded volume", book.GetTopOfBook().GetVolume());
+
+        Verify(book, journalDirectory, users, orders, consumed, closed, liveOrders, errors);
+
+        try (var files = Files.list(journalDirectory)) { for (Path file : files.toList()) { Files.delete(file); } }
+        Files.delete(journalDirectory);
+    }
+
+    /**
+     * The loop of a thread: submits random commands for its user until a stop is requested, recording the accepted
+     * orders, the cancellations and the fills it is notified of.
+     */
+    private static void Run(OrderBook book, MatchingEngine engine, User user, Random random, AtomicLong nextOrderID, Map<Long, Submitted> orders,
+                            Map<Long, Long> consumed, Set<Long> closed, Set<Long> live, AtomicLong commands, AtomicBoolean isStopRequested, List<String> errors)
+    {
+        MatchingEngine.Completion completion = new MatchingEngine.Completion();
+
+        // the orders recently placed by the thread, the cancels target one of the last ones
+        List<Long> recent = new ArrayList<>();
+
+        try
+        {
+            while (!isStopRequested.get())
+            {
+                int kind = random.nextInt(100);
+
+                if (kind < 20 && !recent.isEmpty())
+                {
+                    long orderID = recent.get(recent.size() - 1 - random.nextInt(Math.min(recent.size(), 200)));
+                    CancelOrderRequest request = new CancelOrderRequest(orderID);
+
+                    int response = (engine == null ? book.TryCancelOrder(request, user) : engine.TryCancelOrder(request, user, completion)).GetResponse();
+                    if (response == CancelOrderRequest.OK.GetResponse()) { live.remove(orderID); }
+                }
+                else if (kind < 21)
+                {
+                    if (engine == null) { book.CancelAllOrders(user); }
+                    else { engine.CancelAllOrders(user, completion); }
+
+                    live.clear();
+                    recent.clear();
+                }
+                else if (kind < 25)
+                {
+                    List<Order> batch = new ArrayList<>();
+                    for (int i = 2 + random.nextInt(4); i > 0; i--) { batch.add(CreateOrder(random, nextOrderID.getAndIncrement(), user)); }
+
+                    // the matching decreases the sizes of the orders, keep the submitted ones
+                    long[] sizes = new long[batch.size()];
+                    for (int i = 0; i < batch.size(); i++) { sizes[i] = batch.get(i).GetSize(); }
+
+                    Tuple<List<OrderResponse>, List<String>> response_messages = engine == null ? book.ProcessOrders(batch) : engine.ProcessOrders(batch, completion);
+                    for (int i = 0; i < batch.size(); i++) { Record(batch.get(i), sizes[i], response_messages.GetX().get(i), orders, live, recent); }
+                    RecordTrades(response_messages.GetY(), consumed, closed);
+                }
+                else
+                {
+                    Order order = CreateOrder(random, nextOrderID.getAndIncrement(), user);
+                    long size = order.GetSize();
+                    Tuple<OrderResponse, List<String>> response_message = switch (order.GetType())
+                    {
+                        case MARKET -> engine == null ? book.ProcessOrder((MarketOrder) order) : engine.ProcessOrder((MarketOrder) order, completion);
+                        case LIMIT -> engine == null ? book.ProcessOrder((LimitOrder) order) : engine.ProcessOrder((LimitOrder) order, completion);
+                        case STOP -> engine == null ? book.ProcessOrder((StopOrder) order) : engine.ProcessOrder((StopOrder) order, completion);
+                    };
+
+                    Record(order, size, response_message.GetX(), orders, live, recent);
+                    RecordTrades(response_message.GetY(), consumed, closed);
+                }
+
+                commands.incrementAndGet();
+            }
+        }
+        catch (RuntimeException e) { errors.add(String.format("%s stopped on %s", Thread.currentThread().getName(), e)); }
+    }
+
+    /**
+     * Creates a random order: mostly limit orders, some market and stop orders, of both sides around the mid price.
+     */
+    private static Order CreateOrder(Random random, long orderID, User user)
+    {
+        Method method = random.nextBoolean() ? Method.BID : Method.ASK;
+        long size = 1 + random.nextInt(10);
+        long price = MID_PRICE - PRICE_RANGE / 2 + random.nextInt(PRICE_RANGE + 1);
+
+        int type = random.nextInt(10);
+        if (type == 0) { return new MarketOrder(orderID, method, size, user); }
+        if (type == 1) { return new StopOrder(orderID, method, size, price, user); }
+        return new LimitOrder(orderID, method, size, price, user);
+    }
+
+    /**
+     * Records an order accepted by the book, with the size it was submitted with: the limit and stop orders may rest
+     * in the book.
+     */
+    private static void Record(Order order, long size, OrderResponse response, Map<Long, Submitted> orders, Set<Long> live, List<Long> recent)
+    {
+        if (response.GetOrderID() != order.GetID()) { return; }
+
+        orders.put(order.GetID(), new Submitted(order.GetType(), order.GetMethod(), size));
+
+        if (order.GetType() == Type.MARKET) { return; }
+        live.add(order.GetID());
+        recent.add(order.GetID());
+    }
+
+    /**
+     * Records the closed trades notified to a thread: each notification lists the resting orders consumed entirely,
+     * followed by the matched order with the total size it consumed.
+     */
+    private static void RecordTrades(List<String> messages, Map<Long, Long> consumed, Set<Long> closed)
+    {
+        for (String message : messages)
+        {
+            List<Order> trades = OrderFlowCapture.GetTrades(List.of(message));
+            for (int i = 0; i < trades.size() - 1; i++) { closed.add(trades.get(i).GetID()); }
+
+            Order matched = trades.get(trades.size() - 1);
+            consumed.put(matched.GetID(), matched.GetSize());
+        }
+    }
+
+    /**
+     * Checks the final state of the book once all the threads stopped, against the notifications and against a serial
+     * replay of its journal, then prints the result.
+     */
+    private static void Verify(OrderBook book, Path journalDirectory, List<User> users, Map<Long, Submitted> orders, Map<Long, Long> consumed, Set<Long> closed,
+                               List<Set<Long>> liveOrders, List<String> errors) throws IOException
+    {
+        Set<Long> live = new HashSet<>();
+        for (Set<Long> threadLive : liveOrders) { live.addAll(threadLive); }
+
+        long volume = 0;
+        for (Map.Entry<Long, Long> entry : consumed.entrySet())
+        {
+            Submitted order = orders.get(entry.getKey());
+            if (order == null) { errors.add(String.format("Order %d traded but was never accepted", entry.getKey())); continue; }
+
+            volume += entry.getValue();
+            if (entry.getValue() > order.size()) { errors.add(String.format("Order %d consumed %d out of %d", entry.getKey(), entry.getValue(), order.size())); }
+        }
+
+        TopOfBook top = book.GetTopOfBook();
+        if (top.GetVolume() != volume) { errors.add(String.format("The traded volume is %d but the matched orders consumed %d", top.GetVolume(), volume)); }
+
+        for (Map.Entry<Long, Submitted> entry : orders.entrySet())
+        {
+            long orderID = entry.getKey();
+            boolean isResting = book.IsResting(orderID);
+
+            if (entry.getValue().type() == Type.MARKET)
+            {
+                long size = consumed.getOrDefault(orderID, 0L);
+                if (size != entry.getValue().size()) { errors.add(String.format("Market order %d was accepted but consumed %d out of %d", orderID, size, entry.getValue().size())); }
+            }
+            else if (isResting && !live.contains(orderID)) { errors.add(String.format("Order %d is still resting after its cancellation", orderID)); }
+            else if (isResting && closed.contains(orderID)) { errors.add(String.format("Order %d is still resting after being consumed", orderID)); }
+        }
+
+        // the exposure counters of the users, updated concurrently, add up to the orders left in the book
+        long openOrders = 0;
+        long openNotional = 0;
+        for (User user : users)
+        {
+            openOrders += user.GetExposure().GetOpenOrders();
+            openNotional += user.GetExposure().GetOpenNotional();
+        }
+
+        long restingOrders = 0;
+        long restingNotional = 0;
+        for (Type type : new Type[] { Type.LIMIT, Type.STOP })
+        {
+            for (Method method : new Method[] { Method.ASK, Method.BID })
+            {
+                DepthView.Side side = book.GetDepthView().GetSide(type, method);
+                for (int depth = 0; depth < side.GetLevelCount(); depth++)
+                {
+                    restingOrders += side.GetOrderCount(depth);
+                    restingNotional += side.GetPrice(depth) * side.GetSize(depth);
+                }
+            }
+        }
+
+        if (openOrders != restingOrders || openNotional != restingNotional)
+        {
+            errors.add(String.format("The users are exposed to %d orders for %d, the book holds %d orders for %d", openOrders, openNotional, restingOrders, restingNotional));
+        }
+
+        // the same commands executed one at a time (the replayed orders count in the exposure of the users again)
+        OrderBook replayed = new OrderBook(book.GetSymbol(), false, 0);
+        replayed.Recover(new CommandJournal(journalDirectory.toString(), book.GetSymbol(), false));
+        replayed.CloseJournal();
+
+        TopOfBook replayedTop = replayed.GetTopOfBook();
+        if (replayedTop.GetVolume() != top.GetVolume()) { errors.add(String.format("The replay traded %d instead of %d", replayedTop.GetVolume(), top.GetVolume())); }
+        if (replayedTop.GetLastTradePrice() != top.GetLastTradePrice()) { errors.add(String.format("The replay last traded at %d instead of %d", replayedTop.GetLastTradePrice(), top.GetLastTradePrice())); }
+
+        for (Type type : new Type[] { Type.LIMIT, Type.STOP })
+        {
+            for (Method method : new Method[] { Method.ASK, Method.BID })
+            {
+                DepthView.Side side = book.GetDepthView().GetSide(type, method);
+                DepthView.Side replayedSide = replayed.GetDepthView().GetSide(type, method);
+
+                if (side.GetLevelCount() != replayedSide.GetLevelCount())
+                {
+                    errors.add(String.format("The %s %s side has %d levels, %d after the replay", method, type, side.GetLevelCount(), replayedSide.GetLevelCount()));
+                    continue;
+                }
+
+                for (int depth = 0; depth < side.GetLevelCount(); depth++)
+                {
+                    if (side.GetPrice(depth) == replayedSide.GetPrice(depth) && side.GetSize(depth) == replayedSide.GetSize(depth) && side.GetOrderCount(depth) == replayedSide.GetOrderCount(depth)) { continue; }
+
+                    errors.add(String.format("The %s %s level %d holds %d in %d orders at %d, %d in %d orders at %d after the replay", method, type, depth,
+                                             side.GetSize(depth), side.GetOrderCount(depth), side.GetPrice(depth),
+                                             replayedSide.GetSize(depth), replayedSide.GetOrderCount(depth), replayedSide.GetPrice(depth)));
+                }
+            }
+        }
+
+        for (String error : errors.subList(0, Math.min(errors.size(), 10))) { System.out.printf("[WARNING] %s\n", error); }
+
+        if (errors.isEmpty()) { System.out.printf("%-16sno deadlock, sizes conserved over %d orders\n", "Verification", orders.size()); }
+        else { System.out.printf("%-16s%d violations\n", "Verification", errors.size()); }
+    }
+
+    /**
+     * Watches the threads until the end of the test: reports a deadlock or a stall with the stack of the threads.
+     *
+     * @return True if the threads are stuck.
+     */
+    private static boolean Watch(Thread[] threads, AtomicLong commands, long end, AtomicBoolean isStopRequested) throws InterruptedException
+    {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long lastCount = -1;
+        long lastProgress = System.currentTimeMillis();
+
+        while (System.nanoTime() < end)
+        {
+            Thread.sleep(100);
+
+            long[] deadlocked = threadBean.findDeadlockedThreads();
+            if (deadlocked != null)
+            {
+                System.out.printf("[ERROR] %d threads are deadlocked\n", deadlocked.length);
+                for (ThreadInfo info : threadBean.getThreadInfo(deadlocked, true, true)) { System.out.print(info); }
+                return true;
+            }
+
+            long count = commands.get();
+            if (count != lastCount) { lastCount = count; lastProgress = System.currentTimeMillis(); }
+            else if (System.currentTimeMillis() - lastProgress > STALL_MS)
+            {
+                System.out.printf("[ERROR] No command completed for %d ms\n", STALL_MS);
+                for (Thread thread : threads)
+                {
+                    System.out.printf("%s %s\n", thread.getName(), thread.getState());
+                    for (StackTraceElement element : thread.getStackTrace()) { System.out.printf("    at %s\n", element); }
+                }
+                return true;
+            }
+        }
+
+        isStopRequested.set(true);
+        return false;
+    }
+}
@@ -0,0 +1,187 @@
+import Messages.*;
+import Networking.Connection;
+import Networking.Response;
+import Networking.WireProtocol;
+import Orders.Method;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Standalone entry point that measures how a running server copes with many connections: it opens idle connections
+ * that never send anything, then runs active clients, each one on its own virtual thread, that log in and send limit
+ * orders and their cancellations back to back. It reports the connections the server accepted, the throughput and
+ * the latency percentiles of the requests, measured by the clients.
+ *
+ * Usage: TransportBenchmark [host] [port] [idle] [active] [seconds] [protocol]
+ *   host      address of the server (127.0.0.1 by default)
+ *   port      TCP port of the server (8888 by default)
+ *   idle      number of idle connections (10000 by default)
+ *   active    number of active clients (1000 by default)
+ *   seconds   duration of the measure (10 by default)
+ *   protocol  protocol of the active clients, json or binary (json by default)
+ *
+ * The server transport is chosen by its settings (a thread per client polling its socket, virtual threads or event
+ * loops), the same load is run against each one. The clients register their users on the first run: the server keeps
+ * them, the following runs log in with the same users.
+ */
+public class TransportBenchmark
+{
+    // the limit orders rest far from each other, so that no trade is notified, and are canceled right away
+    private static final long BID_PRICE = 1;
+    private static final long ASK_PRICE = 1_000_000;
+
+    // an active client not connected or not answered within this time fails
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int RESPONSE_TIMEOUT_MS = 5000;
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8888;
+        int idleCount = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int activeCount = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        WireProtocol protocol = args.length > 5 ? WireProtocol.FromString(args[5]) : WireProtocol.JSON;
+        if (protocol == null)
+        {
+            System.out.printf("[ERROR] Unknown protocol %s, expected json or binary\n", args[5]);
+            return;
+        }
+
+        // the idle connections stay open until the end of the measure
+        List<Socket> idleSockets = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < idleCount; i++)
+        {
+            try
+            {
+                Socket socket = new Socket();
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+                idleSockets.add(socket);
+            }
+            catch (IOException e)
+            {
+                System.out.printf("[WARNING] Idle connection %d failed: %s\n", i, e.getMessage());
+                break;
+            }
+        }
+        System.out.printf("%-16s%d connections in %.3f s\n", "Idle", idleSockets.size(), (System.nanoTime() - start) / 1e9);
+
+        // the latencies of the requests of each active client, and the number of clients that couldn't log in
+        List<long[]> latencies = Collections.synchronizedList(new ArrayList<>());
+        int[] failures = new int[1];
+
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (int i = 0; i < activeCount; i++)
+            {
+                String username = "bench" + i;
+                executor.execute(() ->
+                {
+                    try { latencies.add(RunClient(host, port, protocol, username, end)); }
+                    catch (IOException e)
+                    {
+                        synchronized (failures) { if (failures[0]++ == 0) { System.out.printf("[WARNING] Active client failed: %s\n", e.getMessage()); } }
+                    }
+                });
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        for (Socket socket : idleSockets)
+        {
+            try { socket.close(); }
+            catch (IOException ignored) { }
+        }
+
+        int requestCount = 0;
+        for (long[] clientLatencies : latencies) { requestCount += clientLatencies.length; }
+
+        long[] sorted = new long[requestCount];
+        int offset = 0;
+        for (long[] clientLatencies : latencies)
+        {
+            System.arraycopy(clientLatencies, 0, sorted, offset, clientLatencies.length);
+            offset += clientLatencies.length;
+        }
+        Arrays.sort(sorted);
+
+        System.out.printf("%-16s%d clients, %d failed\n", "Active", latencies.size(), failures[0]);
+        System.out.printf("%-16s%d requests in %.3f s, %.0f requests/s\n", "Throughput", requestCount, elapsedSeconds, requestCount / elapsedSeconds);
+        if (requestCount == 0) { return; }
+
+        System.out.printf("%-16sp50 %d us | p99 %d us | p99.9 %d us | max %d us\n", "Latency",
+                Percentile(sorted, 0.50) / 1000, Percentile(sorted, 0.99) / 1000, Percentile(sorted, 0.999) / 1000, sorted[sorted.length - 1] / 1000);
+    }
+
+    /**
+     * Runs an active client until the end of the measure: selects its protocol, registers its user (if new) and logs
+     * in, then sends limit orders and cancels them, one request at a time.
+     *
+     * @return The latencies of the requests in nanoseconds, the login excluded.
+     */
+    private static long[] RunClient(String host, int port, WireProtocol protocol, String username, long end) throws IOException
+    {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+        socket.setSoTimeout(RESPONSE_TIMEOUT_MS);
+        Connection connection = new Connection(socket, null, host, 0);
+
+        try
+        {
+            if (protocol != WireProtocol.JSON && !connection.TrySelectProtocol(protocol)) { throw new IOException("The server doesn't support the " + protocol.ToString() + " protocol"); }
+
+            connection.Send(new RegisterRequest(username, username));
+            connection.ReceiveResponse();
+
+            connection.Send(new LoginRequest(username, username));
+            Response login = connection.ReceiveResponse();
+            if (!(login instanceof SimpleResponse response) || response.GetResponse() != LoginRequest.OK.GetResponse()) { throw new IOException(username + " can't log in"); }
+
+            long[] latencies = new long[1024];
+            int count = 0;
+            Random random = new Random(username.hashCode());
+
+            while (System.nanoTime() < end)
+            {
+                boolean isBid = random.nextBoolean();
+                long sent = System.nanoTime();
+                connection.Send(new LimitOrderRequest(isBid ? Method.BID : Method.ASK, 1 + random.nextInt(10), isBid ? BID_PRICE : ASK_PRICE, null));
+                Response order = connection.ReceiveResponse();
+                long received = System.nanoTime();
+
+                if (count + 2 > latencies.length) { latencies = Arrays.copyOf(latencies, latencies.length * 2); }
+                latencies[count++] = received - sent;
+
+                if (!(order instanceof OrderResponse orderResponse) || orderResponse.GetOrderID() < 0) { continue; }
+
+                sent = System.nanoTime();
+                connection.Send(new CancelOrderRequest(orderResponse.GetOrderID()));
+                connection.ReceiveResponse();
+                latencies[count++] = System.nanoTime() - sent;
+            }
+
+            connection.Send(new LogoutRequest());
+            connection.ReceiveResponse();
+
+            return Arrays.copyOf(latencies, count);
+        }
+        finally { socket.close(); }
+    }
+
+    /**
+     * Gets a percentile of sorted values, with the nearest-rank method.
+     */
+    private static long Percentile(long[] sorted, double percentile)
+    {
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -6,6 +6,8 @@ import com.google.gson.stream.JsonReader;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
@@ -17,7 +19,7 @@ import java.util.TimeZone;
 
 /**
  * This class provides utility functions for common tasks such as connecting to servers,
- * reading data from JSON, and manipulating dates and times.
+ * reading data from JSON and binary messages, and manipulating dates and times.
  */
 public class Utilities
 {
@@ -120,6 +122,40 @@ public class Utilities
         return reader.nextLong();
     }
 
+    /**
+     * Writes a string to a message of the binary protocol: its length in bytes (-1 for null) followed by its UTF-8 bytes.
+     *
+     * @param buffer The buffer of the message.
+     * @param text The string to write, or null.
+     * @throws java.nio.BufferOverflowException If the buffer is too small.
+     */
+    public static void WriteString(ByteBuffer buffer, String text)
+    {
+        if (text == null) { buffer.putInt(-1); return; }
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads a string from a message of the binary protocol, written by WriteString.
+     *
+     * @param buffer The buffer of the message, positioned at the string.
+     * @return The string, or null.
+     * @throws IOException If the length of the string is invalid.
+     */
+    public static String ReadString(ByteBuffer buffer) throws IOException
+    {
+        int length = buffer.getInt();
+        if (length == -1) { return null; }
+        if (length < 0 || length > buffer.remaining()) { throw new IOException("Invalid string length in binary message (got " + length + ")"); }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
     /**
      * Converts a timestamp in milliseconds to the year component.
      *
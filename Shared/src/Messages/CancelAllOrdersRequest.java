@@ -0,0 +1,51 @@
+package Messages;
+
+import Networking.OperationType;
+import Networking.Request;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class represents a request to cancel all the orders of the logged-in user that are still resting in the book.
+ * It extends the `Request` class and, like the logout request, doesn't carry any specific data.
+ */
+public class CancelAllOrdersRequest extends Request
+{
+    // simple responses for the result scenarios of the cancel all orders operation
+    public static final SimpleResponse OK = new SimpleResponse(100, "Ok");
+    public static final SimpleResponse USER_NOT_LOGGED = new SimpleResponse(101, "User not logged in");
+
+    /**
+     * Constructor for a CancelAllOrdersRequest. It calls the parent constructor with the operation type `CANCEL_ALL`.
+     */
+    public CancelAllOrdersRequest() { super(OperationType.CANCEL_ALL); }
+
+    /**
+     * Serializes the content of this CancelAllOrdersRequest to a JSON writer.
+     * The request doesn't have any content, so this method doesn't write anything.
+     *
+     * @param jsonWriter The JSON writer used to serialize the request content.
+     * @throws IOException If an I/O error occurs during the serialization process.
+     */
+    protected void SerializeContent(JsonWriter jsonWriter) throws IOException { }
+
+    /**
+     * Deserializes a CancelAllOrdersRequest from a JSON reader.
+     *
+     * @param jsonReader The JSON reader to read the request content from.
+     * @return A new CancelAllOrdersRequest instance.
+     * @throws IOException If an I/O error occurs during the deserialization process.
+     */
+    public static CancelAllOrdersRequest DeserializeContent(JsonReader jsonReader) throws IOException { return new CancelAllOrdersRequest(); }
+
+    /**
+     * Encodes the content of this CancelAllOrdersRequest in the binary protocol.
+     * The request doesn't have any content, so this method doesn't write anything.
+     *
+     * @param buffer The buffer used to encode the request content.
+     */
+    protected void EncodeContent(ByteBuffer buffer) { }
+}
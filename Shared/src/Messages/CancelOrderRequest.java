@@ -8,6 +8,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * This class represents a request to cancel an order. It extends the `Request` class and
@@ -74,4 +75,19 @@ public class CancelOrderRequest extends Request
         long orderID = Utilities.ReadLong(jsonReader, "orderID");
         return new CancelOrderRequest(orderID);
     }
+
+    /**
+     * Encodes the content of this CancelOrderRequest in the binary protocol: the order ID (8 bytes).
+     *
+     * @param buffer The buffer used to encode the request content.
+     */
+    protected void EncodeContent(ByteBuffer buffer) { buffer.putLong(_orderID); }
+
+    /**
+     * Decodes a CancelOrderRequest from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the request content from.
+     * @return A new CancelOrderRequest instance with the decoded order ID.
+     */
+    public static CancelOrderRequest DecodeContent(ByteBuffer buffer) { return new CancelOrderRequest(buffer.getLong()); }
 }
@@ -1,108 +1,95 @@
 
 package Messages;
 
-import Helpers.Tuple;
 import Helpers.Utilities;
 import Orders.Method;
 import Orders.Order;
 import Orders.Type;
-import com.google.gson.FormattingStyle;
 import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * This class is responsible for creating and serializing a closed trades notification,
  * as well as deserializing it back into a list of orders. The notification is in JSON format.
+ * The JSON text is appended by hand to a reusable builder, so that the server can build a notification for each
+ * matched order without allocating any object per trade.
  */
 public class ClosedTradesNotification
 {
-    private final StringWriter _stringWriter;
-    private final JsonWriter _jsonWriter;
+    private final StringBuilder _builder;
+    private int _tradeCount;
 
     /**
-     * Constructor that initializes the JSON writer and begins the structure of the notification.
+     * Constructor that initializes the builder and begins the structure of the notification.
      */
     public ClosedTradesNotification()
     {
-        _stringWriter = new StringWriter();
-        _jsonWriter = new JsonWriter(_stringWriter);
-
-        try
-        {
-            _jsonWriter.setFormattingStyle(FormattingStyle.PRETTY);
-            _jsonWriter.beginObject();
+        _builder = new StringBuilder();
+        Reset();
+    }
 
-            _jsonWriter.name("notification").value("closedTrades");
+    /**
+     * Discards the current content and begins the structure of a new notification.
+     */
+    public final void Reset()
+    {
+        _builder.setLength(0);
+        _tradeCount = 0;
 
-            _jsonWriter.name("trades");
-            _jsonWriter.beginArray();
-        }
-        catch (IOException e) { throw new RuntimeException(e); }
+        _builder.append("{\"notification\":\"closedTrades\",\"trades\":[");
     }
 
     /**
      * Adds a new order to the notification with its associated size and price.
      *
      * @param order The order to add to the notification.
-     * @param size_price A tuple containing the size and price of the order.
+     * @param size The size of the trade.
+     * @param price The price of the trade.
      */
-    public void Add(Order order, Tuple<Long, Long> size_price)
+    public void Add(Order order, long size, long price)
     {
-        try
-        {
-            _jsonWriter.beginObject();
-
-            _jsonWriter.name("orderID").value(order.GetID());
-            _jsonWriter.name("type").value(order.GetMethod().ToString());
-            _jsonWriter.name("orderType").value(order.GetType().ToString());
-            _jsonWriter.name("size").value(size_price.GetX());
-            _jsonWriter.name("price").value(size_price.GetY());
-            _jsonWriter.name("timestamp").value(order.GetTimestamp() / 1000);
-
-            _jsonWriter.endObject();
-        }
-        catch (IOException e) { System.out.println("[ERROR] Unable to create json notification"); }
-
+        Add(order.GetID(), order.GetMethod(), order.GetType(), size, price, order.GetTimestamp());
     }
 
     /**
-     * Terminates the notification JSON structure by closing the 'trades' array and the root object.
+     * Adds a new order, described by its fields, to the notification with its associated size and price.
+     *
+     * @param orderID The ID of the order.
+     * @param method The method of the order.
+     * @param type The type of the order.
+     * @param size The size of the trade.
+     * @param price The price of the trade.
+     * @param timestamp The creation timestamp of the order, in milliseconds.
      */
-    public void Terminate()
+    public void Add(long orderID, Method method, Type type, long size, long price, long timestamp)
     {
-        try
-        {
-            _jsonWriter.endArray();
-            _jsonWriter.endObject();
-        }
-        catch (IOException e) { throw new RuntimeException(e); }
+        if (_tradeCount > 0) { _builder.append(','); }
+        _tradeCount++;
+
+        _builder.append("{\"orderID\":").append(orderID);
+        _builder.append(",\"type\":\"").append(method.ToString()).append('"');
+        _builder.append(",\"orderType\":\"").append(type.ToString()).append('"');
+        _builder.append(",\"size\":").append(size);
+        _builder.append(",\"price\":").append(price);
+        _builder.append(",\"timestamp\":").append(timestamp / 1000);
+        _builder.append('}');
     }
 
     /**
-     * Converts the current notification object to its string representation (JSON format).
-     *
-     * @return The JSON string representation of the closed trades notification.
+     * Terminates the notification JSON structure by closing the 'trades' array and the root object.
      */
-    public String ToString() { return _stringWriter.toString(); }
+    public void Terminate() { _builder.append("]}"); }
 
     /**
-     * Closes the writers, releasing any resources.
+     * Converts the current notification object to its string representation (JSON format).
+     *
+     * @return The JSON string representation of the closed trades notification.
      */
-    public void Close()
-    {
-        try
-        {
-            _jsonWriter.close();
-            _stringWriter.close();
-        }
-        catch (IOException e) { }
-    }
+    public String ToString() { return _builder.toString(); }
 
     /**
      * Deserializes a JSON string into a list of Order objects.
@@ -0,0 +1,58 @@
+package Messages;
+
+import Orders.DepthView;
+import Orders.Method;
+import Orders.Type;
+
+/**
+ * This class is responsible for creating and serializing a depth snapshot notification of the market-data feed:
+ * the best price levels of both sides of a book with their aggregate sizes, and the sequence number of the last
+ * depth update already included in the snapshot. A consumer builds its replica of the book from a snapshot, then
+ * applies the updates with a greater sequence number.
+ */
+public class DepthSnapshotNotification
+{
+    private final StringBuilder _builder;
+
+    /**
+     * Constructor that builds the snapshot of a book from a view of its depth.
+     *
+     * @param symbol The symbol of the instrument of the book.
+     * @param view The depth view of the book, holding the sequence number of the last depth update it includes.
+     * @param maxLevels The maximum number of levels per side, so that the snapshot fits in a datagram.
+     */
+    public DepthSnapshotNotification(String symbol, DepthView view, int maxLevels)
+    {
+        _builder = new StringBuilder();
+
+        _builder.append("{\"notification\":\"depthSnapshot\",\"symbol\":\"").append(symbol).append('"');
+        _builder.append(",\"sequence\":").append(view.GetSequence());
+
+        _builder.append(",\"bids\":[");
+        AppendLevels(view.GetSide(Type.LIMIT, Method.BID), maxLevels);
+
+        _builder.append("],\"asks\":[");
+        AppendLevels(view.GetSide(Type.LIMIT, Method.ASK), maxLevels);
+
+        _builder.append("]}");
+    }
+
+    private void AppendLevels(DepthView.Side side, int maxLevels)
+    {
+        int count = Math.min(side.GetLevelCount(), maxLevels);
+        for (int depth = 0; depth < count; depth++)
+        {
+            if (depth > 0) { _builder.append(','); }
+            _builder.append("{\"price\":").append(side.GetPrice(depth));
+            _builder.append(",\"size\":").append(side.GetSize(depth));
+            _builder.append('}');
+        }
+    }
+
+    /**
+     * Converts the snapshot to its string representation (JSON format).
+     *
+     * @return The JSON string representation of the depth snapshot notification.
+     */
+    public String ToString() { return _builder.toString(); }
+}
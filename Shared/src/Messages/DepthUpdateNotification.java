@@ -0,0 +1,100 @@
+package Messages;
+
+import Orders.Method;
+
+/**
+ * This class is responsible for creating and serializing a depth update notification of the market-data feed: the
+ * price levels of one side of a book changed by an operation, each one with its new aggregate size.
+ * The notification carries the sequence number of the book feed, so a consumer applying the updates to its replica
+ * of the book can detect a lost datagram and resynchronize from the next snapshot.
+ * As for the closed trades notification, the JSON text is appended by hand to a reusable builder.
+ */
+public class DepthUpdateNotification
+{
+    /**
+     * Enum representing what happened to a price level.
+     */
+    public enum Action
+    {
+        ADD,        // A new level, with its size.
+        UPDATE,     // The new size of an existing level.
+        DELETE;     // A level removed from the book.
+
+        /**
+         * Converts the enum value to its string representation.
+         *
+         * @return A string representation of the action (e.g., "add", "update", "delete").
+         */
+        public String ToString()
+        {
+            return switch (this)
+            {
+                case ADD -> "add";
+                case UPDATE -> "update";
+                case DELETE -> "delete";
+            };
+        }
+    }
+
+    private final StringBuilder _builder;
+    private int _levelCount;
+
+    /**
+     * Constructor that initializes an empty builder, Reset must be called before adding any level.
+     */
+    public DepthUpdateNotification()
+    {
+        _builder = new StringBuilder();
+        _levelCount = 0;
+    }
+
+    public boolean IsEmpty() { return _levelCount == 0; }
+
+    /**
+     * Discards the current content and begins the structure of a new notification.
+     *
+     * @param symbol The symbol of the instrument of the book.
+     * @param method The side of the book the levels belong to.
+     */
+    public void Reset(String symbol, Method method)
+    {
+        _builder.setLength(0);
+        _levelCount = 0;
+
+        _builder.append("{\"notification\":\"depthUpdate\",\"symbol\":\"").append(symbol).append('"');
+        _builder.append(",\"type\":\"").append(method.ToString()).append('"');
+        _builder.append(",\"levels\":[");
+    }
+
+    /**
+     * Adds a changed level to the notification.
+     *
+     * @param action What happened to the level.
+     * @param price The price of the level.
+     * @param size The new aggregate size of the level (0 if it has been removed).
+     */
+    public void Add(Action action, long price, long size)
+    {
+        if (_levelCount > 0) { _builder.append(','); }
+        _levelCount++;
+
+        _builder.append("{\"action\":\"").append(action.ToString()).append('"');
+        _builder.append(",\"price\":").append(price);
+        _builder.append(",\"size\":").append(size);
+        _builder.append('}');
+    }
+
+    /**
+     * Terminates the notification JSON structure by closing the 'levels' array and adding the sequence number.
+     *
+     * @param sequence The sequence number of the notification in the feed of the book.
+     */
+    public void Terminate(long sequence) { _builder.append("],\"sequence\":").append(sequence).append('}'); }
+
+    /**
+     * Converts the current notification object to its string representation (JSON format).
+     *
+     * @return The JSON string representation of the depth update notification.
+     */
+    public String ToString() { return _builder.toString(); }
+}
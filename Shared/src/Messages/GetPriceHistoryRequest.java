@@ -8,6 +8,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 /**
@@ -27,15 +28,20 @@ public class GetPriceHistoryRequest extends Request
     // the timestamp representing the date for which price history is requested
     private final long _timestamp;
 
+    // the symbol of the instrument whose prices are requested (null for the default instrument)
+    private final String _symbol;
+
     /**
      * Constructor that initializes the request with a timestamp.
      *
      * @param timestamp The timestamp (in milliseconds) representing the desired month and year.
+     * @param symbol The symbol of the instrument, null for the default instrument.
      */
-    public GetPriceHistoryRequest(long timestamp)
+    public GetPriceHistoryRequest(long timestamp, String symbol)
     {
         super(OperationType.GET_PRICE_HISTORY);
         _timestamp = timestamp;
+        _symbol = symbol;
     }
 
     /**
@@ -59,6 +65,13 @@ public class GetPriceHistoryRequest extends Request
      */
     public int GetYear() { return Utilities.GetYearFromMilliseconds(_timestamp); }
 
+    /**
+     * Getter for the symbol of the instrument whose prices are requested.
+     *
+     * @return The symbol of the instrument, or null for the default instrument.
+     */
+    public String GetSymbol() { return _symbol; }
+
     /**
      * Serializes the content of this GetPriceHistoryRequest to a JSON writer.
      * The timestamp is converted to a string in the defined date format (MMyyyy).
@@ -70,6 +83,7 @@ public class GetPriceHistoryRequest extends Request
     {
         String formattedTimestamp = Utilities.MillisecondsToString(_timestamp, DATE_FORMAT);
         jsonWriter.name("month").value(formattedTimestamp);
+        if (_symbol != null) { jsonWriter.name("symbol").value(_symbol); }
     }
 
     /**
@@ -86,7 +100,36 @@ public class GetPriceHistoryRequest extends Request
         String formattedTimestamp = Utilities.ReadString(jsonReader, "month");
         long timestamp = Utilities.MillisecondsFromString(formattedTimestamp, DATE_FORMAT);
 
-        return new GetPriceHistoryRequest(timestamp);
+        // the symbol is optional, the prices of the default instrument are returned if it is missing
+        String symbol = jsonReader.hasNext() ? Utilities.ReadString(jsonReader, "symbol") : null;
+
+        return new GetPriceHistoryRequest(timestamp, symbol);
+    }
+
+    /**
+     * Encodes the content of this GetPriceHistoryRequest in the binary protocol: the timestamp (8 bytes), followed by
+     * the symbol.
+     *
+     * @param buffer The buffer used to encode the request content.
+     */
+    protected void EncodeContent(ByteBuffer buffer)
+    {
+        buffer.putLong(_timestamp);
+        Utilities.WriteString(buffer, _symbol);
     }
 
+    /**
+     * Decodes a GetPriceHistoryRequest from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the request content from.
+     * @return A new GetPriceHistoryRequest instance with the decoded content.
+     * @throws IOException If the symbol of the message is invalid.
+     */
+    public static GetPriceHistoryRequest DecodeContent(ByteBuffer buffer) throws IOException
+    {
+        long timestamp = buffer.getLong();
+        String symbol = Utilities.ReadString(buffer);
+
+        return new GetPriceHistoryRequest(timestamp, symbol);
+    }
 }
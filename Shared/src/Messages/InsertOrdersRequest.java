@@ -0,0 +1,159 @@
+package Messages;
+
+import Helpers.Utilities;
+import Networking.OperationType;
+import Networking.Request;
+import Orders.Type;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * This class represents a request to insert a batch of market, limit and stop orders at once.
+ * Each order of the batch is serialized as the content of its single-order request, preceded by its order type,
+ * and the server answers with one order ID per order, in the same order (-1 for the rejected ones).
+ */
+public class InsertOrdersRequest extends Request
+{
+    // the orders of the batch, each one is a MarketOrderRequest, a LimitOrderRequest or a StopOrderRequest
+    private final List<Request> _orders;
+
+    /**
+     * Constructor that initializes the request with the orders of the batch.
+     *
+     * @param orders The orders to insert, each one is a MarketOrderRequest, a LimitOrderRequest or a StopOrderRequest.
+     */
+    public InsertOrdersRequest(List<Request> orders)
+    {
+        super(OperationType.INSERT_ORDERS);
+        _orders = orders;
+    }
+
+    /**
+     * Getter for the orders of the batch.
+     *
+     * @return The orders to insert, in the order in which they must be processed.
+     */
+    public List<Request> GetOrders() { return _orders; }
+
+    /**
+     * Serializes the content of this InsertOrdersRequest to a JSON writer.
+     *
+     * @param jsonWriter The JSON writer used to serialize the request content.
+     * @throws IOException If an I/O error occurs during the writing process.
+     */
+    protected void SerializeContent(JsonWriter jsonWriter) throws IOException
+    {
+        jsonWriter.name("orders");
+        jsonWriter.beginArray();
+
+        for (Request order : _orders)
+        {
+            jsonWriter.beginObject();
+
+            switch (order)
+            {
+                case MarketOrderRequest request -> { jsonWriter.name("orderType").value(Type.MARKET.ToString()); request.SerializeContent(jsonWriter); }
+                case LimitOrderRequest request -> { jsonWriter.name("orderType").value(Type.LIMIT.ToString()); request.SerializeContent(jsonWriter); }
+                case StopOrderRequest request -> { jsonWriter.name("orderType").value(Type.STOP.ToString()); request.SerializeContent(jsonWriter); }
+                default -> throw new IOException("Unsupported order in batch (got " + order.GetOperation().ToString() + ")");
+            }
+
+            jsonWriter.endObject();
+        }
+
+        jsonWriter.endArray();
+    }
+
+    /**
+     * Deserializes an InsertOrdersRequest from a JSON reader.
+     *
+     * @param jsonReader The JSON reader to read the request content from.
+     * @return A new InsertOrdersRequest instance with the deserialized content.
+     * @throws IOException If an I/O error occurs during reading the JSON content.
+     */
+    public static InsertOrdersRequest DeserializeContent(JsonReader jsonReader) throws IOException
+    {
+        List<Request> orders = new ArrayList<>();
+
+        String temp = jsonReader.nextName();
+        if (!temp.equals("orders")) { throw new IOException("Expected 'orders' name from JSON (got " + temp + ")"); }
+        jsonReader.beginArray();
+
+        while (jsonReader.hasNext())
+        {
+            jsonReader.beginObject();
+
+            Type type = Type.FromString(Utilities.ReadString(jsonReader, "orderType"));
+            if (type == null) { throw new IOException("Invalid order type in batch"); }
+
+            switch (type)
+            {
+                case MARKET -> orders.add(MarketOrderRequest.DeserializeContent(jsonReader));
+                case LIMIT -> orders.add(LimitOrderRequest.DeserializeContent(jsonReader));
+                case STOP -> orders.add(StopOrderRequest.DeserializeContent(jsonReader));
+            }
+
+            jsonReader.endObject();
+        }
+
+        jsonReader.endArray();
+
+        return new InsertOrdersRequest(orders);
+    }
+
+    /**
+     * Encodes the content of this InsertOrdersRequest in the binary protocol: the number of orders (4 bytes), followed
+     * by each order encoded as a request, with the code of its operation.
+     *
+     * @param buffer The buffer used to encode the request content.
+     * @throws IOException If the batch holds a request that is not an order.
+     */
+    protected void EncodeContent(ByteBuffer buffer) throws IOException
+    {
+        buffer.putInt(_orders.size());
+
+        for (Request order : _orders)
+        {
+            switch (order)
+            {
+                case MarketOrderRequest ignored -> order.ToBinary(buffer);
+                case LimitOrderRequest ignored -> order.ToBinary(buffer);
+                case StopOrderRequest ignored -> order.ToBinary(buffer);
+                default -> throw new IOException("Unsupported order in batch (got " + order.GetOperation().ToString() + ")");
+            }
+        }
+    }
+
+    /**
+     * Decodes an InsertOrdersRequest from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the request content from.
+     * @return A new InsertOrdersRequest instance with the decoded orders.
+     * @throws IOException If the number of orders is invalid or the batch holds a request that is not an order.
+     */
+    public static InsertOrdersRequest DecodeContent(ByteBuffer buffer) throws IOException
+    {
+        // each order takes at least its operation code, its method and its size
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / (2 + Long.BYTES)) { throw new IOException("Invalid number of orders in batch (got " + count + ")"); }
+
+        List<Request> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            Request order = Request.FromBinary(buffer);
+            switch (order.GetOperation())
+            {
+                case INSERT_MARKET_ORDER, INSERT_LIMIT_ORDER, INSERT_STOP_ORDER -> orders.add(order);
+                default -> throw new IOException("Unsupported order in batch (got " + order.GetOperation().ToString() + ")");
+            }
+        }
+
+        return new InsertOrdersRequest(orders);
+    }
+}
@@ -0,0 +1,113 @@
+package Messages;
+
+import Networking.Response;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents the response to a batch of orders. It extends the `Response` class and holds one order
+ * response per order of the batch, in the same order as the request: each one carries the ID of the order,
+ * or -1 if the order has been rejected or couldn't be executed.
+ */
+public class InsertOrdersResponse extends Response
+{
+    // the responses to the orders of the batch
+    private final List<OrderResponse> _orders;
+
+    /**
+     * Constructor to initialize an InsertOrdersResponse with the responses to the orders of the batch.
+     *
+     * @param orders The responses to the orders of the batch, in the same order as the request.
+     */
+    public InsertOrdersResponse(List<OrderResponse> orders) { _orders = orders; }
+
+    /**
+     * Getter for the responses to the orders of the batch.
+     *
+     * @return The responses, in the same order as the request.
+     */
+    public List<OrderResponse> GetOrders() { return _orders; }
+
+    /**
+     * Serializes the content of this InsertOrdersResponse to a JSON writer.
+     *
+     * @param jsonWriter The JSON writer to which the response content will be written.
+     * @throws IOException If an I/O error occurs during the serialization process.
+     */
+    protected void SerializeContent(JsonWriter jsonWriter) throws IOException
+    {
+        jsonWriter.name("orders");
+        jsonWriter.beginArray();
+
+        for (OrderResponse order : _orders)
+        {
+            jsonWriter.beginObject();
+            order.SerializeContent(jsonWriter);
+            jsonWriter.endObject();
+        }
+
+        jsonWriter.endArray();
+    }
+
+    /**
+     * Deserializes an InsertOrdersResponse from a JSON reader, the "orders" name has already been read.
+     *
+     * @param jsonReader The JSON reader from which the response content will be read.
+     * @return A new InsertOrdersResponse with the deserialized order responses.
+     * @throws IOException If an I/O error occurs during the deserialization process.
+     */
+    public static InsertOrdersResponse FromJson(JsonReader jsonReader) throws IOException
+    {
+        List<OrderResponse> orders = new ArrayList<>();
+
+        jsonReader.beginArray();
+        while (jsonReader.hasNext())
+        {
+            jsonReader.beginObject();
+
+            String temp = jsonReader.nextName();
+            if (!temp.equals("orderID")) { throw new IOException("Expected 'orderID' name from JSON (got " + temp + ")"); }
+            orders.add(OrderResponse.FromJson(jsonReader));
+
+            jsonReader.endObject();
+        }
+        jsonReader.endArray();
+
+        return new InsertOrdersResponse(orders);
+    }
+
+    /**
+     * Encodes the content of this InsertOrdersResponse in the binary protocol: the number of orders (4 bytes),
+     * followed by the order ID of each one (8 bytes each).
+     *
+     * @param buffer The buffer used to encode the response content.
+     */
+    protected void EncodeContent(ByteBuffer buffer)
+    {
+        buffer.putInt(_orders.size());
+        for (OrderResponse order : _orders) { buffer.putLong(order.GetOrderID()); }
+    }
+
+    /**
+     * Decodes an InsertOrdersResponse from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the response content from.
+     * @return A new InsertOrdersResponse instance with the decoded order IDs.
+     * @throws IOException If the number of orders is invalid.
+     */
+    public static InsertOrdersResponse FromBinary(ByteBuffer buffer) throws IOException
+    {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / Long.BYTES) { throw new IOException("Invalid number of orders in batch response (got " + count + ")"); }
+
+        List<OrderResponse> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) { orders.add(new OrderResponse(buffer.getLong())); }
+
+        return new InsertOrdersResponse(orders);
+    }
+}
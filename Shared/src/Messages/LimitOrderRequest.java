@@ -9,6 +9,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 
 /**
@@ -26,19 +27,24 @@ public class LimitOrderRequest extends Request
     // the price at which the limit order is placed
     private final long _limitPrice;
 
+    // the symbol of the instrument to trade (null for the default instrument)
+    private final String _symbol;
+
     /**
      * Constructor that initializes the limit order request with method, size, and limit price.
      *
      * @param method The method (buy or sell) for the order.
      * @param size The size (quantity) of the order.
      * @param limitPrice The price at which the order should be executed.
+     * @param symbol The symbol of the instrument to trade, null for the default instrument.
      */
-    public LimitOrderRequest(Method method, long size, long limitPrice)
+    public LimitOrderRequest(Method method, long size, long limitPrice, String symbol)
     {
         super(OperationType.INSERT_LIMIT_ORDER);
         _method = method;
         _size = size;
         _limitPrice = limitPrice;
+        _symbol = symbol;
     }
 
     /**
@@ -62,6 +68,13 @@ public class LimitOrderRequest extends Request
      */
     public long GetLimitPrice() { return _limitPrice; }
 
+    /**
+     * Getter for the symbol of the instrument to trade.
+     *
+     * @return The symbol of the instrument, or null for the default instrument.
+     */
+    public String GetSymbol() { return _symbol; }
+
     /**
      * Serializes the content of this LimitOrderRequest to a JSON writer.
      *
@@ -73,6 +86,7 @@ public class LimitOrderRequest extends Request
         jsonWriter.name("type").value(_method.ToString());
         jsonWriter.name("size").value(_size);
         jsonWriter.name("price").value(_limitPrice);
+        if (_symbol != null) { jsonWriter.name("symbol").value(_symbol); }
     }
 
     /**
@@ -88,6 +102,41 @@ public class LimitOrderRequest extends Request
         long size = Utilities.ReadLong(jsonReader, "size");
         long price = Utilities.ReadLong(jsonReader, "price");
 
-        return new LimitOrderRequest(method, size, price);
+        // the symbol is optional, the default instrument is traded if it is missing
+        String symbol = jsonReader.hasNext() ? Utilities.ReadString(jsonReader, "symbol") : null;
+
+        return new LimitOrderRequest(method, size, price, symbol);
+    }
+
+    /**
+     * Encodes the content of this LimitOrderRequest in the binary protocol, with a fixed layout: the method (1 byte),
+     * the size and the limit price (8 bytes each), followed by the symbol.
+     *
+     * @param buffer The buffer used to encode the request content.
+     */
+    protected void EncodeContent(ByteBuffer buffer)
+    {
+        buffer.put(_method.ToCode());
+        buffer.putLong(_size);
+        buffer.putLong(_limitPrice);
+        Utilities.WriteString(buffer, _symbol);
+    }
+
+    /**
+     * Decodes a LimitOrderRequest from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the request content from.
+     * @return A new LimitOrderRequest instance with the decoded content.
+     * @throws IOException If the method or the symbol of the message is invalid.
+     */
+    public static LimitOrderRequest DecodeContent(ByteBuffer buffer) throws IOException
+    {
+        Method method = Method.FromCode(buffer.get());
+        if (method == null) { throw new IOException("Invalid method in binary limit order"); }
+        long size = buffer.getLong();
+        long price = buffer.getLong();
+        String symbol = Utilities.ReadString(buffer);
+
+        return new LimitOrderRequest(method, size, price, symbol);
     }
 }
@@ -8,6 +8,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * This class represents a login request, containing the user's username and password.
@@ -85,4 +86,29 @@ public class LoginRequest extends Request
 
         return new LoginRequest(username, password);
     }
+
+    /**
+     * Encodes the content of this LoginRequest in the binary protocol: the username and the password.
+     *
+     * @param buffer The buffer used to encode the request content.
+     */
+    protected void EncodeContent(ByteBuffer buffer)
+    {
+        Utilities.WriteString(buffer, _username);
+        Utilities.WriteString(buffer, _password);
+    }
+
+    /**
+     * Decodes a LoginRequest from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the request content from.
+     * @return A new LoginRequest instance with the decoded content.
+     * @throws IOException If a string of the message is invalid.
+     */
+    public static LoginRequest DecodeContent(ByteBuffer buffer) throws IOException
+    {
+        String username = Utilities.ReadString(buffer);
+        String password = Utilities.ReadString(buffer);
+        return new LoginRequest(username, password);
+    }
 }
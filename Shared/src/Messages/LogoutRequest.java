@@ -7,6 +7,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * This class represents a request to log out a user. It extends the `Request` class
@@ -46,4 +47,12 @@ public class LogoutRequest extends Request
      * @throws IOException If an I/O error occurs during the deserialization process.
      */
     public static LogoutRequest DeserializeContent(JsonReader jsonReader) throws IOException { return new LogoutRequest(); }
+
+    /**
+     * Encodes the content of this LogoutRequest in the binary protocol.
+     * The request doesn't have any content, so this method doesn't write anything.
+     *
+     * @param buffer The buffer used to encode the request content.
+     */
+    protected void EncodeContent(ByteBuffer buffer) { }
 }
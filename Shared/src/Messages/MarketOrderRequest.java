@@ -9,6 +9,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * This class represents a request to place a market order. It extends the `Request` class
@@ -23,17 +24,22 @@ public class MarketOrderRequest extends Request
     // the size of the market order (number of units)
     private final long _size;
 
+    // the symbol of the instrument to trade (null for the default instrument)
+    private final String _symbol;
+
     /**
      * Constructor to initialize a MarketOrderRequest with the specified method and size.
      *
      * @param method The method of the order (buy or sell).
      * @param size The size of the market order.
+     * @param symbol The symbol of the instrument to trade, null for the default instrument.
      */
-    public MarketOrderRequest(Method method, long size)
+    public MarketOrderRequest(Method method, long size, String symbol)
     {
         super(OperationType.INSERT_MARKET_ORDER);
         _method = method;
         _size = size;
+        _symbol = symbol;
     }
 
     /**
@@ -50,6 +56,13 @@ public class MarketOrderRequest extends Request
      */
     public long GetSize() { return _size; }
 
+    /**
+     * Getter for the symbol of the instrument to trade.
+     *
+     * @return The symbol of the instrument, or null for the default instrument.
+     */
+    public String GetSymbol() { return _symbol; }
+
     /**
      * Serializes the content of this MarketOrderRequest to a JSON writer.
      * The method and size are written as name-value pairs in the JSON format.
@@ -61,6 +74,7 @@ public class MarketOrderRequest extends Request
     {
         jsonWriter.name("type").value(_method.ToString());
         jsonWriter.name("size").value(_size);
+        if (_symbol != null) { jsonWriter.name("symbol").value(_symbol); }
     }
 
     /**
@@ -76,6 +90,39 @@ public class MarketOrderRequest extends Request
         Method method = Method.FromString(Utilities.ReadString(jsonReader, "type"));
         long size = Utilities.ReadLong(jsonReader, "size");
 
-        return new MarketOrderRequest(method, size);
+        // the symbol is optional, the default instrument is traded if it is missing
+        String symbol = jsonReader.hasNext() ? Utilities.ReadString(jsonReader, "symbol") : null;
+
+        return new MarketOrderRequest(method, size, symbol);
+    }
+
+    /**
+     * Encodes the content of this MarketOrderRequest in the binary protocol, with a fixed layout: the method (1 byte)
+     * and the size (8 bytes), followed by the symbol.
+     *
+     * @param buffer The buffer used to encode the request content.
+     */
+    protected void EncodeContent(ByteBuffer buffer)
+    {
+        buffer.put(_method.ToCode());
+        buffer.putLong(_size);
+        Utilities.WriteString(buffer, _symbol);
+    }
+
+    /**
+     * Decodes a MarketOrderRequest from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the request content from.
+     * @return A new MarketOrderRequest instance with the decoded content.
+     * @throws IOException If the method or the symbol of the message is invalid.
+     */
+    public static MarketOrderRequest DecodeContent(ByteBuffer buffer) throws IOException
+    {
+        Method method = Method.FromCode(buffer.get());
+        if (method == null) { throw new IOException("Invalid method in binary market order"); }
+        long size = buffer.getLong();
+        String symbol = Utilities.ReadString(buffer);
+
+        return new MarketOrderRequest(method, size, symbol);
     }
 }
@@ -6,6 +6,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * This class represents a response for an order operation. It extends the `Response` class
@@ -62,4 +63,19 @@ public class OrderResponse extends Response
         long orderID = jsonReader.nextLong();
         return new OrderResponse(orderID);
     }
+
+    /**
+     * Encodes the content of this OrderResponse in the binary protocol: the order ID (8 bytes).
+     *
+     * @param buffer The buffer used to encode the response content.
+     */
+    protected void EncodeContent(ByteBuffer buffer) { buffer.putLong(_orderID); }
+
+    /**
+     * Decodes an OrderResponse from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the response content from.
+     * @return A new OrderResponse instance with the decoded order ID.
+     */
+    public static OrderResponse FromBinary(ByteBuffer buffer) { return new OrderResponse(buffer.getLong()); }
 }
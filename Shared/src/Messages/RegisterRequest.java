@@ -1,12 +1,14 @@
 
 package Messages;
 
+import Helpers.Utilities;
 import Networking.OperationType;
 import Networking.Request;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * This class represents a request to register a new user. It extends the `Request` class
@@ -89,4 +91,29 @@ public class RegisterRequest extends Request
 
         return new RegisterRequest(username, password);
     }
+
+    /**
+     * Encodes the content of this RegisterRequest in the binary protocol: the username and the password.
+     *
+     * @param buffer The buffer used to encode the request content.
+     */
+    protected void EncodeContent(ByteBuffer buffer)
+    {
+        Utilities.WriteString(buffer, _username);
+        Utilities.WriteString(buffer, _password);
+    }
+
+    /**
+     * Decodes a RegisterRequest from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the request content from.
+     * @return A new RegisterRequest instance with the decoded content.
+     * @throws IOException If a string of the message is invalid.
+     */
+    public static RegisterRequest DecodeContent(ByteBuffer buffer) throws IOException
+    {
+        String username = Utilities.ReadString(buffer);
+        String password = Utilities.ReadString(buffer);
+        return new RegisterRequest(username, password);
+    }
 }
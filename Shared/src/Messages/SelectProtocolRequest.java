@@ -0,0 +1,91 @@
+package Messages;
+
+import Helpers.Utilities;
+import Networking.OperationType;
+import Networking.Request;
+import Networking.WireProtocol;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class represents the handshake selecting the wire protocol of a connection (see WireProtocol). It extends the
+ * `Request` class and provides methods for serializing and deserializing the request data to and from JSON format.
+ * The response is sent in the current protocol of the connection: once it is OK, both sides switch to the selected
+ * protocol for the following messages, otherwise the connection keeps its protocol.
+ */
+public class SelectProtocolRequest extends Request
+{
+    // predefined simple responses for the outcomes of the handshake
+    public static final SimpleResponse OK = new SimpleResponse(100, "OK");
+    public static final SimpleResponse UNSUPPORTED_PROTOCOL = new SimpleResponse(101, "Unsupported protocol");
+
+    // the name of the protocol selected by the client, as sent (see WireProtocol.ToString)
+    private final String _protocol;
+
+    /**
+     * Constructor to initialize a SelectProtocolRequest with the protocol to switch to.
+     *
+     * @param protocol The protocol of the following messages.
+     */
+    public SelectProtocolRequest(WireProtocol protocol) { this(protocol.ToString()); }
+
+    private SelectProtocolRequest(String protocol)
+    {
+        super(OperationType.SELECT_PROTOCOL);
+        _protocol = protocol;
+    }
+
+    /**
+     * Getter for the protocol selected by the client.
+     *
+     * @return The protocol, or null if the server doesn't support it.
+     */
+    public WireProtocol GetProtocol() { return _protocol == null ? null : WireProtocol.FromString(_protocol); }
+
+    /**
+     * Serializes the content of this SelectProtocolRequest to a JSON writer.
+     * The name of the protocol is written as a name-value pair in the JSON format.
+     *
+     * @param jsonWriter The JSON writer used to serialize the request content.
+     * @throws IOException If an I/O error occurs during the serialization process.
+     */
+    protected void SerializeContent(JsonWriter jsonWriter) throws IOException
+    {
+        jsonWriter.name("protocol").value(_protocol);
+    }
+
+    /**
+     * Deserializes a SelectProtocolRequest from a JSON reader.
+     * The method expects the "protocol" field in the JSON input.
+     *
+     * @param jsonReader The JSON reader to read the request content from.
+     * @return A new SelectProtocolRequest instance with the deserialized content.
+     * @throws IOException If an I/O error occurs during the deserialization process.
+     */
+    public static SelectProtocolRequest DeserializeContent(JsonReader jsonReader) throws IOException
+    {
+        return new SelectProtocolRequest(Utilities.ReadString(jsonReader, "protocol"));
+    }
+
+    /**
+     * Encodes the content of this SelectProtocolRequest in the binary protocol: the name of the protocol.
+     *
+     * @param buffer The buffer used to encode the request content.
+     */
+    protected void EncodeContent(ByteBuffer buffer) { Utilities.WriteString(buffer, _protocol); }
+
+    /**
+     * Decodes a SelectProtocolRequest from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the request content from.
+     * @return A new SelectProtocolRequest instance with the decoded content.
+     * @throws IOException If the name of the protocol is invalid.
+     */
+    public static SelectProtocolRequest DecodeContent(ByteBuffer buffer) throws IOException
+    {
+        return new SelectProtocolRequest(Utilities.ReadString(buffer));
+    }
+}
@@ -7,6 +7,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * This class represents a simple response that contains a response code and an error message.
@@ -76,4 +77,31 @@ public class SimpleResponse extends Response
 
         return new SimpleResponse(response, errorMessage);
     }
+
+    /**
+     * Encodes the content of this SimpleResponse in the binary protocol: the response code (4 bytes), followed by the
+     * error message.
+     *
+     * @param buffer The buffer used to encode the response content.
+     */
+    protected void EncodeContent(ByteBuffer buffer)
+    {
+        buffer.putInt(_response);
+        Utilities.WriteString(buffer, _errorMessage);
+    }
+
+    /**
+     * Decodes a SimpleResponse from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the response content from.
+     * @return A new SimpleResponse instance with the decoded content.
+     * @throws IOException If the error message of the message is invalid.
+     */
+    public static SimpleResponse FromBinary(ByteBuffer buffer) throws IOException
+    {
+        int response = buffer.getInt();
+        String errorMessage = Utilities.ReadString(buffer);
+
+        return new SimpleResponse(response, errorMessage);
+    }
 }
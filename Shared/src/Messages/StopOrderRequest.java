@@ -9,6 +9,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * This class represents a request to place a stop order. It extends the `Request` class
@@ -26,18 +27,23 @@ public class StopOrderRequest extends Request
     // the stop price of the stop order
     private final long _stopPrice;
 
+    // the symbol of the instrument to trade (null for the default instrument)
+    private final String _symbol;
+
     /**
      * Constructor to initialize a StopOrderRequest with the specified method, size, and stop price.
      *
      * @param method The method of the stop order (buy or sell).
      * @param size The size of the stop order (number of units).
      * @param stopPrice The stop price at which the order becomes active.
+     * @param symbol The symbol of the instrument to trade, null for the default instrument.
      */
-    public StopOrderRequest(Method method, long size, long stopPrice) {
+    public StopOrderRequest(Method method, long size, long stopPrice, String symbol) {
         super(OperationType.INSERT_STOP_ORDER);
         _method = method;
         _size = size;
         _stopPrice = stopPrice;
+        _symbol = symbol;
     }
 
     /**
@@ -61,6 +67,13 @@ public class StopOrderRequest extends Request
      */
     public long GetStopPrice() { return _stopPrice; }
 
+    /**
+     * Getter for the symbol of the instrument to trade.
+     *
+     * @return The symbol of the instrument, or null for the default instrument.
+     */
+    public String GetSymbol() { return _symbol; }
+
     /**
      * Serializes the content of this StopOrderRequest to a JSON writer.
      * The method, size, and stop price are written as name-value pairs in the JSON format.
@@ -72,6 +85,7 @@ public class StopOrderRequest extends Request
         jsonWriter.name("type").value(_method.ToString());
         jsonWriter.name("size").value(_size);
         jsonWriter.name("price").value(_stopPrice);
+        if (_symbol != null) { jsonWriter.name("symbol").value(_symbol); }
     }
 
     /**
@@ -88,6 +102,41 @@ public class StopOrderRequest extends Request
         long size = Utilities.ReadLong(jsonReader, "size");
         long price = Utilities.ReadLong(jsonReader, "price");
 
-        return new StopOrderRequest(method, size, price);
+        // the symbol is optional, the default instrument is traded if it is missing
+        String symbol = jsonReader.hasNext() ? Utilities.ReadString(jsonReader, "symbol") : null;
+
+        return new StopOrderRequest(method, size, price, symbol);
+    }
+
+    /**
+     * Encodes the content of this StopOrderRequest in the binary protocol, with a fixed layout: the method (1 byte),
+     * the size and the stop price (8 bytes each), followed by the symbol.
+     *
+     * @param buffer The buffer used to encode the request content.
+     */
+    protected void EncodeContent(ByteBuffer buffer)
+    {
+        buffer.put(_method.ToCode());
+        buffer.putLong(_size);
+        buffer.putLong(_stopPrice);
+        Utilities.WriteString(buffer, _symbol);
+    }
+
+    /**
+     * Decodes a StopOrderRequest from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the request content from.
+     * @return A new StopOrderRequest instance with the decoded content.
+     * @throws IOException If the method or the symbol of the message is invalid.
+     */
+    public static StopOrderRequest DecodeContent(ByteBuffer buffer) throws IOException
+    {
+        Method method = Method.FromCode(buffer.get());
+        if (method == null) { throw new IOException("Invalid method in binary stop order"); }
+        long size = buffer.getLong();
+        long price = buffer.getLong();
+        String symbol = Utilities.ReadString(buffer);
+
+        return new StopOrderRequest(method, size, price, symbol);
     }
 }
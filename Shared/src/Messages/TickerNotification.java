@@ -0,0 +1,121 @@
+package Messages;
+
+import Orders.TopOfBook;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class is responsible for encoding and decoding a ticker notification: a fixed-layout binary datagram with the
+ * top of the book of an instrument, sampled at a fixed rate. Every field has a fixed offset, so a consumer reads it
+ * without any parsing, and the server encodes it into a reused buffer without allocating any object.
+ *
+ * Layout (big-endian, 88 bytes):
+ *   0  symbol (8 bytes, ASCII, padded with zeros)
+ *   8  sequence number of the ticker of the instrument
+ *  16  timestamp in milliseconds
+ *  24  best bid price, 32 best bid size
+ *  40  best ask price, 48 best ask size
+ *  56  last trade price, 64 traded volume
+ *  72  spread (best bid price - best ask price), 80 reserved
+ */
+public class TickerNotification
+{
+    // the size of a ticker notification
+    public static final int SIZE = 88;
+
+    // the maximum length of a symbol
+    public static final int SYMBOL_LENGTH = 8;
+
+    // the decoded fields
+    private final String _symbol;
+    private final long _sequence;
+    private final long _timestamp;
+    private final TopOfBook _topOfBook;
+
+    private TickerNotification(String symbol, long sequence, long timestamp, TopOfBook topOfBook)
+    {
+        _symbol = symbol;
+        _sequence = sequence;
+        _timestamp = timestamp;
+        _topOfBook = topOfBook;
+    }
+
+    // getter methods
+
+    public String GetSymbol() { return _symbol; }
+    public long GetSequence() { return _sequence; }
+    public long GetTimestamp() { return _timestamp; }
+    public TopOfBook GetTopOfBook() { return _topOfBook; }
+
+    /**
+     * Encodes the symbol field of a ticker notification, once per instrument.
+     *
+     * @param symbol The symbol of the instrument, truncated to SYMBOL_LENGTH characters.
+     * @return The symbol field, padded with zeros.
+     */
+    public static byte[] EncodeSymbol(String symbol)
+    {
+        byte[] field = new byte[SYMBOL_LENGTH];
+        byte[] bytes = symbol.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, field, 0, Math.min(bytes.length, SYMBOL_LENGTH));
+        return field;
+    }
+
+    /**
+     * Encodes a ticker notification at the beginning of a buffer.
+     *
+     * @param buffer The buffer to write to, at least SIZE bytes long.
+     * @param symbol The symbol field of the instrument (see EncodeSymbol).
+     * @param sequence The sequence number of the ticker of the instrument.
+     * @param timestamp The time the top of the book has been sampled, in milliseconds.
+     * @param topOfBook The top of the book.
+     */
+    public static void Encode(ByteBuffer buffer, byte[] symbol, long sequence, long timestamp, TopOfBook topOfBook)
+    {
+        buffer.clear();
+        buffer.put(symbol);
+        buffer.putLong(sequence);
+        buffer.putLong(timestamp);
+        buffer.putLong(topOfBook.GetBidPrice());
+        buffer.putLong(topOfBook.GetBidSize());
+        buffer.putLong(topOfBook.GetAskPrice());
+        buffer.putLong(topOfBook.GetAskSize());
+        buffer.putLong(topOfBook.GetLastTradePrice());
+        buffer.putLong(topOfBook.GetVolume());
+        buffer.putLong(topOfBook.GetSpread());
+        buffer.putLong(0);
+    }
+
+    /**
+     * Decodes a ticker notification.
+     *
+     * @param buffer The buffer holding the notification, positioned at its beginning.
+     * @return The decoded notification, or null if the buffer is too short.
+     */
+    public static TickerNotification Decode(ByteBuffer buffer)
+    {
+        if (buffer.remaining() < SIZE) { return null; }
+
+        byte[] field = new byte[SYMBOL_LENGTH];
+        buffer.get(field);
+
+        int length = 0;
+        while (length < SYMBOL_LENGTH && field[length] != 0) { length++; }
+        String symbol = new String(field, 0, length, StandardCharsets.US_ASCII);
+
+        long sequence = buffer.getLong();
+        long timestamp = buffer.getLong();
+        long bidPrice = buffer.getLong();
+        long bidSize = buffer.getLong();
+        long askPrice = buffer.getLong();
+        long askSize = buffer.getLong();
+        long lastTradePrice = buffer.getLong();
+        long volume = buffer.getLong();
+
+        // skip the spread, derived from the prices, and the reserved field
+        buffer.position(buffer.position() + 2 * Long.BYTES);
+
+        return new TickerNotification(symbol, sequence, timestamp, new TopOfBook(bidPrice, bidSize, askPrice, askSize, lastTradePrice, volume));
+    }
+}
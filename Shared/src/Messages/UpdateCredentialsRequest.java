@@ -1,12 +1,14 @@
 
 package Messages;
 
+import Helpers.Utilities;
 import Networking.OperationType;
 import Networking.Request;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * This class represents a request to update the credentials (username and password) of a user.
@@ -107,4 +109,32 @@ public class UpdateCredentialsRequest  extends Request
 
         return new UpdateCredentialsRequest(username, oldPassword, newPassword);
     }
+
+    /**
+     * Encodes the content of this UpdateCredentialsRequest in the binary protocol: the username, the old password
+     * and the new password.
+     *
+     * @param buffer The buffer used to encode the request content.
+     */
+    protected void EncodeContent(ByteBuffer buffer)
+    {
+        Utilities.WriteString(buffer, _username);
+        Utilities.WriteString(buffer, _oldPassword);
+        Utilities.WriteString(buffer, _newPassword);
+    }
+
+    /**
+     * Decodes an UpdateCredentialsRequest from a message of the binary protocol.
+     *
+     * @param buffer The buffer to read the request content from.
+     * @return A new UpdateCredentialsRequest instance with the decoded content.
+     * @throws IOException If a string of the message is invalid.
+     */
+    public static UpdateCredentialsRequest DecodeContent(ByteBuffer buffer) throws IOException
+    {
+        String username = Utilities.ReadString(buffer);
+        String oldPassword = Utilities.ReadString(buffer);
+        String newPassword = Utilities.ReadString(buffer);
+        return new UpdateCredentialsRequest(username, oldPassword, newPassword);
+    }
 }
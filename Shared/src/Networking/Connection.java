@@ -1,19 +1,35 @@
 
 package Networking;
 
+import Messages.SelectProtocolRequest;
+import Messages.SimpleResponse;
+
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 /**
  * This class represents a network connection over both TCP and UDP sockets.
- * It provides methods for sending and receiving data in JSON format over TCP,
- * and sending notifications over UDP.
+ * It provides methods for sending and receiving data in JSON format, or in the binary protocol once selected,
+ * over TCP, and sending notifications over UDP.
+ * The messages of both protocols are framed with their length (see WireProtocol) and encoded into buffers reused from
+ * one message to the next, the JSON ones straight from the requests and responses, without building Strings.
  */
 public class Connection
 {
+    // the largest message of either protocol, without its length
+    public static final int MAX_MESSAGE_SIZE = 1 << 22;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    // the buffers grown beyond this size for a large message are dropped at the next message
+    private static final int RETAINED_BUFFER_SIZE = 1 << 16;
+
     // the underlying Socket object representing the network connection
     private final Socket _socketTCP;
 
@@ -29,9 +45,21 @@ public class Connection
     // the UDP port for sending notifications
     private final int _groupPort;
 
-    // datagramSocket for sending UDP notifications (only used on server)
+    // datagramSocket for sending UDP notifications (only used on server), shared by the connections and closed by the
+    // server when it stops
     private final DatagramSocket _socketUDP;
 
+    // the protocol of the TCP messages, JSON until both sides switch to another one (see SelectProtocolRequest)
+    private WireProtocol _protocol;
+
+    // the buffers reused to encode the messages of the binary protocol and to receive the messages, grown as needed
+    private ByteBuffer _binaryOutput;
+    private byte[] _input;
+
+    // the JSON of the messages sent and received, encoded and decoded into reused buffers
+    private final JsonFrameWriter _jsonOutput;
+    private final JsonFrameReader _jsonInput;
+
     /**
      * Creates a new Connection object for the specified TCP socket and UDP socket.
      * Initializes the necessary input/output streams for TCP communication,
@@ -54,6 +82,39 @@ public class Connection
         _groupAddress = InetAddress.getByName(groupAddress);
         _groupPort = groupIP;
         _socketUDP = socketUDP;
+
+        _protocol = WireProtocol.JSON;
+        _binaryOutput = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        _input = new byte[INITIAL_BUFFER_SIZE];
+        _jsonOutput = new JsonFrameWriter(MAX_MESSAGE_SIZE);
+        _jsonInput = new JsonFrameReader();
+    }
+
+    /**
+     * Creates a new Connection object for a subclass carrying the TCP messages by other means than a blocking socket
+     * (such as a non-blocking channel): the subclass overrides the TCP methods, while the UDP notifications are sent as
+     * usual.
+     *
+     * @param socketUDP The DatagramSocket object used for UDP communication.
+     * @param groupAddress The group address for sending UDP notifications.
+     * @param groupPort The UDP port for sending notifications.
+     * @throws IOException If the group address can't be resolved.
+     */
+    protected Connection(DatagramSocket socketUDP, String groupAddress, int groupPort) throws IOException
+    {
+        _socketTCP = null;
+        _dataInputStream = null;
+        _dataOutputStream = null;
+
+        _groupAddress = InetAddress.getByName(groupAddress);
+        _groupPort = groupPort;
+        _socketUDP = socketUDP;
+
+        _protocol = WireProtocol.JSON;
+        _binaryOutput = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        _input = null;
+        _jsonOutput = new JsonFrameWriter(MAX_MESSAGE_SIZE);
+        _jsonInput = new JsonFrameReader();
     }
 
     /**
@@ -63,6 +124,39 @@ public class Connection
      */
     public boolean IsClosed() { return _socketTCP.isClosed(); }
 
+    /**
+     * Gets the protocol of the TCP messages.
+     *
+     * @return The protocol of the messages sent and received.
+     */
+    public WireProtocol GetProtocol() { return _protocol; }
+
+    /**
+     * Switches the protocol of the TCP messages, once the handshake is over: by the server after sending the response
+     * to the SelectProtocolRequest, by the client after receiving it.
+     *
+     * @param protocol The protocol of the following messages.
+     */
+    public void SetProtocol(WireProtocol protocol) { _protocol = protocol; }
+
+    /**
+     * Switches the connection to a protocol with a handshake, from the client.
+     *
+     * @param protocol The protocol of the following messages.
+     * @return True if the server accepted the protocol, false if the connection keeps its protocol.
+     * @throws IOException If an error occurs while sending the request or receiving the response.
+     */
+    public boolean TrySelectProtocol(WireProtocol protocol) throws IOException
+    {
+        Send(new SelectProtocolRequest(protocol));
+
+        Response response = ReceiveResponse();
+        if (!(response instanceof SimpleResponse simpleResponse) || simpleResponse.GetResponse() != SelectProtocolRequest.OK.GetResponse()) { return false; }
+
+        SetProtocol(protocol);
+        return true;
+    }
+
     /**
      * Checks if there is data available to be read from the TCP socket's input stream.
      *
@@ -73,51 +167,193 @@ public class Connection
 
     /**
      * Receives a Request object from the network connection.
-     * This method reads the incoming data, parses it as a UTF string,
-     * and converts it from JSON to a Request object.
+     * This method reads the incoming message and converts it from JSON to a Request object, or decodes it in the
+     * binary protocol.
      *
      * @return The Request object received from the network.
      * @throws IOException If an error occurs while reading data.
      * @throws ParseException If the JSON data cannot be parsed correctly.
      */
-    public Request ReceiveRequest() throws IOException, ParseException { return Request.FromJson(_dataInputStream.readUTF()); }
+    public Request ReceiveRequest() throws IOException, ParseException
+    {
+        ByteBuffer message = ReadMessage();
+        if (_protocol == WireProtocol.BINARY) { return Request.FromBinary(message); }
+        return Request.FromJson(DecodeJson(message));
+    }
 
     /**
      * Receives a Response object from the network connection.
-     * This method reads the incoming data, parses it as a UTF string,
-     * and converts it from JSON to a Response object.
+     * This method reads the incoming message and converts it from JSON to a Response object, or decodes it in the
+     * binary protocol.
      *
      * @return The Response object received from the network.
      * @throws IOException If an error occurs while reading data.
      */
-    public Response ReceiveResponse() throws IOException { return Response.FromJson(_dataInputStream.readUTF()); }
+    public Response ReceiveResponse() throws IOException
+    {
+        ByteBuffer message = ReadMessage();
+        if (_protocol == WireProtocol.BINARY) { return Response.FromBinary(message); }
+        return Response.FromJson(DecodeJson(message));
+    }
 
     /**
      * Sends a Request object over the TCP connection.
-     * This method serializes the Request object to JSON and writes it to the output stream.
+     * This method serializes the Request object to JSON, or encodes it in the binary protocol, and writes it to the
+     * output stream.
      *
      * @param request The Request object to be sent.
      * @throws IOException If an error occurs while writing data to the stream.
      */
     public void Send(Request request) throws IOException
     {
-        _dataOutputStream.writeUTF(request.ToJson());
+        ByteBuffer message = _protocol == WireProtocol.BINARY ? EncodeBinary(request) : EncodeJson(request);
+        _dataOutputStream.write(message.array(), 0, message.limit());
         _dataOutputStream.flush();
     }
 
     /**
      * Sends a Response object over the TCP connection.
-     * This method serializes the Response object to JSON and writes it to the output stream.
+     * This method serializes the Response object to JSON, or encodes it in the binary protocol, and writes it to the
+     * output stream.
      *
      * @param response The Response object to be sent.
      * @throws IOException If an error occurs while writing data to the stream.
      */
     public void Send(Response response) throws IOException
     {
-        _dataOutputStream.writeUTF(response.ToJson());
+        ByteBuffer message = _protocol == WireProtocol.BINARY ? EncodeBinary(response) : EncodeJson(response);
+        _dataOutputStream.write(message.array(), 0, message.limit());
         _dataOutputStream.flush();
     }
 
+    /**
+     * Encodes a request in the binary protocol, preceded by its length, into the reused output buffer.
+     *
+     * @param request The request to encode.
+     * @return The output buffer, holding the message from its start to its limit, until the next message is encoded.
+     * @throws IOException If the request can't be encoded or is too long.
+     */
+    protected ByteBuffer EncodeBinary(Request request) throws IOException
+    {
+        if (_binaryOutput.capacity() > RETAINED_BUFFER_SIZE) { _binaryOutput = ByteBuffer.allocate(INITIAL_BUFFER_SIZE); }
+
+        while (true)
+        {
+            try
+            {
+                _binaryOutput.clear().position(Integer.BYTES);
+                request.ToBinary(_binaryOutput);
+                return EndBinaryMessage();
+            }
+            catch (BufferOverflowException e) { GrowBinaryOutput(); }
+        }
+    }
+
+    /**
+     * Encodes a response in the binary protocol, preceded by its length, into the reused output buffer.
+     *
+     * @param response The response to encode.
+     * @return The output buffer, holding the message from its start to its limit, until the next message is encoded.
+     * @throws IOException If the response can't be encoded or is too long.
+     */
+    protected ByteBuffer EncodeBinary(Response response) throws IOException
+    {
+        if (_binaryOutput.capacity() > RETAINED_BUFFER_SIZE) { _binaryOutput = ByteBuffer.allocate(INITIAL_BUFFER_SIZE); }
+
+        while (true)
+        {
+            try
+            {
+                _binaryOutput.clear().position(Integer.BYTES);
+                response.ToBinary(_binaryOutput);
+                return EndBinaryMessage();
+            }
+            catch (BufferOverflowException e) { GrowBinaryOutput(); }
+        }
+    }
+
+    /**
+     * Encodes a request in JSON, preceded by its length, into the reused JSON output buffer.
+     *
+     * @param request The request to encode.
+     * @return A buffer over the message, from its start to its limit, valid until the next message is encoded.
+     * @throws IOException If the request can't be serialized or is too long.
+     */
+    protected ByteBuffer EncodeJson(Request request) throws IOException
+    {
+        _jsonOutput.Begin();
+        request.ToJson(_jsonOutput);
+        return _jsonOutput.End();
+    }
+
+    /**
+     * Encodes a response in JSON, preceded by its length, into the reused JSON output buffer.
+     *
+     * @param response The response to encode.
+     * @return A buffer over the message, from its start to its limit, valid until the next message is encoded.
+     * @throws IOException If the response can't be serialized or is too long.
+     */
+    protected ByteBuffer EncodeJson(Response response) throws IOException
+    {
+        _jsonOutput.Begin();
+        response.ToJson(_jsonOutput);
+        return _jsonOutput.End();
+    }
+
+    /**
+     * Decodes the JSON of a message received, in place, into the reused JSON input buffer.
+     *
+     * @param message The message, without its length, from the position to the limit of the buffer.
+     * @return A reader of the JSON, valid until the next message is decoded.
+     * @throws IOException If the message is not valid UTF-8.
+     */
+    protected Reader DecodeJson(ByteBuffer message) throws IOException
+    {
+        _jsonInput.Begin(message);
+        return _jsonInput;
+    }
+
+    /**
+     * Writes the length of the message encoded in the output buffer before it, and flips the buffer.
+     */
+    private ByteBuffer EndBinaryMessage() throws IOException
+    {
+        int length = _binaryOutput.position() - Integer.BYTES;
+        if (length > MAX_MESSAGE_SIZE) { throw new IOException("Binary message too long (" + length + " bytes)"); }
+
+        _binaryOutput.putInt(0, length);
+        return _binaryOutput.flip();
+    }
+
+    /**
+     * Doubles the output buffer after a message didn't fit in it, up to the largest message.
+     */
+    private void GrowBinaryOutput() throws IOException
+    {
+        int capacity = _binaryOutput.capacity();
+        if (capacity >= Integer.BYTES + MAX_MESSAGE_SIZE) { throw new IOException("Binary message too long"); }
+
+        _binaryOutput = ByteBuffer.allocate(Math.min(capacity * 2, Integer.BYTES + MAX_MESSAGE_SIZE));
+    }
+
+    /**
+     * Reads a message of either protocol from the input stream into the reused input buffer.
+     *
+     * @return A buffer over the message, without its length, valid until the next message is read.
+     * @throws IOException If an error occurs while reading data or if the length of the message is invalid.
+     */
+    private ByteBuffer ReadMessage() throws IOException
+    {
+        int length = _dataInputStream.readInt();
+        if (length <= 0 || length > MAX_MESSAGE_SIZE) { throw new IOException("Invalid message length (got " + length + ")"); }
+
+        if (_input.length < length) { _input = new byte[Math.min(Math.max(length, _input.length * 2), MAX_MESSAGE_SIZE)]; }
+        else if (_input.length > RETAINED_BUFFER_SIZE && length <= INITIAL_BUFFER_SIZE) { _input = new byte[INITIAL_BUFFER_SIZE]; }
+        _dataInputStream.readFully(_input, 0, length);
+
+        return ByteBuffer.wrap(_input, 0, length);
+    }
+
     /**
      * Sends a notification to the client over UDP.
      * This method creates a DatagramPacket with the notification message and sends it to the specified UDP group address and port.
@@ -140,15 +376,14 @@ public class Connection
 
     /**
      * Closes the network connection by properly closing the input/output streams
-     * and the underlying TCP and UDP sockets.
+     * and the underlying TCP socket. The UDP socket is shared and stays open.
      *
-     * @throws IOException If an error occurs while closing the streams or sockets.
+     * @throws IOException If an error occurs while closing the streams or the socket.
      */
     public void Close() throws IOException
     {
         _dataInputStream.close();
         _dataOutputStream.close();
         _socketTCP.close();
-        if (_socketUDP != null) { _socketUDP.close(); }
     }
 }
@@ -0,0 +1,81 @@
+package Networking;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reader of the JSON of a message received (see WireProtocol), decoded from UTF-8 right where the message was read
+ * into a reused character buffer, so that it is parsed without building a String first. The buffer grows with the
+ * messages and is given back once a large message is parsed, as by JsonFrameWriter. A reader is used by one thread at a
+ * time, one message at a time.
+ */
+public class JsonFrameReader extends Reader
+{
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    // the buffers grown beyond this size for a large message are dropped at the next message
+    private static final int RETAINED_BUFFER_SIZE = 1 << 16;
+
+    // the decoder of the messages, failing on malformed UTF-8
+    private final CharsetDecoder _decoder;
+
+    // the characters of the message, from the start of the buffer to its limit, and the next one to read
+    private CharBuffer _chars;
+    private int _position;
+
+    /**
+     * Constructor for a reader with no message yet.
+     */
+    public JsonFrameReader()
+    {
+        _decoder = StandardCharsets.UTF_8.newDecoder();
+        _chars = CharBuffer.allocate(INITIAL_BUFFER_SIZE).flip();
+        _position = 0;
+    }
+
+    /**
+     * Decodes a new message, dropping the previous one.
+     *
+     * @param message The bytes of the message, without its length, from the position to the limit of the buffer.
+     * @throws IOException If the message is not valid UTF-8.
+     */
+    public void Begin(ByteBuffer message) throws IOException
+    {
+        // a UTF-8 message has at most one character per byte
+        int length = message.remaining();
+        if (_chars.capacity() < length || _chars.capacity() > RETAINED_BUFFER_SIZE) { _chars = CharBuffer.allocate(Math.max(length, INITIAL_BUFFER_SIZE)); }
+
+        _chars.clear();
+        _position = 0;
+        _decoder.reset();
+
+        CoderResult result = _decoder.decode(message, _chars, true);
+        if (result.isUnderflow()) { result = _decoder.flush(_chars); }
+        _chars.flip();
+
+        if (!result.isUnderflow()) { result.throwException(); }
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length)
+    {
+        int remaining = _chars.limit() - _position;
+        if (remaining <= 0) { return -1; }
+
+        int count = Math.min(length, remaining);
+        System.arraycopy(_chars.array(), _position, chars, offset, count);
+        _position += count;
+        return count;
+    }
+
+    /**
+     * Nothing to close: the reader is reused for the following messages.
+     */
+    @Override
+    public void close() { }
+}
@@ -0,0 +1,170 @@
+package Networking;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A writer encoding the JSON of a message straight to UTF-8 into a reused byte buffer, after room for its length, so
+ * that a message is framed (see WireProtocol) without building its JSON as a String first. The buffer grows with the
+ * messages, up to the largest one, and is given back once a large message is sent so that a connection doesn't keep
+ * it. A writer is used by one thread at a time, one message at a time.
+ */
+public class JsonFrameWriter extends Writer
+{
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    // the buffers grown beyond this size for a large message are dropped at the next message
+    private static final int RETAINED_BUFFER_SIZE = 1 << 16;
+
+    // the largest message, without its length
+    private final int _maxLength;
+
+    // the message being written, after its length, from the start of the buffer to the count
+    private byte[] _bytes;
+    private int _count;
+
+    // the first half of a surrogate pair, written apart from the second one
+    private char _highSurrogate;
+
+    /**
+     * Constructor for a writer of messages up to the given length.
+     *
+     * @param maxLength The largest message in bytes, without its length.
+     */
+    public JsonFrameWriter(int maxLength)
+    {
+        _maxLength = maxLength;
+        _bytes = new byte[INITIAL_BUFFER_SIZE];
+        _count = Integer.BYTES;
+        _highSurrogate = 0;
+    }
+
+    /**
+     * Starts a new message, dropping the previous one.
+     */
+    public void Begin()
+    {
+        if (_bytes.length > RETAINED_BUFFER_SIZE) { _bytes = new byte[INITIAL_BUFFER_SIZE]; }
+
+        _count = Integer.BYTES;
+        _highSurrogate = 0;
+    }
+
+    /**
+     * Ends the message written since Begin and writes its length before it.
+     *
+     * @return A buffer over the message and its length, valid until the next message is started.
+     * @throws IOException If the message is too long.
+     */
+    public ByteBuffer End() throws IOException
+    {
+        // a surrogate without its second half can't be encoded
+        if (_highSurrogate != 0) { PutByte('?'); _highSurrogate = 0; }
+
+        int length = _count - Integer.BYTES;
+        _bytes[0] = (byte) (length >>> 24);
+        _bytes[1] = (byte) (length >>> 16);
+        _bytes[2] = (byte) (length >>> 8);
+        _bytes[3] = (byte) length;
+
+        return ByteBuffer.wrap(_bytes, 0, _count);
+    }
+
+    @Override
+    public void write(int c) throws IOException { Put((char) c); }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException
+    {
+        for (int i = offset; i < offset + length; i++) { Put(chars[i]); }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException
+    {
+        for (int i = offset; i < offset + length; i++) { Put(text.charAt(i)); }
+    }
+
+    /**
+     * Nothing to flush: the message is sent once ended.
+     */
+    @Override
+    public void flush() { }
+
+    /**
+     * Nothing to close: the writer is reused for the following messages.
+     */
+    @Override
+    public void close() { }
+
+    /**
+     * Encodes a character in UTF-8, the surrogate pairs as a single code point.
+     */
+    private void Put(char c) throws IOException
+    {
+        if (_highSurrogate != 0)
+        {
+            char high = _highSurrogate;
+            _highSurrogate = 0;
+
+            if (Character.isLowSurrogate(c)) { PutCodePoint(Character.toCodePoint(high, c)); return; }
+            PutByte('?');
+        }
+
+        if (c < 0x80) { PutByte(c); }
+        else if (Character.isHighSurrogate(c)) { _highSurrogate = c; }
+        else if (Character.isLowSurrogate(c)) { PutByte('?'); }
+        else { PutCodePoint(c); }
+    }
+
+    /**
+     * Encodes a code point other than ASCII in UTF-8.
+     */
+    private void PutCodePoint(int codePoint) throws IOException
+    {
+        if (codePoint < 0x800)
+        {
+            Reserve(2);
+            _bytes[_count++] = (byte) (0xC0 | codePoint >>> 6);
+        }
+        else if (codePoint < 0x10000)
+        {
+            Reserve(3);
+            _bytes[_count++] = (byte) (0xE0 | codePoint >>> 12);
+            _bytes[_count++] = (byte) (0x80 | codePoint >>> 6 & 0x3F);
+        }
+        else
+        {
+            Reserve(4);
+            _bytes[_count++] = (byte) (0xF0 | codePoint >>> 18);
+            _bytes[_count++] = (byte) (0x80 | codePoint >>> 12 & 0x3F);
+            _bytes[_count++] = (byte) (0x80 | codePoint >>> 6 & 0x3F);
+        }
+
+        _bytes[_count++] = (byte) (0x80 | codePoint & 0x3F);
+    }
+
+    /**
+     * Writes a byte of the UTF-8 encoding.
+     */
+    private void PutByte(int b) throws IOException
+    {
+        Reserve(1);
+        _bytes[_count++] = (byte) b;
+    }
+
+    /**
+     * Doubles the buffer if the next bytes don't fit in it, up to the largest message.
+     *
+     * @throws IOException If the message is too long.
+     */
+    private void Reserve(int count) throws IOException
+    {
+        if (_count + count <= _bytes.length) { return; }
+        if (_count + count - Integer.BYTES > _maxLength) { throw new IOException("JSON message too long (more than " + _maxLength + " bytes)"); }
+
+        _bytes = Arrays.copyOf(_bytes, Math.min(Math.max(_bytes.length * 2, _count + count), Integer.BYTES + _maxLength));
+    }
+}
@@ -15,8 +15,11 @@ public enum OperationType
     INSERT_MARKET_ORDER,   // Represents inserting a market order.
     INSERT_LIMIT_ORDER,    // Represents inserting a limit order.
     INSERT_STOP_ORDER,     // Represents inserting a stop order.
+    INSERT_ORDERS,         // Represents inserting a batch of market, limit and stop orders.
     CANCEL_ORDER,          // Represents canceling an order.
-    GET_PRICE_HISTORY;     // Represents retrieving price history.
+    CANCEL_ALL,            // Represents canceling all the resting orders of the user.
+    GET_PRICE_HISTORY,     // Represents retrieving price history.
+    SELECT_PROTOCOL;       // Represents selecting the wire protocol of the connection.
 
     /**
      * Converts the enum value to its corresponding string representation.
@@ -33,8 +36,11 @@ public enum OperationType
             case INSERT_MARKET_ORDER -> "insertMarketOrder";
             case INSERT_LIMIT_ORDER -> "insertLimitOrder";
             case INSERT_STOP_ORDER -> "insertStopOrder";
+            case INSERT_ORDERS -> "insertOrders";
             case CANCEL_ORDER -> "cancelOrder";
+            case CANCEL_ALL -> "cancelAllOrders";
             case GET_PRICE_HISTORY -> "getPriceHistory";
+            case SELECT_PROTOCOL -> "selectProtocol";
         };
     }
 
@@ -55,8 +61,59 @@ public enum OperationType
             case "insertMarketOrder" -> INSERT_MARKET_ORDER;
             case "insertLimitOrder" -> INSERT_LIMIT_ORDER;
             case "insertStopOrder" -> INSERT_STOP_ORDER;
+            case "insertOrders" -> INSERT_ORDERS;
             case "cancelOrder" -> CANCEL_ORDER;
+            case "cancelAllOrders" -> CANCEL_ALL;
             case "getPriceHistory" -> GET_PRICE_HISTORY;
+            case "selectProtocol" -> SELECT_PROTOCOL;
+            default -> null;
+        };
+    }
+
+    /**
+     * Converts the enum value to its code in the binary protocol, the first byte of each request.
+     *
+     * @return A code representing the operation type.
+     */
+    public byte ToCode()
+    {
+        return switch (this) {
+            case REGISTER -> 1;
+            case UPDATE_CREDENTIALS -> 2;
+            case LOGIN -> 3;
+            case LOGOUT -> 4;
+            case INSERT_MARKET_ORDER -> 5;
+            case INSERT_LIMIT_ORDER -> 6;
+            case INSERT_STOP_ORDER -> 7;
+            case INSERT_ORDERS -> 8;
+            case CANCEL_ORDER -> 9;
+            case CANCEL_ALL -> 10;
+            case GET_PRICE_HISTORY -> 11;
+            case SELECT_PROTOCOL -> 12;
+        };
+    }
+
+    /**
+     * Converts a code of the binary protocol into its corresponding enum value.
+     *
+     * @param code The code representing the operation type (see ToCode).
+     * @return The corresponding `OperationType` enum value, or `null` if no match is found.
+     */
+    public static OperationType FromCode(byte code)
+    {
+        return switch (code) {
+            case 1 -> REGISTER;
+            case 2 -> UPDATE_CREDENTIALS;
+            case 3 -> LOGIN;
+            case 4 -> LOGOUT;
+            case 5 -> INSERT_MARKET_ORDER;
+            case 6 -> INSERT_LIMIT_ORDER;
+            case 7 -> INSERT_STOP_ORDER;
+            case 8 -> INSERT_ORDERS;
+            case 9 -> CANCEL_ORDER;
+            case 10 -> CANCEL_ALL;
+            case 11 -> GET_PRICE_HISTORY;
+            case 12 -> SELECT_PROTOCOL;
             default -> null;
         };
     }
@@ -2,17 +2,21 @@
 package Networking;
 
 import Messages.*;
-import com.google.gson.FormattingStyle;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 /**
- * This abstract class represents a network request that can be serialized to and deserialized from JSON format.
+ * This abstract class represents a network request that can be serialized to and deserialized from JSON format, or
+ * encoded to and decoded from the binary protocol (see WireProtocol).
  * The requests can be used to perform various operations in the system. Each request includes an operation type
  * and specific content that will be serialized into a JSON object.
  */
@@ -48,6 +52,8 @@ public abstract class Request
      *   }
      * }
      *
+     * The JSON is written compactly, without any whitespace, as sent on the wire.
+     *
      * Subclasses of this class must implement the `SerializeContent` method to serialize their own specific content
      * into the "values" object within the JSON string.
      *
@@ -57,24 +63,33 @@ public abstract class Request
     public String ToJson() throws IOException
     {
         StringWriter stringWriter = new StringWriter();
-        try (JsonWriter jsonWriter = new JsonWriter(stringWriter);)
-        {
-            jsonWriter.setFormattingStyle(FormattingStyle.PRETTY);
-            jsonWriter.beginObject();
+        ToJson(stringWriter);
+        return stringWriter.toString();
+    }
 
-            // serialize the operation type as the "operation" field in JSON
-            jsonWriter.name("operation").value(_operation.ToString());
+    /**
+     * Serializes the request as JSON straight to a writer, such as the frame of a connection (see JsonFrameWriter),
+     * with the structure described by `ToJson()`. The writer is flushed, not closed.
+     *
+     * @param writer The writer of the JSON.
+     * @throws IOException If an error occurs during the serialization process.
+     */
+    public void ToJson(Writer writer) throws IOException
+    {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        jsonWriter.beginObject();
 
-            // serialize the specific content of the request under the "values" field
-            jsonWriter.name("values");
-            jsonWriter.beginObject();
-            SerializeContent(jsonWriter);
-            jsonWriter.endObject();
+        // serialize the operation type as the "operation" field in JSON
+        jsonWriter.name("operation").value(_operation.ToString());
 
-            jsonWriter.endObject();
-        }
+        // serialize the specific content of the request under the "values" field
+        jsonWriter.name("values");
+        jsonWriter.beginObject();
+        SerializeContent(jsonWriter);
+        jsonWriter.endObject();
 
-        return stringWriter.toString();
+        jsonWriter.endObject();
+        jsonWriter.flush();
     }
 
     /**
@@ -101,44 +116,115 @@ public abstract class Request
      * @throws ParseException If an error occurs during parsing the JSON.
      */
     public static Request FromJson(String json) throws IOException, ParseException
+    {
+        try (StringReader stringReader = new StringReader(json)) { return FromJson(stringReader); }
+    }
+
+    /**
+     * Deserializes a network request from a reader of its JSON, such as the frame received by a connection (see
+     * JsonFrameReader), as done by `FromJson(String)`. The reader is not closed.
+     *
+     * @param reader The reader of the JSON representing a network request.
+     * @return The deserialized Request object.
+     * @throws IOException If an error occurs during JSON parsing or deserialization.
+     * @throws ParseException If an error occurs during parsing the JSON.
+     */
+    public static Request FromJson(Reader reader) throws IOException, ParseException
     {
         String temp;
         Request request;
 
-        try (StringReader stringReader = new StringReader(json);
-            JsonReader jsonReader = new JsonReader(stringReader))
-        {
-            jsonReader.beginObject();
-
-            // Read the "operation" field to determine the type of request
-            temp = jsonReader.nextName();
-            if (!temp.equals("operation")) { throw new IOException("Expected 'operation' name from JSON (got " + temp + ")"); }
-            OperationType operation = OperationType.FromString(jsonReader.nextString());
-            if (operation == null) { throw new IOException("Invalid operation from JSON (got " + temp + ")"); }
-
-            // read the "values" field that contains the specific content for the request
-            temp = jsonReader.nextName();
-            if (!temp.equals("values")) { throw new IOException("Expected 'values' name from JSON (got " + temp + ")"); }
-            jsonReader.beginObject();
-
-            // handle different request types based on the operation field
-            switch (operation) {
-                case REGISTER -> request = RegisterRequest.DeserializeContent(jsonReader);
-                case UPDATE_CREDENTIALS -> request = UpdateCredentialsRequest.DeserializeContent(jsonReader);
-                case LOGIN -> request = LoginRequest.DeserializeContent(jsonReader);
-                case LOGOUT -> request = LogoutRequest.DeserializeContent(jsonReader);
-                case INSERT_MARKET_ORDER -> request = MarketOrderRequest.DeserializeContent(jsonReader);
-                case INSERT_LIMIT_ORDER -> request = LimitOrderRequest.DeserializeContent(jsonReader);
-                case INSERT_STOP_ORDER -> request = StopOrderRequest.DeserializeContent(jsonReader);
-                case CANCEL_ORDER -> request = CancelOrderRequest.DeserializeContent(jsonReader);
-                case GET_PRICE_HISTORY -> request = GetPriceHistoryRequest.DeserializeContent(jsonReader);
-                default -> throw new IOException("Invalid operation from JSON (got " + temp + ")");
-            }
-
-            jsonReader.endObject(); // end of "values" object
-            jsonReader.endObject(); // end of main JSON object
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.beginObject();
+
+        // Read the "operation" field to determine the type of request
+        temp = jsonReader.nextName();
+        if (!temp.equals("operation")) { throw new IOException("Expected 'operation' name from JSON (got " + temp + ")"); }
+        OperationType operation = OperationType.FromString(jsonReader.nextString());
+        if (operation == null) { throw new IOException("Invalid operation from JSON (got " + temp + ")"); }
+
+        // read the "values" field that contains the specific content for the request
+        temp = jsonReader.nextName();
+        if (!temp.equals("values")) { throw new IOException("Expected 'values' name from JSON (got " + temp + ")"); }
+        jsonReader.beginObject();
+
+        // handle different request types based on the operation field
+        switch (operation) {
+            case REGISTER -> request = RegisterRequest.DeserializeContent(jsonReader);
+            case UPDATE_CREDENTIALS -> request = UpdateCredentialsRequest.DeserializeContent(jsonReader);
+            case LOGIN -> request = LoginRequest.DeserializeContent(jsonReader);
+            case LOGOUT -> request = LogoutRequest.DeserializeContent(jsonReader);
+            case INSERT_MARKET_ORDER -> request = MarketOrderRequest.DeserializeContent(jsonReader);
+            case INSERT_LIMIT_ORDER -> request = LimitOrderRequest.DeserializeContent(jsonReader);
+            case INSERT_STOP_ORDER -> request = StopOrderRequest.DeserializeContent(jsonReader);
+            case INSERT_ORDERS -> request = InsertOrdersRequest.DeserializeContent(jsonReader);
+            case CANCEL_ORDER -> request = CancelOrderRequest.DeserializeContent(jsonReader);
+            case CANCEL_ALL -> request = CancelAllOrdersRequest.DeserializeContent(jsonReader);
+            case GET_PRICE_HISTORY -> request = GetPriceHistoryRequest.DeserializeContent(jsonReader);
+            case SELECT_PROTOCOL -> request = SelectProtocolRequest.DeserializeContent(jsonReader);
+            default -> throw new IOException("Invalid operation from JSON (got " + temp + ")");
         }
 
+        jsonReader.endObject(); // end of "values" object
+        jsonReader.endObject(); // end of main JSON object
+
         return request;
     }
+
+    /**
+     * Encodes the request in the binary protocol: the code of the operation type followed by the content specific to
+     * the type of request, written by the `EncodeContent` method of the subclass.
+     *
+     * @param buffer The buffer to write the request to, from its position.
+     * @throws IOException If the request can't be encoded.
+     * @throws java.nio.BufferOverflowException If the buffer is too small for the request.
+     */
+    public void ToBinary(ByteBuffer buffer) throws IOException
+    {
+        buffer.put(_operation.ToCode());
+        EncodeContent(buffer);
+    }
+
+    /**
+     * Abstract method that must be implemented by subclasses to encode the specific content of the request in the
+     * binary protocol, after the code of the operation type.
+     *
+     * @param buffer The buffer to write the content to.
+     * @throws IOException If the content can't be encoded.
+     */
+    protected abstract void EncodeContent(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Decodes a request of the binary protocol, written by ToBinary: reads the code of the operation type and calls
+     * the decoding method of the specific request type.
+     *
+     * @param buffer The buffer holding the request, positioned at its beginning.
+     * @return The decoded Request object.
+     * @throws IOException If the message is truncated or is not a valid request.
+     */
+    public static Request FromBinary(ByteBuffer buffer) throws IOException
+    {
+        try
+        {
+            byte code = buffer.get();
+            OperationType operation = OperationType.FromCode(code);
+            if (operation == null) { throw new IOException("Invalid operation from binary message (got " + code + ")"); }
+
+            return switch (operation) {
+                case REGISTER -> RegisterRequest.DecodeContent(buffer);
+                case UPDATE_CREDENTIALS -> UpdateCredentialsRequest.DecodeContent(buffer);
+                case LOGIN -> LoginRequest.DecodeContent(buffer);
+                case LOGOUT -> new LogoutRequest();
+                case INSERT_MARKET_ORDER -> MarketOrderRequest.DecodeContent(buffer);
+                case INSERT_LIMIT_ORDER -> LimitOrderRequest.DecodeContent(buffer);
+                case INSERT_STOP_ORDER -> StopOrderRequest.DecodeContent(buffer);
+                case INSERT_ORDERS -> InsertOrdersRequest.DecodeContent(buffer);
+                case CANCEL_ORDER -> CancelOrderRequest.DecodeContent(buffer);
+                case CANCEL_ALL -> new CancelAllOrdersRequest();
+                case GET_PRICE_HISTORY -> GetPriceHistoryRequest.DecodeContent(buffer);
+                case SELECT_PROTOCOL -> SelectProtocolRequest.DecodeContent(buffer);
+            };
+        }
+        catch (BufferUnderflowException e) { throw new IOException("Truncated binary request"); }
+    }
 }
@@ -1,24 +1,33 @@
 
 package Networking;
 
+import Messages.InsertOrdersResponse;
 import Messages.OrderResponse;
 import Messages.SimpleResponse;
-import com.google.gson.FormattingStyle;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 /**
- * This abstract class represents a network response in JSON format.
+ * This abstract class represents a network response in JSON format, or in the binary protocol (see WireProtocol).
  * It defines the common structure for responses and provides a foundation for creating
  * specific types of responses. Subclasses are responsible for serializing and deserializing
  * the content specific to their type of response.
  */
 public abstract class Response
 {
+    // the codes of the response types in the binary protocol, the first byte of each response
+    private static final byte SIMPLE_RESPONSE = 1;
+    private static final byte ORDER_RESPONSE = 2;
+    private static final byte INSERT_ORDERS_RESPONSE = 3;
+
     public Response() { }
 
     /**
@@ -27,7 +36,7 @@ public abstract class Response
      * the `SerializeContent` method in subclasses.
      *
      * This method serializes the response content into a JSON structure, making use of
-     * the Gson library to format the output in a readable (pretty) style.
+     * the Gson library to write it compactly, without any whitespace, as sent on the wire.
      *
      * @return The JSON string representation of the response object.
      * @throws IOException If an error occurs during JSON serialization.
@@ -35,17 +44,26 @@ public abstract class Response
     public String ToJson() throws IOException
     {
         StringWriter stringWriter = new StringWriter();
-        try (JsonWriter jsonWriter = new JsonWriter(stringWriter);)
-        {
-            jsonWriter.setFormattingStyle(FormattingStyle.PRETTY);
-            jsonWriter.beginObject();
-            SerializeContent(jsonWriter);
-            jsonWriter.endObject();
-        }
-
+        ToJson(stringWriter);
         return stringWriter.toString();
     }
 
+    /**
+     * Serializes the response as JSON straight to a writer, such as the frame of a connection (see JsonFrameWriter),
+     * as done by `ToJson()`. The writer is flushed, not closed.
+     *
+     * @param writer The writer of the JSON.
+     * @throws IOException If an error occurs during JSON serialization.
+     */
+    public void ToJson(Writer writer) throws IOException
+    {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        jsonWriter.beginObject();
+        SerializeContent(jsonWriter);
+        jsonWriter.endObject();
+        jsonWriter.flush();
+    }
+
     /**
      * Abstract method that must be implemented by subclasses to serialize their
      * specific content into the JSON object.
@@ -69,29 +87,93 @@ public abstract class Response
      * @throws IOException If an error occurs during JSON deserialization.
      */
     public static Response FromJson(String json) throws IOException
+    {
+        try (StringReader stringReader = new StringReader(json)) { return FromJson(stringReader); }
+    }
+
+    /**
+     * Parses a network response from a reader of its JSON, such as the frame received by a connection (see
+     * JsonFrameReader), as done by `FromJson(String)`. The reader is not closed.
+     *
+     * @param reader The reader of the JSON representing the network response.
+     * @return The Response object corresponding to the JSON.
+     * @throws IOException If an error occurs during JSON deserialization.
+     */
+    public static Response FromJson(Reader reader) throws IOException
     {
         String temp;
         Response response;
 
-        try (StringReader stringReader = new StringReader(json);
-             JsonReader jsonReader = new JsonReader(stringReader))
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.beginObject();
+
+        // read the first field name to determine the type of response
+        temp = jsonReader.nextName();
+
+        // based on the field name, deserialize into the correct type of response
+        switch (temp)
         {
-            jsonReader.beginObject();
+            case "response" -> response = SimpleResponse.FromJson(jsonReader);
+            case "orderID" -> response = OrderResponse.FromJson(jsonReader);
+            case "orders" -> response = InsertOrdersResponse.FromJson(jsonReader);
+            default -> throw new IOException("Supposed to read a valid transmittable name from JSON (got " + temp + ")");
+        }
 
-            // read the first field name to determine the type of response
-            temp = jsonReader.nextName();
+        jsonReader.endObject();
 
-            // based on the field name, deserialize into the correct type of response
-            switch (temp)
-            {
-                case "response" -> response = SimpleResponse.FromJson(jsonReader);
-                case "orderID" -> response = OrderResponse.FromJson(jsonReader);
-                default -> throw new IOException("Supposed to read a valid transmittable name from JSON (got " + temp + ")");
-            }
+        return response;
+    }
 
-            jsonReader.endObject();
+    /**
+     * Encodes the response in the binary protocol: the code of the response type followed by the content specific to
+     * the type of response, written by the `EncodeContent` method of the subclass.
+     *
+     * @param buffer The buffer to write the response to, from its position.
+     * @throws IOException If the response can't be encoded.
+     * @throws java.nio.BufferOverflowException If the buffer is too small for the response.
+     */
+    public void ToBinary(ByteBuffer buffer) throws IOException
+    {
+        switch (this)
+        {
+            case SimpleResponse ignored -> buffer.put(SIMPLE_RESPONSE);
+            case OrderResponse ignored -> buffer.put(ORDER_RESPONSE);
+            case InsertOrdersResponse ignored -> buffer.put(INSERT_ORDERS_RESPONSE);
+            default -> throw new IOException("Unsupported response in binary protocol (got " + getClass().getSimpleName() + ")");
         }
 
-        return response;
+        EncodeContent(buffer);
+    }
+
+    /**
+     * Abstract method that must be implemented by subclasses to encode their specific content in the binary protocol,
+     * after the code of the response type.
+     *
+     * @param buffer The buffer to write the content to.
+     */
+    protected abstract void EncodeContent(ByteBuffer buffer);
+
+    /**
+     * Decodes a response of the binary protocol, written by ToBinary: reads the code of the response type and calls
+     * the decoding method of the specific response type.
+     *
+     * @param buffer The buffer holding the response, positioned at its beginning.
+     * @return The decoded Response object.
+     * @throws IOException If the message is truncated or is not a valid response.
+     */
+    public static Response FromBinary(ByteBuffer buffer) throws IOException
+    {
+        try
+        {
+            byte code = buffer.get();
+            return switch (code)
+            {
+                case SIMPLE_RESPONSE -> SimpleResponse.FromBinary(buffer);
+                case ORDER_RESPONSE -> OrderResponse.FromBinary(buffer);
+                case INSERT_ORDERS_RESPONSE -> InsertOrdersResponse.FromBinary(buffer);
+                default -> throw new IOException("Invalid response type from binary message (got " + code + ")");
+            };
+        }
+        catch (BufferUnderflowException e) { throw new IOException("Truncated binary response"); }
     }
 }
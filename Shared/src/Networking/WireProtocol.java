@@ -0,0 +1,47 @@
+package Networking;
+
+/**
+ * This enum defines the encodings of the messages exchanged over a TCP connection. Every connection starts with the
+ * JSON protocol, and a client can switch its connection to the binary protocol with a SelectProtocolRequest.
+ *
+ * Both protocols frame each message with its length, a big-endian 32 bits integer, followed by the message itself, up
+ * to Connection.MAX_MESSAGE_SIZE bytes.
+ * JSON: the message is its JSON in UTF-8 (see JsonFrameWriter).
+ * BINARY: the message is the code of the operation of a request (see OperationType.ToCode) or of the type of a
+ * response, then its fields with a fixed layout, big-endian, the strings being written last (see
+ * Utilities.WriteString).
+ */
+public enum WireProtocol
+{
+    JSON,      // Represents the JSON messages, readable and compatible with every client.
+    BINARY;    // Represents the compact binary messages.
+
+    /**
+     * Converts the enum value to its string representation.
+     *
+     * @return A string representation of the protocol (e.g., "json", "binary").
+     */
+    public String ToString()
+    {
+        return switch (this)
+        {
+            case JSON -> "json";
+            case BINARY -> "binary";
+        };
+    }
+
+    /**
+     * Converts a string to its corresponding WireProtocol enum value.
+     *
+     * @param text The string to be converted (e.g., "json", "binary").
+     * @return The corresponding WireProtocol enum value, or null if the input string doesn't match any known protocol.
+     */
+    public static WireProtocol FromString(String text)
+    {
+        return switch (text) {
+            case "json" -> JSON;
+            case "binary" -> BINARY;
+            default -> null;
+        };
+    }
+}
@@ -1,84 +1,74 @@
 
 package Orders;
 
-import Helpers.Tuple;
-import Messages.ClosedTradesNotification;
-
-import java.util.ArrayList;
-import java.util.List;
-
+/**
+ * Tracks the execution of the order being matched and records each of its fills in a fill buffer.
+ * A cart is owned by the book and reset for every order, so matching an order doesn't allocate it.
+ */
 public class Cart
 {
-    private final List<Order> _orders;
-    private final Order _order;
-    private final long _targetSize;
+    private final FillBuffer _fills;
+    private Order _order;
+    private long _targetSize;
     private long _remainingSize;
     private long _totalPrice;
+    private long _lastPrice;
 
-    public Cart(Order order)
+    public Cart(FillBuffer fills)
     {
-        _orders = new ArrayList<>();
-        _order = order;
-        _targetSize = order.GetSize();
-        _remainingSize = order.GetSize();
+        _fills = fills;
+        _order = null;
+        _targetSize = 0;
+        _remainingSize = 0;
         _totalPrice = 0;
+        _lastPrice = 0;
     }
 
     public long GetConsumedSize() { return _targetSize - _remainingSize; }
     public boolean IsOrderConsumed() { return _remainingSize == 0; }
     public long GetTotalPrice() { return _totalPrice; }
-
-    public boolean CanSellTo(Order askOrder)
+    public long GetLastPrice() { return _lastPrice; }
+
+    /**
+     * Starts tracking the execution of a new order.
+     *
+     * @param order The order to match.
+     */
+    public void Reset(Order order)
     {
-        Tuple<Long, Long> size_price = _order.CanSellTo(askOrder);
-
-        if (size_price.GetX() == 0) { return false; }
-
-        _orders.add(askOrder);
-        _remainingSize -= size_price.GetX();
-        _totalPrice += size_price.GetY();
-
-        return _remainingSize != 0;
-    }
-
-    public boolean CanBuyFrom(Order order)
-    {
-        Tuple<Long, Long> size_price = _order.CanBuyFrom(order);
-
-        if (size_price.GetX() == 0) { return false; }
-
-        _orders.add(order);
-        _remainingSize -= size_price.GetX();
-        _totalPrice += size_price.GetY();
-
-        return _remainingSize != 0;
+        _order = order;
+        _targetSize = order.GetSize();
+        _remainingSize = order.GetSize();
+        _totalPrice = 0;
+        _lastPrice = 0;
     }
 
-    public Tuple<List<Order>, ClosedTradesNotification> SellAll()
+    /**
+     * Trades the order with a resting limit order of the opposite side if both accept the trade price, decreasing the
+     * size of both orders and recording the fill.
+     *
+     * @param ladder The ladder where the resting order rests.
+     * @param slot The slot of the resting order in the store of the ladder.
+     * @return The size of the fill, 0 if the orders don't match.
+     */
+    public long TryFill(PriceLadder ladder, int slot)
     {
-        List<Order> consumedOrders = new ArrayList<>();
-        ClosedTradesNotification notification = new ClosedTradesNotification();
+        OrderStore store = ladder.GetStore();
+        long limitPrice = store.GetPrice(slot);
 
-        for (Order order : _orders)
-        {
-            _order.TrySellTo(order, notification);
-            if (order.GetSize() == 0) { consumedOrders.add(order); }
-        }
+        long price = _order.GetTradePrice(limitPrice);
+        if (!_order.CanTradeWith(limitPrice, price)) { return 0; }
 
-        return new Tuple<>(consumedOrders, notification);
-    }
+        long size = Math.min(_remainingSize, store.GetSize(slot));
 
-    public Tuple<List<Order>, ClosedTradesNotification> BuyAll()
-    {
-        List<Order> consumedOrders = new ArrayList<>();
-        ClosedTradesNotification notification = new ClosedTradesNotification();
+        _order.DecreaseSize(size);
+        ladder.DecreaseSize(slot, size);
 
-        for (Order order : _orders)
-        {
-            _order.TryBuyFrom(order, notification);
-            if (order.GetSize() == 0) { consumedOrders.add(order); }
-        }
+        _remainingSize -= size;
+        _totalPrice += price;
+        _lastPrice = price;
 
-        return new Tuple<>(consumedOrders, notification);
+        _fills.Add(store.GetID(slot), store.GetTimestamp(slot), store.GetSize(slot) == 0, size, price);
+        return size;
     }
 }
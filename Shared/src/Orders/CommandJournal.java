@@ -0,0 +1,348 @@
+package Orders;
+
+import Users.User;
+import Users.UserCollection;
+import Users.UserNotRegisteredException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The event-sourced persistence of an order book: every command that changes the book (an order inserted, a resting
+ * order canceled, an auction run) is appended to a binary journal before being executed, and the book is periodically
+ * written to a snapshot file. On startup the book is rebuilt from the latest snapshot and the journal records written
+ * after it, so the restart time depends on the commands received since the last snapshot and not on the whole
+ * trading history.
+ *
+ * Journal record layout (big-endian):
+ *   int     length of the body
+ *   body    byte record type, long sequence number, then the fields of the record type
+ *   int     CRC32 of the body, a record with a wrong checksum or cut by a crash ends the journal
+ *
+ * The snapshot holds the sequence number of the last command it includes, so the records already included are
+ * skipped if the server stopped after writing the snapshot but before truncating the journal.
+ */
+public class CommandJournal
+{
+    // the record types
+    private static final byte RECORD_ORDER = 1;
+    private static final byte RECORD_CANCEL = 2;
+    private static final byte RECORD_AUCTION = 3;
+
+    // the header of a snapshot file
+    private static final int SNAPSHOT_MAGIC = 0x4F42534E;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    // the size of a record without the username, and the maximum size of an encoded username
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Byte.BYTES + Long.BYTES;
+    private static final int MAX_USERNAME_SIZE = 1024;
+
+    // the journal and snapshot files of the book
+    private final Path _journalPath;
+    private final Path _snapshotPath;
+
+    // if true, each record is forced to the storage device before the command is executed, otherwise it is only
+    // handed to the operating system (it survives a crash of the server, not of the machine)
+    private final boolean _isSyncEnabled;
+
+    // the open journal, null until the book has been recovered
+    private FileChannel _channel;
+
+    // the sequence number of the last record appended
+    private long _sequence;
+
+    // the buffer and the checksum reused to encode every record
+    private final ByteBuffer _buffer;
+    private final CRC32 _crc;
+
+    /**
+     * Constructor for the journal of a book, the files are opened by Recover.
+     *
+     * @param directory The directory holding the journals and the snapshots.
+     * @param symbol The symbol of the instrument of the book.
+     * @param isSyncEnabled True if each record must be forced to the storage device.
+     */
+    public CommandJournal(String directory, String symbol, boolean isSyncEnabled)
+    {
+        _journalPath = Path.of(directory, symbol + ".journal");
+        _snapshotPath = Path.of(directory, symbol + ".snapshot");
+        _isSyncEnabled = isSyncEnabled;
+        _channel = null;
+        _sequence = 0;
+        _buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + 4 * Long.BYTES + Byte.BYTES * 2 + Short.BYTES + MAX_USERNAME_SIZE + Integer.BYTES);
+        _crc = new CRC32();
+    }
+
+    /**
+     * Rebuilds a book from the latest snapshot and the journal records written after it, then opens the journal to
+     * append the new commands. The book must not record its commands while they are replayed.
+     *
+     * @param book The empty book to rebuild.
+     * @return The highest order ID found in the snapshot and in the journal (0 if none).
+     * @throws IOException If the files can't be read or the journal can't be opened.
+     */
+    long Recover(OrderBook book) throws IOException
+    {
+        Files.createDirectories(_journalPath.getParent());
+
+        long maxOrderID = 0;
+        long snapshotSequence = 0;
+
+        if (Files.exists(_snapshotPath))
+        {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(_snapshotPath))))
+            {
+                if (input.readInt() != SNAPSHOT_MAGIC || input.readInt() != SNAPSHOT_VERSION) { throw new IOException("Invalid snapshot file " + _snapshotPath); }
+
+                snapshotSequence = input.readLong();
+                maxOrderID = book.ReadSnapshot(input);
+            }
+        }
+
+        _sequence = snapshotSequence;
+        _channel = FileChannel.open(_journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long validLength = 0;
+        long replayed = 0;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(_journalPath))))
+        {
+            while (true)
+            {
+                int length;
+                try { length = input.readInt(); }
+                catch (EOFException e) { break; }
+
+                // a record cut by a crash or corrupted ends the journal, the commands it holds were never executed
+                if (length < Byte.BYTES + Long.BYTES || length > _buffer.capacity()) { break; }
+
+                byte[] body = new byte[length];
+                int checksum;
+                try
+                {
+                    input.readFully(body);
+                    checksum = input.readInt();
+                }
+                catch (EOFException e) { break; }
+
+                _crc.reset();
+                _crc.update(body);
+                if ((int) _crc.getValue() != checksum) { break; }
+
+                validLength += Integer.BYTES + length + Integer.BYTES;
+
+                ByteBuffer record = ByteBuffer.wrap(body);
+                byte type = record.get();
+                long sequence = record.getLong();
+
+                // the record is already included in the snapshot
+                if (sequence <= _sequence) { continue; }
+                _sequence = sequence;
+
+                long orderID = Replay(book, type, record);
+                maxOrderID = Math.max(maxOrderID, orderID);
+                replayed++;
+            }
+        }
+
+        // drop the broken tail, so that the new records follow the last valid one
+        if (_channel.size() > validLength) { System.out.printf("[WARNING] Discarding %d bytes at the end of %s\n", _channel.size() - validLength, _journalPath); }
+        _channel.truncate(validLength);
+        _channel.position(validLength);
+
+        System.out.printf("[INFO] Recovered %s from snapshot %d and %d journal commands\n", book.GetSymbol(), snapshotSequence, replayed);
+        return maxOrderID;
+    }
+
+    /**
+     * Replays a journal record on the book.
+     *
+     * @return The ID of the order carried by the record, 0 if none.
+     */
+    private long Replay(OrderBook book, byte type, ByteBuffer record) throws IOException
+    {
+        switch (type)
+        {
+            case RECORD_ORDER ->
+            {
+                Type orderType = Type.values()[record.get()];
+                Method method = Method.values()[record.get()];
+                long orderID = record.getLong();
+                long size = record.getLong();
+                long price = record.getLong();
+
+                byte[] username = new byte[record.getShort()];
+                record.get(username);
+
+                User user = FindUser(new String(username, StandardCharsets.UTF_8));
+                if (user == null) { return orderID; }
+
+                book.ReplayOrder(CreateOrder(orderType, orderID, method, size, price, user));
+                return orderID;
+            }
+            case RECORD_CANCEL ->
+            {
+                book.ReplayCancel(record.getLong());
+                return 0;
+            }
+            case RECORD_AUCTION ->
+            {
+                book.ExecuteAuction();
+                return 0;
+            }
+            default -> throw new IOException("Invalid record type in " + _journalPath + " (got " + type + ")");
+        }
+    }
+
+    /**
+     * Appends an order to the journal, before it is executed.
+     *
+     * @param order The market, limit or stop order.
+     */
+    synchronized void AppendOrder(Order order)
+    {
+        byte[] username = order.GetUser().GetUsername().getBytes(StandardCharsets.UTF_8);
+        int usernameLength = Math.min(username.length, MAX_USERNAME_SIZE);
+
+        BeginRecord(RECORD_ORDER);
+        _buffer.put((byte) order.GetType().ordinal());
+        _buffer.put((byte) order.GetMethod().ordinal());
+        _buffer.putLong(order.GetID());
+        _buffer.putLong(order.GetSize());
+        _buffer.putLong(order instanceof StopOrder stopOrder ? stopOrder.GetStopPrice() : order.GetPrice());
+        _buffer.putShort((short) usernameLength);
+        _buffer.put(username, 0, usernameLength);
+        EndRecord();
+    }
+
+    /**
+     * Appends the cancellation of a resting order to the journal, before the order is removed from the book.
+     *
+     * @param orderID The ID of the canceled order.
+     */
+    synchronized void AppendCancel(long orderID)
+    {
+        BeginRecord(RECORD_CANCEL);
+        _buffer.putLong(orderID);
+        EndRecord();
+    }
+
+    /**
+     * Appends a call auction to the journal, before it is run.
+     */
+    synchronized void AppendAuction()
+    {
+        BeginRecord(RECORD_AUCTION);
+        EndRecord();
+    }
+
+    private void BeginRecord(byte type)
+    {
+        _buffer.clear();
+        _buffer.putInt(0);
+        _buffer.put(type);
+        _buffer.putLong(++_sequence);
+    }
+
+    private void EndRecord()
+    {
+        int length = _buffer.position() - Integer.BYTES;
+        _buffer.putInt(0, length);
+
+        _crc.reset();
+        _crc.update(_buffer.array(), Integer.BYTES, length);
+        _buffer.putInt((int) _crc.getValue());
+
+        _buffer.flip();
+        try
+        {
+            while (_buffer.hasRemaining()) { _channel.write(_buffer); }
+            if (_isSyncEnabled) { _channel.force(false); }
+        }
+        catch (IOException e)
+        {
+            System.out.printf("[ERROR] Unable to write to %s: %s\n", _journalPath, e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes the snapshot of the book and truncates the journal, the caller must prevent any change of the book
+     * meanwhile. The snapshot replaces the previous one atomically, so a crash leaves either the old or the new one.
+     *
+     * @param book The book to save.
+     * @throws IOException If the snapshot can't be written or the journal can't be truncated.
+     */
+    synchronized void WriteSnapshot(OrderBook book) throws IOException
+    {
+        Path temporaryPath = _snapshotPath.resolveSibling(_snapshotPath.getFileName() + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(temporaryPath.toFile());
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file)))
+        {
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeInt(SNAPSHOT_VERSION);
+            output.writeLong(_sequence);
+            book.WriteSnapshot(output);
+
+            output.flush();
+            file.getFD().sync();
+        }
+
+        Files.move(temporaryPath, _snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // the records are included in the snapshot, the sequence numbers continue from the last one
+        _channel.truncate(0);
+        _channel.position(0);
+    }
+
+    /**
+     * Closes the journal.
+     */
+    synchronized void Close()
+    {
+        if (_channel == null) { return; }
+
+        try { _channel.close(); }
+        catch (IOException e) { System.out.printf("[ERROR] Unable to close %s: %s\n", _journalPath, e.getMessage()); }
+
+        _channel = null;
+    }
+
+    /**
+     * Creates an order from its fields in a journal record or in a snapshot.
+     *
+     * @param price The limit price of a limit order, the stop price of a stop order, ignored for a market order.
+     */
+    public static Order CreateOrder(Type type, long orderID, Method method, long size, long price, User user)
+    {
+        return switch (type)
+        {
+            case MARKET -> new MarketOrder(orderID, method, size, user);
+            case LIMIT -> new LimitOrder(orderID, method, size, price, user);
+            case STOP -> new StopOrder(orderID, method, size, price, user);
+        };
+    }
+
+    /**
+     * Finds the user who placed a journaled or saved order.
+     *
+     * @return The user, or null if the user is no longer registered.
+     */
+    static User FindUser(String username)
+    {
+        try { return UserCollection.FromName(username); }
+        catch (UserNotRegisteredException e)
+        {
+            System.out.printf("[WARNING] Skipping order of unknown user %s\n", username);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package Orders;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, versioned view of the depth of the order book: the levels of its four ladders aggregated per price
+ * (price, total size and number of orders), best level first.
+ * The book publishes a new view after each operation, so that the status and the depth snapshots are read without
+ * taking any lock of the book. Publishing is cheap because the views share their structure: the levels of a side are
+ * split in small pages and a change copies only the page holding the changed level and the array of the pages.
+ */
+public class DepthView
+{
+    // the view of an empty book
+    public static final DepthView EMPTY = new DepthView(0, 0, Side.Empty(false), Side.Empty(true), Side.Empty(true), Side.Empty(false));
+
+    // the number of views published before this one
+    private final long _version;
+
+    // the sequence number of the last depth update included in the limit sides (0 if the depth feed is disabled)
+    private final long _sequence;
+
+    // the sides of the book, as the ladders of the book
+    private final Side _askLimits;
+    private final Side _bidLimits;
+    private final Side _askStops;
+    private final Side _bidStops;
+
+    private DepthView(long version, long sequence, Side askLimits, Side bidLimits, Side askStops, Side bidStops)
+    {
+        _version = version;
+        _sequence = sequence;
+        _askLimits = askLimits;
+        _bidLimits = bidLimits;
+        _askStops = askStops;
+        _bidStops = bidStops;
+    }
+
+    // getter methods
+
+    public long GetVersion() { return _version; }
+    public long GetSequence() { return _sequence; }
+
+    /**
+     * Gets a side of the book.
+     *
+     * @param type The type of the orders of the side, limit or stop.
+     * @param method The method of the orders of the side.
+     * @return The levels of the side, best first.
+     */
+    public Side GetSide(Type type, Method method)
+    {
+        if (type == Type.STOP) { return method == Method.ASK ? _askStops : _bidStops; }
+        return method == Method.ASK ? _askLimits : _bidLimits;
+    }
+
+    /**
+     * Builds the next version of the view, replacing one side.
+     *
+     * @param type The type of the orders of the side.
+     * @param method The method of the orders of the side.
+     * @param side The new levels of the side.
+     * @param sequence The sequence number of the last depth update included in the view.
+     * @return The new view.
+     */
+    DepthView With(Type type, Method method, Side side, long sequence)
+    {
+        boolean isAsk = method == Method.ASK;
+        if (type == Type.STOP) { return new DepthView(_version + 1, sequence, _askLimits, _bidLimits, isAsk ? side : _askStops, isAsk ? _bidStops : side); }
+        return new DepthView(_version + 1, sequence, isAsk ? side : _askLimits, isAsk ? _bidLimits : side, _askStops, _bidStops);
+    }
+
+    /**
+     * The immutable levels of a side of the book, best first, split in pages of consecutive levels.
+     */
+    public static final class Side
+    {
+        // the largest number of levels of a page, a page reaching it is split in two halves, and the number of levels
+        // below which a page is merged with its neighbour
+        private static final int MAX_PAGE_LEVELS = 64;
+        private static final int MIN_PAGE_LEVELS = MAX_PAGE_LEVELS / 4;
+
+        private static final Side EMPTY_ASCENDING = new Side(false, new Page[0]);
+        private static final Side EMPTY_DESCENDING = new Side(true, new Page[0]);
+
+        // true if a higher price is better (the levels are sorted by descending price)
+        private final boolean _higherIsBetter;
+
+        // the pages, never empty, the depth of the first level of each page and the number of levels of the side
+        private final Page[] _pages;
+        private final int[] _starts;
+        private final int _levelCount;
+
+        private Side(boolean higherIsBetter, Page[] pages)
+        {
+            _higherIsBetter = higherIsBetter;
+            _pages = pages;
+            _starts = new int[pages.length];
+
+            int count = 0;
+            for (int i = 0; i < pages.length; i++)
+            {
+                _starts[i] = count;
+                count += pages[i]._prices.length;
+            }
+            _levelCount = count;
+        }
+
+        static Side Empty(boolean higherIsBetter) { return higherIsBetter ? EMPTY_DESCENDING : EMPTY_ASCENDING; }
+
+        // getter methods
+
+        public int GetLevelCount() { return _levelCount; }
+        public boolean IsEmpty() { return _levelCount == 0; }
+
+        /**
+         * Gets the price of a level.
+         *
+         * @param depth The depth of the level, 0 for the best one.
+         */
+        public long GetPrice(int depth) { int page = FindPageAt(depth); return _pages[page]._prices[depth - _starts[page]]; }
+
+        /**
+         * Gets the total size resting at a level.
+         *
+         * @param depth The depth of the level, 0 for the best one.
+         */
+        public long GetSize(int depth) { int page = FindPageAt(depth); return _pages[page]._sizes[depth - _starts[page]]; }
+
+        /**
+         * Gets the number of orders resting at a level.
+         *
+         * @param depth The depth of the level, 0 for the best one.
+         */
+        public int GetOrderCount(int depth) { int page = FindPageAt(depth); return _pages[page]._counts[depth - _starts[page]]; }
+
+        /**
+         * Builds the side with a level added, updated or removed, sharing the unchanged pages.
+         *
+         * @param price The price of the level.
+         * @param size The total size resting at the level.
+         * @param count The number of orders resting at the level, 0 to remove the level.
+         * @return The new side, or this side if nothing changed.
+         */
+        Side With(long price, long size, int count)
+        {
+            if (_pages.length == 0)
+            {
+                if (count == 0) { return this; }
+                return new Side(_higherIsBetter, new Page[] { new Page(new long[] { price }, new long[] { size }, new int[] { count }) });
+            }
+
+            int pageIndex = FindPageOf(price);
+            Page page = _pages[pageIndex];
+            int index = page.Search(price, _higherIsBetter);
+
+            // an update
+            if (index >= 0 && count > 0) { return new Side(_higherIsBetter, Replace(_pages, pageIndex, page.Set(index, size, count))); }
+
+            // a removal, merging what is left of the page with a neighbour if it became too small
+            if (index >= 0)
+            {
+                Page removed = page.Remove(index);
+                if (removed._prices.length == 0) { return new Side(_higherIsBetter, Remove(_pages, pageIndex)); }
+                if (removed._prices.length >= MIN_PAGE_LEVELS || _pages.length == 1) { return new Side(_higherIsBetter, Replace(_pages, pageIndex, removed)); }
+
+                int first = pageIndex + 1 < _pages.length ? pageIndex : pageIndex - 1;
+                Page left = first == pageIndex ? removed : _pages[first];
+                Page right = first == pageIndex ? _pages[first + 1] : removed;
+                if (left._prices.length + right._prices.length > MAX_PAGE_LEVELS) { return new Side(_higherIsBetter, Replace(_pages, pageIndex, removed)); }
+
+                Page[] pages = Remove(_pages, first + 1);
+                pages[first] = Page.Concat(left, right);
+                return new Side(_higherIsBetter, pages);
+            }
+
+            // an insertion, splitting the page if it became too large
+            if (count == 0) { return this; }
+
+            Page inserted = page.Insert(-index - 1, price, size, count);
+            if (inserted._prices.length <= MAX_PAGE_LEVELS) { return new Side(_higherIsBetter, Replace(_pages, pageIndex, inserted)); }
+
+            Page[] pages = new Page[_pages.length + 1];
+            System.arraycopy(_pages, 0, pages, 0, pageIndex);
+            System.arraycopy(_pages, pageIndex + 1, pages, pageIndex + 2, _pages.length - pageIndex - 1);
+            pages[pageIndex] = inserted.Slice(0, inserted._prices.length / 2);
+            pages[pageIndex + 1] = inserted.Slice(inserted._prices.length / 2, inserted._prices.length);
+            return new Side(_higherIsBetter, pages);
+        }
+
+        /**
+         * Finds the page holding the level at a given depth.
+         */
+        private int FindPageAt(int depth)
+        {
+            if (depth < 0 || depth >= _levelCount) { throw new IndexOutOfBoundsException("Depth " + depth + " out of " + _levelCount + " levels"); }
+
+            int low = 0;
+            int high = _pages.length - 1;
+            while (low < high)
+            {
+                int middle = (low + high + 1) >>> 1;
+                if (_starts[middle] <= depth) { low = middle; }
+                else { high = middle - 1; }
+            }
+
+            return low;
+        }
+
+        /**
+         * Finds the page holding (or that would hold) the level with a given price: the last page whose first level
+         * is not worse than the price, or the first page.
+         */
+        private int FindPageOf(long price)
+        {
+            int low = 0;
+            int high = _pages.length - 1;
+            while (low < high)
+            {
+                int middle = (low + high + 1) >>> 1;
+                if (Compare(_pages[middle]._prices[0], price, _higherIsBetter) <= 0) { low = middle; }
+                else { high = middle - 1; }
+            }
+
+            return low;
+        }
+
+        private static Page[] Replace(Page[] pages, int index, Page page)
+        {
+            Page[] copy = pages.clone();
+            copy[index] = page;
+            return copy;
+        }
+
+        private static Page[] Remove(Page[] pages, int index)
+        {
+            Page[] copy = new Page[pages.length - 1];
+            System.arraycopy(pages, 0, copy, 0, index);
+            System.arraycopy(pages, index + 1, copy, index, pages.length - index - 1);
+            return copy;
+        }
+    }
+
+    /**
+     * Compares two prices in the order of a side: negative if the first one is better.
+     */
+    private static int Compare(long price, long other, boolean higherIsBetter) { return higherIsBetter ? Long.compare(other, price) : Long.compare(price, other); }
+
+    /**
+     * An immutable page of consecutive levels of a side, as parallel columns.
+     */
+    private static final class Page
+    {
+        private final long[] _prices;
+        private final long[] _sizes;
+        private final int[] _counts;
+
+        private Page(long[] prices, long[] sizes, int[] counts)
+        {
+            _prices = prices;
+            _sizes = sizes;
+            _counts = counts;
+        }
+
+        /**
+         * Searches the level with a given price.
+         *
+         * @return The index of the level, or (-(insertion point) - 1) if the page has no level with that price.
+         */
+        private int Search(long price, boolean higherIsBetter)
+        {
+            int low = 0;
+            int high = _prices.length - 1;
+            while (low <= high)
+            {
+                int middle = (low + high) >>> 1;
+                int comparison = Compare(_prices[middle], price, higherIsBetter);
+
+                if (comparison < 0) { low = middle + 1; }
+                else if (comparison > 0) { high = middle - 1; }
+                else { return middle; }
+            }
+
+            return -(low + 1);
+        }
+
+        private Page Set(int index, long size, int count)
+        {
+            long[] sizes = _sizes.clone();
+            int[] counts = _counts.clone();
+            sizes[index] = size;
+            counts[index] = count;
+            return new Page(_prices, sizes, counts);
+        }
+
+        private Page Insert(int index, long price, long size, int count)
+        {
+            int length = _prices.length;
+            long[] prices = new long[length + 1];
+            long[] sizes = new long[length + 1];
+            int[] counts = new int[length + 1];
+
+            System.arraycopy(_prices, 0, prices, 0, index);
+            System.arraycopy(_sizes, 0, sizes, 0, index);
+            System.arraycopy(_counts, 0, counts, 0, index);
+            prices[index] = price;
+            sizes[index] = size;
+            counts[index] = count;
+            System.arraycopy(_prices, index, prices, index + 1, length - index);
+            System.arraycopy(_sizes, index, sizes, index + 1, length - index);
+            System.arraycopy(_counts, index, counts, index + 1, length - index);
+
+            return new Page(prices, sizes, counts);
+        }
+
+        private Page Remove(int index)
+        {
+            int length = _prices.length;
+            long[] prices = new long[length - 1];
+            long[] sizes = new long[length - 1];
+            int[] counts = new int[length - 1];
+
+            System.arraycopy(_prices, 0, prices, 0, index);
+            System.arraycopy(_sizes, 0, sizes, 0, index);
+            System.arraycopy(_counts, 0, counts, 0, index);
+            System.arraycopy(_prices, index + 1, prices, index, length - index - 1);
+            System.arraycopy(_sizes, index + 1, sizes, index, length - index - 1);
+            System.arraycopy(_counts, index + 1, counts, index, length - index - 1);
+
+            return new Page(prices, sizes, counts);
+        }
+
+        private Page Slice(int from, int to)
+        {
+            return new Page(Arrays.copyOfRange(_prices, from, to), Arrays.copyOfRange(_sizes, from, to), Arrays.copyOfRange(_counts, from, to));
+        }
+
+        private static Page Concat(Page left, Page right)
+        {
+            int length = left._prices.length + right._prices.length;
+            long[] prices = Arrays.copyOf(left._prices, length);
+            long[] sizes = Arrays.copyOf(left._sizes, length);
+            int[] counts = Arrays.copyOf(left._counts, length);
+
+            System.arraycopy(right._prices, 0, prices, left._prices.length, right._prices.length);
+            System.arraycopy(right._sizes, 0, sizes, left._sizes.length, right._sizes.length);
+            System.arraycopy(right._counts, 0, counts, left._counts.length, right._counts.length);
+
+            return new Page(prices, sizes, counts);
+        }
+    }
+}
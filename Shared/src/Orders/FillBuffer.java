@@ -0,0 +1,82 @@
+package Orders;
+
+import java.util.Arrays;
+
+/**
+ * Records the fills of the order being matched as primitive columns, so that a fill doesn't allocate any object.
+ * The buffer is owned by the book and reused for every order: it is cleared once its fills have been turned into
+ * history records and notifications, and it only grows when an order produces more fills than ever before.
+ * The resting orders hit by the fills are described by value, since the slot of a consumed order is freed and reused
+ * before the fills are published.
+ */
+public class FillBuffer
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    // for each fill: the ID and the creation timestamp of the resting order hit by the fill, true if the fill consumed
+    // the resting order, the size and the price of the fill
+    private long[] _orderIDs;
+    private long[] _timestamps;
+    private boolean[] _isConsumed;
+    private long[] _sizes;
+    private long[] _prices;
+
+    // the number of fills recorded since the last clear
+    private int _count;
+
+    /**
+     * Constructor for creating an empty fill buffer.
+     */
+    public FillBuffer()
+    {
+        _orderIDs = new long[INITIAL_CAPACITY];
+        _timestamps = new long[INITIAL_CAPACITY];
+        _isConsumed = new boolean[INITIAL_CAPACITY];
+        _sizes = new long[INITIAL_CAPACITY];
+        _prices = new long[INITIAL_CAPACITY];
+        _count = 0;
+    }
+
+    // getter methods
+
+    public int GetCount() { return _count; }
+    public boolean IsEmpty() { return _count == 0; }
+    public long GetOrderID(int index) { return _orderIDs[index]; }
+    public long GetTimestamp(int index) { return _timestamps[index]; }
+    public boolean IsConsumed(int index) { return _isConsumed[index]; }
+    public long GetSize(int index) { return _sizes[index]; }
+    public long GetPrice(int index) { return _prices[index]; }
+
+    /**
+     * Records a fill, growing the columns if they are full.
+     *
+     * @param orderID The ID of the resting order hit by the fill.
+     * @param timestamp The creation timestamp of the resting order.
+     * @param isConsumed True if the fill consumed the resting order.
+     * @param size The size of the fill.
+     * @param price The price of the fill.
+     */
+    void Add(long orderID, long timestamp, boolean isConsumed, long size, long price)
+    {
+        if (_count == _sizes.length)
+        {
+            _orderIDs = Arrays.copyOf(_orderIDs, _count * 2);
+            _timestamps = Arrays.copyOf(_timestamps, _count * 2);
+            _isConsumed = Arrays.copyOf(_isConsumed, _count * 2);
+            _sizes = Arrays.copyOf(_sizes, _count * 2);
+            _prices = Arrays.copyOf(_prices, _count * 2);
+        }
+
+        _orderIDs[_count] = orderID;
+        _timestamps[_count] = timestamp;
+        _isConsumed[_count] = isConsumed;
+        _sizes[_count] = size;
+        _prices[_count] = price;
+        _count++;
+    }
+
+    /**
+     * Removes all the fills.
+     */
+    void Clear() { _count = 0; }
+}
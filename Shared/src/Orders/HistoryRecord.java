@@ -1,8 +1,6 @@
 
 package Orders;
 
-import Helpers.Tuple;
-
 /**
  * Represents a historical record of an order trade, capturing the details of the trade.
  * This class is used to store information about completed trades, including order IDs,
@@ -10,6 +8,9 @@ import Helpers.Tuple;
  */
 public class HistoryRecord
 {
+    // the symbol of the traded instrument
+    private final String _symbol;
+
     // unique identifier of the order
     private final long _orderID;
 
@@ -31,6 +32,7 @@ public class HistoryRecord
     /**
      * Constructor for creating a history record with complete details.
      *
+     * @param symbol The symbol of the traded instrument.
      * @param orderID The unique ID of the order.
      * @param method The method of the order (Bid or Ask).
      * @param type The type of the order (Market, Limit, Stop).
@@ -38,8 +40,9 @@ public class HistoryRecord
      * @param price The price at which the trade was executed.
      * @param timestamp The timestamp when the trade occurred.
      */
-    public HistoryRecord(long orderID, Method method, Type type, long size, long price, long timestamp)
+    public HistoryRecord(String symbol, long orderID, Method method, Type type, long size, long price, long timestamp)
     {
+        _symbol = symbol;
         _orderID = orderID;
         _method = method;
         _type = type;
@@ -48,26 +51,9 @@ public class HistoryRecord
         _timestamp = timestamp;
     }
 
-    /**
-     * Constructor for creating a history record from an order and a size-price tuple.
-     * This constructor simplifies creating a history record based on an order that has
-     * been partially or fully executed, using the size-price information of the trade.
-     *
-     * @param order The order involved in the trade.
-     * @param size_price A Tuple containing the size and price of the trade.
-     */
-    public HistoryRecord(Order order, Tuple<Long, Long> size_price)
-    {
-        _orderID = order.GetID();
-        _method = order.GetMethod();
-        _type = order.GetType();
-        _size = size_price.GetX();
-        _price = size_price.GetY();
-        _timestamp = System.currentTimeMillis();
-    }
-
     // getter methods to access the record's details
 
+    public String GetSymbol() { return _symbol; }
     public long GetID() { return _orderID; }
     public Method GetMethod() { return _method; }
     public Type GetType() { return _type; }
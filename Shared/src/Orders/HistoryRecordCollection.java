@@ -11,8 +11,10 @@ import com.google.gson.stream.JsonWriter;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 // first layer list ordered by year and month
 // second layer list ordered by day of month
@@ -49,6 +51,104 @@ public class HistoryRecordCollection
                     >>
             > _collection;
 
+    // the trades recorded by each order book and not yet added to the collection, merged into it before it is read or
+    // saved
+    private final List<PendingTrades> _pendingTrades;
+
+    /**
+     * The trades recorded by the matching path of one order book and not yet added to the collection: they are stored
+     * in primitive columns, so that recording a trade doesn't allocate, and moved into the collection before it is read
+     * or saved. Each book records its trades under its own lock, so that the books of different instruments don't
+     * contend while matching. Two batches are swapped on each move, so that the book keeps recording while its pending
+     * trades are added.
+     */
+    public static class PendingTrades
+    {
+        // the symbol of the instrument of the book
+        private final String _symbol;
+
+        private final Object _lock;
+        private TradeBatch _pending;
+        private TradeBatch _moving;
+
+        private PendingTrades(String symbol)
+        {
+            _symbol = symbol;
+            _lock = new Object();
+            _pending = new TradeBatch();
+            _moving = new TradeBatch();
+        }
+
+        /**
+         * Records a trade without allocating, it is added to the collection the next time the collection is read or
+         * saved.
+         *
+         * @param orderID The unique ID of the order.
+         * @param method The method of the order (Bid or Ask).
+         * @param type The type of the order (Market, Limit, Stop).
+         * @param size The size (quantity) of the trade.
+         * @param price The price at which the trade was executed.
+         * @param timestamp The timestamp when the trade occurred.
+         */
+        public void Add(long orderID, Method method, Type type, long size, long price, long timestamp)
+        {
+            synchronized (_lock) { _pending.Add(orderID, method, type, size, price, timestamp); }
+        }
+
+        /**
+         * Swaps the batches, so that the book records its next trades in the other one.
+         *
+         * @return The batch of the trades recorded so far.
+         */
+        private TradeBatch Swap()
+        {
+            synchronized (_lock)
+            {
+                TradeBatch batch = _pending;
+                _pending = _moving;
+                _moving = batch;
+                return batch;
+            }
+        }
+    }
+
+    /**
+     * A batch of trades stored as primitive columns, reused after its trades have been moved into the collection.
+     */
+    private static class TradeBatch
+    {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private long[] _orderIDs = new long[INITIAL_CAPACITY];
+        private Method[] _methods = new Method[INITIAL_CAPACITY];
+        private Type[] _types = new Type[INITIAL_CAPACITY];
+        private long[] _sizes = new long[INITIAL_CAPACITY];
+        private long[] _prices = new long[INITIAL_CAPACITY];
+        private long[] _timestamps = new long[INITIAL_CAPACITY];
+        private int _count = 0;
+
+        private void Add(long orderID, Method method, Type type, long size, long price, long timestamp)
+        {
+            if (_count == _orderIDs.length)
+            {
+                _orderIDs = Arrays.copyOf(_orderIDs, _count * 2);
+                _methods = Arrays.copyOf(_methods, _count * 2);
+                _types = Arrays.copyOf(_types, _count * 2);
+                _sizes = Arrays.copyOf(_sizes, _count * 2);
+                _prices = Arrays.copyOf(_prices, _count * 2);
+                _timestamps = Arrays.copyOf(_timestamps, _count * 2);
+            }
+
+            _orderIDs[_count] = orderID;
+            _methods[_count] = method;
+            _types[_count] = type;
+            _sizes[_count] = size;
+            _prices[_count] = price;
+            _timestamps[_count] = timestamp;
+            _count++;
+        }
+    }
+
     /**
      * Private constructor initializing the collection.
      * This constructor ensures that the records are sorted by year, month, and day.
@@ -67,6 +167,8 @@ public class HistoryRecordCollection
                     if (comp == 0) { comp = Integer.compare(month1, month2); }
                     return comp;
                 });
+
+        _pendingTrades = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -147,18 +249,52 @@ public class HistoryRecordCollection
         }
     }
 
+    /**
+     * Creates the pending trades of an order book, merged into the collection from then on.
+     *
+     * @param symbol The symbol of the instrument of the book.
+     * @return The pending trades, to record the trades of the book.
+     */
+    private PendingTrades CreatePendingTradesInternal(String symbol)
+    {
+        PendingTrades pendingTrades = new PendingTrades(symbol);
+        _pendingTrades.add(pendingTrades);
+        return pendingTrades;
+    }
+
+    /**
+     * Moves the pending trades of all the books into the collection, must be called holding the lock of the
+     * collection.
+     */
+    private void MovePendingTrades()
+    {
+        for (PendingTrades pendingTrades : _pendingTrades)
+        {
+            TradeBatch batch = pendingTrades.Swap();
+            for (int i = 0; i < batch._count; i++)
+            {
+                AddInternal(new HistoryRecord(pendingTrades._symbol, batch._orderIDs[i], batch._methods[i], batch._types[i], batch._sizes[i], batch._prices[i], batch._timestamps[i]));
+            }
+
+            batch._count = 0;
+        }
+    }
+
     /**
      * Retrieves the price history for a given request, returning a response.
      *
      * @param request The GetPriceHistoryRequest containing the timestamp.
+     * @param symbol The symbol of the instrument whose prices are requested.
      * @return A SimpleResponse containing the formatted price history.
      */
-    private SimpleResponse GetPricesInternal(GetPriceHistoryRequest request)
+    private SimpleResponse GetPricesInternal(GetPriceHistoryRequest request, String symbol)
     {
         String result;
 
         synchronized (_collection)
         {
+            MovePendingTrades();
+
             TreeSet<Tuple<Long, List<HistoryRecord>>> yearAndMonth = GetFirstLayerTuple(request.GetTimestamp()).GetY();
 
             try (StringWriter stringWriter = new StringWriter();
@@ -174,6 +310,8 @@ public class HistoryRecordCollection
                     long open = 0, close = 0, max = 0, min = 0, count = 0;
                     for (HistoryRecord record : tuple.GetY())
                     {
+                        if (!record.GetSymbol().equals(symbol)) { continue; }
+
                         if (count == 0) { open = record.GetPrice(); }
                         close = record.GetPrice();
 
@@ -210,10 +348,11 @@ public class HistoryRecordCollection
      * Loads history records from a file, parsing the data and organizing it by year, month, and day.
      *
      * @param filename The filename to load the history from.
+     * @param defaultSymbol The symbol assigned to the records saved without one.
      * @return The last used order ID from the loaded data.
      * @throws IOException If an error occurs while reading the file.
      */
-    private long LoadInternal(String filename) throws IOException
+    private long LoadInternal(String filename, String defaultSymbol) throws IOException
     {
         File orderHistoryFile = new File(filename);
         if (!orderHistoryFile.exists()) { return 0; }
@@ -241,8 +380,11 @@ public class HistoryRecordCollection
                 long price = Utilities.ReadLong(jsonReader, "price");
                 long timestamp = Utilities.ReadLong(jsonReader, "timestamp") * 1000;
 
+                // the symbol is missing in the records saved when the server traded a single instrument
+                String symbol = jsonReader.hasNext() ? Utilities.ReadString(jsonReader, "symbol") : defaultSymbol;
+
                 // check if te current month/year exists in the list
-                HistoryRecord record = new HistoryRecord(orderID, method, type, size, price, timestamp);
+                HistoryRecord record = new HistoryRecord(symbol, orderID, method, type, size, price, timestamp);
                 AddInternal(record);
 
                 if (lastUsedID < orderID) { lastUsedID = orderID; }
@@ -266,10 +408,12 @@ public class HistoryRecordCollection
     private void SaveInternal(String filename) throws IOException
     {
         File orderHistoryFile = new File(filename);
-        if (_collection.isEmpty()) { return; }
 
         synchronized (_collection)
         {
+            MovePendingTrades();
+            if (_collection.isEmpty()) { return; }
+
             try (FileWriter fileWriter = new FileWriter(orderHistoryFile);
                  BufferedWriter bufferedWriter = new BufferedWriter(fileWriter);
                  JsonWriter jsonWriter = new JsonWriter(bufferedWriter))
@@ -294,6 +438,7 @@ public class HistoryRecordCollection
                             jsonWriter.name("size").value(record.GetSize());
                             jsonWriter.name("price").value(record.GetPrice());
                             jsonWriter.name("timestamp").value(record.GetTimestamp() / 1000);
+                            jsonWriter.name("symbol").value(record.GetSymbol());
 
                             jsonWriter.endObject();
                         }
@@ -308,8 +453,8 @@ public class HistoryRecordCollection
 
     // public static methods to access functionality
 
-    public static void Add(HistoryRecord record) { _instance.AddInternal(record); }
-    public static SimpleResponse GetPrices(GetPriceHistoryRequest request) { return _instance.GetPricesInternal(request); }
-    public static long Load(String filename) throws IOException { return _instance.LoadInternal(filename); }
+    public static PendingTrades CreatePendingTrades(String symbol) { return _instance.CreatePendingTradesInternal(symbol); }
+    public static SimpleResponse GetPrices(GetPriceHistoryRequest request, String symbol) { return _instance.GetPricesInternal(request, symbol); }
+    public static long Load(String filename, String defaultSymbol) throws IOException { return _instance.LoadInternal(filename, defaultSymbol); }
     public static void Save(String filename) throws IOException { _instance.SaveInternal(filename); }
 }
@@ -0,0 +1,321 @@
+package Orders;
+
+import Helpers.Tuple;
+import Messages.CancelOrderRequest;
+import Messages.OrderResponse;
+import Messages.SimpleResponse;
+import Users.User;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single-writer matching engine: one dedicated thread owns an order book and executes the commands published
+ * by the client handlers. Each instrument has its own book and engine, so different instruments are matched in
+ * parallel. Since no other thread touches the book, the book is accessed without taking any lock and the commands are
+ * executed in a deterministic order (the order in which they were published).
+ *
+ * Commands travel through a pre-allocated ring buffer shared by all the producers, which claim an entry with a single
+ * atomic increment. Each producer gets the result back through its own completion slot and waits on it until the
+ * engine has executed the command.
+ */
+public class MatchingEngine
+{
+    // number of busy-spin iterations before parking, both for the engine waiting for commands and for the producers
+    // waiting for results
+    private static final int SPIN_TRIES = 1000;
+
+    // the kind of operation carried by a command
+    private enum CommandType { MARKET_ORDER, LIMIT_ORDER, STOP_ORDER, ORDERS, CANCEL_ORDER, CANCEL_ALL_ORDERS, AUCTION, SNAPSHOT }
+
+    // an entry of the ring buffer, allocated once and reused for all the commands mapped to it
+    private static class Command
+    {
+        // the sequence of the command stored in the entry, written last by the producer to publish the command
+        private volatile long _sequence = -1;
+
+        private CommandType _type;
+        private Order _order;
+        private List<Order> _orders;
+        private CancelOrderRequest _cancelRequest;
+        private User _user;
+        private Completion _completion;
+    }
+
+    /**
+     * The slot through which the engine hands the result of a command back to the thread that published it.
+     * A producer owns one completion and reuses it for all its commands, since it always waits for the result
+     * of a command before publishing the next one.
+     */
+    public static class Completion
+    {
+        // set by the engine once the result is available
+        private volatile boolean _isDone;
+
+        // the result of the command, or the exception raised while executing it
+        private Object _result;
+        private RuntimeException _exception;
+
+        // the thread waiting for the result
+        private Thread _waiter;
+
+        public Completion()
+        {
+            _isDone = false;
+            _result = null;
+            _exception = null;
+            _waiter = null;
+        }
+
+        private void Prepare()
+        {
+            _result = null;
+            _exception = null;
+            _waiter = Thread.currentThread();
+            _isDone = false;
+        }
+
+        private void Complete(Object result, RuntimeException exception)
+        {
+            Thread waiter = _waiter;
+
+            _result = result;
+            _exception = exception;
+            _isDone = true;
+            LockSupport.unpark(waiter);
+        }
+
+        private Object Await()
+        {
+            int spins = SPIN_TRIES;
+            while (!_isDone)
+            {
+                if (spins > 0) { spins--; Thread.onSpinWait(); }
+                else { LockSupport.park(this); }
+            }
+
+            if (_exception != null) { throw _exception; }
+            return _result;
+        }
+    }
+
+    // the order book owned by the engine
+    private final OrderBook _book;
+
+    // the ring buffer, its length is a power of two so that a sequence is mapped to an entry with a mask
+    private final Command[] _ring;
+    private final int _mask;
+
+    // the next sequence to be claimed by a producer
+    private final AtomicLong _nextSequence;
+
+    // the sequence of the last command executed by the engine
+    private volatile long _executedSequence;
+
+    // true while the engine thread is parked waiting for new commands
+    private volatile boolean _isSleeping;
+
+    // atomic flags to manage the engine state and stop request
+    private final AtomicBoolean _isRunning;
+    private volatile boolean _isStopRequested;
+
+    // the thread owning the order book, created when the engine starts
+    private volatile Thread _thread;
+
+    /**
+     * Constructor for creating a matching engine.
+     *
+     * @param book The order book owned by the engine.
+     * @param ringSize The minimum number of entries of the ring buffer (rounded up to a power of two).
+     */
+    public MatchingEngine(OrderBook book, int ringSize)
+    {
+        _book = book;
+
+        int size = Integer.highestOneBit(Math.max(2, ringSize - 1)) << 1;
+
+        _ring = new Command[size];
+        for (int i = 0; i < size; i++) { _ring[i] = new Command(); }
+        _mask = size - 1;
+
+        _nextSequence = new AtomicLong(0);
+        _executedSequence = -1;
+        _isSleeping = false;
+        _isRunning = new AtomicBoolean(false);
+        _isStopRequested = false;
+        _thread = null;
+    }
+
+    // returns whether the engine is running and accepting commands
+    public boolean IsRunning() { return _isRunning.get(); }
+
+    /**
+     * Starts the engine thread. If the engine is already running, it outputs a warning message.
+     */
+    public void Start()
+    {
+        if (_isRunning.compareAndExchange(false, true))
+        {
+            System.out.println("[WARNING] Matching engine already running");
+            return;
+        }
+
+        _thread = new Thread(this::Run, "MatchingEngine-" + _book.GetSymbol());
+        _thread.start();
+    }
+
+    /**
+     * Stops the engine thread after all the commands already published have been executed.
+     * No command must be published after this call.
+     */
+    public void Stop()
+    {
+        if (!_isRunning.compareAndExchange(true, false))
+        {
+            System.out.println("[WARNING] Matching engine not running");
+            return;
+        }
+
+        _isStopRequested = true;
+        LockSupport.unpark(_thread);
+
+        try { _thread.join(); }
+        catch (InterruptedException e) { System.out.printf("[ERROR] Unable to join the matching engine thread: %s\n", e.getMessage()); }
+    }
+
+    // methods called by the producers, each one blocks until the engine has executed the command
+
+    @SuppressWarnings("unchecked")
+    public Tuple<OrderResponse, List<String>> ProcessOrder(MarketOrder order, Completion completion)
+    {
+        return (Tuple<OrderResponse, List<String>>) Publish(CommandType.MARKET_ORDER, order, null, null, null, completion);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Tuple<OrderResponse, List<String>> ProcessOrder(LimitOrder order, Completion completion)
+    {
+        return (Tuple<OrderResponse, List<String>>) Publish(CommandType.LIMIT_ORDER, order, null, null, null, completion);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Tuple<OrderResponse, List<String>> ProcessOrder(StopOrder order, Completion completion)
+    {
+        return (Tuple<OrderResponse, List<String>>) Publish(CommandType.STOP_ORDER, order, null, null, null, completion);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Tuple<List<OrderResponse>, List<String>> ProcessOrders(List<Order> orders, Completion completion)
+    {
+        return (Tuple<List<OrderResponse>, List<String>>) Publish(CommandType.ORDERS, null, orders, null, null, completion);
+    }
+
+    public SimpleResponse TryCancelOrder(CancelOrderRequest request, User user, Completion completion)
+    {
+        return (SimpleResponse) Publish(CommandType.CANCEL_ORDER, null, null, request, user, completion);
+    }
+
+    public int CancelAllOrders(User user, Completion completion)
+    {
+        return (Integer) Publish(CommandType.CANCEL_ALL_ORDERS, null, null, null, user, completion);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<String> RunAuction(Completion completion)
+    {
+        return (List<String>) Publish(CommandType.AUCTION, null, null, null, null, completion);
+    }
+
+    public boolean SaveSnapshot(Completion completion)
+    {
+        return (Boolean) Publish(CommandType.SNAPSHOT, null, null, null, null, completion);
+    }
+
+    /**
+     * Claims an entry of the ring buffer, fills it with the command and waits for the result.
+     */
+    private Object Publish(CommandType type, Order order, List<Order> orders, CancelOrderRequest cancelRequest, User user, Completion completion)
+    {
+        long sequence = _nextSequence.getAndIncrement();
+
+        // if the ring buffer is full, wait for the engine to execute the command that used the entry one lap ago
+        while (sequence - _executedSequence > _ring.length) { Thread.yield(); }
+
+        Command command = _ring[(int) sequence & _mask];
+        command._type = type;
+        command._order = order;
+        command._orders = orders;
+        command._cancelRequest = cancelRequest;
+        command._user = user;
+        command._completion = completion;
+
+        completion.Prepare();
+
+        // publish the command and wake up the engine if it is waiting for new commands
+        command._sequence = sequence;
+        if (_isSleeping) { LockSupport.unpark(_thread); }
+
+        return completion.Await();
+    }
+
+    /**
+     * The loop of the engine thread: executes the published commands in sequence order until a stop is requested.
+     */
+    private void Run()
+    {
+        long sequence = 0;
+        int spins = SPIN_TRIES;
+
+        while (true)
+        {
+            Command command = _ring[(int) sequence & _mask];
+
+            if (command._sequence != sequence)
+            {
+                if (_isStopRequested) { return; }
+
+                // spin for a while, then park until a producer publishes a new command
+                if (spins > 0) { spins--; Thread.onSpinWait(); continue; }
+
+                _isSleeping = true;
+                if (command._sequence != sequence && !_isStopRequested) { LockSupport.park(this); }
+                _isSleeping = false;
+                continue;
+            }
+
+            spins = SPIN_TRIES;
+            Completion completion = command._completion;
+
+            try { completion.Complete(Execute(command), null); }
+            catch (RuntimeException e)
+            {
+                System.out.printf("[ERROR] Unable to execute command: %s\n", e.getMessage());
+                completion.Complete(null, e);
+            }
+
+            // release the references held by the entry and make it available to the producers again
+            command._order = null;
+            command._orders = null;
+            command._cancelRequest = null;
+            command._user = null;
+            command._completion = null;
+            _executedSequence = sequence++;
+        }
+    }
+
+    private Object Execute(Command command)
+    {
+        return switch (command._type)
+        {
+            case MARKET_ORDER -> _book.ExecuteOrder((MarketOrder) command._order);
+            case LIMIT_ORDER -> _book.ExecuteOrder((LimitOrder) command._order);
+            case STOP_ORDER -> _book.ExecuteOrder((StopOrder) command._order);
+            case ORDERS -> _book.ExecuteOrders(command._orders);
+            case CANCEL_ORDER -> _book.ExecuteCancelOrder(command._cancelRequest, command._user);
+            case CANCEL_ALL_ORDERS -> _book.ExecuteCancelAllOrders(command._user);
+            case AUCTION -> _book.ExecuteAuction();
+            case SNAPSHOT -> _book.WriteSnapshotFile();
+        };
+    }
+}
@@ -38,4 +38,33 @@ public enum Method
             default -> null;
         };
     }
+
+    /**
+     * Converts the enum value to its code in the binary protocol.
+     *
+     * @return The code of the order method (0 for bid, 1 for ask).
+     */
+    public byte ToCode()
+    {
+        return switch (this)
+        {
+            case BID -> 0;
+            case ASK -> 1;
+        };
+    }
+
+    /**
+     * Converts a code of the binary protocol to its corresponding Method enum value.
+     *
+     * @param code The code to be converted (see ToCode).
+     * @return The corresponding Method enum value, or null if the code doesn't match any known method.
+     */
+    public static Method FromCode(byte code)
+    {
+        return switch (code) {
+            case 0 -> BID;
+            case 1 -> ASK;
+            default -> null;
+        };
+    }
 }
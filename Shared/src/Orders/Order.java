@@ -1,8 +1,6 @@
 
 package Orders;
 
-import Helpers.Tuple;
-import Messages.ClosedTradesNotification;
 import Users.User;
 
 /**
@@ -43,13 +41,29 @@ public class Order
      * @param user The user who placed the order
      */
     public Order(long id, Type type, Method method, long size, long price, User user)
+    {
+        this(id, type, method, size, price, System.currentTimeMillis(), user);
+    }
+
+    /**
+     * Constructor for rebuilding an order taken out of the book, keeping its creation timestamp.
+     *
+     * @param id The order ID
+     * @param type The type of the order (Market, Limit, Stop)
+     * @param method The method (Bid or Ask)
+     * @param size The size (quantity) of the order
+     * @param price The price of the order
+     * @param timestamp The timestamp when the order was created
+     * @param user The user who placed the order
+     */
+    protected Order(long id, Type type, Method method, long size, long price, long timestamp, User user)
     {
         _id = id;
         _type = type;
         _method = method;
         _size = size;
         _price = price;
-        _timestamp = System.currentTimeMillis();
+        _timestamp = timestamp;
         _user = user;
     }
 
@@ -111,92 +125,28 @@ public class Order
     /**
      * Decreases the size of the order based on the quantity of the transaction.
      *
-     * @param size_price A Tuple containing the size and price of the trade.
-     */
-    protected void DecreaseSize(Tuple<Long, Long> size_price) { _size -= size_price.GetX(); }
-
-    /**
-     * Creates a Cart object representing the order.
-     *
-     * @return A new Cart object representing this order.
-     */
-    public Cart CreateCart() { return new Cart(this); }
-
-    /**
-     * Checks if the order can sell to another order based on price and size.
-     *
-     * @param order The order being bought from.
-     * @return A Tuple containing the size and price of the trade (0, 0 if no match).
+     * @param size The size of the trade.
      */
-    public Tuple<Long, Long> CanSellTo(Order order)
-    {
-        long price = Math.min(_price, order.GetPrice());
-        long size = Math.min(_size, order.GetSize());
-
-        if (!WantToSellAt(price) || !order.WantToBuyAt(price)) { return new Tuple<>(0L, 0L); }
-
-        return new Tuple<>(size, price);
-    }
-
-    /**
-     * Checks if the order can buy from another order based on price and size.
-     *
-     * @param order The order being sold to.
-     * @return A Tuple containing the size and price of the trade (0, 0 if no match).
-     */
-    public Tuple<Long, Long> CanBuyFrom(Order order)
-    {
-        long price = Math.min(_price, order.GetPrice());
-        long size = Math.min(_size, order.GetSize());
-
-        if (!WantToBuyAt(price) || !order.WantToSellAt(price)) { return new Tuple<>(0L, 0L); }
-
-        return new Tuple<>(size, price);
-    }
+    protected void DecreaseSize(long size) { _size -= size; }
 
     /**
-     * Attempts to sell to another order, updating the order sizes and creating a history record.
+     * Gets the price at which the order would trade with a resting limit order of the opposite side.
      *
-     * @param order The order being sold to.
-     * @param notification The notification object for closed trades.
-     * @return True if the sale was successful, otherwise false.
+     * @param limitPrice The limit price of the resting order.
+     * @return The trade price.
      */
-    public boolean TrySellTo(Order order, ClosedTradesNotification notification)
-    {
-        Tuple<Long, Long> size_price = CanSellTo(order);
-        if (size_price.GetX() == 0) { return false; }
-
-        DecreaseSize(size_price);
-        order.DecreaseSize(size_price);
-
-        if (order.IsConsumed()) { notification.Add(order, size_price); }
-
-        HistoryRecord record = new HistoryRecord(this, size_price);
-        HistoryRecordCollection.Add(record);
-
-        return true;
-    }
+    public long GetTradePrice(long limitPrice) { return Math.min(_price, limitPrice); }
 
     /**
-     * Attempts to buy from another order, updating the order sizes and creating a history record.
+     * Checks if the order and a resting limit order of the opposite side both accept to trade at a given price.
      *
-     * @param order The order being bought from.
-     * @param notification The notification object for closed trades.
-     * @return True if the purchase was successful, otherwise false.
+     * @param limitPrice The limit price of the resting order.
+     * @param price The trade price.
+     * @return True if the orders can trade at the given price, otherwise false.
      */
-    public boolean TryBuyFrom(Order order, ClosedTradesNotification notification)
+    public boolean CanTradeWith(long limitPrice, long price)
     {
-        Tuple<Long, Long> size_price = CanBuyFrom(order);
-        if (size_price.GetX() == 0) { return false; }
-
-        DecreaseSize(size_price);
-        order.DecreaseSize(size_price);
-
-        if (order.IsConsumed()) { notification.Add(order, size_price); }
-
-        HistoryRecord record = new HistoryRecord(this, size_price);
-        HistoryRecordCollection.Add(record);
-
-        return true;
+        if (WantToSell()) { return WantToSellAt(price) && price <= limitPrice; }
+        else { return WantToBuyAt(price) && price >= limitPrice; }
     }
 }
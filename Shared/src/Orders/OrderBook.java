@@ -3,479 +3,1325 @@ package Orders;
 import Helpers.Tuple;
 import Messages.CancelOrderRequest;
 import Messages.ClosedTradesNotification;
+import Messages.DepthSnapshotNotification;
+import Messages.DepthUpdateNotification;
 import Messages.OrderResponse;
 import Messages.SimpleResponse;
 import Users.User;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
- * The OrderBook class represents the entire order book, which manages and processes different types of orders
- * such as limit orders, market orders, and stop orders for both ask and bid sides.
+ * The OrderBook class represents the order book of a single instrument, which manages and processes different types
+ * of orders such as limit orders, market orders, and stop orders for both ask and bid sides.
+ * Books of different instruments are fully independent, so they can be processed in parallel.
  */
 public class OrderBook
 {
-    // priority queues for managing ask and bid limit orders.
-
-    @SuppressWarnings("ComparatorCombinators")
-    private static final PriorityQueue<LimitOrder> _askLimitOrders
-            = new PriorityQueue<>((orderA, orderB) -> {
-                int cmp = Long.compare(orderA.GetPrice(), orderB.GetPrice());
-                if (cmp == 0) { cmp = Long.compare(orderA.GetTimestamp(), orderB.GetTimestamp()); }
-                if (cmp == 0) { cmp = Long.compare(orderA.GetID(), orderB.GetID()); }
-                return cmp;
-            });
-
-    private static final PriorityQueue<LimitOrder> _bidLimitOrders
-            = new PriorityQueue<>((orderA, orderB) -> {
-                int cmp = -Long.compare(orderA.GetPrice(), orderB.GetPrice());
-                if (cmp == 0) { cmp = Long.compare(orderA.GetTimestamp(), orderB.GetTimestamp()); }
-                if (cmp == 0) { cmp = Long.compare(orderA.GetID(), orderB.GetID()); }
-                return cmp;
-            });
-
-    @SuppressWarnings("ComparatorCombinators")
-    private static final PriorityQueue<StopOrder> _askStopOrders
-            = new PriorityQueue<>((orderA, orderB) -> {
-                int cmp = Long.compare(orderA.GetPrice(), orderB.GetPrice());
-                if (cmp == 0) { cmp = Long.compare(orderA.GetTimestamp(), orderB.GetTimestamp()); }
-                if (cmp == 0) { cmp = Long.compare(orderA.GetID(), orderB.GetID()); }
-                return cmp;
-            });
-
-    private static final PriorityQueue<StopOrder> _bidStopOrders
-            = new PriorityQueue<>((orderA, orderB) -> {
-                int cmp = -Long.compare(orderA.GetStopPrice(), orderB.GetStopPrice());
-                if (cmp == 0) { cmp = Long.compare(orderA.GetTimestamp(), orderB.GetTimestamp()); }
-                if (cmp == 0) { cmp = Long.compare(orderA.GetID(), orderB.GetID()); }
-                return cmp;
-            });
+    // the symbol of the instrument traded in this book
+    private final String _symbol;
+
+    // price ladders for managing ask and bid limit orders, sorted by price and then by arrival time
+    private final PriceLadder _askLimitOrders;
+    private final PriceLadder _bidLimitOrders;
+
+    // price ladders for managing ask and bid stop orders, sorted by stop price and then by arrival time: ask stops
+    // trigger when the price falls (highest stop first), bid stops trigger when the price rises (lowest stop first)
+    private final PriceLadder _askStopOrders;
+    private final PriceLadder _bidStopOrders;
+
+    // the four ladders, indexed as the handles of the resting orders (see GetHandle)
+    private final PriceLadder[] _ladders;
+
+    // index of all the orders resting in the book (limit and stop orders of both sides) by order ID: each order is
+    // mapped to its handle, the ladder and the slot holding it, so that a cancel can find it without any lock
+    private final OrderIndex _restingOrders;
+
+    // the price of the last trade (0 if no trade happened yet), used to trigger the stop orders
+    private long _lastTradePrice;
+
+    // the total size traded in the book
+    private long _tradedVolume;
+
+    // true if the orders are matched by periodic call auctions instead of on arrival
+    private final boolean _isAuctionMode;
+
+    // the market orders (and triggered stop orders) waiting for the next auction, in arrival order
+    private final ArrayDeque<Order> _auctionBids;
+    private final ArrayDeque<Order> _auctionAsks;
+
+    // the cart, the fill buffer and the notification used to match the order being processed: since orders are
+    // processed one at a time (under the locks of the whole book or by the matching engine) they are reused for
+    // every order, so that matching doesn't allocate any object per fill
+    private final FillBuffer _fills;
+    private final Cart _cart;
+    private final ClosedTradesNotification _notification;
+
+    // the trades of the book not yet added to the history, recorded under the lock of the book only
+    private final HistoryRecordCollection.PendingTrades _pendingTrades;
+
+    // the last snapshot of the top of the book, replaced after each change of the best levels or of the last trade
+    // price so that it can be read without taking any lock
+    private final AtomicReference<TopOfBook> _topOfBook;
+
+    // the last view of the depth of the book, replaced after each operation that changed any level so that the status
+    // and the depth snapshots can be read without taking any lock
+    private final AtomicReference<DepthView> _depthView;
+
+    // the sink of the depth feed (null if the feed is disabled) and the notification reused to publish the levels
+    // changed by each operation: the two sides may be published concurrently (each under its own lock), so the
+    // notification also guards the sequence number
+    private Consumer<String> _depthSink;
+    private final DepthUpdateNotification _depthUpdate;
+
+    // the sequence number of the last depth update published
+    private long _depthSequence;
+
+    // the maximum number of levels per side of a depth snapshot
+    private int _depthSnapshotLevels;
+
+    // the journal recording the commands that change the book (null if the book is not persisted), and true while
+    // the journal is replayed, so that the replayed commands are neither recorded again nor added to the history
+    private CommandJournal _journal;
+    private boolean _isReplaying;
 
     /**
-     * Gets the spread between the best bid and the best ask prices.
-     * The spread is calculated as (best bid price - best ask price).
+     * Constructor for creating an empty order book.
      *
-     * @return The spread (difference between best bid and best ask).
+     * @param symbol The symbol of the instrument traded in the book.
+     * @param isAuctionMode True if the orders must be matched by periodic call auctions (see RunAuction) instead of
+     *                      on arrival.
+     * @param offHeapCapacity The number of orders each ladder holds off the Java heap, the orders that would rest in a
+     *                        full ladder are rejected; 0 to keep the resting orders on the heap, without any limit.
      */
-    public static long GetSpread()
+    public OrderBook(String symbol, boolean isAuctionMode, int offHeapCapacity)
     {
-        long bidMax = 0;
-        long askMin = 0;
-
-        synchronized (_askLimitOrders)
-        {
-            if (!_askLimitOrders.isEmpty()) { askMin = _askLimitOrders.peek().GetPrice(); }
-
-            synchronized (_bidLimitOrders)
-            {
-                if (!_bidLimitOrders.isEmpty()) { bidMax = _bidLimitOrders.peek().GetPrice(); }
-
-                return bidMax - askMin;
-            }
-        }
+        _symbol = symbol;
+        _askLimitOrders = new PriceLadder(Type.LIMIT, Method.ASK, offHeapCapacity);
+        _bidLimitOrders = new PriceLadder(Type.LIMIT, Method.BID, offHeapCapacity);
+        _askStopOrders = new PriceLadder(Type.STOP, Method.ASK, offHeapCapacity);
+        _bidStopOrders = new PriceLadder(Type.STOP, Method.BID, offHeapCapacity);
+        _ladders = new PriceLadder[] { _askLimitOrders, _bidLimitOrders, _askStopOrders, _bidStopOrders };
+        _restingOrders = new OrderIndex(offHeapCapacity * _ladders.length);
+        _lastTradePrice = 0;
+        _tradedVolume = 0;
+        _isAuctionMode = isAuctionMode;
+        _auctionBids = new ArrayDeque<>();
+        _auctionAsks = new ArrayDeque<>();
+        _fills = new FillBuffer();
+        _cart = new Cart(_fills);
+        _notification = new ClosedTradesNotification();
+        _pendingTrades = HistoryRecordCollection.CreatePendingTrades(symbol);
+        _topOfBook = new AtomicReference<>(TopOfBook.EMPTY);
+        _depthView = new AtomicReference<>(DepthView.EMPTY);
+        _depthSink = null;
+        _depthUpdate = new DepthUpdateNotification();
+        _depthSequence = 0;
+        _depthSnapshotLevels = 0;
+        _journal = null;
+        _isReplaying = false;
     }
 
     /**
-     * Gets the best price for a given method (ASK or BID).
+     * Enables the depth feed of the book: after each operation the changed levels of the limit orders are published
+     * to the sink as a depth update notification. Must be called before any client command is processed.
      *
-     * @param method The order method (ASK or BID).
-     * @return The best price available for the given method.
+     * @param sink The sink of the notifications, called by the thread that changed the book.
+     * @param snapshotLevels The maximum number of levels per side of a depth snapshot.
      */
-    public static long GetBestPrice(Method method)
+    public void SetDepthSink(Consumer<String> sink, int snapshotLevels)
     {
-        long price = 0;
-        switch (method)
-        {
-            case ASK ->
-            {
-                synchronized (_askLimitOrders)
-                {
-                    if (!_askLimitOrders.isEmpty()) { price = _askLimitOrders.peek().GetPrice(); }
-                }
-            }
-            case BID ->
-            {
-                synchronized (_bidLimitOrders)
-                {
-                    if (!_bidLimitOrders.isEmpty()) { price = _bidLimitOrders.peek().GetPrice(); }
-                }
-            }
-        }
-
-        return price;
+        _depthSink = sink;
+        _depthSnapshotLevels = snapshotLevels;
     }
 
-    private static void AppendLimitInfo(StringBuilder status, PriorityQueue<LimitOrder> orderQueue)
+    /**
+     * Rebuilds the book from the latest snapshot and the journal of its commands, then records the new commands in the
+     * journal. Must be called on an empty book, before any client command is processed.
+     *
+     * @param journal The journal of the book.
+     * @return The highest order ID found in the snapshot and in the journal (0 if none).
+     * @throws IOException If the snapshot or the journal can't be read.
+     */
+    public long Recover(CommandJournal journal) throws IOException
     {
-        status.append(String.format("%10s%10s%10s\n", "Price", "Size", "Total"));
-
-        for (Order order : orderQueue)
+        _isReplaying = true;
+        try { return journal.Recover(this); }
+        finally
         {
-            status.append(String.format("%10d%10d%10d\n", order.GetPrice(), order.GetSize(), order.GetPrice() * order.GetSize()));
+            _isReplaying = false;
+            _journal = journal;
         }
     }
 
-    private static void AppendStopInfo(StringBuilder status, PriorityQueue<StopOrder> orderQueue)
+    /**
+     * Writes the snapshot of the book and truncates its journal, holding the locks of the whole book.
+     * Does nothing if the book is not persisted.
+     */
+    public void SaveSnapshot() { WithBookLocked(this::WriteSnapshotFile); }
+
+    /**
+     * Closes the journal of the book, no command must be processed after this call.
+     */
+    public void CloseJournal() { if (_journal != null) { _journal.Close(); } }
+
+    public String GetSymbol() { return _symbol; }
+    public boolean IsAuctionMode() { return _isAuctionMode; }
+
+    /**
+     * Checks if an order is resting in the book, without taking any lock.
+     *
+     * @param orderID The ID of the order.
+     * @return True if the order is resting in the book, otherwise false.
+     */
+    public boolean IsResting(long orderID) { return _restingOrders.Contains(orderID); }
+
+    /**
+     * Gets the last published snapshot of the top of the book without taking any lock.
+     *
+     * @return The best bid, the best ask, the last trade price and the traded volume.
+     */
+    public TopOfBook GetTopOfBook() { return _topOfBook.get(); }
+
+    /**
+     * Gets the spread between the best bid and the best ask prices.
+     * The spread is calculated as (best bid price - best ask price).
+     *
+     * @return The spread (difference between best bid and best ask).
+     */
+    public long GetSpread() { return _topOfBook.get().GetSpread(); }
+
+    /**
+     * Gets the best price for a given method (ASK or BID).
+     *
+     * @param method The order method (ASK or BID).
+     * @return The best price available for the given method.
+     */
+    public long GetBestPrice(Method method) { return _topOfBook.get().GetBestPrice(method); }
+
+    /**
+     * Gets the last published view of the depth of the book without taking any lock.
+     *
+     * @return The levels of the four sides of the book, aggregated per price.
+     */
+    public DepthView GetDepthView() { return _depthView.get(); }
+
+    /**
+     * Builds a textual view of a page of the levels of the book, from the last published depth view: it never waits
+     * for the matching, however deep the book is.
+     *
+     * @param page The page to print, starting from 0 for the best levels of each side.
+     * @param pageLevels The number of levels per side of a page.
+     * @return The status of the order book.
+     */
+    public String PrintStatus(int page, int pageLevels)
     {
-        status.append(String.format("%10s%10s%10s\n", "Price", "Size", "Total"));
+        DepthView view = _depthView.get();
+        StringBuilder status = new StringBuilder();
 
-        for (Order order : orderQueue)
+        int levelCount = 0;
+        for (Type type : List.of(Type.LIMIT, Type.STOP))
         {
-            status.append(String.format("%10s%10d%10s\n", "-", order.GetSize(), "-"));
+            for (Method method : Method.values()) { levelCount = Math.max(levelCount, view.GetSide(type, method).GetLevelCount()); }
         }
-    }
+        int pageCount = Math.max(1, (levelCount + pageLevels - 1) / pageLevels);
 
-    public static String PrintStatus()
-    {
-        StringBuilder status = new StringBuilder();
+        status.append(String.format("TOP OF BOOK %s\n%s\n\n\n", _symbol, _topOfBook.get().ToString()));
+        status.append(String.format("DEPTH VIEW %d, PAGE %d OF %d (%d LEVELS PER SIDE)\n\n", view.GetVersion(), page + 1, pageCount, pageLevels));
 
         status.append("LIMIT ORDERS\n");
         status.append(String.format("%20s\n", "Ask Side"));
-        synchronized (_askLimitOrders) { AppendLimitInfo(status, _askLimitOrders); }
+        AppendLevels(status, view.GetSide(Type.LIMIT, Method.ASK), "Price", page, pageLevels);
 
         status.append("-------------------------------------\n");
 
-        status.append(String.format("%20s\n", "Bid Sid"));
-        synchronized (_bidLimitOrders) { AppendLimitInfo(status, _bidLimitOrders); }
+        status.append(String.format("%20s\n", "Bid Side"));
+        AppendLevels(status, view.GetSide(Type.LIMIT, Method.BID), "Price", page, pageLevels);
 
         status.append("\n\n\nSTOP ORDERS\n");
         status.append(String.format("%20s\n", "Ask Side"));
-        synchronized (_askStopOrders) { AppendStopInfo(status, _askStopOrders); }
+        AppendLevels(status, view.GetSide(Type.STOP, Method.ASK), "Stop", page, pageLevels);
 
         status.append("-------------------------------------\n");
 
-        status.append(String.format("%20s\n", "Bid Sid"));
-        synchronized (_bidStopOrders) { AppendStopInfo(status, _bidStopOrders); }
+        status.append(String.format("%20s\n", "Bid Side"));
+        AppendLevels(status, view.GetSide(Type.STOP, Method.BID), "Stop", page, pageLevels);
 
         return status.toString();
     }
 
+    private void AppendLevels(StringBuilder status, DepthView.Side side, String priceHeader, int page, int pageLevels)
+    {
+        status.append(String.format("%10s%10s%10s\n", priceHeader, "Size", "Orders"));
+
+        int end = (int) Math.min((long) (page + 1) * pageLevels, side.GetLevelCount());
+        for (int depth = page * pageLevels; depth < end; depth++)
+        {
+            status.append(String.format("%10d%10d%10d\n", side.GetPrice(depth), side.GetSize(depth), side.GetOrderCount(depth)));
+        }
+    }
+
     /**
      * Processes a market order and attempts to match it with available limit orders in the order book.
      *
      * @param order The market order to process.
      * @return A tuple containing the order response and any notification messages.
      */
-    public static Tuple<OrderResponse, String> ProcessOrder(MarketOrder order)
+    public Tuple<OrderResponse, List<String>> ProcessOrder(MarketOrder order)
     {
-        // create a cart object to track the execution of the market order
-        Cart cart = order.CreateCart();
-        String notificationMessage = "";
+        return WithBookLocked(() -> ExecuteOrder(order));
+    }
 
-        switch (order.GetMethod())
+    /**
+     * Processes a limit order and attempts to match it with available limit and stop orders.
+     *
+     * @param order The limit order to process.
+     * @return A tuple containing the order response and any notification messages.
+     */
+    public Tuple<OrderResponse, List<String>> ProcessOrder(LimitOrder order)
+    {
+        return WithBookLocked(() -> ExecuteOrder(order));
+    }
+
+    /**
+     * Processes a stop order: if the last trade price already crossed its stop price it is executed as a market order,
+     * otherwise it rests in the stop orders until a trade crosses its stop price.
+     *
+     * @param order The stop order to process.
+     * @return A tuple containing the order response and any notification messages.
+     */
+    public Tuple<OrderResponse, List<String>> ProcessOrder(StopOrder order)
+    {
+        return WithBookLocked(() -> ExecuteOrder(order));
+    }
+
+    /**
+     * Processes a batch of market, limit and stop orders in a single pass, taking the locks of the book only once.
+     * The orders are executed in the given order, exactly as if they had been processed one by one.
+     *
+     * @param orders The orders to process, they must not be empty.
+     * @return A tuple containing the responses to the orders (in the same order) and any notification messages.
+     */
+    public Tuple<List<OrderResponse>, List<String>> ProcessOrders(List<Order> orders)
+    {
+        return WithBookLocked(() -> ExecuteOrders(orders));
+    }
+
+    /**
+     * Builds a snapshot of the depth of the book from the last published depth view, consistent with the sequence of
+     * the depth updates, without taking any lock.
+     *
+     * @return The depth snapshot notification.
+     */
+    public String GetDepthSnapshot()
+    {
+        return new DepthSnapshotNotification(_symbol, _depthView.get(), _depthSnapshotLevels).ToString();
+    }
+
+    /**
+     * Runs a call auction, matching at once all the orders collected since the previous auction.
+     *
+     * @return The consolidated notification of the trades closed by the auction, if any.
+     */
+    public List<String> RunAuction()
+    {
+        return WithBookLocked(this::ExecuteAuction);
+    }
+
+    /**
+     * Runs an action holding the locks of the whole book, since any trade may trigger stop orders of both sides.
+     * The four ladders are always locked in the same order (ask limits, bid limits, ask stops, bid stops), whatever the
+     * side of the order: the other paths lock a single ladder at a time and the depth update monitor is only taken
+     * last, so no two threads can ever wait for each other's locks.
+     *
+     * @param action The action to run.
+     * @return The value returned by the action.
+     */
+    private <T> T WithBookLocked(Supplier<T> action)
+    {
+        synchronized (_askLimitOrders)
         {
-            case ASK ->
+            synchronized (_bidLimitOrders)
             {
-                // synchronize access to the bid order list to prevent race conditions
-                synchronized (_bidLimitOrders)
-                {
-                    // iterate through existing bid orders and attempt to buy from them consuming the whole market order
-                    for (Order bidOrder : _bidLimitOrders)
-                    {
-                        if (!cart.CanSellTo(bidOrder)) { break; }
-                    }
-
-                    // if the market order is consumed, get the list of consumed bid orders that were bought and remove
-                    // them from the bid order list
-                    if (cart.IsOrderConsumed())
-                    {
-                        Tuple<List<Order>, ClosedTradesNotification> consumedOrders_notification = cart.SellAll();
-                        List<Order> consumedOrders = consumedOrders_notification.GetX();
-                        ClosedTradesNotification notification = consumedOrders_notification.GetY();
-                        notification.Add(order, new Tuple<>(cart.GetConsumedSize(), cart.GetTotalPrice()));
-                        notification.Terminate();
-                        notificationMessage = notification.ToString();
-                        notification.Close();
-
-                        for (Order consumedOrder : consumedOrders) { _bidLimitOrders.remove(consumedOrder); }
-                    }
-                }
+                synchronized (_askStopOrders) { synchronized (_bidStopOrders) { return action.get(); } }
             }
-            case BID ->
+        }
+    }
+
+    /**
+     * Attempts to cancel an order resting in the book.
+     * The order is found through the order ID index and unlinked from its price level in constant time.
+     *
+     * @param request The cancel request containing the ID of the order.
+     * @param user The user asking for the cancellation.
+     * @return The response to send to the user.
+     */
+    public SimpleResponse TryCancelOrder(CancelOrderRequest request, User user)
+    {
+        int handle = _restingOrders.Get(request.GetOrderID());
+        if (handle == OrderIndex.NONE) { return CancelOrderRequest.ORDER_DOES_NOT_EXISTS; }
+
+        // lock the ladder holding the order, the order may have been filled in the meantime
+        PriceLadder ladder = GetLadder(handle);
+        synchronized (ladder) { return TryCancelOrder(ladder, GetSlot(handle), request.GetOrderID(), user); }
+    }
+
+    /**
+     * Cancels all the orders of a user still resting in the book, in time proportional to the number of such orders.
+     * Each ladder is locked in turn while the chain of the orders of the user is pulled from it.
+     *
+     * @param user The user whose orders must be canceled.
+     * @return The number of canceled orders.
+     */
+    public int CancelAllOrders(User user)
+    {
+        int count = 0;
+        for (PriceLadder ladder : _ladders)
+        {
+            synchronized (ladder)
             {
-                // synchronize access to the ask order list to prevent race conditions
-                synchronized (_askLimitOrders)
-                {
-                    // iterate through existing ask orders and attempt to sell the whole market order to them
-                    for (Order askOrder : _askLimitOrders)
-                    {
-                        if (!cart.CanBuyFrom(askOrder)) { break; }
-                    }
-
-                    // if the market order is consumed, get the list of consumed ask orders that the market order was sold
-                    // to and remove them from the bid order list
-                    if (cart.IsOrderConsumed())
-                    {
-                        Tuple<List<Order>, ClosedTradesNotification> consumedOrders_notification = cart.BuyAll();
-                        List<Order> consumedOrders = consumedOrders_notification.GetX();
-                        ClosedTradesNotification notification = consumedOrders_notification.GetY();
-                        notification.Add(order, new Tuple<>(cart.GetConsumedSize(), cart.GetTotalPrice()));
-                        notification.Terminate();
-                        notificationMessage = notification.ToString();
-                        notification.Close();
-
-                        for (Order consumedOrder : consumedOrders) { _askLimitOrders.remove(consumedOrder); }
-                    }
-                }
+                count += CancelAllOrders(ladder, user);
+                PublishTopOfBook(ladder);
             }
         }
 
+        return count;
+    }
+
+    // the following methods don't take any lock: the caller must either hold the locks of the sides they touch or be
+    // the only thread accessing the book (see MatchingEngine)
+
+    /**
+     * Executes a market order against the opposite side of the book.
+     *
+     * @param order The market order to process.
+     * @return A tuple containing the order response and any notification messages.
+     */
+    Tuple<OrderResponse, List<String>> ExecuteOrder(MarketOrder order)
+    {
+        RecordOrder(order);
+
+        List<String> notificationMessages = new ArrayList<>();
+        long lastTradePrice = _lastTradePrice;
+
+        boolean isExecuted = TryExecuteMarketOrder(order, notificationMessages);
+        if (_lastTradePrice != lastTradePrice) { TriggerStopOrders(notificationMessages); }
+        PublishTopOfBook();
+
         // return success if the market order is consumed, otherwise return failure
-        if (cart.IsOrderConsumed()) { return new Tuple<>(new OrderResponse(order.GetID()), notificationMessage); }
-        else { return new Tuple<>(OrderResponse.INVALID, notificationMessage); }
+        if (isExecuted) { return new Tuple<>(new OrderResponse(order.GetID()), notificationMessages); }
+        else { return new Tuple<>(OrderResponse.INVALID, notificationMessages); }
     }
 
     /**
-     * Processes a limit order and attempts to match it with available limit and stop orders.
+     * Executes a limit order against the opposite side of the book, rests what remains and triggers the stop orders
+     * crossed by the trades.
      *
      * @param order The limit order to process.
      * @return A tuple containing the order response and any notification messages.
      */
-    public static Tuple<OrderResponse, List<String>> ProcessOrder(LimitOrder order)
+    Tuple<OrderResponse, List<String>> ExecuteOrder(LimitOrder order)
     {
-        // create a cart object to track the execution of the limit order
-        Cart cart = order.CreateCart();
         List<String> notificationMessages = new ArrayList<>();
 
+        // the order may have to rest, the side must have room for it
+        if ((order.WantToSell() ? _askLimitOrders : _bidLimitOrders).IsFull()) { return new Tuple<>(OrderResponse.INVALID, notificationMessages); }
+
+        RecordOrder(order);
+
+        // in auction mode the order just rests, it is matched by the next auction
+        if (_isAuctionMode)
+        {
+            AddRestingOrder(order.WantToSell() ? _askLimitOrders : _bidLimitOrders, order, order.GetPrice());
+            PublishTopOfBook();
+            return new Tuple<>(new OrderResponse(order.GetID()), notificationMessages);
+        }
+
         switch (order.GetMethod())
         {
             case ASK ->
             {
-                // synchronize access to the bid order list to prevent race conditions
-                synchronized (_bidLimitOrders)
-                {
-                    for (Order bidOrder : _bidLimitOrders)
-                    {
-                        if (!cart.CanSellTo(bidOrder)) { break; }
-                    }
-
-                    Tuple<List<Order>, ClosedTradesNotification> consumedOrders_notification = cart.SellAll();
-                    List<Order> consumedOrders = consumedOrders_notification.GetX();
-                    ClosedTradesNotification notification = consumedOrders_notification.GetY();
-
-                    if (cart.GetConsumedSize() > 0) { notification.Add(order, new Tuple<>(cart.GetConsumedSize(), cart.GetTotalPrice())); }
-                    notification.Terminate();
-                    if (!consumedOrders.isEmpty()) { notificationMessages.add(notification.ToString()); }
-                    notification.Close();
-
-                    for (Order consumedOrder : consumedOrders) { _bidLimitOrders.remove(consumedOrder); }
-
-                    // if the limit order isn't fully consumed, add it to the ask orders
-                    if (!order.IsConsumed())
-                    {
-                        synchronized (_askLimitOrders) { _askLimitOrders.add(order); }
-                        synchronized (_bidStopOrders)
-                        {
-                            while (!_bidStopOrders.isEmpty())
-                            {
-                                StopOrder bidOrder = _bidStopOrders.peek();
-                                String newMessage = TryProcessStopOrder(bidOrder);
-                                if (!newMessage.isEmpty()) { notificationMessages.add(newMessage); }
-                                if (order.IsConsumed()) { _bidStopOrders.remove(bidOrder); }
-                                else { break; }
-                            }
-                        }
-                    }
-                }
+                Match(order, _bidLimitOrders);
+                PublishFills(order, notificationMessages);
+
+                // if the limit order isn't fully consumed, add it to the ask orders
+                if (!order.IsConsumed()) { AddRestingOrder(_askLimitOrders, order, order.GetPrice()); }
             }
             case BID ->
             {
-                // synchronize access to the ask order list to prevent race conditions
-                synchronized (_askLimitOrders)
-                {
-                    for (Order askOrder : _askLimitOrders)
-                    {
-                        if (!cart.CanBuyFrom(askOrder)) { break; }
-                    }
-
-                    Tuple<List<Order>, ClosedTradesNotification> consumedOrders_notification = cart.BuyAll();
-                    List<Order> consumedOrders = consumedOrders_notification.GetX();
-                    ClosedTradesNotification notification = consumedOrders_notification.GetY();
-                    notification.Add(order, new Tuple<>(cart.GetConsumedSize(), cart.GetTotalPrice()));
-                    notification.Terminate();
-                    if (cart.GetConsumedSize() > 0) { notificationMessages.add(notification.ToString()); }
-                    notification.Close();
-
-                    for (Order consumedOrder : consumedOrders) { _askLimitOrders.remove(consumedOrder); }
-
-                    // if the limit order isn't fully consumed, add it to the bid orders
-                    if (!order.IsConsumed())
-                    {
-                        synchronized (_bidLimitOrders) { _bidLimitOrders.add(order); }
-                        synchronized (_askStopOrders)
-                        {
-                            while (!_askStopOrders.isEmpty())
-                            {
-                                StopOrder askOrder = _askStopOrders.peek();
-                                String newMessage = TryProcessStopOrder(askOrder);
-                                if (!newMessage.isEmpty()) { notificationMessages.add(newMessage); }
-                                if (askOrder.IsConsumed()) { _askStopOrders.remove(askOrder); }
-                                else { break; }
-                            }
-                        }
-                    }
-                }
+                Match(order, _askLimitOrders);
+                PublishFills(order, notificationMessages);
+
+                // if the limit order isn't fully consumed, add it to the bid orders
+                if (!order.IsConsumed()) { AddRestingOrder(_bidLimitOrders, order, order.GetPrice()); }
             }
         }
 
+        // a trade moved the price, some stop orders may have been crossed
+        if (_cart.GetConsumedSize() > 0 && _cart.GetLastPrice() != _lastTradePrice)
+        {
+            _lastTradePrice = _cart.GetLastPrice();
+            TriggerStopOrders(notificationMessages);
+        }
+
+        PublishTopOfBook();
         return new Tuple<>(new OrderResponse(order.GetID()), notificationMessages);
     }
 
     /**
-     * Processes a stop order and attempts to match it with available limit orders.
-     * If a stop order is triggered, it behaves like a market order.
+     * Executes a batch of market, limit and stop orders one after the other.
      *
-     * @param order The stop order to process.
-     * @return A tuple containing the order response and any notification messages.
+     * @param orders The orders to process.
+     * @return A tuple containing the responses to the orders (in the same order) and any notification messages.
      */
-    public static Tuple<OrderResponse, String> ProcessOrder(StopOrder order)
+    Tuple<List<OrderResponse>, List<String>> ExecuteOrders(List<Order> orders)
     {
-        String notificationMessage = TryProcessStopOrder(order);
+        List<OrderResponse> responses = new ArrayList<>(orders.size());
+        List<String> notificationMessages = new ArrayList<>();
 
-        if (!order.IsConsumed())
+        for (Order order : orders)
         {
-            switch (order.GetMethod())
+            Tuple<OrderResponse, List<String>> response_messages = switch (order.GetType())
             {
-                case ASK ->
-                {
-                    synchronized (_askStopOrders) { _askStopOrders.add(order); }
-                }
-                case BID ->
-                {
-                    synchronized (_bidStopOrders) { _bidStopOrders.add(order); }
-                }
-            }
+                case MARKET -> ExecuteOrder((MarketOrder) order);
+                case LIMIT -> ExecuteOrder((LimitOrder) order);
+                case STOP -> ExecuteOrder((StopOrder) order);
+            };
+
+            responses.add(response_messages.GetX());
+            notificationMessages.addAll(response_messages.GetY());
         }
 
-        return new Tuple<>(new OrderResponse(order.GetID()), notificationMessage);
+        return new Tuple<>(responses, notificationMessages);
     }
 
     /**
-     * Attempts to trigger and process a stop order by matching it with the available orders.
-     * If a stop order's conditions are met, it gets executed as a market order.
+     * Writes the snapshot of the book and truncates its journal without taking any lock.
      *
-     * @param order The stop order to process.
-     * @return Any notification message generated during the execution of the stop order.
+     * @return True if the snapshot has been written.
      */
-    private static String TryProcessStopOrder(StopOrder order)
+    boolean WriteSnapshotFile()
     {
-        // create a cart object to track the execution of the stop order
-        Cart cart = order.CreateCart();
-        String notificationMessage = "";
+        if (_journal == null) { return false; }
 
-        switch (order.GetMethod())
+        try { _journal.WriteSnapshot(this); }
+        catch (IOException e)
         {
-            case ASK ->
+            System.out.printf("[ERROR] Unable to save the snapshot of %s: %s\n", _symbol, e.getMessage());
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the state of the book: the last trade price, the traded volume, then the orders of each ladder and of the
+     * auction queues in priority order, so that reading them back rebuilds the same priorities.
+     *
+     * @param output The stream to write to.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    void WriteSnapshot(DataOutputStream output) throws IOException
+    {
+        output.writeLong(_lastTradePrice);
+        output.writeLong(_tradedVolume);
+
+        for (PriceLadder ladder : _ladders)
+        {
+            OrderStore store = ladder.GetStore();
+
+            output.writeInt(ladder.GetOrderCount());
+            for (int slot = ladder.GetFirst(); slot != OrderStore.NONE; slot = ladder.GetNext(slot))
             {
-                // synchronize access to the bid order list to prevent race conditions
-                synchronized (_bidLimitOrders)
-                {
-                    // iterate through existing bid orders and attempt to buy from them consuming the whole market order
-                    for (Order bidOrder : _bidLimitOrders)
-                    {
-                        if (!cart.CanSellTo(bidOrder)) { break; }
-                    }
-
-                    // if the stop order is consumed, get the list of consumed bid orders that were bought and remove
-                    // them from the bid order list
-                    if (cart.IsOrderConsumed() && cart.GetTotalPrice() <= order.GetStopPrice())
-                    {
-                        Tuple<List<Order>, ClosedTradesNotification> consumedOrders_notification = cart.SellAll();
-                        List<Order> consumedOrders = consumedOrders_notification.GetX();
-                        ClosedTradesNotification notification = consumedOrders_notification.GetY();
-                        notification.Add(order, new Tuple<>(cart.GetConsumedSize(), cart.GetTotalPrice()));
-                        notification.Terminate();
-                        notificationMessage = notification.ToString();
-                        notification.Close();
-
-                        for (Order consumedOrder : consumedOrders) { _bidLimitOrders.remove(consumedOrder); }
-                    }
-                }
+                WriteSnapshotOrder(output, ladder.GetType(), ladder.GetMethod(), store.GetID(slot), store.GetSize(slot), store.GetPrice(slot), store.GetUser(slot));
             }
-            case BID ->
+        }
+
+        for (ArrayDeque<Order> queue : List.of(_auctionAsks, _auctionBids))
+        {
+            output.writeInt(queue.size());
+            for (Order order : queue)
             {
-                // synchronize access to the ask order list to prevent race conditions
-                synchronized (_askLimitOrders)
-                {
-                    // iterate through existing ask orders and attempt to sell the whole market order to them
-                    for (Order askOrder : _askLimitOrders)
-                    {
-                        if (!cart.CanBuyFrom(askOrder)) { break; }
-                    }
-
-                    // if the stop order is consumed, get the list of consumed ask orders that the market order was sold
-                    // to and remove them from the bid order list
-                    if (cart.IsOrderConsumed() && cart.GetTotalPrice() >= order.GetStopPrice())
-                    {
-                        Tuple<List<Order>, ClosedTradesNotification> consumedOrders_notification = cart.BuyAll();
-                        List<Order> consumedOrders = consumedOrders_notification.GetX();
-                        ClosedTradesNotification notification = consumedOrders_notification.GetY();
-                        notification.Add(order, new Tuple<>(cart.GetConsumedSize(), cart.GetTotalPrice()));
-                        notification.Terminate();
-                        notificationMessage = notification.ToString();
-                        notification.Close();
-
-                        for (Order consumedOrder : consumedOrders) { _askLimitOrders.remove(consumedOrder); }
-                    }
-                }
+                long price = order instanceof StopOrder stopOrder ? stopOrder.GetStopPrice() : order.GetPrice();
+                WriteSnapshotOrder(output, order.GetType(), order.GetMethod(), order.GetID(), order.GetSize(), price, order.GetUser());
             }
         }
+    }
 
-        return notificationMessage;
+    private void WriteSnapshotOrder(DataOutputStream output, Type type, Method method, long orderID, long size, long price, User user) throws IOException
+    {
+        output.writeByte(type.ordinal());
+        output.writeByte(method.ordinal());
+        output.writeLong(orderID);
+        output.writeLong(size);
+        output.writeLong(price);
+        output.writeUTF(user.GetUsername());
     }
 
-    public static SimpleResponse TryCancelOrder(CancelOrderRequest request, User user)
+    /**
+     * Reads back the state written by WriteSnapshot into the empty book.
+     *
+     * @param input The stream to read from.
+     * @return The highest ID of the orders read (0 if none).
+     * @throws IOException If an I/O error occurs while reading.
+     */
+    long ReadSnapshot(DataInputStream input) throws IOException
     {
-        synchronized (_askLimitOrders)
+        _lastTradePrice = input.readLong();
+        _tradedVolume = input.readLong();
+
+        long maxOrderID = 0;
+
+        for (PriceLadder ladder : _ladders)
         {
-            for (Order askOrder : _askLimitOrders)
+            int count = input.readInt();
+            for (int i = 0; i < count; i++)
             {
-                if (askOrder.GetID() != request.GetOrderID()) { continue; }
-                if (!askOrder.GetUser().GetUsername().equals(user.GetUsername())) { return CancelOrderRequest.ORDER_BELONG_TO_DIFFERENT_USER; }
+                Order order = ReadSnapshotOrder(input);
+                if (order == null) { continue; }
 
-                _askLimitOrders.remove(askOrder);
-                return CancelOrderRequest.OK;
+                if (ladder.IsFull()) { throw new IOException("The snapshot of " + _symbol + " holds more resting orders than the capacity of the book"); }
+                AddRestingOrder(ladder, order, order instanceof StopOrder stopOrder ? stopOrder.GetStopPrice() : order.GetPrice());
+                maxOrderID = Math.max(maxOrderID, order.GetID());
             }
         }
 
-        synchronized (_bidLimitOrders)
+        for (ArrayDeque<Order> queue : List.of(_auctionAsks, _auctionBids))
+        {
+            int count = input.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                Order order = ReadSnapshotOrder(input);
+                if (order == null) { continue; }
+
+                queue.add(order);
+                maxOrderID = Math.max(maxOrderID, order.GetID());
+            }
+        }
+
+        PublishTopOfBook();
+        return maxOrderID;
+    }
+
+    /**
+     * Reads an order written by WriteSnapshotOrder.
+     *
+     * @return The order, or null if its user is no longer registered.
+     */
+    private Order ReadSnapshotOrder(DataInputStream input) throws IOException
+    {
+        Type type = Type.values()[input.readByte()];
+        Method method = Method.values()[input.readByte()];
+        long orderID = input.readLong();
+        long size = input.readLong();
+        long price = input.readLong();
+
+        User user = CommandJournal.FindUser(input.readUTF());
+        if (user == null) { return null; }
+
+        return CommandJournal.CreateOrder(type, orderID, method, size, price, user);
+    }
+
+    /**
+     * Executes an order read from the journal.
+     *
+     * @param order The market, limit or stop order.
+     */
+    void ReplayOrder(Order order)
+    {
+        switch (order.GetType())
+        {
+            case MARKET -> ExecuteOrder((MarketOrder) order);
+            case LIMIT -> ExecuteOrder((LimitOrder) order);
+            case STOP -> ExecuteOrder((StopOrder) order);
+        }
+    }
+
+    /**
+     * Removes an order canceled according to the journal, the ownership has been checked when it was recorded.
+     *
+     * @param orderID The ID of the canceled order.
+     */
+    void ReplayCancel(long orderID)
+    {
+        int handle = _restingOrders.Get(orderID);
+        if (handle == OrderIndex.NONE) { return; }
+
+        PriceLadder ladder = GetLadder(handle);
+        RemoveRestingOrder(ladder, GetSlot(handle));
+        PublishTopOfBook(ladder);
+    }
+
+    /**
+     * Executes a call auction: the book is uncrossed at the single clearing price that maximizes the executed size,
+     * filling the bids and the asks in price-time priority (waiting market orders first) at that price.
+     * The market orders that couldn't be filled are discarded, then the stop orders crossed by the clearing price
+     * are queued for the next auction.
+     *
+     * @return The consolidated notification of the trades closed by the auction, if any.
+     */
+    List<String> ExecuteAuction()
+    {
+        if (_journal != null && !_isReplaying) { _journal.AppendAuction(); }
+
+        List<String> notificationMessages = new ArrayList<>();
+
+        long price = ComputeClearingPrice();
+        if (price > 0) { Uncross(price, notificationMessages); }
+
+        // the market orders that couldn't be filled are discarded, as in continuous matching
+        _auctionBids.clear();
+        _auctionAsks.clear();
+
+        if (price > 0 && price != _lastTradePrice)
+        {
+            _lastTradePrice = price;
+            TriggerStopOrders(notificationMessages);
+        }
+
+        PublishTopOfBook();
+        return notificationMessages;
+    }
+
+    /**
+     * Computes the clearing price of an auction: among the prices of the levels in the book (and the last trade price,
+     * the only reference when just market orders are waiting), the one that maximizes the executed size, then the one
+     * that minimizes the size left unmatched, then the one closest to the last trade price.
+     *
+     * @return The clearing price, or 0 if no order can be matched.
+     */
+    private long ComputeClearingPrice()
+    {
+        long marketBidSize = 0;
+        for (Order order : _auctionBids) { marketBidSize += order.GetSize(); }
+
+        long marketAskSize = 0;
+        for (Order order : _auctionAsks) { marketAskSize += order.GetSize(); }
+
+        long bestPrice = 0;
+        long bestVolume = 0;
+        long bestImbalance = Long.MAX_VALUE;
+
+        int bidCount = _bidLimitOrders.GetLevelCount();
+        int askCount = _askLimitOrders.GetLevelCount();
+        for (int i = 0; i <= bidCount + askCount; i++)
         {
-            for (Order bidOrder : _bidLimitOrders)
+            long price;
+            if (i < bidCount) { price = _bidLimitOrders.GetLevel(i).GetPrice(); }
+            else if (i < bidCount + askCount) { price = _askLimitOrders.GetLevel(i - bidCount).GetPrice(); }
+            else { price = _lastTradePrice; }
+            if (price == 0) { continue; }
+
+            long demand = marketBidSize + GetSizeAtOrBetter(_bidLimitOrders, price);
+            long supply = marketAskSize + GetSizeAtOrBetter(_askLimitOrders, price);
+            long volume = Math.min(demand, supply);
+            long imbalance = Math.abs(demand - supply);
+            if (volume == 0) { continue; }
+
+            boolean isBetter = volume > bestVolume
+                    || (volume == bestVolume && imbalance < bestImbalance)
+                    || (volume == bestVolume && imbalance == bestImbalance && Math.abs(price - _lastTradePrice) < Math.abs(bestPrice - _lastTradePrice));
+
+            if (isBetter)
             {
-                if (bidOrder.GetID() != request.GetOrderID()) { continue; }
-                if (!bidOrder.GetUser().GetUsername().equals(user.GetUsername())) { return CancelOrderRequest.ORDER_BELONG_TO_DIFFERENT_USER; }
+                bestPrice = price;
+                bestVolume = volume;
+                bestImbalance = imbalance;
+            }
+        }
+
+        return bestPrice;
+    }
+
+    /**
+     * Sums the sizes of the levels of a limit ladder willing to trade at a given price: the bids at that price or
+     * above, the asks at that price or below.
+     */
+    private long GetSizeAtOrBetter(PriceLadder ladder, long price)
+    {
+        long size = 0;
+        for (int depth = 0; depth < ladder.GetLevelCount(); depth++)
+        {
+            PriceLevel level = ladder.GetLevel(depth);
+            if (ladder == _bidLimitOrders ? level.GetPrice() < price : level.GetPrice() > price) { break; }
+            size += level.GetTotalSize();
+        }
+
+        return size;
+    }
+
+    /**
+     * Fills the bids and the asks willing to trade at the clearing price, in priority order, until one side is
+     * exhausted. Each order is listed once in the consolidated notification with the size it traded in the auction.
+     *
+     * @param price The clearing price.
+     * @param notificationMessages The list where the consolidated notification is added.
+     */
+    private void Uncross(long price, List<String> notificationMessages)
+    {
+        long timestamp = System.currentTimeMillis();
+        _notification.Reset();
+
+        AuctionSide bid = new AuctionSide(_auctionBids, _bidLimitOrders, price);
+        AuctionSide ask = new AuctionSide(_auctionAsks, _askLimitOrders, price);
+        boolean isTraded = false;
+
+        while (bid.HasOrder() && ask.HasOrder())
+        {
+            long size = Math.min(bid.GetSize(), ask.GetSize());
+            bid.Fill(size);
+            ask.Fill(size);
+            _tradedVolume += size;
+            isTraded = true;
+
+            // there's no aggressor in an auction, the trade is recorded for the most recent of the two orders
+            AuctionSide side = bid.GetID() > ask.GetID() ? bid : ask;
+            if (!_isReplaying) { _pendingTrades.Add(side.GetID(), side.GetMethod(), side.GetType(), size, price, timestamp); }
+
+            if (bid.GetSize() == 0) { bid.Consume(); }
+            if (ask.GetSize() == 0) { ask.Consume(); }
+        }
+
+        if (!isTraded) { return; }
+
+        // the order left partially filled on the side that wasn't exhausted
+        if (bid.GetTradedSize() > 0) { bid.AddToNotification(); }
+        if (ask.GetTradedSize() > 0) { ask.AddToNotification(); }
+
+        _notification.Terminate();
+        notificationMessages.add(_notification.ToString());
+    }
 
-                _bidLimitOrders.remove(bidOrder);
-                return CancelOrderRequest.OK;
+    /**
+     * One side of an auction being uncrossed: walks the orders willing to trade at the clearing price in priority
+     * order, the waiting market orders (and triggered stop orders) first, then the resting limit orders.
+     */
+    private class AuctionSide
+    {
+        private final ArrayDeque<Order> _marketOrders;
+        private final PriceLadder _ladder;
+        private final long _price;
+
+        // the current order: the oldest waiting market order, otherwise the slot of the first resting limit order
+        // (OrderStore.NONE if the side has no more orders willing to trade at the clearing price)
+        private Order _order;
+        private int _slot;
+
+        // the size traded by the current order in this auction
+        private long _tradedSize;
+
+        AuctionSide(ArrayDeque<Order> marketOrders, PriceLadder ladder, long price)
+        {
+            _marketOrders = marketOrders;
+            _ladder = ladder;
+            _price = price;
+            _tradedSize = 0;
+            MoveNext();
+        }
+
+        boolean HasOrder() { return _order != null || _slot != OrderStore.NONE; }
+        long GetID() { return _order != null ? _order.GetID() : _ladder.GetStore().GetID(_slot); }
+        long GetSize() { return _order != null ? _order.GetSize() : _ladder.GetStore().GetSize(_slot); }
+        Method GetMethod() { return _ladder.GetMethod(); }
+        Type GetType() { return _order != null ? _order.GetType() : _ladder.GetType(); }
+        long GetTradedSize() { return _tradedSize; }
+
+        void Fill(long size)
+        {
+            if (_order != null) { _order.DecreaseSize(size); }
+            else
+            {
+                _ladder.DecreaseSize(_slot, size);
+                OnRestingOrderFilled(_ladder, _slot, size);
             }
+
+            _tradedSize += size;
+        }
+
+        /**
+         * Adds the current order to the consolidated notification with the size it traded in the auction.
+         */
+        void AddToNotification()
+        {
+            long timestamp = _order != null ? _order.GetTimestamp() : _ladder.GetStore().GetTimestamp(_slot);
+            _notification.Add(GetID(), GetMethod(), GetType(), _tradedSize, _price, timestamp);
+        }
+
+        /**
+         * Notifies the consumed current order, removes it from the waiting market orders or from its ladder, then moves
+         * to the next order.
+         */
+        void Consume()
+        {
+            AddToNotification();
+
+            if (_order != null) { _marketOrders.pollFirst(); }
+            else { RemoveRestingOrder(_ladder, _slot); }
+
+            _tradedSize = 0;
+            MoveNext();
+        }
+
+        private void MoveNext()
+        {
+            _order = _marketOrders.peekFirst();
+            _slot = OrderStore.NONE;
+            if (_order != null || _ladder.IsEmpty()) { return; }
+
+            PriceLevel level = _ladder.GetBest();
+            boolean isWilling = _ladder == _bidLimitOrders ? level.GetPrice() >= _price : level.GetPrice() <= _price;
+            if (isWilling) { _slot = level.GetFirst(); }
+        }
+    }
+
+    /**
+     * Executes a stop order as a market order if the last trade price already crossed its stop price, otherwise rests
+     * it in the stop orders index.
+     *
+     * @param order The stop order to process.
+     * @return A tuple containing the order response and any notification messages.
+     */
+    Tuple<OrderResponse, List<String>> ExecuteOrder(StopOrder order)
+    {
+        List<String> notificationMessages = new ArrayList<>();
+
+        // the order has to rest, the side must have room for it
+        if (!IsTriggered(order) && (order.WantToSell() ? _askStopOrders : _bidStopOrders).IsFull()) { return new Tuple<>(OrderResponse.INVALID, notificationMessages); }
+
+        RecordOrder(order);
+
+        if (!IsTriggered(order))
+        {
+            PriceLadder ladder = order.WantToSell() ? _askStopOrders : _bidStopOrders;
+            AddRestingOrder(ladder, order, order.GetStopPrice());
+            PublishTopOfBook(ladder);
+
+            return new Tuple<>(new OrderResponse(order.GetID()), notificationMessages);
+        }
+
+        long lastTradePrice = _lastTradePrice;
+
+        boolean isExecuted = TryExecuteMarketOrder(order, notificationMessages);
+        if (_lastTradePrice != lastTradePrice) { TriggerStopOrders(notificationMessages); }
+        PublishTopOfBook();
+
+        // a triggered stop order behaves like a market order, it fails if it can't be fully consumed
+        if (isExecuted) { return new Tuple<>(new OrderResponse(order.GetID()), notificationMessages); }
+        else { return new Tuple<>(OrderResponse.INVALID, notificationMessages); }
+    }
+
+    /**
+     * Checks if the last trade price crossed the stop price of an order: an ask stop order is triggered when the price
+     * falls to its stop price or below, a bid stop order when the price rises to its stop price or above.
+     *
+     * @param order The stop order to check.
+     * @return True if the stop order must be executed.
+     */
+    private boolean IsTriggered(StopOrder order)
+    {
+        // no trade happened yet
+        if (_lastTradePrice == 0) { return false; }
+
+        if (order.WantToSell()) { return _lastTradePrice <= order.GetStopPrice(); }
+        else { return _lastTradePrice >= order.GetStopPrice(); }
+    }
+
+    /**
+     * Executes, as market orders, all the resting stop orders crossed by the last trade price.
+     * Since each ladder is sorted by trigger priority, only its best level has to be checked, so a price change that
+     * doesn't cross any stop price costs two comparisons. A triggered stop order may trade and move the price again,
+     * triggering other stop orders in cascade.
+     *
+     * @param notificationMessages The list where the notifications of the executed stop orders are added.
+     */
+    private void TriggerStopOrders(List<String> notificationMessages)
+    {
+        while (true)
+        {
+            PriceLadder ladder = null;
+
+            if (!_askStopOrders.IsEmpty() && _lastTradePrice <= _askStopOrders.GetBest().GetPrice()) { ladder = _askStopOrders; }
+            else if (!_bidStopOrders.IsEmpty() && _lastTradePrice >= _bidStopOrders.GetBest().GetPrice()) { ladder = _bidStopOrders; }
+
+            if (ladder == null) { return; }
+
+            // take the stop order out of the book as an order object, executed like any market order
+            OrderStore store = ladder.GetStore();
+            int slot = ladder.GetFirst();
+            StopOrder order = new StopOrder(store.GetID(slot), ladder.GetMethod(), store.GetSize(slot), store.GetPrice(slot), store.GetTimestamp(slot), store.GetUser(slot));
+            RemoveRestingOrder(ladder, slot);
+
+            // a triggered stop order that can't be fully consumed is discarded, as a failed market order
+            TryExecuteMarketOrder(order, notificationMessages);
+        }
+    }
+
+    /**
+     * Executes an order as a market order: it is matched against the opposite side of the book only if it can be
+     * fully consumed, otherwise the book is left untouched.
+     *
+     * @param order The market order (or triggered stop order) to execute.
+     * @param notificationMessages The list where the notification of the closed trades is added.
+     * @return True if the order has been fully consumed.
+     */
+    private boolean TryExecuteMarketOrder(Order order, List<String> notificationMessages)
+    {
+        // in auction mode the order waits for the next auction, where it is filled at the clearing price
+        if (_isAuctionMode)
+        {
+            if (order.WantToSell()) { _auctionAsks.add(order); }
+            else { _auctionBids.add(order); }
+            return true;
+        }
+
+        PriceLadder opposite = order.WantToSell() ? _bidLimitOrders : _askLimitOrders;
+
+        // the aggregate sizes of the levels tell in advance if the order can be fully consumed
+        if (!CanBeConsumed(order, opposite)) { return false; }
+
+        Match(order, opposite);
+        PublishFills(order, notificationMessages);
+
+        _lastTradePrice = _cart.GetLastPrice();
+        return true;
+    }
+
+    /**
+     * Checks if a side of the book holds enough size to fully consume a market order, summing the aggregate sizes of
+     * its levels instead of walking the resting orders.
+     *
+     * @param order The market order (or triggered stop order) to check.
+     * @param opposite The side of the book the order would be matched against.
+     * @return True if the order can be fully consumed.
+     */
+    private boolean CanBeConsumed(Order order, PriceLadder opposite)
+    {
+        long size = 0;
+        for (int depth = 0; depth < opposite.GetLevelCount() && size < order.GetSize(); depth++)
+        {
+            size += opposite.GetLevel(depth).GetTotalSize();
+        }
+
+        return size >= order.GetSize();
+    }
+
+    /**
+     * Matches an order against a side of the book in price-time priority, until the order is consumed or the best
+     * resting order doesn't accept the trade price. The fills are recorded in the fill buffer and the consumed resting
+     * orders are removed from the book.
+     *
+     * @param order The order to match.
+     * @param opposite The side of the book the order is matched against.
+     */
+    private void Match(Order order, PriceLadder opposite)
+    {
+        _cart.Reset(order);
+
+        while (!_cart.IsOrderConsumed() && !opposite.IsEmpty())
+        {
+            int slot = opposite.GetFirst();
+            long size = _cart.TryFill(opposite, slot);
+            if (size == 0) { return; }
+
+            OnRestingOrderFilled(opposite, slot, size);
+
+            if (opposite.GetStore().GetSize(slot) == 0) { RemoveRestingOrder(opposite, slot); }
+        }
+    }
+
+    /**
+     * Turns the fills of the order just matched into history records and into the notification of the closed trades,
+     * which lists the consumed resting orders followed by the matched order, then clears the fill buffer.
+     *
+     * @param order The order just matched.
+     * @param notificationMessages The list where the notification of the closed trades is added.
+     */
+    private void PublishFills(Order order, List<String> notificationMessages)
+    {
+        if (_fills.IsEmpty()) { return; }
+
+        long timestamp = System.currentTimeMillis();
+        _notification.Reset();
+
+        // the resting orders are limit orders of the opposite side
+        Method restingMethod = order.WantToSell() ? Method.BID : Method.ASK;
+
+        for (int i = 0; i < _fills.GetCount(); i++)
+        {
+            if (!_isReplaying) { _pendingTrades.Add(order.GetID(), order.GetMethod(), order.GetType(), _fills.GetSize(i), _fills.GetPrice(i), timestamp); }
+            _tradedVolume += _fills.GetSize(i);
+
+            if (_fills.IsConsumed(i)) { _notification.Add(_fills.GetOrderID(i), restingMethod, Type.LIMIT, _fills.GetSize(i), _fills.GetPrice(i), _fills.GetTimestamp(i)); }
+        }
+
+        _notification.Add(order, _cart.GetConsumedSize(), _cart.GetTotalPrice());
+        _notification.Terminate();
+        notificationMessages.add(_notification.ToString());
+
+        _fills.Clear();
+    }
+
+    /**
+     * Attempts to cancel an order resting in the book without taking any lock.
+     *
+     * @param request The cancel request containing the ID of the order.
+     * @param user The user asking for the cancellation.
+     * @return The response to send to the user.
+     */
+    SimpleResponse ExecuteCancelOrder(CancelOrderRequest request, User user)
+    {
+        int handle = _restingOrders.Get(request.GetOrderID());
+        if (handle == OrderIndex.NONE) { return CancelOrderRequest.ORDER_DOES_NOT_EXISTS; }
+
+        return TryCancelOrder(GetLadder(handle), GetSlot(handle), request.GetOrderID(), user);
+    }
+
+    /**
+     * Cancels all the orders of a user still resting in the book without taking any lock.
+     *
+     * @param user The user whose orders must be canceled.
+     * @return The number of canceled orders.
+     */
+    int ExecuteCancelAllOrders(User user)
+    {
+        int count = 0;
+        for (PriceLadder ladder : _ladders) { count += CancelAllOrders(ladder, user); }
+        PublishTopOfBook();
+
+        return count;
+    }
+
+    /**
+     * Removes all the orders of a user from a ladder, following the chain of the orders of the user in its store.
+     *
+     * @return The number of canceled orders.
+     */
+    private int CancelAllOrders(PriceLadder ladder, User user)
+    {
+        OrderStore store = ladder.GetStore();
+
+        int count = 0;
+        int slot = store.GetFirstOfOwner(user.GetUsername());
+        while (slot != OrderStore.NONE)
+        {
+            int next = store.GetNextOfOwner(slot);
+            RecordCancel(store.GetID(slot));
+            RemoveRestingOrder(ladder, slot);
+            slot = next;
+            count++;
         }
 
-        synchronized (_askStopOrders)
+        return count;
+    }
+
+    /**
+     * Removes a resting order from its ladder if it belongs to the user.
+     *
+     * @param slot The slot where the order was found, it may have been filled (and the slot reused) in the meantime.
+     * @return The response to send to the user.
+     */
+    private SimpleResponse TryCancelOrder(PriceLadder ladder, int slot, long orderID, User user)
+    {
+        OrderStore store = ladder.GetStore();
+
+        if (store.GetID(slot) != orderID) { return CancelOrderRequest.ORDER_DOES_NOT_EXISTS; }
+        if (!store.GetUser(slot).GetUsername().equals(user.GetUsername())) { return CancelOrderRequest.ORDER_BELONG_TO_DIFFERENT_USER; }
+
+        RecordCancel(orderID);
+        RemoveRestingOrder(ladder, slot);
+        PublishTopOfBook(ladder);
+        return CancelOrderRequest.OK;
+    }
+
+    /**
+     * Publishes the changed levels of all the ladders and a new snapshot of the top of the book if the best levels, the
+     * last trade price or the traded volume changed. The caller must hold the locks of the whole book or be the only
+     * thread accessing it.
+     */
+    private void PublishTopOfBook()
+    {
+        PublishDepth(_askStopOrders);
+        PublishDepth(_bidStopOrders);
+        PublishTopOfBook(true, true, true);
+    }
+
+    /**
+     * Publishes the changed levels of a ladder and, for a limit ladder, a new snapshot of the top of the book if its
+     * best level changed, leaving the other side untouched. The caller must hold the lock of the ladder or be the only
+     * thread accessing the book.
+     */
+    private void PublishTopOfBook(PriceLadder ladder)
+    {
+        if (ladder == _bidLimitOrders) { PublishTopOfBook(true, false, false); }
+        else if (ladder == _askLimitOrders) { PublishTopOfBook(false, true, false); }
+        else { PublishDepth(ladder); }
+    }
+
+    /**
+     * Replaces the snapshot of the top of the book, reading the best levels of the requested sides. The snapshot is
+     * swapped with a compare-and-set, so that two sides updated concurrently (each under its own lock) don't overwrite
+     * each other.
+     */
+    private void PublishTopOfBook(boolean updateBid, boolean updateAsk, boolean updateLastTrade)
+    {
+        if (updateBid) { PublishDepth(_bidLimitOrders); }
+        if (updateAsk) { PublishDepth(_askLimitOrders); }
+
+        while (true)
         {
-            for (Order askOrder : _askStopOrders)
+            TopOfBook current = _topOfBook.get();
+
+            long bidPrice = current.GetBidPrice();
+            long bidSize = current.GetBidSize();
+            if (updateBid)
             {
-                if (askOrder.GetID() != request.GetOrderID()) { continue; }
-                if (!askOrder.GetUser().GetUsername().equals(user.GetUsername())) { return CancelOrderRequest.ORDER_BELONG_TO_DIFFERENT_USER; }
+                PriceLevel level = _bidLimitOrders.GetBest();
+                bidPrice = level == null ? 0 : level.GetPrice();
+                bidSize = level == null ? 0 : level.GetTotalSize();
+            }
 
-                _askStopOrders.remove(askOrder);
-                return CancelOrderRequest.OK;
+            long askPrice = current.GetAskPrice();
+            long askSize = current.GetAskSize();
+            if (updateAsk)
+            {
+                PriceLevel level = _askLimitOrders.GetBest();
+                askPrice = level == null ? 0 : level.GetPrice();
+                askSize = level == null ? 0 : level.GetTotalSize();
             }
+
+            long lastTradePrice = updateLastTrade ? _lastTradePrice : current.GetLastTradePrice();
+            long volume = updateLastTrade ? _tradedVolume : current.GetVolume();
+
+            if (current.Equals(bidPrice, bidSize, askPrice, askSize, lastTradePrice, volume)) { return; }
+
+            TopOfBook next = new TopOfBook(bidPrice, bidSize, askPrice, askSize, lastTradePrice, volume);
+            if (_topOfBook.compareAndSet(current, next)) { return; }
         }
+    }
 
-        synchronized (_bidStopOrders)
+    /**
+     * Publishes the levels of a ladder changed since its last publication to the depth view and, for a limit ladder,
+     * to the depth feed if enabled. The caller must hold the lock of the ladder or be the only thread accessing the book.
+     */
+    private void PublishDepth(PriceLadder ladder)
+    {
+        if (ladder.GetChangedCount() == 0) { return; }
+
+        // the changes of the stop orders and, without the depth feed, of the limit orders only update the view
+        if (_depthSink == null || ladder.GetType() == Type.STOP)
+        {
+            PublishDepthView(ladder);
+            ladder.ClearChanges();
+            return;
+        }
+
+        synchronized (_depthUpdate)
         {
-            for (Order bidOrder : _bidStopOrders)
+            _depthUpdate.Reset(_symbol, ladder.GetMethod());
+
+            for (int i = 0; i < ladder.GetChangedCount(); i++)
             {
-                if (bidOrder.GetID() != request.GetOrderID()) { continue; }
-                if (!bidOrder.GetUser().GetUsername().equals(user.GetUsername())) { return CancelOrderRequest.ORDER_BELONG_TO_DIFFERENT_USER; }
+                PriceLevel level = ladder.GetChangedLevel(i);
 
-                _bidStopOrders.remove(bidOrder);
-                return CancelOrderRequest.OK;
+                // a level created and emptied by the same operation was never visible to the consumers
+                if (level.IsEmpty()) { if (!level.IsNew()) { _depthUpdate.Add(DepthUpdateNotification.Action.DELETE, level.GetPrice(), 0); } }
+                else if (level.IsNew()) { _depthUpdate.Add(DepthUpdateNotification.Action.ADD, level.GetPrice(), level.GetTotalSize()); }
+                else { _depthUpdate.Add(DepthUpdateNotification.Action.UPDATE, level.GetPrice(), level.GetTotalSize()); }
             }
+
+            // the view and the sequence number change together, so that the depth snapshots stay consistent with
+            // the updates
+            if (!_depthUpdate.IsEmpty()) { _depthUpdate.Terminate(++_depthSequence); }
+            PublishDepthView(ladder);
+            ladder.ClearChanges();
+
+            if (!_depthUpdate.IsEmpty()) { _depthSink.accept(_depthUpdate.ToString()); }
+        }
+    }
+
+    /**
+     * Replaces the depth view with a new version holding the changed levels of a ladder. The new side is built once,
+     * only this thread can change it, while the view is swapped with a compare-and-set so that the sides published
+     * concurrently (each under its own lock) don't overwrite each other.
+     */
+    private void PublishDepthView(PriceLadder ladder)
+    {
+        DepthView.Side side = _depthView.get().GetSide(ladder.GetType(), ladder.GetMethod());
+        for (int i = 0; i < ladder.GetChangedCount(); i++)
+        {
+            PriceLevel level = ladder.GetChangedLevel(i);
+            side = side.With(level.GetPrice(), level.GetTotalSize(), level.GetCount());
+        }
+
+        while (true)
+        {
+            DepthView current = _depthView.get();
+            long sequence = ladder.GetType() == Type.LIMIT ? _depthSequence : current.GetSequence();
+            if (_depthView.compareAndSet(current, current.With(ladder.GetType(), ladder.GetMethod(), side, sequence))) { return; }
         }
+    }
+
+    /**
+     * Appends an order to the journal before executing it, unless it is being replayed from the journal.
+     */
+    private void RecordOrder(Order order) { if (_journal != null && !_isReplaying) { _journal.AppendOrder(order); } }
+
+    /**
+     * Appends the cancellation of a resting order to the journal before removing it from the book.
+     */
+    private void RecordCancel(long orderID) { if (_journal != null && !_isReplaying) { _journal.AppendCancel(orderID); } }
+
+    /**
+     * Gets the handle of a resting order in the order ID index: the slot of the order and the index of its ladder in
+     * the two lowest bits.
+     */
+    private int GetHandle(PriceLadder ladder, int slot)
+    {
+        int index = (ladder.GetType() == Type.STOP ? 2 : 0) + (ladder.GetMethod() == Method.BID ? 1 : 0);
+        return slot << 2 | index;
+    }
 
-        return CancelOrderRequest.ORDER_DOES_NOT_EXISTS;
+    private PriceLadder GetLadder(int handle) { return _ladders[handle & 3]; }
+    private int GetSlot(int handle) { return handle >>> 2; }
+
+    /**
+     * Stores an order in a ladder, adds it to the order ID index and counts it in the exposure of its user, at the
+     * price placing it in the ladder. The order object is not kept: from now on the order is only a slot of the ladder.
+     */
+    private void AddRestingOrder(PriceLadder ladder, Order order, long price)
+    {
+        int slot = ladder.Add(order.GetID(), price, order.GetSize(), order.GetTimestamp(), order.GetUser());
+        _restingOrders.Put(order.GetID(), GetHandle(ladder, slot));
+        order.GetUser().GetExposure().OnOrderAdded(price * order.GetSize());
+    }
+
+    /**
+     * Removes an order from its ladder, freeing its slot, and from the order ID index, and releases its remaining size
+     * from the exposure of its user.
+     */
+    private void RemoveRestingOrder(PriceLadder ladder, int slot)
+    {
+        OrderStore store = ladder.GetStore();
+        store.GetUser(slot).GetExposure().OnOrderRemoved(store.GetPrice(slot) * store.GetSize(slot));
+
+        _restingOrders.Remove(store.GetID(slot));
+        ladder.Remove(slot);
+    }
+
+    /**
+     * Releases the size filled of a resting order from the exposure of its user.
+     */
+    private void OnRestingOrderFilled(PriceLadder ladder, int slot, long size)
+    {
+        OrderStore store = ladder.GetStore();
+        store.GetUser(slot).GetExposure().OnOrderFilled(store.GetPrice(slot) * size);
     }
 }
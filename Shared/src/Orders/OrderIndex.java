@@ -0,0 +1,221 @@
+package Orders;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Maps the IDs of the orders resting in a book to their handles (the ladder and the slot holding each order), as an
+ * open-addressing hash table with linear probing stored in a single buffer: indexing an order doesn't allocate and the
+ * garbage collector has nothing to trace, however deep the book is. The buffer is on the heap and doubles when the
+ * table is half full, or off the heap with a fixed capacity like the ladders of the book (see OrderStore).
+ *
+ * The table is changed by the threads holding the lock of a ladder (or by the matching engine of the book) and read
+ * by any thread, to find the ladder to lock before canceling an order: the changes are serialized by a write lock,
+ * while the lookups read the table optimistically and retry only if a change happened meanwhile. Removed entries are
+ * shifted back instead of being left as tombstones, so the lookups stay short however many orders came and went.
+ */
+public class OrderIndex
+{
+    // the handle meaning "no order"
+    public static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // each entry holds the order ID (EMPTY if the entry is free) and the handle of the order, padded to 16 bytes
+    private static final int ENTRY_SIZE = 16;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    // the entries, their number minus one (the number of entries is a power of two) and the number of orders indexed
+    private ByteBuffer _memory;
+    private int _mask;
+    private int _count;
+
+    // true if the entries are kept off the Java heap, with a fixed capacity
+    private final boolean _isOffHeap;
+
+    // serializes the changes and validates the optimistic lookups
+    private final StampedLock _lock;
+
+    /**
+     * Constructor for creating an empty index.
+     *
+     * @param offHeapCapacity The number of orders the index holds off the Java heap, or 0 to keep the index on the
+     *                        heap and let it grow with the number of orders.
+     */
+    public OrderIndex(int offHeapCapacity)
+    {
+        _isOffHeap = offHeapCapacity > 0;
+        _count = 0;
+        _lock = new StampedLock();
+
+        // keep the table at most half full, so that the probe sequences stay short
+        int entries = _isOffHeap ? Integer.highestOneBit(Math.max(offHeapCapacity, 1)) << 2 : INITIAL_CAPACITY;
+        if (entries <= 0 || (long) entries * ENTRY_SIZE > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("The capacity of an order index is too large (got " + offHeapCapacity + ")");
+        }
+
+        _memory = Allocate(entries);
+        _mask = entries - 1;
+    }
+
+    /**
+     * Gets the handle of a resting order, from any thread without blocking.
+     *
+     * @param orderID The ID of the order.
+     * @return The handle of the order, or NONE if the order is not resting in the book.
+     */
+    public int Get(long orderID)
+    {
+        long stamp = _lock.tryOptimisticRead();
+        if (stamp != 0)
+        {
+            int handle = Find(_memory, orderID);
+            if (_lock.validate(stamp)) { return handle; }
+        }
+
+        stamp = _lock.readLock();
+        try { return Find(_memory, orderID); }
+        finally { _lock.unlockRead(stamp); }
+    }
+
+    /**
+     * Checks if an order is resting in the book, from any thread without blocking.
+     */
+    public boolean Contains(long orderID) { return Get(orderID) != NONE; }
+
+    /**
+     * Indexes an order entering the book.
+     *
+     * @param orderID The ID of the order, not indexed yet.
+     * @param handle The handle of the order.
+     * @throws IllegalStateException If the index is kept off the heap and is full.
+     */
+    void Put(long orderID, int handle)
+    {
+        long stamp = _lock.writeLock();
+        try
+        {
+            if (_count * 2 >= _mask + 1)
+            {
+                if (_isOffHeap) { throw new IllegalStateException("The order index is full (" + _count + " orders)"); }
+                Grow();
+            }
+
+            int entry = Home(orderID, _mask);
+            while (_memory.getLong(entry * ENTRY_SIZE) != EMPTY) { entry = (entry + 1) & _mask; }
+
+            _memory.putInt(entry * ENTRY_SIZE + Long.BYTES, handle);
+            _memory.putLong(entry * ENTRY_SIZE, orderID);
+            _count++;
+        }
+        finally { _lock.unlockWrite(stamp); }
+    }
+
+    /**
+     * Removes an order leaving the book from the index, shifting back the entries of the same probe sequence that
+     * follow it so that no lookup ever stops at the freed entry.
+     *
+     * @param orderID The ID of the order.
+     */
+    void Remove(long orderID)
+    {
+        long stamp = _lock.writeLock();
+        try
+        {
+            int entry = FindEntry(_memory, _mask, orderID);
+            if (entry == NONE) { return; }
+
+            int next = entry;
+            while (true)
+            {
+                next = (next + 1) & _mask;
+
+                long id = _memory.getLong(next * ENTRY_SIZE);
+                if (id == EMPTY) { break; }
+
+                // an entry stays where it is if its home is cyclically between the free entry (excluded) and itself
+                int home = Home(id, _mask);
+                boolean stays = entry <= next ? entry < home && home <= next : entry < home || home <= next;
+                if (stays) { continue; }
+
+                _memory.putLong(entry * ENTRY_SIZE, id);
+                _memory.putInt(entry * ENTRY_SIZE + Long.BYTES, _memory.getInt(next * ENTRY_SIZE + Long.BYTES));
+                entry = next;
+            }
+
+            _memory.putLong(entry * ENTRY_SIZE, EMPTY);
+            _count--;
+        }
+        finally { _lock.unlockWrite(stamp); }
+    }
+
+    /**
+     * Searches an order in the table, the search ends at the first free entry or after a full turn of the table, so
+     * that an optimistic lookup racing with a change always terminates.
+     */
+    private static int Find(ByteBuffer memory, long orderID)
+    {
+        int mask = memory.capacity() / ENTRY_SIZE - 1;
+
+        int entry = FindEntry(memory, mask, orderID);
+        return entry == NONE ? NONE : memory.getInt(entry * ENTRY_SIZE + Long.BYTES);
+    }
+
+    private static int FindEntry(ByteBuffer memory, int mask, long orderID)
+    {
+        int entry = Home(orderID, mask);
+        for (int i = 0; i <= mask; i++)
+        {
+            long id = memory.getLong(entry * ENTRY_SIZE);
+            if (id == orderID) { return entry; }
+            if (id == EMPTY) { return NONE; }
+
+            entry = (entry + 1) & mask;
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Gets the entry where the search of an order starts, spreading the consecutive order IDs with a multiplicative
+     * hash.
+     */
+    private static int Home(long orderID, int mask) { return (int) ((orderID * 0x9E3779B97F4A7C15L) >>> 32) & mask; }
+
+    private ByteBuffer Allocate(int entries)
+    {
+        ByteBuffer memory = _isOffHeap ? ByteBuffer.allocateDirect(entries * ENTRY_SIZE) : ByteBuffer.allocate(entries * ENTRY_SIZE);
+        memory.order(ByteOrder.nativeOrder());
+
+        for (int entry = 0; entry < entries; entry++) { memory.putLong(entry * ENTRY_SIZE, EMPTY); }
+        return memory;
+    }
+
+    /**
+     * Moves the entries to a table twice as large, the caller must hold the write lock.
+     */
+    private void Grow()
+    {
+        if ((long) (_mask + 1) * 2 * ENTRY_SIZE > Integer.MAX_VALUE) { throw new IllegalStateException("The order index can't grow beyond " + _count + " orders"); }
+
+        ByteBuffer memory = Allocate((_mask + 1) * 2);
+        int mask = (_mask + 1) * 2 - 1;
+
+        for (int entry = 0; entry <= _mask; entry++)
+        {
+            long id = _memory.getLong(entry * ENTRY_SIZE);
+            if (id == EMPTY) { continue; }
+
+            int target = Home(id, mask);
+            while (memory.getLong(target * ENTRY_SIZE) != EMPTY) { target = (target + 1) & mask; }
+
+            memory.putLong(target * ENTRY_SIZE, id);
+            memory.putInt(target * ENTRY_SIZE + Long.BYTES, _memory.getInt(entry * ENTRY_SIZE + Long.BYTES));
+        }
+
+        _memory = memory;
+        _mask = mask;
+    }
+}
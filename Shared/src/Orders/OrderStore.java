@@ -0,0 +1,267 @@
+package Orders;
+
+import Users.User;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Stores the orders resting in a price ladder as parallel primitive columns addressed by slot number, instead of one
+ * object per order: a resting order costs a few bytes of the columns, the garbage collector has nothing to trace and
+ * the orders of a level are read from contiguous memory while matching.
+ * The slots freed by filled and canceled orders are chained in a free list and reused first. The type and the method
+ * of the orders are those of the ladder, and their users are stored once per owner in a table indexed by the slots.
+ *
+ * The columns are laid out one after the other in a single buffer: a heap buffer that doubles when all its slots are
+ * taken, or a direct buffer allocated once outside of the Java heap for a fixed number of orders. Off the heap, the
+ * garbage collection pauses don't depend on the depth of the book and the memory taken by the orders is fixed from
+ * startup, at the price of rejecting the orders that would exceed the capacity (see IsFull).
+ *
+ * Each slot is linked to its neighbours in the FIFO queue of its price level (see PriceLevel) and in the chain of the
+ * orders of its owner, so that all the orders of a user can be pulled without scanning the ladder.
+ * The store is guarded by the lock of its ladder (or owned by the matching engine of the book).
+ */
+public class OrderStore
+{
+    // the slot number meaning "no order", ending the level queues, the owner chains and the free list
+    public static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // the bytes taken by a slot in all the columns: ID, price, size and timestamp (long), then owner, level links and
+    // owner links (int), and the highest number of slots a buffer can address
+    private static final int SLOT_SIZE = 4 * Long.BYTES + 5 * Integer.BYTES;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / SLOT_SIZE;
+
+    // the columns of the orders, each one starting at its offset in the buffer: ID (NONE while the slot is free),
+    // price used to place the order in the ladder (limit or stop price), remaining size, creation timestamp, index of
+    // the owner, links to the previous and next order of the same price level (the next link also chains the free
+    // slots) and links to the previous and next order of the same owner
+    private ByteBuffer _memory;
+    private int _capacity;
+    private int _ids;
+    private int _prices;
+    private int _sizes;
+    private int _timestamps;
+    private int _owners;
+    private int _previous;
+    private int _next;
+    private int _previousOfOwner;
+    private int _nextOfOwner;
+
+    // true if the columns are kept off the Java heap, with a fixed capacity
+    private final boolean _isOffHeap;
+
+    // the first free slot and the number of slots in use
+    private int _freeHead;
+    private int _count;
+
+    // the owners of the orders: the user, the most recent order of the user (NONE if none) and the index of each
+    // username, an owner is never removed so its index stays valid
+    private User[] _users;
+    private int[] _ownerHeads;
+    private int _ownerCount;
+    private final HashMap<String, Integer> _ownerIndexes;
+
+    /**
+     * Constructor for creating an empty store.
+     *
+     * @param offHeapCapacity The number of orders the store holds off the Java heap, or 0 to keep the orders on the
+     *                        heap in columns growing with the number of orders.
+     */
+    public OrderStore(int offHeapCapacity)
+    {
+        if (offHeapCapacity < 0 || offHeapCapacity > MAX_CAPACITY)
+        {
+            throw new IllegalArgumentException("The capacity of an order store must be between 0 and " + MAX_CAPACITY + " (got " + offHeapCapacity + ")");
+        }
+
+        _isOffHeap = offHeapCapacity > 0;
+        _memory = null;
+        _capacity = 0;
+        _freeHead = NONE;
+        _count = 0;
+        _users = new User[INITIAL_CAPACITY];
+        _ownerHeads = new int[INITIAL_CAPACITY];
+        _ownerCount = 0;
+        _ownerIndexes = new HashMap<>();
+
+        Grow(_isOffHeap ? offHeapCapacity : INITIAL_CAPACITY);
+    }
+
+    // getter methods
+
+    public int GetCount() { return _count; }
+    public int GetCapacity() { return _capacity; }
+    public boolean IsOffHeap() { return _isOffHeap; }
+    public long GetID(int slot) { return _memory.getLong(_ids + slot * Long.BYTES); }
+    public long GetPrice(int slot) { return _memory.getLong(_prices + slot * Long.BYTES); }
+    public long GetSize(int slot) { return _memory.getLong(_sizes + slot * Long.BYTES); }
+    public long GetTimestamp(int slot) { return _memory.getLong(_timestamps + slot * Long.BYTES); }
+    public User GetUser(int slot) { return _users[GetInt(_owners, slot)]; }
+
+    /**
+     * Checks if all the slots are taken and the store can't grow, either because it is kept off the heap or because
+     * its columns reached the largest size of a buffer.
+     *
+     * @return True if no order can be added to the store.
+     */
+    public boolean IsFull() { return _freeHead == NONE && (_isOffHeap || _capacity == MAX_CAPACITY); }
+
+    /**
+     * Gets the order queued right after the given one in its price level.
+     *
+     * @return The slot of the next order, or NONE if the given order is the last one of its level.
+     */
+    public int GetNext(int slot) { return GetInt(_next, slot); }
+
+    /**
+     * Gets the most recent order of a user.
+     *
+     * @param username The username of the owner.
+     * @return The slot of the order, or NONE if the user has no order in the store.
+     */
+    public int GetFirstOfOwner(String username)
+    {
+        Integer owner = _ownerIndexes.get(username);
+        return owner == null ? NONE : _ownerHeads[owner];
+    }
+
+    /**
+     * Gets the order of the same user placed right before the given one.
+     *
+     * @return The slot of the order, or NONE if the given order is the oldest one of its user.
+     */
+    public int GetNextOfOwner(int slot) { return GetInt(_nextOfOwner, slot); }
+
+    /**
+     * Takes a free slot, growing the columns if none is left, and fills it with an order.
+     * The order is not linked to any price level yet.
+     *
+     * @return The slot holding the order.
+     * @throws IllegalStateException If the store is full (see IsFull).
+     */
+    int Allocate(long orderID, long price, long size, long timestamp, User user)
+    {
+        if (_freeHead == NONE)
+        {
+            if (IsFull()) { throw new IllegalStateException("The order store is full (" + _capacity + " orders)"); }
+            Grow((int) Math.min((long) _capacity * 2, MAX_CAPACITY));
+        }
+
+        int slot = _freeHead;
+        _freeHead = GetInt(_next, slot);
+        _count++;
+
+        SetLong(_ids, slot, orderID);
+        SetLong(_prices, slot, price);
+        SetLong(_sizes, slot, size);
+        SetLong(_timestamps, slot, timestamp);
+        SetInt(_previous, slot, NONE);
+        SetInt(_next, slot, NONE);
+
+        // push the order at the head of the chain of its owner
+        int owner = GetOwnerIndex(user);
+        int head = _ownerHeads[owner];
+        SetInt(_owners, slot, owner);
+        SetInt(_previousOfOwner, slot, NONE);
+        SetInt(_nextOfOwner, slot, head);
+        if (head != NONE) { SetInt(_previousOfOwner, head, slot); }
+        _ownerHeads[owner] = slot;
+
+        return slot;
+    }
+
+    /**
+     * Unlinks an order from the chain of its owner and returns its slot to the free list.
+     * The order must have been unlinked from its price level.
+     */
+    void Free(int slot)
+    {
+        int previous = GetInt(_previousOfOwner, slot);
+        int next = GetInt(_nextOfOwner, slot);
+        if (previous == NONE) { _ownerHeads[GetInt(_owners, slot)] = next; }
+        else { SetInt(_nextOfOwner, previous, next); }
+        if (next != NONE) { SetInt(_previousOfOwner, next, previous); }
+
+        SetLong(_ids, slot, NONE);
+        SetLong(_sizes, slot, 0);
+        SetInt(_next, slot, _freeHead);
+        _freeHead = slot;
+        _count--;
+    }
+
+    void DecreaseSize(int slot, long size) { SetLong(_sizes, slot, GetSize(slot) - size); }
+
+    // the links of the price level queues, maintained by PriceLevel
+
+    int GetPrevious(int slot) { return GetInt(_previous, slot); }
+    void SetPrevious(int slot, int previous) { SetInt(_previous, slot, previous); }
+    void SetNext(int slot, int next) { SetInt(_next, slot, next); }
+
+    private int GetInt(int column, int slot) { return _memory.getInt(column + slot * Integer.BYTES); }
+    private void SetInt(int column, int slot, int value) { _memory.putInt(column + slot * Integer.BYTES, value); }
+    private void SetLong(int column, int slot, long value) { _memory.putLong(column + slot * Long.BYTES, value); }
+
+    private int GetOwnerIndex(User user)
+    {
+        Integer owner = _ownerIndexes.get(user.GetUsername());
+        if (owner != null) { return owner; }
+
+        if (_ownerCount == _users.length)
+        {
+            _users = Arrays.copyOf(_users, _ownerCount * 2);
+            _ownerHeads = Arrays.copyOf(_ownerHeads, _ownerCount * 2);
+        }
+
+        _users[_ownerCount] = user;
+        _ownerHeads[_ownerCount] = NONE;
+        _ownerIndexes.put(user.GetUsername(), _ownerCount);
+        return _ownerCount++;
+    }
+
+    /**
+     * Moves the columns to a buffer for the given capacity and chains the new slots in the free list.
+     */
+    private void Grow(int capacity)
+    {
+        ByteBuffer memory = _isOffHeap ? ByteBuffer.allocateDirect(capacity * SLOT_SIZE) : ByteBuffer.allocate(capacity * SLOT_SIZE);
+        memory.order(ByteOrder.nativeOrder());
+
+        // the offsets of the columns for the new capacity, the ones of the current buffer are kept to copy them
+        int[] oldColumns = { _ids, _prices, _sizes, _timestamps, _owners, _previous, _next, _previousOfOwner, _nextOfOwner };
+        int[] columns = new int[oldColumns.length];
+        for (int i = 0, offset = 0; i < columns.length; i++)
+        {
+            columns[i] = offset;
+            offset += capacity * (i < 4 ? Long.BYTES : Integer.BYTES);
+        }
+
+        if (_memory != null)
+        {
+            for (int i = 0; i < columns.length; i++) { memory.put(columns[i], _memory, oldColumns[i], _capacity * (i < 4 ? Long.BYTES : Integer.BYTES)); }
+        }
+
+        int oldCapacity = _capacity;
+        _memory = memory;
+        _capacity = capacity;
+        _ids = columns[0];
+        _prices = columns[1];
+        _sizes = columns[2];
+        _timestamps = columns[3];
+        _owners = columns[4];
+        _previous = columns[5];
+        _next = columns[6];
+        _previousOfOwner = columns[7];
+        _nextOfOwner = columns[8];
+
+        for (int slot = capacity - 1; slot >= oldCapacity; slot--)
+        {
+            SetLong(_ids, slot, NONE);
+            SetInt(_next, slot, _freeHead);
+            _freeHead = slot;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package Orders;
+
+import Users.User;
+
+/**
+ * Represents one side of the order book as a ladder of price levels sorted from the worst to the best price.
+ * Keeping the best level at the end of the array makes reading and removing it O(1), while the orders
+ * of the ladder can be walked in strict price-time priority (best level first, oldest order first).
+ * The orders themselves live in the order store of the ladder and are addressed by slot number.
+ */
+public class PriceLadder
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    // the type (limit or stop) and the method of the orders resting in the ladder
+    private final Type _type;
+    private final Method _method;
+
+    // true if a higher price is better (bid limits, ask stops), false if a lower price is better (ask limits, bid stops)
+    private final boolean _higherIsBetter;
+
+    // the orders resting in the ladder
+    private final OrderStore _store;
+
+    // the levels sorted from the worst to the best price, only the first _count entries are valid
+    private PriceLevel[] _levels;
+    private int _count;
+
+    // the levels changed (added, resized or removed) since the last clear, in the order of their first change: the
+    // book publishes them to its depth view and to the depth feed after each operation
+    private PriceLevel[] _changedLevels;
+    private int _changedCount;
+
+    /**
+     * Constructor for creating an empty ladder. The bid limit orders with the highest price are matched first, the ask
+     * ones with the lowest price; the ask stop orders with the highest stop price are triggered first, the bid ones with
+     * the lowest stop price.
+     *
+     * @param type The type of the orders of the ladder, limit or stop.
+     * @param method The method of the orders of the ladder.
+     * @param offHeapCapacity The number of orders the ladder holds off the Java heap, or 0 to keep them on the heap
+     *                        (see OrderStore).
+     */
+    public PriceLadder(Type type, Method method, int offHeapCapacity)
+    {
+        _type = type;
+        _method = method;
+        _higherIsBetter = (type == Type.LIMIT) == (method == Method.BID);
+        _store = new OrderStore(offHeapCapacity);
+        _levels = new PriceLevel[INITIAL_CAPACITY];
+        _count = 0;
+        _changedLevels = new PriceLevel[INITIAL_CAPACITY];
+        _changedCount = 0;
+    }
+
+    public Type GetType() { return _type; }
+    public Method GetMethod() { return _method; }
+    public OrderStore GetStore() { return _store; }
+    public boolean IsEmpty() { return _count == 0; }
+    public int GetLevelCount() { return _count; }
+    public int GetOrderCount() { return _store.GetCount(); }
+    public boolean IsFull() { return _store.IsFull(); }
+
+    public int GetChangedCount() { return _changedCount; }
+
+    /**
+     * Gets a level changed since the last clear of the changes.
+     *
+     * @param index The index of the change, in the order of the first change of each level.
+     * @return The changed level: it is empty if it has been removed from the ladder.
+     */
+    public PriceLevel GetChangedLevel(int index) { return _changedLevels[index]; }
+
+    /**
+     * Gets the level with the best price.
+     *
+     * @return The best level, or null if the ladder is empty.
+     */
+    public PriceLevel GetBest() { return _count == 0 ? null : _levels[_count - 1]; }
+
+    /**
+     * Gets a level by its distance from the best one.
+     *
+     * @param depth The distance from the best level (0 is the best level).
+     * @return The level at the given depth.
+     */
+    public PriceLevel GetLevel(int depth) { return _levels[_count - 1 - depth]; }
+
+    /**
+     * Gets the first order of the ladder in price-time priority.
+     *
+     * @return The slot of the oldest order of the best level, or OrderStore.NONE if the ladder is empty.
+     */
+    public int GetFirst() { return _count == 0 ? OrderStore.NONE : _levels[_count - 1].GetFirst(); }
+
+    /**
+     * Gets the order following the given one in price-time priority: the next order of its level or, after the last
+     * one, the oldest order of the next worse level.
+     *
+     * @param slot The slot of an order resting in the ladder.
+     * @return The slot of the next order, or OrderStore.NONE if the given order is the last one of the ladder.
+     */
+    public int GetNext(int slot)
+    {
+        int next = _store.GetNext(slot);
+        if (next != OrderStore.NONE) { return next; }
+
+        int index = Search(_store.GetPrice(slot));
+        return index > 0 ? _levels[index - 1].GetFirst() : OrderStore.NONE;
+    }
+
+    /**
+     * Checks if the first price has a higher priority than the second one on this side of the book.
+     */
+    private boolean IsBetter(long priceA, long priceB) { return _higherIsBetter ? priceA > priceB : priceA < priceB; }
+
+    /**
+     * Searches the level with the given price.
+     *
+     * @param price The price to search.
+     * @return The index of the level if found, otherwise (-(insertion point) - 1).
+     */
+    private int Search(long price)
+    {
+        int low = 0;
+        int high = _count - 1;
+
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            long middlePrice = _levels[middle].GetPrice();
+
+            if (middlePrice == price) { return middle; }
+            if (IsBetter(middlePrice, price)) { high = middle - 1; }
+            else { low = middle + 1; }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * Gets the level with the given price, checking the best level first since it is the one touched while matching.
+     *
+     * @param price The price of a level of the ladder.
+     * @return The level with the given price.
+     */
+    private PriceLevel GetLevelAt(long price)
+    {
+        PriceLevel level = _levels[_count - 1];
+        return level.GetPrice() == price ? level : _levels[Search(price)];
+    }
+
+    /**
+     * Stores an order and appends it to the level with the given price, creating the level if it doesn't exist.
+     *
+     * @param orderID The ID of the order.
+     * @param price The price used to place the order in the ladder (limit or stop price).
+     * @param size The size of the order.
+     * @param timestamp The creation timestamp of the order.
+     * @param user The user who placed the order.
+     * @return The slot of the order in the store of the ladder.
+     */
+    public int Add(long orderID, long price, long size, long timestamp, User user)
+    {
+        // the best level is checked first since most of the orders are placed near the top of the book
+        PriceLevel level = GetBest();
+        if (level == null || level.GetPrice() != price)
+        {
+            int index = Search(price);
+            if (index >= 0) { level = _levels[index]; }
+            else { level = InsertLevel(-(index + 1), price); }
+        }
+
+        int slot = _store.Allocate(orderID, price, size, timestamp, user);
+        level.Add(slot);
+        MarkChanged(level);
+
+        return slot;
+    }
+
+    private PriceLevel InsertLevel(int index, long price)
+    {
+        if (_count == _levels.length)
+        {
+            PriceLevel[] levels = new PriceLevel[_levels.length * 2];
+            System.arraycopy(_levels, 0, levels, 0, _count);
+            _levels = levels;
+        }
+
+        System.arraycopy(_levels, index, _levels, index + 1, _count - index);
+
+        PriceLevel level = new PriceLevel(price, this);
+        _levels[index] = level;
+        _count++;
+
+        return level;
+    }
+
+    /**
+     * Removes an order from its level, dropping the level if it becomes empty, and frees its slot.
+     * Removing an order from the best level is O(1), which is always the case while matching.
+     *
+     * @param slot The slot of the order to remove, it must be resting in this ladder.
+     */
+    public void Remove(int slot)
+    {
+        PriceLevel level = GetLevelAt(_store.GetPrice(slot));
+        level.Remove(slot);
+        MarkChanged(level);
+        _store.Free(slot);
+
+        if (!level.IsEmpty()) { return; }
+
+        if (level == _levels[_count - 1]) { _levels[--_count] = null; return; }
+
+        int index = Search(level.GetPrice());
+        System.arraycopy(_levels, index + 1, _levels, index, _count - index - 1);
+        _levels[--_count] = null;
+    }
+
+    /**
+     * Decreases the size of a resting order partially or fully filled, keeping the aggregate size of its level up to
+     * date. A consumed order stays in its level until it is removed.
+     *
+     * @param slot The slot of the order, it must be resting in this ladder.
+     * @param size The size removed from the order.
+     */
+    void DecreaseSize(int slot, long size)
+    {
+        _store.DecreaseSize(slot, size);
+        GetLevelAt(_store.GetPrice(slot)).OnSizeDecreased(size);
+    }
+
+    /**
+     * Records a change of a level, once per level until the changes are cleared.
+     *
+     * @param level The level that has been added, resized or emptied.
+     */
+    void MarkChanged(PriceLevel level)
+    {
+        if (level.IsChanged()) { return; }
+
+        if (_changedCount == _changedLevels.length)
+        {
+            PriceLevel[] levels = new PriceLevel[_changedLevels.length * 2];
+            System.arraycopy(_changedLevels, 0, levels, 0, _changedCount);
+            _changedLevels = levels;
+        }
+
+        level.MarkChanged();
+        _changedLevels[_changedCount++] = level;
+    }
+
+    /**
+     * Forgets the recorded changes, once they have been published.
+     */
+    void ClearChanges()
+    {
+        for (int i = 0; i < _changedCount; i++)
+        {
+            _changedLevels[i].ClearFlags();
+            _changedLevels[i] = null;
+        }
+
+        _changedCount = 0;
+    }
+}
@@ -0,0 +1,137 @@
+package Orders;
+
+/**
+ * Represents a single price level of the order book: a FIFO queue of the resting orders sharing the same price,
+ * together with the aggregate size resting at that price.
+ * The queue is intrusive (the links are stored in the order store of the ladder, next to the orders), so appending an
+ * order and unlinking any order of the level are both O(1) operations.
+ */
+public class PriceLevel
+{
+    // the price shared by all the orders of this level
+    private final long _price;
+
+    // the slots of the oldest (first to be matched) and of the newest order of the level
+    private int _head;
+    private int _tail;
+
+    // the number of orders resting at this level
+    private int _count;
+
+    // the sum of the sizes of all the orders resting at this level
+    private long _totalSize;
+
+    // the ladder holding the level, notified of the changes of the level, and its order store
+    private final PriceLadder _ladder;
+    private final OrderStore _store;
+
+    // true if the level changed since the ladder last cleared its changes, and if it was created in the meantime
+    private boolean _isChanged;
+    private boolean _isNew;
+
+    /**
+     * Constructor for creating an empty price level, new until the changes of its ladder are cleared.
+     *
+     * @param price The price shared by all the orders of this level.
+     * @param ladder The ladder holding the level.
+     */
+    public PriceLevel(long price, PriceLadder ladder)
+    {
+        _price = price;
+        _ladder = ladder;
+        _store = ladder.GetStore();
+        _isChanged = false;
+        _isNew = true;
+        _head = OrderStore.NONE;
+        _tail = OrderStore.NONE;
+        _count = 0;
+        _totalSize = 0;
+    }
+
+    // getter methods
+
+    public long GetPrice() { return _price; }
+    public int GetCount() { return _count; }
+    public long GetTotalSize() { return _totalSize; }
+    public boolean IsEmpty() { return _count == 0; }
+    public boolean IsChanged() { return _isChanged; }
+    public boolean IsNew() { return _isNew; }
+
+    /**
+     * Records that the level changed, until the ladder clears its changes.
+     */
+    void MarkChanged() { _isChanged = true; }
+
+    /**
+     * Forgets that the level changed or was created, once the changes of the ladder have been published.
+     */
+    void ClearFlags()
+    {
+        _isChanged = false;
+        _isNew = false;
+    }
+
+    /**
+     * Gets the oldest order of the level, which is the first one to be matched.
+     *
+     * @return The slot of the first order of the level, or OrderStore.NONE if the level is empty.
+     */
+    public int GetFirst() { return _head; }
+
+    /**
+     * Gets the order queued right after the given one in this level.
+     *
+     * @param slot The slot of an order resting at this level.
+     * @return The slot of the next order of the level, or OrderStore.NONE if the given order is the last one.
+     */
+    public int GetNext(int slot) { return _store.GetNext(slot); }
+
+    /**
+     * Appends an order at the end of the queue.
+     *
+     * @param slot The slot of the order to append.
+     */
+    void Add(int slot)
+    {
+        _store.SetPrevious(slot, _tail);
+        _store.SetNext(slot, OrderStore.NONE);
+
+        if (_tail == OrderStore.NONE) { _head = slot; }
+        else { _store.SetNext(_tail, slot); }
+        _tail = slot;
+
+        _count++;
+        _totalSize += _store.GetSize(slot);
+    }
+
+    /**
+     * Unlinks an order from the queue in constant time.
+     *
+     * @param slot The slot of the order to remove, it must be resting at this level.
+     */
+    void Remove(int slot)
+    {
+        int previous = _store.GetPrevious(slot);
+        int next = _store.GetNext(slot);
+
+        if (previous == OrderStore.NONE) { _head = next; }
+        else { _store.SetNext(previous, next); }
+
+        if (next == OrderStore.NONE) { _tail = previous; }
+        else { _store.SetPrevious(next, previous); }
+
+        _count--;
+        _totalSize -= _store.GetSize(slot);
+    }
+
+    /**
+     * Updates the aggregate size of the level after one of its orders has been partially or fully filled.
+     *
+     * @param size The size removed from the order.
+     */
+    void OnSizeDecreased(long size)
+    {
+        _totalSize -= size;
+        _ladder.MarkChanged(this);
+    }
+}
@@ -29,6 +29,23 @@ public class StopOrder extends Order
         _stopPrice = stopPrice;
     }
 
+    /**
+     * Constructor for rebuilding a stop order triggered while resting in the book, keeping its creation timestamp.
+     *
+     * @param id        The unique ID for this order.
+     * @param method    The method for this order (either BID or ASK).
+     * @param size      The size (quantity) of the order.
+     * @param stopPrice The price at which the stop order is triggered.
+     * @param timestamp The timestamp when the order was created.
+     * @param user      The user who placed the order.
+     */
+    StopOrder(long id, Method method, long size, long stopPrice, long timestamp, User user)
+    {
+        super(id, Type.STOP, method, size, Long.MAX_VALUE, timestamp, user);
+
+        _stopPrice = stopPrice;
+    }
+
     /**
      * Gets the stop price of this order.
      *
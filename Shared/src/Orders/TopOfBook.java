@@ -0,0 +1,90 @@
+package Orders;
+
+/**
+ * An immutable snapshot of the top of the order book: the best bid and ask levels, the price of the last trade
+ * and the size traded since the start of the server.
+ * The book publishes a new snapshot after each change of its top, so readers get a consistent view of it without
+ * taking any lock. A price of 0 means that the side is empty (or that no trade happened yet).
+ */
+public class TopOfBook
+{
+    // the snapshot of an empty book
+    public static final TopOfBook EMPTY = new TopOfBook(0, 0, 0, 0, 0, 0);
+
+    // price and aggregate size of the best bid level
+    private final long _bidPrice;
+    private final long _bidSize;
+
+    // price and aggregate size of the best ask level
+    private final long _askPrice;
+    private final long _askSize;
+
+    // the price of the last trade
+    private final long _lastTradePrice;
+
+    // the total size traded in the book
+    private final long _volume;
+
+    /**
+     * Constructor for creating a snapshot of the top of the book.
+     *
+     * @param bidPrice The price of the best bid level (0 if there are no bids).
+     * @param bidSize The aggregate size of the best bid level.
+     * @param askPrice The price of the best ask level (0 if there are no asks).
+     * @param askSize The aggregate size of the best ask level.
+     * @param lastTradePrice The price of the last trade (0 if no trade happened yet).
+     * @param volume The total size traded in the book.
+     */
+    public TopOfBook(long bidPrice, long bidSize, long askPrice, long askSize, long lastTradePrice, long volume)
+    {
+        _bidPrice = bidPrice;
+        _bidSize = bidSize;
+        _askPrice = askPrice;
+        _askSize = askSize;
+        _lastTradePrice = lastTradePrice;
+        _volume = volume;
+    }
+
+    // getter methods
+
+    public long GetBidPrice() { return _bidPrice; }
+    public long GetBidSize() { return _bidSize; }
+    public long GetAskPrice() { return _askPrice; }
+    public long GetAskSize() { return _askSize; }
+    public long GetLastTradePrice() { return _lastTradePrice; }
+    public long GetVolume() { return _volume; }
+
+    /**
+     * Gets the best price for a given method (ASK or BID).
+     *
+     * @param method The order method (ASK or BID).
+     * @return The best price of the given side, 0 if the side is empty.
+     */
+    public long GetBestPrice(Method method) { return method == Method.ASK ? _askPrice : _bidPrice; }
+
+    /**
+     * Gets the spread between the best bid and the best ask prices, calculated as (best bid price - best ask price).
+     *
+     * @return The spread (difference between best bid and best ask).
+     */
+    public long GetSpread() { return _bidPrice - _askPrice; }
+
+    /**
+     * Checks if the snapshot holds the same values as the given ones.
+     */
+    boolean Equals(long bidPrice, long bidSize, long askPrice, long askSize, long lastTradePrice, long volume)
+    {
+        return _bidPrice == bidPrice && _bidSize == bidSize && _askPrice == askPrice && _askSize == askSize
+                && _lastTradePrice == lastTradePrice && _volume == volume;
+    }
+
+    /**
+     * Converts the snapshot to a single line of text.
+     *
+     * @return The textual representation of the top of the book.
+     */
+    public String ToString()
+    {
+        return String.format("Bid %d x %d | Ask %d x %d | Last %d | Volume %d", _bidSize, _bidPrice, _askSize, _askPrice, _lastTradePrice, _volume);
+    }
+}
@@ -0,0 +1,85 @@
+package Users;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The exposure of a user to the market: the number of orders resting in the books, their notional (price times
+ * remaining size, at the stop price for the stop orders) and the number of orders submitted in the current second.
+ * The counters are updated without any lock by the threads changing the books, whichever book and ladder the orders
+ * rest in, and read by the pre-trade checks of the user: each update is a single atomic operation and allocates
+ * nothing.
+ */
+public class Exposure
+{
+    // the number of resting orders and their total notional
+    private final AtomicLong _openOrders;
+    private final AtomicLong _openNotional;
+
+    // the second of the current rate window (upper 32 bits) and the number of orders counted in it (lower 32 bits),
+    // packed in one value so that a new window starts with a single compare-and-set
+    private final AtomicLong _rateWindow;
+
+    /**
+     * Constructor for the exposure of a user without any order.
+     */
+    public Exposure()
+    {
+        _openOrders = new AtomicLong(0);
+        _openNotional = new AtomicLong(0);
+        _rateWindow = new AtomicLong(0);
+    }
+
+    // getter methods
+
+    public long GetOpenOrders() { return _openOrders.get(); }
+    public long GetOpenNotional() { return _openNotional.get(); }
+
+    /**
+     * Counts an order entering a book.
+     *
+     * @param notional The price times the size of the order.
+     */
+    public void OnOrderAdded(long notional)
+    {
+        _openOrders.incrementAndGet();
+        _openNotional.addAndGet(notional);
+    }
+
+    /**
+     * Counts a partial or full fill of a resting order, which stays in the book until it is removed.
+     *
+     * @param notional The price of the order times the size filled.
+     */
+    public void OnOrderFilled(long notional) { _openNotional.addAndGet(-notional); }
+
+    /**
+     * Counts an order leaving a book: consumed, canceled or triggered.
+     *
+     * @param notional The price times the remaining size of the order.
+     */
+    public void OnOrderRemoved(long notional)
+    {
+        _openOrders.decrementAndGet();
+        _openNotional.addAndGet(-notional);
+    }
+
+    /**
+     * Counts an order submitted by the user, unless the user already submitted the maximum number of orders in the
+     * current second.
+     *
+     * @param second The current time in seconds.
+     * @param maxPerSecond The maximum number of orders per second.
+     * @return True if the order is counted, false if the rate is exceeded.
+     */
+    public boolean TryCountOrder(long second, long maxPerSecond)
+    {
+        while (true)
+        {
+            long window = _rateWindow.get();
+            long count = window >>> 32 == second ? window & 0xFFFFFFFFL : 0;
+            if (count >= maxPerSecond) { return false; }
+
+            if (_rateWindow.compareAndSet(window, second << 32 | (count + 1))) { return true; }
+        }
+    }
+}
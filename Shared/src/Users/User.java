@@ -12,6 +12,9 @@ public class User
     private final String _username;
     private String _password;
 
+    // the orders of the user resting in the books, checked before each new order
+    private final Exposure _exposure;
+
     /**
      * Constructor to initialize the User object with a username and password.
      *
@@ -22,6 +25,7 @@ public class User
     {
         _username = name;
         _password = password;
+        _exposure = new Exposure();
     }
 
     /**
@@ -38,6 +42,13 @@ public class User
      */
     public String GetPassword() { return _password; }
 
+    /**
+     * Gets the exposure of the user: the orders resting in the books and the recent order rate.
+     *
+     * @return the exposure of the user
+     */
+    public Exposure GetExposure() { return _exposure; }
+
     /**
      * Compares the current password with a provided one to check if they match.
      * This method is synchronized to prevent race conditions during password checks.